@@ -76,7 +76,7 @@ public class MastodonAppModel<
 
 	private final M model;
 
-	private final SelectionModel< V, E > selectionModel;
+	private final DefaultSelectionModel< V, E > selectionModel;
 
 	private final HighlightModel< V, E > highlightModel;
 
@@ -167,7 +167,7 @@ public class MastodonAppModel<
 		return model;
 	}
 
-	public SelectionModel< V, E > getSelectionModel()
+	public DefaultSelectionModel< V, E > getSelectionModel()
 	{
 		return selectionModel;
 	}
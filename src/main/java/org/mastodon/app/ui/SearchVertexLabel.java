@@ -53,6 +53,8 @@ import javax.swing.KeyStroke;
 import javax.swing.UIManager;
 
 import org.mastodon.Ref;
+import org.mastodon.adapter.RefBimap;
+import org.mastodon.app.ViewGraph;
 import org.mastodon.collection.RefCollections;
 import org.mastodon.collection.RefList;
 import org.mastodon.collection.RefSet;
@@ -60,7 +62,6 @@ import org.mastodon.graph.Edge;
 import org.mastodon.graph.ReadOnlyGraph;
 import org.mastodon.graph.Vertex;
 import org.mastodon.graph.algorithm.AbstractGraphAlgorithm;
-import org.mastodon.graph.algorithm.RootFinder;
 import org.mastodon.graph.algorithm.traversal.BreadthFirstCrossComponentIterator;
 import org.mastodon.graph.algorithm.traversal.BreadthFirstIterator;
 import org.mastodon.graph.algorithm.traversal.InverseDepthFirstIterator;
@@ -113,6 +114,10 @@ public class SearchVertexLabel< V extends Vertex< E > & HasLabel & Ref< V >, E e
 	 *            the {@link Actions} to add the search vertex action to.
 	 * @param graph
 	 *            the graph to operate the search on.
+	 * @param labelIndex
+	 *            the label index of the model {@code graph} is a view of. Only
+	 *            the lineages of the vertices it reports as matching are
+	 *            traversed.
 	 * @param navigation
 	 *            the navigation model to navigate to search results.
 	 * @param selection
@@ -124,16 +129,21 @@ public class SearchVertexLabel< V extends Vertex< E > & HasLabel & Ref< V >, E e
 	 *            the search text field.
 	 * @return a new panel containing the search field.
 	 */
-	public static < V extends Vertex< E > & HasLabel & Ref< V >, E extends Edge< V > > JPanel
-			install(
+	public static <
+				MV extends Vertex< ME > & HasLabel & Ref< MV >,
+				ME extends Edge< MV >,
+				V extends Vertex< E > & HasLabel & Ref< V >,
+				E extends Edge< V > >
+			JPanel install(
 					final Actions actions,
-					final ReadOnlyGraph< V, E > graph,
+					final ViewGraph< MV, ME, V, E > graph,
+					final VertexLabelIndex< MV, ME > labelIndex,
 					final NavigationHandler< V, E > navigation,
 					final SelectionModel< V, E > selection,
 					final FocusModel< V, E > focus,
 					final JComponent cancelEntryFocusTarget )
 	{
-		final SearchVertexLabel< V, E > search = new SearchVertexLabel<>( graph, navigation, selection, focus, cancelEntryFocusTarget );
+		final SearchVertexLabel< V, E > search = new SearchVertexLabel<>( graph, labelIndex, navigation, selection, focus, cancelEntryFocusTarget );
 		actions.runnableAction( () -> search.searchField.requestFocusInWindow(), SEARCH, SEARCH_KEYS );
 		return search.searchPanel;
 	}
@@ -159,8 +169,9 @@ public class SearchVertexLabel< V extends Vertex< E > & HasLabel & Ref< V >, E e
 		}
 	}
 
-	private SearchVertexLabel(
-			final ReadOnlyGraph< V, E > graph,
+	private < MV extends Vertex< ME > & HasLabel & Ref< MV >, ME extends Edge< MV > > SearchVertexLabel(
+			final ViewGraph< MV, ME, V, E > graph,
+			final VertexLabelIndex< MV, ME > labelIndex,
 			final NavigationHandler< V, E > navigation,
 			final SelectionModel< V, E > selection,
 			final FocusModel< V, E > focus,
@@ -210,7 +221,7 @@ public class SearchVertexLabel< V extends Vertex< E > & HasLabel & Ref< V >, E e
 		gbc_chckbxstartswith.gridy = 0;
 		searchPanel.add( chckbxstartswith, gbc_chckbxstartswith );
 
-		final SearchAction< V, E > sa = new SearchAction<>( graph, navigation, selection, focus );
+		final SearchAction< MV, ME, V, E > sa = new SearchAction<>( graph, labelIndex, navigation, selection, focus );
 		searchField.addFocusListener( sa );
 		labelIcon.addActionListener( ( event ) -> searchField.requestFocusInWindow() );
 
@@ -272,12 +283,25 @@ public class SearchVertexLabel< V extends Vertex< E > & HasLabel & Ref< V >, E e
 		}
 	}
 
-	private static class SearchAction< V extends Vertex< E > & HasLabel & Ref< V >, E extends Edge< V > >
+	private static class SearchAction<
+				MV extends Vertex< ME > & HasLabel & Ref< MV >,
+				ME extends Edge< MV >,
+				V extends Vertex< E > & HasLabel & Ref< V >,
+				E extends Edge< V > >
 			extends AbstractGraphAlgorithm< V, E >
 			implements FocusListener
 	{
+		/**
+		 * Iterates the lineages of the {@link #matches}, starting from
+		 * {@link #start}. {@code null} if it has to be recreated before the
+		 * next traversal.
+		 */
 		private Iterator< V > iterator;
 
+		private final RefBimap< MV, V > vertexMap;
+
+		private final VertexLabelIndex< MV, ME > labelIndex;
+
 		private final NavigationHandler< V, E > navigation;
 
 		private final FocusModel< V, E > focus;
@@ -290,32 +314,54 @@ public class SearchVertexLabel< V extends Vertex< E > & HasLabel & Ref< V >, E e
 
 		private String previousSearchString = "";
 
+		private boolean previousStartsWith;
+
+		/**
+		 * The model vertices matching {@link #previousSearchString}, from the
+		 * {@link #labelIndex}. {@code null} if not computed yet.
+		 */
+		private RefList< MV > matches;
+
 		private boolean gotOne;
 
 		public SearchAction(
-				final ReadOnlyGraph< V, E > graph,
+				final ViewGraph< MV, ME, V, E > graph,
+				final VertexLabelIndex< MV, ME > labelIndex,
 				final NavigationHandler< V, E > navigation,
 				final SelectionModel< V, E > selection,
 				final FocusModel< V, E > focus )
 		{
 			super( graph );
+			this.vertexMap = graph.getVertexMap();
+			this.labelIndex = labelIndex;
 			this.navigation = navigation;
 			this.selection = selection;
 			this.focus = focus;
 			this.start = graph.vertexRef();
 			this.firstFound = graph.vertexRef();
 			getStartFromUI();
-			reinit( start );
 		}
 
 		private synchronized SearchResult search( final String text, final boolean startsWith )
 		{
 			if ( !previousSearchString.equals( text ) )
 			{
-				reinit( start );
 				previousSearchString = text;
+				matches = null;
 				gotOne = false;
 			}
+			if ( matches == null || previousStartsWith != startsWith )
+			{
+				previousStartsWith = startsWith;
+				matches = labelIndex.getMatches( text, startsWith );
+				iterator = null;
+			}
+
+			// A miss is reported without traversing the graph.
+			if ( matches.isEmpty() )
+				return SearchResult.NOT_FOUND;
+			if ( iterator == null )
+				iterator = new SearchIterator<>( graph, start, matchingRoots() );
 
 			while ( iterator.hasNext() )
 			{
@@ -342,7 +388,8 @@ public class SearchVertexLabel< V extends Vertex< E > & HasLabel & Ref< V >, E e
 				// Loop back to the last valid.
 				navigation.notifyNavigateToVertex( firstFound );
 				focus.focusVertex( firstFound );
-				reinit( firstFound );
+				start = assign( firstFound, start );
+				iterator = null;
 				return SearchResult.LOOPED;
 			}
 			return SearchResult.NOT_FOUND;
@@ -381,16 +428,36 @@ public class SearchVertexLabel< V extends Vertex< E > & HasLabel & Ref< V >, E e
 				start = assign( graph.vertices().iterator().next(), start );
 		}
 
-		private synchronized void reinit( final V from )
+		/**
+		 * Returns the roots of the lineages that contain a vertex of
+		 * {@link #matches}.
+		 */
+		private RefSet< V > matchingRoots()
 		{
-			iterator = new SearchIterator< V, E >( graph, from );
+			final RefSet< V > roots = RefCollections.createRefSet( graph.vertices() );
+			final V ref = graph.vertexRef();
+			final V rootRef = graph.vertexRef();
+			for ( final MV match : matches )
+			{
+				final V v = vertexMap.getRight( match, ref );
+				if ( v == null )
+					continue;
+				final V root = findRoot( graph, v, rootRef );
+				if ( root != null )
+					roots.add( root );
+			}
+			graph.releaseRef( ref );
+			graph.releaseRef( rootRef );
+			return roots;
 		}
 
 		@Override
-		public void focusGained( final FocusEvent e )
+		public synchronized void focusGained( final FocusEvent e )
 		{
 			getStartFromUI();
-			reinit( start );
+			iterator = null;
+			// Labels may have changed while the search field was not focused.
+			matches = null;
 		}
 
 		@Override
@@ -437,26 +504,45 @@ public class SearchVertexLabel< V extends Vertex< E > & HasLabel & Ref< V >, E e
 	}
 
 	/**
-	 * Iterator that iterates breadth first into the graph, starting from a
-	 * specific vertex.
+	 * Returns the root of the lineage of the specified vertex, or {@code null}
+	 * if it cannot be found.
+	 */
+	private static < V extends Vertex< E > & Ref< V >, E extends Edge< V > > V findRoot( final ReadOnlyGraph< V, E > graph, final V v, final V ref )
+	{
+		final InverseDepthFirstIterator< V, E > rootFinder = new InverseDepthFirstIterator<>( v, graph );
+		while ( rootFinder.hasNext() )
+		{
+			final V next = rootFinder.next();
+			if ( next.incomingEdges().isEmpty() )
+			{
+				ref.refTo( next );
+				return ref;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Iterator that iterates breadth first into the lineages of the specified
+	 * roots, starting from a specific vertex.
 	 *
 	 * @param <V>
 	 *            the type of vertices in the graph.
 	 * @param <E>
 	 *            the type of edges in the graph.
 	 */
-	private static class SearchIterator< V extends Vertex< E > & HasLabel, E extends Edge< V > > extends AbstractGraphAlgorithm< V, E > implements Iterator< V >
+	private static class SearchIterator< V extends Vertex< E > & HasLabel & Ref< V >, E extends Edge< V > > extends AbstractGraphAlgorithm< V, E > implements Iterator< V >
 	{
 
 		private final Iterator< V > iterator1;
 
 		private final Iterator< V > iterator2;
 
-		public SearchIterator( final ReadOnlyGraph< V, E > graph, final V from )
+		public SearchIterator( final ReadOnlyGraph< V, E > graph, final V from, final RefSet< V > roots )
 		{
 			super( graph );
 
-			if ( graph.vertices().isEmpty() )
+			if ( roots.isEmpty() )
 			{
 				iterator1 = Collections.emptyIterator();
 				iterator2 = Collections.emptyIterator();
@@ -464,22 +550,9 @@ public class SearchVertexLabel< V extends Vertex< E > & HasLabel & Ref< V >, E e
 			}
 
 			// First, look for the root of the start vertex.
-			final InverseDepthFirstIterator< V, E > rootFinder = new InverseDepthFirstIterator<>( from, graph );
-
-			V root = graph.vertexRef();
-			boolean rootFound = false;
-			while ( rootFinder.hasNext() )
-			{
-				final V next = rootFinder.next();
-				if ( next.incomingEdges().isEmpty() )
-				{
-					root = assign( next, root );
-					rootFound = true;
-					break;
-				}
-			}
-			final RefSet< V > roots = RootFinder.getRoots( graph );
-			if ( !rootFound )
+			final V rootRef = graph.vertexRef();
+			final V root = findRoot( graph, from, rootRef );
+			if ( root == null )
 			{
 				/*
 				 * Hum we have a problem. Each vertex SHOULD have a root. If you
@@ -488,9 +561,9 @@ public class SearchVertexLabel< V extends Vertex< E > & HasLabel & Ref< V >, E e
 				 * right root.
 				 */
 				System.err.println( "[SearchVertex] Could not find the root for vertex " + from );
-				iterator1 = new BreadthFirstCrossComponentIterator<>( from, graph, roots );
+				iterator1 = new BreadthFirstCrossComponentIterator<>( roots.iterator().next(), graph, roots );
 				iterator2 = Collections.emptyIterator();
-				graph.releaseRef( root );
+				graph.releaseRef( rootRef );
 				return;
 			}
 
@@ -498,17 +571,30 @@ public class SearchVertexLabel< V extends Vertex< E > & HasLabel & Ref< V >, E e
 			 * Now build an ordered root list that starts with the root just
 			 * next to the one we have found.
 			 */
-			final RefList< V > sortedRoots = RefCollections.createRefList( graph.vertices(), roots.size() );
+			final boolean startHasMatch = roots.contains( root );
+			final RefList< V > sortedRoots = RefCollections.createRefList( graph.vertices(), roots.size() + 1 );
 			sortedRoots.addAll( roots );
+			if ( !startHasMatch )
+				sortedRoots.add( root );
 			sortedRoots.sort( ( v1, v2 ) -> AlphanumCompare.compare( v1.getLabel(), v2.getLabel() ) );
 
 			final int iroot = sortedRoots.indexOf( root );
-			final RefList< V > iteratedRoots = RefCollections.createRefList( graph.vertices(), roots.size() );
+			final RefList< V > iteratedRoots = RefCollections.createRefList( graph.vertices(), sortedRoots.size() );
 			for ( int i = iroot + 1; i < sortedRoots.size(); i++ )
 				iteratedRoots.add( sortedRoots.get( i ) );
-			for ( int i = 0; i <= iroot; i++ )
+			for ( int i = 0; i < iroot; i++ )
 				iteratedRoots.add( sortedRoots.get( i ) );
 
+			if ( !startHasMatch )
+			{
+				// No match in the lineage of the start vertex, skip it.
+				iterator1 = new BreadthFirstCrossComponentIterator<>( iteratedRoots.get( 0 ), graph, iteratedRoots );
+				iterator2 = Collections.emptyIterator();
+				graph.releaseRef( root );
+				return;
+			}
+			iteratedRoots.add( root );
+
 			iterator1 = new BreadthFirstCrossComponentIterator<>( root, graph, iteratedRoots );
 
 			// Rewind to the starting point.
@@ -0,0 +1,331 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2021 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.app.ui;
+
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.mastodon.Ref;
+import org.mastodon.collection.RefCollections;
+import org.mastodon.collection.RefList;
+import org.mastodon.graph.Edge;
+import org.mastodon.graph.GraphIdBimap;
+import org.mastodon.graph.GraphListener;
+import org.mastodon.graph.ReadOnlyGraph;
+import org.mastodon.graph.Vertex;
+import org.mastodon.model.HasLabel;
+import org.mastodon.properties.PropertyChangeListener;
+
+import gnu.trove.iterator.TIntIterator;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.hash.TIntHashSet;
+
+/**
+ * Index of vertex labels, to decide whether any vertex has a label that starts
+ * with or contains a search string without visiting all vertices.
+ * <p>
+ * Labels are kept sorted for prefix searches. For substring searches, an
+ * index from each 3-character substring (trigram) to the vertices whose label
+ * contains it is used, and candidates are verified against the full search
+ * string.
+ * <p>
+ * One index is meant to be shared by all the views of a graph. It must be
+ * registered as a {@link GraphListener} and as a label
+ * {@link PropertyChangeListener} of the graph. The index is built on the first
+ * search, and then kept up to date: removed vertices are dropped immediately,
+ * added vertices and changed labels are indexed on the next search.
+ *
+ * @param <V>
+ *            the type of vertices.
+ * @param <E>
+ *            the type of edges.
+ */
+public class VertexLabelIndex< V extends Vertex< E > & HasLabel & Ref< V >, E extends Edge< V > >
+		implements GraphListener< V, E >, PropertyChangeListener< V >
+{
+	private static final int N = 3;
+
+	private final ReadOnlyGraph< V, E > graph;
+
+	private final GraphIdBimap< V, E > idmap;
+
+	private final ReentrantReadWriteLock lock;
+
+	private boolean built;
+
+	/**
+	 * Maps the ids of indexed vertices to their indexed label.
+	 */
+	private final TIntObjectHashMap< String > idToLabel;
+
+	/**
+	 * Ids of vertices that were added or relabeled since the last search.
+	 */
+	private final TIntHashSet pending;
+
+	/**
+	 * Indexed labels, sorted, with the ids of the vertices carrying each.
+	 */
+	private final TreeMap< String, TIntHashSet > labelIds;
+
+	/**
+	 * Maps packed trigrams to the ids of vertices whose label contains them.
+	 */
+	private final TLongObjectHashMap< TIntHashSet > trigrams;
+
+	/**
+	 * Creates an empty index of the specified graph.
+	 *
+	 * @param graph
+	 *            the graph to index.
+	 * @param lock
+	 *            the lock of the graph. Its read lock is held while the index
+	 *            is brought up to date.
+	 */
+	public VertexLabelIndex( final ReadOnlyGraph< V, E > graph, final ReentrantReadWriteLock lock )
+	{
+		this.graph = graph;
+		this.idmap = graph.getGraphIdBimap();
+		this.lock = lock;
+		this.built = false;
+		this.idToLabel = new TIntObjectHashMap<>();
+		this.pending = new TIntHashSet();
+		this.labelIds = new TreeMap<>();
+		this.trigrams = new TLongObjectHashMap<>();
+	}
+
+	/**
+	 * Returns whether the label of at least one vertex matches the specified
+	 * search string.
+	 *
+	 * @param text
+	 *            the search string.
+	 * @param startsWith
+	 *            if {@code true}, match labels that start with {@code text},
+	 *            otherwise labels that contain {@code text}.
+	 * @return {@code true} if there is a matching vertex.
+	 */
+	public boolean hasMatch( final String text, final boolean startsWith )
+	{
+		return !getMatches( text, startsWith ).isEmpty();
+	}
+
+	/**
+	 * Returns the vertices whose label matches the specified search string.
+	 *
+	 * @param text
+	 *            the search string.
+	 * @param startsWith
+	 *            if {@code true}, match labels that start with {@code text},
+	 *            otherwise labels that contain {@code text}.
+	 * @return a new list of the matching vertices, in no particular order.
+	 */
+	public RefList< V > getMatches( final String text, final boolean startsWith )
+	{
+		lock.readLock().lock();
+		try
+		{
+			synchronized ( this )
+			{
+				update();
+				final TIntArrayList ids = new TIntArrayList();
+				if ( startsWith )
+				{
+					for ( final Entry< String, TIntHashSet > entry : labelIds.tailMap( text, true ).entrySet() )
+					{
+						if ( !entry.getKey().startsWith( text ) )
+							break;
+						ids.addAll( entry.getValue() );
+					}
+				}
+				else if ( text.length() < N )
+				{
+					for ( final Entry< String, TIntHashSet > entry : labelIds.entrySet() )
+						if ( entry.getKey().contains( text ) )
+							ids.addAll( entry.getValue() );
+				}
+				else
+				{
+					// Candidates are the vertices of the rarest trigram of text.
+					TIntHashSet candidates = null;
+					for ( int i = 0; i + N <= text.length(); ++i )
+					{
+						final TIntHashSet trigramIds = trigrams.get( trigram( text, i ) );
+						if ( trigramIds == null )
+						{
+							candidates = null;
+							break;
+						}
+						if ( candidates == null || trigramIds.size() < candidates.size() )
+							candidates = trigramIds;
+					}
+					if ( candidates != null )
+					{
+						final TIntIterator it = candidates.iterator();
+						while ( it.hasNext() )
+						{
+							final int id = it.next();
+							if ( idToLabel.get( id ).contains( text ) )
+								ids.add( id );
+						}
+					}
+				}
+
+				final RefList< V > matches = RefCollections.createRefList( graph.vertices(), ids.size() );
+				final V ref = graph.vertexRef();
+				for ( int i = 0; i < ids.size(); ++i )
+					matches.add( idmap.getVertex( ids.get( i ), ref ) );
+				graph.releaseRef( ref );
+				return matches;
+			}
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public synchronized void graphRebuilt()
+	{
+		built = false;
+		idToLabel.clear();
+		pending.clear();
+		labelIds.clear();
+		trigrams.clear();
+	}
+
+	@Override
+	public synchronized void vertexAdded( final V vertex )
+	{
+		if ( built )
+			pending.add( idmap.getVertexId( vertex ) );
+	}
+
+	@Override
+	public synchronized void vertexRemoved( final V vertex )
+	{
+		if ( built )
+		{
+			final int id = idmap.getVertexId( vertex );
+			pending.remove( id );
+			remove( id );
+		}
+	}
+
+	@Override
+	public void edgeAdded( final E edge )
+	{}
+
+	@Override
+	public void edgeRemoved( final E edge )
+	{}
+
+	@Override
+	public synchronized void propertyChanged( final V vertex )
+	{
+		if ( built )
+			pending.add( idmap.getVertexId( vertex ) );
+	}
+
+	/**
+	 * Builds the index if needed, and indexes pending vertices. Must be called
+	 * with the graph read lock held.
+	 */
+	private void update()
+	{
+		if ( !built )
+		{
+			for ( final V v : graph.vertices() )
+				add( idmap.getVertexId( v ), v.getLabel() );
+			built = true;
+			return;
+		}
+		if ( pending.isEmpty() )
+			return;
+		final V ref = graph.vertexRef();
+		final TIntIterator it = pending.iterator();
+		while ( it.hasNext() )
+		{
+			final int id = it.next();
+			remove( id );
+			add( id, idmap.getVertex( id, ref ).getLabel() );
+		}
+		graph.releaseRef( ref );
+		pending.clear();
+	}
+
+	private void add( final int id, final String label )
+	{
+		idToLabel.put( id, label );
+		TIntHashSet labelled = labelIds.get( label );
+		if ( labelled == null )
+		{
+			labelled = new TIntHashSet( 4 );
+			labelIds.put( label, labelled );
+		}
+		labelled.add( id );
+		for ( int j = 0; j + N <= label.length(); ++j )
+		{
+			final long key = trigram( label, j );
+			TIntHashSet ids = trigrams.get( key );
+			if ( ids == null )
+			{
+				ids = new TIntHashSet( 4 );
+				trigrams.put( key, ids );
+			}
+			ids.add( id );
+		}
+	}
+
+	private void remove( final int id )
+	{
+		final String label = idToLabel.remove( id );
+		if ( label == null )
+			return;
+		final TIntHashSet labelled = labelIds.get( label );
+		if ( labelled.remove( id ) && labelled.isEmpty() )
+			labelIds.remove( label );
+		for ( int j = 0; j + N <= label.length(); ++j )
+		{
+			final long key = trigram( label, j );
+			final TIntHashSet ids = trigrams.get( key );
+			if ( ids != null && ids.remove( id ) && ids.isEmpty() )
+				trigrams.remove( key );
+		}
+	}
+
+	private static long trigram( final String s, final int i )
+	{
+		return ( ( long ) s.charAt( i ) << 32 ) | ( ( long ) s.charAt( i + 1 ) << 16 ) | s.charAt( i + 2 );
+	}
+}
@@ -32,6 +32,8 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.scijava.listeners.Listeners;
 
@@ -70,9 +72,22 @@ public class FeatureModel
 
 	private final Map< FeatureSpec< ?, ? >, Feature< ? > > features;
 
+	/**
+	 * Statistics computed by {@link #getStatistics(FeatureProjection, Iterable)},
+	 * cached until the next invalidation.
+	 */
+	private final Map< StatisticsKey, FeatureStatistics > statistics;
+
+	/**
+	 * Incremented by {@link #invalidateStatistics()}, so that statistics
+	 * computed concurrently with an invalidation are not cached.
+	 */
+	private volatile int statisticsModCount;
+
 	public FeatureModel()
 	{
 		this.features = new HashMap<>();
+		this.statistics = new ConcurrentHashMap<>();
 		this.listeners = new Listeners.SynchronizedList<>();
 	}
 
@@ -135,6 +150,85 @@ public class FeatureModel
 		return Collections.unmodifiableSet( features.keySet() );
 	}
 
+	/**
+	 * Returns the statistics of the specified feature projection over the
+	 * specified objects.
+	 * <p>
+	 * Statistics are computed the first time they are requested for a
+	 * projection and a collection of objects, and are cached until this
+	 * feature model changes or {@link #invalidateStatistics()} is called. The
+	 * cache is keyed on the identity of the projection and of the collection,
+	 * so callers should pass the same instances every time, typically the
+	 * vertex or edge collection of the graph.
+	 *
+	 * @param projection
+	 *            the feature projection.
+	 * @param objs
+	 *            the objects to compute the statistics over.
+	 * @param <O>
+	 *            the type of objects.
+	 * @return the statistics.
+	 */
+	public < O > FeatureStatistics getStatistics( final FeatureProjection< O > projection, final Iterable< O > objs )
+	{
+		final StatisticsKey key = new StatisticsKey( projection, objs );
+		final FeatureStatistics cached = statistics.get( key );
+		if ( cached != null )
+			return cached;
+
+		final int modCount = statisticsModCount;
+		final FeatureStatistics stats = FeatureStatistics.compute( objs, projection );
+		synchronized ( statistics )
+		{
+			if ( modCount == statisticsModCount )
+				statistics.put( key, stats );
+		}
+		return stats;
+	}
+
+	/**
+	 * Discards the statistics cached by
+	 * {@link #getStatistics(FeatureProjection, Iterable)}. Must be called when
+	 * feature values change, or when objects are added to or removed from the
+	 * collections statistics were computed over.
+	 */
+	public void invalidateStatistics()
+	{
+		synchronized ( statistics )
+		{
+			++statisticsModCount;
+			statistics.clear();
+		}
+	}
+
+	private static final class StatisticsKey
+	{
+		private final FeatureProjection< ? > projection;
+
+		private final Iterable< ? > objs;
+
+		StatisticsKey( final FeatureProjection< ? > projection, final Iterable< ? > objs )
+		{
+			this.projection = projection;
+			this.objs = objs;
+		}
+
+		@Override
+		public boolean equals( final Object o )
+		{
+			if ( !( o instanceof StatisticsKey ) )
+				return false;
+			final StatisticsKey other = ( StatisticsKey ) o;
+			return projection == other.projection && objs == other.objs;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return Objects.hash( System.identityHashCode( projection ), System.identityHashCode( objs ) );
+		}
+	}
+
 	/*
 	 *
 	 * Listener handling
@@ -179,6 +273,7 @@ public class FeatureModel
 
 	private void notifyFeatureModelChanged()
 	{
+		invalidateStatistics();
 		if ( emitEvents )
 			listeners.list.forEach( FeatureModelListener::featureModelChanged );
 		else
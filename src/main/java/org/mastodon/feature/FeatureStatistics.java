@@ -0,0 +1,229 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2021 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.feature;
+
+import java.util.Arrays;
+
+import gnu.trove.list.array.TDoubleArrayList;
+
+/**
+ * Summary statistics of the values of a {@link FeatureProjection} over a
+ * collection of objects: number of values, min, max, mean, a histogram of the
+ * values, and a sketch of their quantiles.
+ * <p>
+ * Objects for which the projection is not set, and {@link Double#NaN} values,
+ * are ignored.
+ * <p>
+ * Instances are immutable. They are created with
+ * {@link #compute(Iterable, FeatureProjection)}, or obtained from the cache of
+ * a {@link FeatureModel} with
+ * {@link FeatureModel#getStatistics(FeatureProjection, Iterable)}.
+ */
+public class FeatureStatistics
+{
+
+	/**
+	 * Number of bins of the histogram, and number of intervals of the quantile
+	 * sketch.
+	 */
+	public static final int NBINS = 1024;
+
+	private final long count;
+
+	private final double min;
+
+	private final double max;
+
+	private final double mean;
+
+	private final long[] histogram;
+
+	/**
+	 * The values of rank {@code k * (count - 1) / NBINS}, for {@code k} from 0
+	 * to {@code NBINS}.
+	 */
+	private final double[] quantiles;
+
+	private FeatureStatistics( final long count, final double min, final double max, final double mean, final long[] histogram, final double[] quantiles )
+	{
+		this.count = count;
+		this.min = min;
+		this.max = max;
+		this.mean = mean;
+		this.histogram = histogram;
+		this.quantiles = quantiles;
+	}
+
+	/**
+	 * Computes the statistics of the specified projection over the specified
+	 * objects.
+	 * <p>
+	 * Values are read from the projection sequentially, because projections
+	 * are not required to be thread-safe. The values are then sorted and
+	 * binned in parallel.
+	 *
+	 * @param objs
+	 *            the objects.
+	 * @param projection
+	 *            the feature projection.
+	 * @param <O>
+	 *            the type of objects.
+	 * @return new statistics.
+	 */
+	public static < O > FeatureStatistics compute( final Iterable< O > objs, final FeatureProjection< O > projection )
+	{
+		final TDoubleArrayList values = new TDoubleArrayList();
+		for ( final O o : objs )
+		{
+			if ( !projection.isSet( o ) )
+				continue;
+			final double value = projection.value( o );
+			if ( !Double.isNaN( value ) )
+				values.add( value );
+		}
+		return of( values.toArray() );
+	}
+
+	/**
+	 * Computes the statistics of the specified values. The array is sorted in
+	 * place.
+	 */
+	static FeatureStatistics of( final double[] values )
+	{
+		final int n = values.length;
+		if ( n == 0 )
+			return new FeatureStatistics( 0, Double.NaN, Double.NaN, Double.NaN, new long[ NBINS ], new double[ NBINS + 1 ] );
+
+		Arrays.parallelSort( values );
+		final double min = values[ 0 ];
+		final double max = values[ n - 1 ];
+		final double mean = Arrays.stream( values ).parallel().sum() / n;
+
+		final double[] quantiles = new double[ NBINS + 1 ];
+		for ( int k = 0; k <= NBINS; k++ )
+			quantiles[ k ] = values[ ( int ) ( ( long ) k * ( n - 1 ) / NBINS ) ];
+
+		final double scale = max > min ? NBINS / ( max - min ) : 0.;
+		final long[] histogram = Arrays.stream( values ).parallel().collect(
+				() -> new long[ NBINS ],
+				( h, v ) -> h[ Math.min( NBINS - 1, ( int ) ( ( v - min ) * scale ) ) ]++,
+				( h1, h2 ) -> {
+					for ( int i = 0; i < NBINS; i++ )
+						h1[ i ] += h2[ i ];
+				} );
+		return new FeatureStatistics( n, min, max, mean, histogram, quantiles );
+	}
+
+	/**
+	 * Returns the number of values the statistics were computed on.
+	 *
+	 * @return the number of values.
+	 */
+	public long getCount()
+	{
+		return count;
+	}
+
+	/**
+	 * Returns the smallest value, or {@link Double#NaN} if there are no
+	 * values.
+	 *
+	 * @return the min.
+	 */
+	public double getMin()
+	{
+		return min;
+	}
+
+	/**
+	 * Returns the largest value, or {@link Double#NaN} if there are no values.
+	 *
+	 * @return the max.
+	 */
+	public double getMax()
+	{
+		return max;
+	}
+
+	/**
+	 * Returns the mean of the values, or {@link Double#NaN} if there are no
+	 * values.
+	 *
+	 * @return the mean.
+	 */
+	public double getMean()
+	{
+		return mean;
+	}
+
+	/**
+	 * Returns the histogram of the values: {@link #NBINS} bins of equal width
+	 * spanning from {@link #getMin()} to {@link #getMax()}. If all values are
+	 * equal, they are all counted in the first bin.
+	 *
+	 * @return a new array with the number of values in each bin.
+	 */
+	public long[] getHistogram()
+	{
+		return histogram.clone();
+	}
+
+	/**
+	 * Returns an approximation of the specified quantile of the values,
+	 * interpolated from the quantile sketch. The returned value lies between
+	 * the exact quantiles {@code p - 1 / NBINS} and {@code p + 1 / NBINS},
+	 * whatever the distribution of the values and its outliers.
+	 *
+	 * @param p
+	 *            the quantile, from 0 to 1. For instance 0.5 for the median.
+	 * @return the approximate quantile, or {@link Double#NaN} if there are no
+	 *         values.
+	 */
+	public double getQuantile( final double p )
+	{
+		if ( count == 0 )
+			return Double.NaN;
+		if ( p <= 0. )
+			return min;
+		if ( p >= 1. )
+			return max;
+
+		final double pos = p * NBINS;
+		final int k = ( int ) pos;
+		final double fraction = pos - k;
+		return quantiles[ k ] + fraction * ( quantiles[ k + 1 ] - quantiles[ k ] );
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format( "%s[n=%d, min=%g, max=%g, mean=%g, median~%g]",
+				getClass().getSimpleName(), count, min, max, mean, getQuantile( 0.5 ) );
+	}
+}
@@ -132,6 +132,17 @@ public class FeatureColorModeEditorPanel extends JPanel
 				setMinMax( minMax[ 0 ], minMax[ 1 ] );
 			}
 
+			@Override
+			public void autoscale( final double lowerQuantile, final double upperQuantile )
+			{
+				final FeatureProjectionId projection = mode.getVertexFeatureProjection();
+				if ( null == projection )
+					return;
+				final double[] range = rangeCalculator.computeRange( projection, lowerQuantile, upperQuantile );
+				if ( null == range )
+					return;
+				setMinMax( range[ 0 ], range[ 1 ] );
+			}
 		};
 		addToLayout( new JLabel( "vertex range", JLabel.TRAILING ), vertexFeatureRangeSelector, c );
 
@@ -178,7 +189,7 @@ public class FeatureColorModeEditorPanel extends JPanel
 			@Override
 			public void autoscale()
 			{
-				final FeatureProjectionId projection = mode.getVertexFeatureProjection();
+				final FeatureProjectionId projection = mode.getEdgeFeatureProjection();
 				if ( null == projection )
 					return;
 				final double[] minMax = rangeCalculator.computeMinMax( projection );
@@ -186,6 +197,18 @@ public class FeatureColorModeEditorPanel extends JPanel
 					return;
 				setMinMax( minMax[ 0 ], minMax[ 1 ] );
 			}
+
+			@Override
+			public void autoscale( final double lowerQuantile, final double upperQuantile )
+			{
+				final FeatureProjectionId projection = mode.getEdgeFeatureProjection();
+				if ( null == projection )
+					return;
+				final double[] range = rangeCalculator.computeRange( projection, lowerQuantile, upperQuantile );
+				if ( null == range )
+					return;
+				setMinMax( range[ 0 ], range[ 1 ] );
+			}
 		};
 		addToLayout( new JLabel( "edge range", JLabel.TRAILING ), edgeFeatureRangeSelector, c );
 
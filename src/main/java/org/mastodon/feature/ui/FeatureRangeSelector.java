@@ -58,6 +58,15 @@ public abstract class FeatureRangeSelector extends JPanel
 
 	private final JButton autoscale;
 
+	private final JButton robustAutoscale;
+
+	/**
+	 * The quantiles used by the robust autoscale button.
+	 */
+	private static final double ROBUST_LOWER_QUANTILE = 0.01;
+
+	private static final double ROBUST_UPPER_QUANTILE = 0.99;
+
 	public FeatureRangeSelector()
 	{
 		super( new FlowLayout( FlowLayout.LEADING, 10, 2 ) );
@@ -77,6 +86,9 @@ public abstract class FeatureRangeSelector extends JPanel
 		add( max );
 		autoscale = new JButton( "autoscale" );
 		add( autoscale );
+		robustAutoscale = new JButton( "1-99%" );
+		robustAutoscale.setToolTipText( "Autoscale to the 1st and 99th percentiles of the feature values." );
+		add( robustAutoscale );
 
 		final FocusListener fl = new FocusAdapter()
 		{
@@ -96,22 +108,27 @@ public abstract class FeatureRangeSelector extends JPanel
 		min.addFocusListener( fl );
 		max.addFocusListener( fl );
 
-		autoscale.addActionListener( e -> new Thread( () -> preAutoscale(), "Autoscale calculation thread." ).start() );
+		autoscale.addActionListener( e -> new Thread( () -> preAutoscale( false ), "Autoscale calculation thread." ).start() );
+		robustAutoscale.addActionListener( e -> new Thread( () -> preAutoscale( true ), "Autoscale calculation thread." ).start() );
 
 		final PropertyChangeListener l = ( e ) -> notifyListeners();
 		min.addPropertyChangeListener( "value", l );
 		max.addPropertyChangeListener( "value", l );
 	}
 
-	private void preAutoscale()
+	private void preAutoscale( final boolean robust )
 	{
 		min.setEnabled( false );
 		max.setEnabled( false );
 		autoscale.setEnabled( false );
+		robustAutoscale.setEnabled( false );
 		autoscale.setText( "calculating..." );
 		try
 		{
-			autoscale();
+			if ( robust )
+				autoscale( ROBUST_LOWER_QUANTILE, ROBUST_UPPER_QUANTILE );
+			else
+				autoscale();
 		}
 		finally
 		{
@@ -119,6 +136,7 @@ public abstract class FeatureRangeSelector extends JPanel
 			max.setEnabled( true );
 			autoscale.setText( "autoscale" );
 			autoscale.setEnabled( true );
+			robustAutoscale.setEnabled( true );
 		}
 	}
 
@@ -135,6 +153,21 @@ public abstract class FeatureRangeSelector extends JPanel
 
 	public abstract void autoscale();
 
+	/**
+	 * Sets the range from the {@code lowerQuantile} to the
+	 * {@code upperQuantile} of the feature values. By default, falls back to
+	 * {@link #autoscale()}.
+	 *
+	 * @param lowerQuantile
+	 *            the quantile of the lower bound, from 0 to 1.
+	 * @param upperQuantile
+	 *            the quantile of the upper bound, from 0 to 1.
+	 */
+	public void autoscale( final double lowerQuantile, final double upperQuantile )
+	{
+		autoscale();
+	}
+
 	public void setMinMax( final double min, final double max )
 	{
 		final double l1 = Math.min( min, max );
@@ -87,6 +87,7 @@ public class GraphFeatureUpdateListeners
 			vertexFeatures.forEach( f -> f.invalidate( v ) );
 			for ( final Feature< E > f : edgeFeatures )
 				v.edges().forEach( e -> f.invalidate( e ) );
+			featureModel.invalidateStatistics();
 		}
 
 		@Override
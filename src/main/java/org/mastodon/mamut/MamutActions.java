@@ -38,6 +38,7 @@ import org.mastodon.mamut.model.Link;
 import org.mastodon.mamut.model.Model;
 import org.mastodon.mamut.model.ModelGraph;
 import org.mastodon.mamut.model.Spot;
+import org.mastodon.model.GraphEdit;
 import org.mastodon.model.SelectionModel;
 import org.mastodon.ui.keymap.CommandDescriptionProvider;
 import org.mastodon.ui.keymap.CommandDescriptions;
@@ -133,13 +134,12 @@ public class MamutActions
 			}
 
 			// Link spots.
-			lock.writeLock().lock();
 			final Spot ref1 = graph.vertexRef();
 			final Spot ref2 = graph.vertexRef();
 			final Link eref = graph.edgeRef();
-			try
+			selection.pauseListeners();
+			try (final GraphEdit< Spot, Link > edit = model.beginEdit())
 			{
-				selection.pauseListeners();
 				selection.clearSelection();
 
 				// Get them out of the map in order.
@@ -162,13 +162,11 @@ public class MamutActions
 
 					source.refTo( target );
 				}
-				model.setUndoPoint();
-				graph.notifyGraphChanged();
+				edit.commit();
 			}
 			finally
 			{
 				selection.resumeListeners();
-				lock.writeLock().unlock();
 				graph.releaseRef( ref1 );
 				graph.releaseRef( ref2 );
 				graph.releaseRef( eref );
@@ -29,11 +29,15 @@
 package org.mastodon.mamut;
 
 import org.mastodon.app.MastodonAppModel;
+import org.mastodon.app.ui.VertexLabelIndex;
 import org.mastodon.mamut.model.BoundingSphereRadiusStatistics;
 import org.mastodon.mamut.model.Link;
 import org.mastodon.mamut.model.Model;
+import org.mastodon.mamut.model.ModelGraph;
 import org.mastodon.mamut.model.Spot;
+import org.mastodon.mamut.model.SpotPool;
 import org.mastodon.mamut.plugin.MamutPlugins;
+import org.mastodon.ui.coloring.feature.FeatureColorCaches;
 import org.mastodon.ui.coloring.feature.FeatureColorModeManager;
 import org.mastodon.ui.keymap.KeyConfigContexts;
 import org.mastodon.ui.keymap.KeymapManager;
@@ -55,6 +59,10 @@ public class MamutAppModel extends MastodonAppModel< Model, Spot, Link >
 
 	private final BoundingSphereRadiusStatistics radiusStats;
 
+	private final VertexLabelIndex< Spot, Link > labelIndex;
+
+	private final FeatureColorCaches< Spot, Link > featureColorCaches;
+
 	private final SharedBigDataViewerData sharedBdvData;
 
 	private final TrackSchemeStyleManager trackSchemeStyleManager;
@@ -88,6 +96,19 @@ public class MamutAppModel extends MastodonAppModel< Model, Spot, Link >
 				new String[] { KeyConfigContexts.MASTODON } );
 
 		this.radiusStats = new BoundingSphereRadiusStatistics( model );
+		final ModelGraph graph = model.getGraph();
+		this.labelIndex = new VertexLabelIndex<>( graph, graph.getLock() );
+		graph.addGraphListener( labelIndex );
+		graph.addVertexLabelListener( labelIndex );
+		this.featureColorCaches = new FeatureColorCaches<>( featureColorModeManager, graph.vertices().getRefPool(), graph.edges().getRefPool() );
+		model.getFeatureModel().listeners().add( featureColorCaches );
+		featureColorModeManager.listeners().add( featureColorCaches );
+		graph.addGraphListener( featureColorCaches );
+		model.graphEditListeners().add( featureColorCaches );
+		// Features depend on the position and shape of spots.
+		final SpotPool spotPool = ( SpotPool ) graph.vertices().getRefPool();
+		spotPool.positionProperty().addPropertyChangeListener( featureColorCaches );
+		spotPool.covarianceProperty().addPropertyChangeListener( featureColorCaches );
 		this.sharedBdvData = sharedBdvData;
 		this.trackSchemeStyleManager = trackSchemeStyleManager;
 		this.renderSettingsManager = renderSettingsManager;
@@ -122,6 +143,28 @@ public class MamutAppModel extends MastodonAppModel< Model, Spot, Link >
 		return radiusStats;
 	}
 
+	/**
+	 * Returns the index of spot labels, shared by the search fields of all
+	 * views.
+	 *
+	 * @return the label index.
+	 */
+	public VertexLabelIndex< Spot, Link > getLabelIndex()
+	{
+		return labelIndex;
+	}
+
+	/**
+	 * Returns the feature color caches, shared by the views that color by the
+	 * same feature color mode.
+	 *
+	 * @return the feature color caches.
+	 */
+	public FeatureColorCaches< Spot, Link > getFeatureColorCaches()
+	{
+		return featureColorCaches;
+	}
+
 	public SharedBigDataViewerData getSharedBdvData()
 	{
 		return sharedBdvData;
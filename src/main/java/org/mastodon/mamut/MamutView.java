@@ -49,6 +49,7 @@ import org.mastodon.ui.coloring.ColoringMenu;
 import org.mastodon.ui.coloring.ColoringModel;
 import org.mastodon.ui.coloring.GraphColorGeneratorAdapter;
 import org.mastodon.ui.coloring.TagSetGraphColorGenerator;
+import org.mastodon.ui.coloring.feature.FeatureColorCaches;
 import org.mastodon.ui.coloring.feature.FeatureColorModeManager;
 import org.mastodon.views.trackscheme.display.ColorBarOverlay;
 import org.mastodon.views.trackscheme.display.ColorBarOverlay.Position;
@@ -102,13 +103,18 @@ public class MamutView< VG extends ViewGraph< Spot, Link, V, E >, V extends Vert
 		featureModel.listeners().add( coloringMenu );
 		onClose( () -> featureModel.listeners().remove( coloringMenu ) );
 
+		/*
+		 * Feature colors are cached per spot and link, in caches shared by all
+		 * the views that color by the same feature color mode.
+		 */
+		final FeatureColorCaches< Spot, Link > featureColorCaches = appModel.getFeatureColorCaches();
 		final ColoringModel.ColoringChangedListener coloringChangedListener = () -> {
 			if ( coloringModel.noColoring() )
 				colorGeneratorAdapter.setColorGenerator( null );
 			else if ( coloringModel.getTagSet() != null )
 				colorGeneratorAdapter.setColorGenerator( new TagSetGraphColorGenerator<>( tagSetModel, coloringModel.getTagSet() ) );
 			else if ( coloringModel.getFeatureColorMode() != null )
-				colorGeneratorAdapter.setColorGenerator( coloringModel.getFeatureGraphColorGenerator() );
+				colorGeneratorAdapter.setColorGenerator( featureColorCaches.getCache( coloringModel ) );
 			refresh.run();
 		};
 		coloringModel.listeners().add( coloringChangedListener );
@@ -53,6 +53,8 @@ import javax.swing.ActionMap;
 import javax.swing.JPanel;
 
 import org.jdom2.Element;
+import org.mastodon.graph.GraphChangeListener;
+import org.mastodon.app.IdentityViewGraph;
 import org.mastodon.app.ui.MastodonFrameViewActions;
 import org.mastodon.app.ui.SearchVertexLabel;
 import org.mastodon.app.ui.ViewMenu;
@@ -66,6 +68,8 @@ import org.mastodon.mamut.model.Spot;
 import org.mastodon.model.AutoNavigateFocusModel;
 import org.mastodon.model.NavigationHandler;
 import org.mastodon.model.tag.TagSetStructure.TagSet;
+import org.mastodon.properties.PropertyChangeListener;
+import org.mastodon.spatial.VertexPositionListener;
 import org.mastodon.ui.FocusActions;
 import org.mastodon.ui.HighlightBehaviours;
 import org.mastodon.ui.SelectionActions;
@@ -78,6 +82,7 @@ import org.mastodon.views.bdv.BigDataViewerActionsMamut;
 import org.mastodon.views.bdv.BigDataViewerMamut;
 import org.mastodon.views.bdv.SharedBigDataViewerData;
 import org.mastodon.views.bdv.ViewerFrameMamut;
+import org.mastodon.views.bdv.overlay.AsyncOverlayRenderer;
 import org.mastodon.views.bdv.overlay.BdvHighlightHandler;
 import org.mastodon.views.bdv.overlay.BdvSelectionBehaviours;
 import org.mastodon.views.bdv.overlay.EditBehaviours;
@@ -115,6 +120,8 @@ public class MamutViewBdv extends MamutView< OverlayGraphWrapper< Spot, Link >,
 	 */
 	private final ColoringModel coloringModel;
 
+	private final AsyncOverlayRenderer asyncOverlay;
+
 	public MamutViewBdv( final MamutAppModel appModel )
 	{
 		this( appModel, new HashMap<>() );
@@ -215,18 +222,25 @@ public class MamutViewBdv extends MamutView< OverlayGraphWrapper< Spot, Link >,
 				focusModel,
 				selectionModel,
 				coloring );
-		viewer.getDisplay().overlays().add( tracksOverlay );
 		viewer.renderTransformListeners().add( tracksOverlay );
 		viewer.addTimePointListener( tracksOverlay );
 
+		// Paint the overlay asynchronously, so that BDV painting never waits
+		// for the model lock.
+		asyncOverlay = new AsyncOverlayRenderer( tracksOverlay, () -> viewer.getDisplay().repaint() );
+		viewer.getDisplay().overlays().add( asyncOverlay );
+		viewer.renderTransformListeners().add( asyncOverlay );
+		viewer.addTimePointListener( asyncOverlay );
+		onClose( asyncOverlay::stop );
+
 		final Model model = appModel.getModel();
 		final ModelGraph modelGraph = model.getGraph();
 
 		coloringModel = registerColoring( coloring, menuHandle,
-				() -> viewer.getDisplay().repaint() );
+				asyncOverlay::requestFrame );
 
 		registerTagSetMenu( tagSetMenuHandle,
-				() -> viewer.getDisplay().repaint() );
+				asyncOverlay::requestFrame );
 
 		// Restore coloring.
 		final Boolean noColoring = ( Boolean ) guiState.get( NO_COLORING_KEY );
@@ -265,12 +279,22 @@ public class MamutViewBdv extends MamutView< OverlayGraphWrapper< Spot, Link >,
 			}
 		}
 
-		highlightModel.listeners().add( () -> viewer.getDisplay().repaint() );
-		focusModel.listeners().add( () -> viewer.getDisplay().repaint() );
-		modelGraph.addGraphChangeListener( () -> viewer.getDisplay().repaint() );
-		modelGraph.addVertexPositionListener( v -> viewer.getDisplay().repaint() );
-		modelGraph.addVertexLabelListener( v -> viewer.getDisplay().repaint() );
-		selectionModel.listeners().add( () -> viewer.getDisplay().repaint() );
+		highlightModel.listeners().add( asyncOverlay::requestFrame );
+		focusModel.listeners().add( asyncOverlay::requestFrame );
+		selectionModel.listeners().add( asyncOverlay::requestFrame );
+		final GraphChangeListener repaintGraphListener = asyncOverlay::requestFrame;
+		final VertexPositionListener< Spot > repaintPositionListener = v -> asyncOverlay.requestFrame();
+		final PropertyChangeListener< Spot > repaintLabelListener = v -> asyncOverlay.requestFrame();
+		modelGraph.addGraphChangeListener( repaintGraphListener );
+		modelGraph.addVertexPositionListener( repaintPositionListener );
+		modelGraph.addVertexLabelListener( repaintLabelListener );
+		onClose( () -> {
+			modelGraph.removeGraphChangeListener( repaintGraphListener );
+			modelGraph.removeVertexPositionListener( repaintPositionListener );
+			modelGraph.removeVertexLabelListener( repaintLabelListener );
+		} );
+
+		onClose( tracksOverlay::close );
 
 		final OverlayNavigation< OverlayVertexWrapper< Spot, Link >, OverlayEdgeWrapper< Spot, Link > > overlayNavigation = new OverlayNavigation<>( viewer, viewGraph );
 		navigationHandler.listeners().add( overlayNavigation );
@@ -299,7 +323,8 @@ public class MamutViewBdv extends MamutView< OverlayGraphWrapper< Spot, Link >,
 		final NavigationHandler< Spot, Link > navigationHandlerAdapter = groupHandle.getModel( appModel.NAVIGATION );
 		final JPanel searchField = SearchVertexLabel.install(
 				viewActions,
-				appModel.getModel().getGraph(),
+				IdentityViewGraph.wrap( modelGraph, modelGraph.getGraphIdBimap() ),
+				appModel.getLabelIndex(),
 				navigationHandlerAdapter,
 				appModel.getSelectionModel(),
 				appModel.getFocusModel(),
@@ -315,6 +340,7 @@ public class MamutViewBdv extends MamutView< OverlayGraphWrapper< Spot, Link >,
 		final RenderSettings renderSettings = appModel.getRenderSettingsManager().getForwardDefaultStyle();
 		tracksOverlay.setRenderSettings( renderSettings );
 		final UpdateListener updateListener = () -> {
+			asyncOverlay.requestFrame();
 			viewer.repaint();
 			contextProvider.notifyContextChanged();
 		};
@@ -327,6 +353,12 @@ public class MamutViewBdv extends MamutView< OverlayGraphWrapper< Spot, Link >,
 		// Notifies context provider that context changes when visibility mode
 		// changes.
 		tracksOverlay.getVisibilities().getVisibilityListeners().add( contextProvider::notifyContextChanged );
+		tracksOverlay.getVisibilities().getVisibilityListeners().add( asyncOverlay::requestFrame );
+
+		// Discard track labels of the track-of-focused visibility when the graph changes.
+		final GraphChangeListener visibilitiesGraphListener = tracksOverlay.getVisibilities()::graphChanged;
+		modelGraph.addGraphChangeListener( visibilitiesGraphListener );
+		onClose( () -> modelGraph.removeGraphChangeListener( visibilitiesGraphListener ) );
 
 		frame.setVisible( true );
 
@@ -346,6 +378,7 @@ public class MamutViewBdv extends MamutView< OverlayGraphWrapper< Spot, Link >,
 
 	public void requestRepaint()
 	{
+		asyncOverlay.requestFrame();
 		viewer.requestRepaint();
 	}
 
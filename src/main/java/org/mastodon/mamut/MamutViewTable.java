@@ -60,13 +60,14 @@ import org.mastodon.app.ui.ViewMenu;
 import org.mastodon.app.ui.ViewMenuBuilder.JMenuHandle;
 import org.mastodon.feature.FeatureModel;
 import org.mastodon.graph.GraphChangeListener;
+import org.mastodon.graph.GraphListener;
 import org.mastodon.mamut.model.Link;
 import org.mastodon.mamut.model.Model;
 import org.mastodon.mamut.model.ModelGraph;
 import org.mastodon.mamut.model.Spot;
 import org.mastodon.mamut.model.SpotPool;
-import org.mastodon.model.SelectionListener;
-import org.mastodon.model.SelectionModel;
+import org.mastodon.model.DefaultSelectionModel;
+import org.mastodon.model.SelectionDeltaListener;
 import org.mastodon.model.tag.TagSetModel;
 import org.mastodon.model.tag.TagSetStructure.TagSet;
 import org.mastodon.ui.SelectionActions;
@@ -84,6 +85,12 @@ public class MamutViewTable extends MamutView< ViewGraph< Spot, Link, Spot, Link
 
 	private static final String[] CONTEXTS = new String[] { KeyConfigContexts.TABLE };
 
+	/**
+	 * Above this number of selection changes, the selection table copies the
+	 * whole selection instead of adding and removing rows one by one.
+	 */
+	private static final int MAX_INCREMENTAL_ROW_CHANGES = 1000;
+
 	private final ColoringModel coloringModel;
 
 	private final boolean selectionOnly;
@@ -162,7 +169,7 @@ public class MamutViewTable extends MamutView< ViewGraph< Spot, Link, Spot, Link
 		MastodonFrameViewActions.install( viewActions, this );
 		TableViewActions.install( viewActions, frame );
 
-		final JPanel searchPanel = SearchVertexLabel.install( viewActions, viewGraph, navigationHandler, selectionModel, focusModel, frame.getCurrentlyDisplayedTable() );
+		final JPanel searchPanel = SearchVertexLabel.install( viewActions, viewGraph, appModel.getLabelIndex(), navigationHandler, selectionModel, focusModel, frame.getCurrentlyDisplayedTable() );
 		frame.getSettingsPanel().add( searchPanel );
 
 		onClose( () -> {
@@ -242,32 +249,84 @@ public class MamutViewTable extends MamutView< ViewGraph< Spot, Link, Spot, Link
 
 		final FeatureTagTablePanel< Spot > vertexTable = frame.getVertexTable();
 		final FeatureTagTablePanel< Link > edgeTable = frame.getEdgeTable();
-		final SelectionModel< Spot, Link > selectionModel = appModel.getSelectionModel();
+		final DefaultSelectionModel< Spot, Link > selectionModel = appModel.getSelectionModel();
 
 		if ( selectionOnly )
 		{
 			// Pass only the selection.
 			frame.setTitle( "Selection table" );
 			frame.setMirrorSelection( false );
-			final SelectionListener selectionListener = () -> {
-				vertexTable.setRows( selectionModel.getSelectedVertices() );
-				edgeTable.setRows( selectionModel.getSelectedEdges() );
+			// Update rows from what was selected and unselected, unless too
+			// much changed, then copy the whole selection.
+			final SelectionDeltaListener selectionListener = delta -> {
+				if ( delta.size() > MAX_INCREMENTAL_ROW_CHANGES )
+				{
+					vertexTable.setRows( selectionModel.getSelectedVertices() );
+					edgeTable.setRows( selectionModel.getSelectedEdges() );
+					return;
+				}
+				delta.getRemovedVertices().forEach( vertexTable::removeRowForId );
+				delta.getAddedVertices().forEach( vertexTable::addRowForId );
+				delta.getRemovedEdges().forEach( edgeTable::removeRowForId );
+				delta.getAddedEdges().forEach( edgeTable::addRowForId );
+				vertexTable.refreshRows();
+				edgeTable.refreshRows();
 			};
-			selectionModel.listeners().add( selectionListener );
-			selectionListener.selectionChanged();
-			onClose( () -> selectionModel.listeners().remove( selectionListener ) );
+			selectionModel.deltaListeners().add( selectionListener );
+			vertexTable.setRows( selectionModel.getSelectedVertices() );
+			edgeTable.setRows( selectionModel.getSelectedEdges() );
+			onClose( () -> selectionModel.deltaListeners().remove( selectionListener ) );
 		}
 		else
 		{
 			// Pass and listen to the full graph.
 			final ModelGraph graph = appModel.getModel().getGraph();
+			final GraphListener< Spot, Link > graphListener = new GraphListener< Spot, Link >()
+			{
+				@Override
+				public void graphRebuilt()
+				{
+					vertexTable.setRows( graph.vertices() );
+					edgeTable.setRows( graph.edges() );
+				}
+
+				@Override
+				public void vertexAdded( final Spot vertex )
+				{
+					vertexTable.addRow( vertex );
+				}
+
+				@Override
+				public void vertexRemoved( final Spot vertex )
+				{
+					vertexTable.removeRow( vertex );
+				}
+
+				@Override
+				public void edgeAdded( final Link edge )
+				{
+					edgeTable.addRow( edge );
+				}
+
+				@Override
+				public void edgeRemoved( final Link edge )
+				{
+					edgeTable.removeRow( edge );
+				}
+			};
+			// Rows added and removed by graph edits are queued, and applied in
+			// one pass when the graph change is notified.
 			final GraphChangeListener graphChangeListener = () -> {
-				vertexTable.setRows( graph.vertices() );
-				edgeTable.setRows( graph.edges() );
+				vertexTable.refreshRows();
+				edgeTable.refreshRows();
 			};
+			graph.addGraphListener( graphListener );
 			graph.addGraphChangeListener( graphChangeListener );
-			graphChangeListener.graphChanged();
-			onClose( () -> graph.removeGraphChangeListener( graphChangeListener ) );
+			graphListener.graphRebuilt();
+			onClose( () -> {
+				graph.removeGraphListener( graphListener );
+				graph.removeGraphChangeListener( graphChangeListener );
+			} );
 
 			// Listen to selection changes.
 			frame.setMirrorSelection( true );
@@ -117,6 +117,7 @@ public class MamutViewTrackScheme extends MamutView< TrackSchemeGraph< Spot, Lin
 						new ModelGraphTrackSchemeProperties( appModel.getModel().getGraph() ),
 						appModel.getModel().getGraph().getLock() ),
 				new String[] { KeyConfigContexts.TRACKSCHEME } );
+		onClose( () -> viewGraph.close() );
 
 		/*
 		 * TrackScheme ContextChooser
@@ -196,7 +197,7 @@ public class MamutViewTrackScheme extends MamutView< TrackSchemeGraph< Spot, Lin
 		TrackSchemeZoom.install( viewBehaviours, frame.getTrackschemePanel() );
 		EditTagActions.install( viewActions, frame.getKeybindings(), frame.getTriggerbindings(), model.getTagSetModel(), appModel.getSelectionModel(), viewGraph.getLock(), frame.getTrackschemePanel(), frame.getTrackschemePanel().getDisplay(), model );
 
-		final JPanel searchPanel = SearchVertexLabel.install( viewActions, viewGraph, navigationHandler, selectionModel, focusModel, frame.getTrackschemePanel() );
+		final JPanel searchPanel = SearchVertexLabel.install( viewActions, viewGraph, appModel.getLabelIndex(), navigationHandler, selectionModel, focusModel, frame.getTrackschemePanel() );
 		frame.getSettingsPanel().add( searchPanel );
 
 		// TODO Let the user choose between the two selection/focus modes.
@@ -299,7 +299,7 @@ public class WindowManager
 
 		final Model model = appModel.getModel();
 		UndoActions.install( appModel.getAppActions(), model );
-		SelectionActions.install( appModel.getAppActions(), model.getGraph(), model.getGraph().getLock(), model.getGraph(), appModel.getSelectionModel(), model );
+		SelectionActions.install( appModel.getAppActions(), model.getGraph(), model.getGraph().getLock(), appModel.getSelectionModel(), model::beginEdit );
 		MamutActions.install( appModel.getAppActions(), appModel );
 
 		final Keymap keymap = keymapManager.getForwardDefaultKeymap();
@@ -101,8 +101,8 @@ public class MamutFeatureProjectionsManager implements FeatureProjectionsManager
 		{
 			final FeatureModel featureModel = model.getFeatureModel();
 			final Projections projections = new ProjectionsFromFeatureModel( featureModel );
-			featureRangeCalculator.vertexCalculator = new DefaultFeatureRangeCalculator<>( model.getGraph().vertices(), projections );
-			featureRangeCalculator.edgeCalculator = new DefaultFeatureRangeCalculator<>( model.getGraph().edges(), projections );
+			featureRangeCalculator.vertexCalculator = new DefaultFeatureRangeCalculator<>( model.getGraph().vertices(), projections, featureModel );
+			featureRangeCalculator.edgeCalculator = new DefaultFeatureRangeCalculator<>( model.getGraph().edges(), projections, featureModel );
 			featureModel.listeners().add( this::notifyAvailableFeatureProjectionsChanged );
 		}
 		else
@@ -166,6 +166,20 @@ public class MamutFeatureProjectionsManager implements FeatureProjectionsManager
 						: edgeCalculator.computeMinMax( projection );
 			}
 		}
+
+		@Override
+		public double[] computeRange( final FeatureProjectionId projection, final double lowerQuantile, final double upperQuantile )
+		{
+			if ( projection == null )
+				return null;
+
+			final FeatureRangeCalculator calculator = projection.getTargetType() == TargetType.VERTEX
+					? vertexCalculator
+					: edgeCalculator;
+			return calculator == null
+					? null
+					: calculator.computeRange( projection, lowerQuantile, upperQuantile );
+		}
 	};
 
 	@Override
@@ -32,10 +32,13 @@ import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.mastodon.graph.GraphListener;
+import org.mastodon.model.GraphEdit;
+import org.mastodon.model.GraphEditListener;
 import org.mastodon.properties.PropertyChangeListener;
 import org.mastodon.spatial.SpatialIndex;
 
 import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.set.hash.TIntHashSet;
 
 /**
  * A class that serves statistics about the maximum bounding radius amongst all
@@ -45,10 +48,14 @@ import gnu.trove.map.hash.TIntObjectHashMap;
  * Read and write (changes to the monitored graph) operations are protected with
  * a {@link ReentrantReadWriteLock}. Multiple clients can hold the read lock
  * simultaneously (but this blocks updates to the graph).
+ * <p>
+ * During a {@link GraphEdit} of the model, changes only mark their time-point,
+ * and the statistics of the marked time-points are recomputed once when the
+ * edit ends.
  *
  * @author Tobias Pietzsch
  */
-public class BoundingSphereRadiusStatistics implements GraphListener< Spot, Link >, PropertyChangeListener< Spot >
+public class BoundingSphereRadiusStatistics implements GraphListener< Spot, Link >, PropertyChangeListener< Spot >, GraphEditListener
 {
 	/**
 	 * Int value used to declare that the requested timepoint is not in a map.
@@ -66,6 +73,16 @@ public class BoundingSphereRadiusStatistics implements GraphListener< Spot, Link
 
     private final Lock writeLock;
 
+	/**
+	 * Whether a {@link GraphEdit} is open.
+	 */
+	private boolean editing;
+
+	/**
+	 * The time-points changed during the current {@link GraphEdit}.
+	 */
+	private final TIntHashSet changedTimepoints;
+
 	/**
 	 * Creates a new statistics object for the specified model. After this
 	 * constructor returns, statistics are immediately available. The returned
@@ -80,8 +97,10 @@ public class BoundingSphereRadiusStatistics implements GraphListener< Spot, Link
 		this.model = model;
 		this.graph = model.getGraph();
 		timepointToStats = new TIntObjectHashMap<>( 10, 0.5f, NO_ENTRY_KEY );
+		changedTimepoints = new TIntHashSet();
 		graph.addGraphListener( this );
 		graph.getVertexPool().boundingSphereRadiusSquProperty().addPropertyChangeListener( this );
+		model.graphEditListeners().add( this );
 		final ReentrantReadWriteLock rwl = new ReentrantReadWriteLock();
 	    readLock = rwl.readLock();
 	    writeLock = rwl.writeLock();
@@ -154,6 +173,11 @@ public class BoundingSphereRadiusStatistics implements GraphListener< Spot, Link
 	@Override
 	public void vertexAdded( final Spot v )
 	{
+		if ( editing )
+		{
+			changedTimepoints.add( v.getTimepoint() );
+			return;
+		}
 		writeLock.lock();
 		try
 		{
@@ -175,6 +199,11 @@ public class BoundingSphereRadiusStatistics implements GraphListener< Spot, Link
 	@Override
 	public void vertexRemoved( final Spot v )
 	{
+		if ( editing )
+		{
+			changedTimepoints.add( v.getTimepoint() );
+			return;
+		}
 		writeLock.lock();
 		try
 		{
@@ -219,6 +248,11 @@ public class BoundingSphereRadiusStatistics implements GraphListener< Spot, Link
 	@Override
 	public void propertyChanged( final Spot v )
 	{
+		if ( editing )
+		{
+			changedTimepoints.add( v.getTimepoint() );
+			return;
+		}
 		writeLock.lock();
 		try
 		{
@@ -232,6 +266,46 @@ public class BoundingSphereRadiusStatistics implements GraphListener< Spot, Link
 		}
 	}
 
+	@Override
+	public void editStarted()
+	{
+		editing = true;
+	}
+
+	@Override
+	public void editEnded()
+	{
+		editing = false;
+		if ( changedTimepoints.isEmpty() )
+			return;
+
+		writeLock.lock();
+		try
+		{
+			for ( final int t : changedTimepoints.toArray() )
+			{
+				final SpatialIndex< Spot > spatialIndex = model.getSpatioTemporalIndex().getSpatialIndex( t );
+				if ( spatialIndex.isEmpty() )
+				{
+					timepointToStats.remove( t );
+					continue;
+				}
+				Stats stats = timepointToStats.get( t );
+				if ( stats == null )
+				{
+					stats = new Stats( graph.vertexRef() );
+					timepointToStats.put( t, stats );
+				}
+				stats.recompute( spatialIndex );
+			}
+		}
+		finally
+		{
+			writeLock.unlock();
+			changedTimepoints.clear();
+		}
+	}
+
 	static class Stats
 	{
 		private double maxRadiusSquared;
@@ -307,6 +381,19 @@ public class BoundingSphereRadiusStatistics implements GraphListener< Spot, Link
 			}
 		}
 
+		/**
+		 * Finds the max radius squared from all the specified spots.
+		 *
+		 * @param spots
+		 *            all spots.
+		 */
+		public void recompute( final Iterable< Spot > spots )
+		{
+			maxRadiusSquared = 0;
+			for ( final Spot v : spots )
+				add( v );
+		}
+
 		public double getMaxRadiusSquared()
 		{
 			return maxRadiusSquared;
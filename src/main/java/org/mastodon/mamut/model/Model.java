@@ -47,9 +47,13 @@ import org.mastodon.graph.io.RawGraphIO.GraphToFileIdMap;
 import org.mastodon.labels.LabelSets;
 import org.mastodon.mamut.project.MamutProject;
 import org.mastodon.model.AbstractModel;
+import org.mastodon.model.GraphChangeSetListener;
+import org.mastodon.model.GraphEdit;
+import org.mastodon.model.GraphEditListener;
 import org.mastodon.model.tag.DefaultTagSetModel;
 import org.mastodon.model.tag.RawTagSetModelIO;
 import org.mastodon.model.tag.TagSetModel;
+import org.mastodon.properties.IntPropertyMap;
 import org.mastodon.properties.Property;
 import org.mastodon.spatial.SpatioTemporalIndex;
 import org.mastodon.spatial.SpatioTemporalIndexImp;
@@ -57,6 +61,8 @@ import org.mastodon.spatial.SpatioTemporalIndexImpRebuilderThread;
 import org.mastodon.undo.GraphUndoRecorder;
 import org.mastodon.undo.Recorder;
 import org.mastodon.undo.UndoPointMarker;
+import org.mastodon.undo.UndoableEdit;
+import org.scijava.listeners.Listeners;
 
 import net.imglib2.RealLocalizable;
 
@@ -97,6 +103,16 @@ public class Model extends AbstractModel< ModelGraph, Spot, Link > implements Un
 
 	private final String timeUnits;
 
+	private final Listeners.List< GraphChangeSetListener > graphChangeSetListeners = new Listeners.SynchronizedList<>();
+
+	private final Listeners.List< GraphEditListener > graphEditListeners = new Listeners.SynchronizedList<>();
+
+	/**
+	 * Records an {@link EditStart} when an edit begins. See
+	 * {@link #beginEdit()}.
+	 */
+	private final Recorder< EditStart > editStartRecorder;
+
 	public Model()
 	{
 		this( "pixel", "frame" );
@@ -121,12 +137,18 @@ public class Model extends AbstractModel< ModelGraph, Spot, Link > implements Un
 		final List< Property< Spot > > vertexUndoableProperties = new ArrayList<>();
 		vertexUndoableProperties.add( modelGraph.getVertexPool().positionProperty() );
 		vertexUndoableProperties.add( modelGraph.getVertexPool().covarianceProperty() );
-		vertexUndoableProperties.add( modelGraph.getVertexPool().boundingSphereRadiusSquProperty() );
+		/*
+		 * The bounding sphere radius is derived from the covariance and
+		 * recomputed by the SpotPool when the covariance changes, so it is not
+		 * recorded separately. Removed spots get it back with their other
+		 * serialized attributes.
+		 */
 		vertexUndoableProperties.add( modelGraph.getVertexPool().labelProperty() );
 
 		final List< Property< Link > > edgeUndoableProperties = new ArrayList<>();
 
 		featureModel = new FeatureModel();
+		modelGraph.addGraphChangeListener( featureModel::invalidateStatistics );
 		tagSetModel = new DefaultTagSetModel<>( getGraph() );
 		vertexUndoableProperties.add(
 				new DefaultTagSetModel.SerialisationAccess< Spot, Link >( tagSetModel )
@@ -146,6 +168,27 @@ public class Model extends AbstractModel< ModelGraph, Spot, Link > implements Un
 						return super.getEdgeIdLabelSets();
 					}
 				}.getEdgeIdLabelSets() );
+		/*
+		 * Keys identifying objects across undo and redo of bulk tagging. They
+		 * are recorded so that objects removed and restored by undo keep
+		 * their key.
+		 */
+		final DefaultTagSetModel.SerialisationAccess< Spot, Link > tagSetModelAccess = new DefaultTagSetModel.SerialisationAccess< Spot, Link >( tagSetModel )
+		{
+			@Override
+			protected IntPropertyMap< Spot > getVertexUndoKeys()
+			{
+				return super.getVertexUndoKeys();
+			}
+
+			@Override
+			protected IntPropertyMap< Link > getEdgeUndoKeys()
+			{
+				return super.getEdgeUndoKeys();
+			}
+		};
+		vertexUndoableProperties.add( tagSetModelAccess.getVertexUndoKeys() );
+		edgeUndoableProperties.add( tagSetModelAccess.getEdgeUndoKeys() );
 
 		undoRecorder = new GraphUndoRecorder<>(
 				initialCapacity,
@@ -158,6 +201,10 @@ public class Model extends AbstractModel< ModelGraph, Spot, Link > implements Un
 
 		final Recorder< DefaultTagSetModel.SetTagSetStructureUndoableEdit > recorder = undoRecorder.createGenericUndoableEditRecorder();
 		tagSetModel.setUndoRecorder( recorder );
+		final Recorder< DefaultTagSetModel.SetTagsUndoableEdit > tagsRecorder = undoRecorder.createGenericUndoableEditRecorder();
+		tagSetModel.setTagsUndoRecorder( tagsRecorder );
+		editStartRecorder = undoRecorder.createGenericUndoableEditRecorder();
+		graphEditListeners.add( tagSetModel );
 	}
 
 	/**
@@ -184,6 +231,8 @@ public class Model extends AbstractModel< ModelGraph, Spot, Link > implements Un
 		}
 		catch ( final FileNotFoundException e )
 		{}
+		// Tags were read directly into the LabelSets.
+		tagSetModel.invalidateTagCaches();
 		tagSetModel.resumeListeners();
 
 		return idmap;
@@ -223,12 +272,94 @@ public class Model extends AbstractModel< ModelGraph, Spot, Link > implements Un
 		return index;
 	}
 
+	/**
+	 * Begins a batch of modifications of the model graph, made as one
+	 * transaction: the write lock is held until the edit is committed or
+	 * aborted, the whole batch is undone in one step, and listeners are
+	 * notified once when the edit ends. Aborting the edit, or closing it
+	 * without committing, undoes the batch. See {@link GraphEdit}.
+	 * <p>
+	 * This is the preferred way for plugins and tools to add or remove many
+	 * spots and links.
+	 *
+	 * @return a new edit, to be committed by the calling thread.
+	 */
+	public GraphEdit< Spot, Link > beginEdit()
+	{
+		final GraphEdit< Spot, Link > edit = new GraphEdit<>(
+				modelGraph,
+				modelGraph.idmap(),
+				lock,
+				this,
+				this::rollbackEdit,
+				modelGraph::notifyGraphChanged,
+				graphChangeSetListeners,
+				graphEditListeners );
+		/*
+		 * Start the undo step of the edit with an edit of our own, so that
+		 * rolling back stops at the start of the edit even if nothing else
+		 * was recorded.
+		 */
+		editStartRecorder.record( new EditStart() );
+		return edit;
+	}
+
+	/**
+	 * Undoes the modifications of an aborted edit. Called with the write lock
+	 * held.
+	 */
+	private void rollbackEdit()
+	{
+		undoRecorder.undo();
+		tagSetModel.invalidateTagCaches();
+	}
+
+	/**
+	 * Marks the start of an edit in the undo history. Does nothing when undone
+	 * or redone.
+	 */
+	private static class EditStart implements UndoableEdit
+	{
+		@Override
+		public void undo()
+		{}
+
+		@Override
+		public void redo()
+		{}
+	}
+
+	/**
+	 * Exposes the listeners that are notified of the spots and links added and
+	 * removed by each committed {@link #beginEdit() edit}.
+	 *
+	 * @return the listeners.
+	 */
+	public Listeners< GraphChangeSetListener > graphChangeSetListeners()
+	{
+		return graphChangeSetListeners;
+	}
+
+	/**
+	 * Exposes the listeners that are notified when an {@link #beginEdit()
+	 * edit} begins and ends, to update state derived from the graph once per
+	 * edit instead of once per spot and link.
+	 *
+	 * @return the listeners.
+	 */
+	public Listeners< GraphEditListener > graphEditListeners()
+	{
+		return graphEditListeners;
+	}
+
 	public void undo()
 	{
 		lock.writeLock().lock();
 		try
 		{
 			undoRecorder.undo();
+			// The recorder may have restored tags in the LabelSets.
+			tagSetModel.invalidateTagCaches();
 			modelGraph.notifyGraphChanged();
 		}
 		finally
@@ -243,6 +374,7 @@ public class Model extends AbstractModel< ModelGraph, Spot, Link > implements Un
 		try
 		{
 			undoRecorder.redo();
+			tagSetModel.invalidateTagCaches();
 			modelGraph.notifyGraphChanged();
 		}
 		finally
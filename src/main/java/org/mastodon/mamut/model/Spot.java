@@ -43,6 +43,8 @@ public final class Spot extends AbstractSpot< Spot, Link, SpotPool, ByteMappedEl
 {
 	private final JamaEigenvalueDecomposition eig = new JamaEigenvalueDecomposition( 3 );
 
+	private final double[][] tmpCov = new double[ 3 ][ 3 ];
+
 	private double radiusSquaredFromCovariance( final double[][] cov )
 	{
 		eig.decomposeSymmetric( cov );
@@ -79,6 +81,22 @@ public final class Spot extends AbstractSpot< Spot, Link, SpotPool, ByteMappedEl
 		}
 	}
 
+	/**
+	 * Recomputes the bounding sphere radius from the current covariance, if it
+	 * is out of date. The bounding sphere radius is not recorded for undo, so
+	 * this is called whenever the covariance changes, by
+	 * {@link #setCovariance(double[][])} as well as when the covariance is
+	 * restored by undo/redo. This is the only place where the radius of an
+	 * existing spot is computed.
+	 */
+	void updateBoundingSphereRadiusSquared()
+	{
+		getCovarianceInternal( tmpCov );
+		final double rsqu = radiusSquaredFromCovariance( tmpCov );
+		if ( rsqu != pool.boundingSphereRadiusSqu.get( this ) )
+			pool.boundingSphereRadiusSqu.set( this, rsqu );
+	}
+
 	void notifyVertexAdded()
 	{
 		super.initDone();
@@ -150,13 +168,20 @@ public final class Spot extends AbstractSpot< Spot, Link, SpotPool, ByteMappedEl
 		getCovarianceInternal( cov );
 	}
 
+	/**
+	 * Sets the covariance matrix of this spot. The bounding sphere radius is
+	 * updated by the covariance listener of the {@link SpotPool}, see
+	 * {@link #updateBoundingSphereRadiusSquared()}.
+	 *
+	 * @param cov
+	 *            the covariance matrix, as a {@code double[][]} (line,
+	 *            column). Only the top-left of the matrix is read.
+	 */
 	public void setCovariance( final double[][] cov )
 	{
 		pool.covariance.notifyBeforePropertyChange( this );
 		setCovarianceInternal( cov );
 		pool.covariance.notifyPropertyChanged( this );
-
-		pool.boundingSphereRadiusSqu.set( this, radiusSquaredFromCovariance( cov ) );
 	}
 
 	public double getBoundingSphereRadiusSquared()
@@ -63,6 +63,11 @@ public class SpotPool extends AbstractSpotPool< Spot, Link, ByteMappedElement, M
 		super( initialCapacity, layout, Spot.class, SingleArrayMemPool.factory( ByteMappedElementArray.factory ) );
 		label = new ObjPropertyMap<>( this );
 		registerPropertyMap( label );
+		/*
+		 * Registered first, so that other covariance listeners see the
+		 * updated bounding sphere radius.
+		 */
+		covariance.addPropertyChangeListener( Spot::updateBoundingSphereRadiusSquared );
 	}
 
 	@Override
@@ -28,8 +28,10 @@
  */
 package org.mastodon.model;
 
+import java.util.ArrayDeque;
 import java.util.BitSet;
 import java.util.Collection;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.mastodon.collection.RefCollections;
 import org.mastodon.collection.RefSet;
@@ -48,7 +50,16 @@ import org.scijava.listeners.Listeners;
  * this class is later removed from the graph, the
  * {@link #getSelectedVertices()} method will not return it.
  * <p>
- * TODO: less severe synchronization
+ * The selected state is stored in bit sets indexed by vertex and edge ids,
+ * guarded by a read/write lock. Listeners are notified after the lock is
+ * released, one change at a time and in the order the changes were made. A
+ * change made while listeners are being notified, by a listener or by another
+ * thread, is delivered by the notifying thread once the current notification
+ * is complete. Besides plain {@link SelectionListener}s, which have to query the
+ * whole selection, {@link SelectionDeltaListener}s are told which ids were
+ * selected and unselected. {@link #getSelectedVertexIds()} and
+ * {@link #getSelectedEdgeIds()} return immutable snapshots that are shared
+ * until the selection changes.
  *
  * @author Tobias Pietzsch
  *
@@ -64,16 +75,56 @@ public class DefaultSelectionModel< V extends Vertex< E >, E extends Edge< V > >
 
 	private final GraphIdBimap< V, E > idmap;
 
-	private final RefSet< V > selectedVertices;
-
-	private final RefSet< E > selectedEdges;
-
 	private final BitSet vertexBits;
 
 	private final BitSet edgeBits;
 
+	private int numSelectedVertices;
+
+	private int numSelectedEdges;
+
+	private final ReentrantReadWriteLock lock;
+
+	/**
+	 * Snapshot of the selected vertex ids, or <code>null</code> if it has to
+	 * be created again.
+	 */
+	private volatile IdSet vertexSnapshot;
+
+	/**
+	 * Snapshot of the selected edge ids, or <code>null</code> if it has to be
+	 * created again.
+	 */
+	private volatile IdSet edgeSnapshot;
+
+	/*
+	 * Net changes since the last notification.
+	 */
+
+	private BitSet addedVertices;
+
+	private BitSet removedVertices;
+
+	private BitSet addedEdges;
+
+	private BitSet removedEdges;
+
+	/**
+	 * Changes taken from the selection but not yet delivered to the
+	 * listeners, in the order they were taken. Also guards
+	 * {@link #delivering}.
+	 */
+	private final ArrayDeque< SelectionDelta > pendingDeltas;
+
+	/**
+	 * Whether a thread is delivering {@link #pendingDeltas}.
+	 */
+	private boolean delivering;
+
 	private final Listeners.List< SelectionListener > listeners;
 
+	private final Listeners.List< SelectionDeltaListener > deltaListeners;
+
 	/**
 	 * If <code>false</code>, listeners will not be notified when a
 	 * selection-change event happens.
@@ -81,8 +132,8 @@ public class DefaultSelectionModel< V extends Vertex< E >, E extends Edge< V > >
 	private boolean emitEvents;
 
 	/**
-	 * Is <code>true</code> if a selection-change event happened while the
-	 * listeners were paused.
+	 * Is <code>true</code> if a selection-change event happened since the
+	 * listeners were last notified.
 	 */
 	private boolean shouldEmitEvent;
 
@@ -102,11 +153,17 @@ public class DefaultSelectionModel< V extends Vertex< E >, E extends Edge< V > >
 	{
 		this.graph = graph;
 		this.idmap = idmap;
-		selectedVertices = RefCollections.createRefSet( graph.vertices() );
-		selectedEdges = RefCollections.createRefSet( graph.edges() );
 		vertexBits = new BitSet();
 		edgeBits = new BitSet();
+		lock = new ReentrantReadWriteLock();
+		addedVertices = new BitSet();
+		removedVertices = new BitSet();
+		addedEdges = new BitSet();
+		removedEdges = new BitSet();
+		pendingDeltas = new ArrayDeque<>();
+		delivering = false;
 		listeners = new Listeners.SynchronizedList<>();
+		deltaListeners = new Listeners.SynchronizedList<>();
 		emitEvents = true;
 		shouldEmitEvent = false;
 	}
@@ -119,9 +176,17 @@ public class DefaultSelectionModel< V extends Vertex< E >, E extends Edge< V > >
 	 * @return {@code true} if specified vertex is selected.
 	 */
 	@Override
-	public synchronized boolean isSelected( final V v )
+	public boolean isSelected( final V v )
 	{
-		return vertexBits.get( idmap.getVertexId( v ) );
+		lock.readLock().lock();
+		try
+		{
+			return vertexBits.get( idmap.getVertexId( v ) );
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
 	}
 
 	/**
@@ -132,9 +197,17 @@ public class DefaultSelectionModel< V extends Vertex< E >, E extends Edge< V > >
 	 * @return {@code true} if specified edge is selected.
 	 */
 	@Override
-	public synchronized boolean isSelected( final E e )
+	public boolean isSelected( final E e )
 	{
-		return edgeBits.get( idmap.getEdgeId( e ) );
+		lock.readLock().lock();
+		try
+		{
+			return edgeBits.get( idmap.getEdgeId( e ) );
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
 	}
 
 	/**
@@ -146,17 +219,20 @@ public class DefaultSelectionModel< V extends Vertex< E >, E extends Edge< V > >
 	 *            selected state to set for specified vertex.
 	 */
 	@Override
-	public synchronized void setSelected( final V v, final boolean selected )
+	public void setSelected( final V v, final boolean selected )
 	{
-		if ( isSelected( v ) != selected )
+		final boolean changed;
+		lock.writeLock().lock();
+		try
 		{
-			vertexBits.set( idmap.getVertexId( v ), selected );
-			if ( selected )
-				selectedVertices.add( v );
-			else
-				selectedVertices.remove( v );
-			notifyListeners();
+			changed = setVertexSelected( idmap.getVertexId( v ), selected );
+		}
+		finally
+		{
+			lock.writeLock().unlock();
 		}
+		if ( changed )
+			notifyListeners();
 	}
 
 	/**
@@ -168,17 +244,20 @@ public class DefaultSelectionModel< V extends Vertex< E >, E extends Edge< V > >
 	 *            selected state to set for specified edge.
 	 */
 	@Override
-	public synchronized void setSelected( final E e, final boolean selected )
+	public void setSelected( final E e, final boolean selected )
 	{
-		if ( isSelected( e ) != selected )
+		final boolean changed;
+		lock.writeLock().lock();
+		try
 		{
-			edgeBits.set( idmap.getEdgeId( e ), selected );
-			if ( selected )
-				selectedEdges.add( e );
-			else
-				selectedEdges.remove( e );
-			notifyListeners();
+			changed = setEdgeSelected( idmap.getEdgeId( e ), selected );
 		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+		if ( changed )
+			notifyListeners();
 	}
 
 	/**
@@ -188,9 +267,19 @@ public class DefaultSelectionModel< V extends Vertex< E >, E extends Edge< V > >
 	 *            a vertex.
 	 */
 	@Override
-	public synchronized void toggle( final V v )
+	public void toggle( final V v )
 	{
-		setSelected( v, !isSelected( v ) );
+		lock.writeLock().lock();
+		try
+		{
+			final int id = idmap.getVertexId( v );
+			setVertexSelected( id, !vertexBits.get( id ) );
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+		notifyListeners();
 	}
 
 	/**
@@ -200,9 +289,19 @@ public class DefaultSelectionModel< V extends Vertex< E >, E extends Edge< V > >
 	 *            an edge.
 	 */
 	@Override
-	public synchronized void toggle( final E e )
+	public void toggle( final E e )
 	{
-		setSelected( e, !isSelected( e ) );
+		lock.writeLock().lock();
+		try
+		{
+			final int id = idmap.getEdgeId( e );
+			setEdgeSelected( id, !edgeBits.get( id ) );
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+		notifyListeners();
 	}
 
 	/**
@@ -215,24 +314,22 @@ public class DefaultSelectionModel< V extends Vertex< E >, E extends Edge< V > >
 	 * @return {@code true} if the selection was changed by this call.
 	 */
 	@Override
-	public synchronized boolean setEdgesSelected( final Collection< E > edges, final boolean selected )
+	public boolean setEdgesSelected( final Collection< E > edges, final boolean selected )
 	{
-		for ( final E e : edges )
-			edgeBits.set( idmap.getEdgeId( e ), selected );
-		if ( selected )
+		boolean changed = false;
+		lock.writeLock().lock();
+		try
 		{
-			final boolean changed = selectedEdges.addAll( edges );
-			if ( changed )
-				notifyListeners();
-			return changed;
+			for ( final E e : edges )
+				changed |= setEdgeSelected( idmap.getEdgeId( e ), selected );
 		}
-		else
+		finally
 		{
-			final boolean changed = selectedEdges.removeAll( edges );
-			if ( changed )
-				notifyListeners();
-			return changed;
+			lock.writeLock().unlock();
 		}
+		if ( changed )
+			notifyListeners();
+		return changed;
 	}
 
 	/**
@@ -245,24 +342,22 @@ public class DefaultSelectionModel< V extends Vertex< E >, E extends Edge< V > >
 	 * @return {@code true} if the selection was changed by this call.
 	 */
 	@Override
-	public synchronized boolean setVerticesSelected( final Collection< V > vertices, final boolean selected )
+	public boolean setVerticesSelected( final Collection< V > vertices, final boolean selected )
 	{
-		for ( final V v : vertices )
-			vertexBits.set( idmap.getVertexId( v ), selected );
-		if ( selected )
+		boolean changed = false;
+		lock.writeLock().lock();
+		try
 		{
-			final boolean changed = selectedVertices.addAll( vertices );
-			if ( changed )
-				notifyListeners();
-			return changed;
+			for ( final V v : vertices )
+				changed |= setVertexSelected( idmap.getVertexId( v ), selected );
 		}
-		else
+		finally
 		{
-			final boolean changed = selectedVertices.removeAll( vertices );
-			if ( changed )
-				notifyListeners();
-			return changed;
+			lock.writeLock().unlock();
 		}
+		if ( changed )
+			notifyListeners();
+		return changed;
 	}
 
 	/**
@@ -272,14 +367,35 @@ public class DefaultSelectionModel< V extends Vertex< E >, E extends Edge< V > >
 	 *         calling this method.
 	 */
 	@Override
-	public synchronized boolean clearSelection()
+	public boolean clearSelection()
 	{
-		vertexBits.clear();
-		edgeBits.clear();
-		if ( selectedEdges.isEmpty() && selectedVertices.isEmpty() )
-			return false;
-		selectedEdges.clear();
-		selectedVertices.clear();
+		lock.writeLock().lock();
+		try
+		{
+			if ( numSelectedVertices == 0 && numSelectedEdges == 0 )
+				return false;
+
+			// Objects selected since the last notification were not selected
+			// before it, the others are now removed.
+			vertexBits.andNot( addedVertices );
+			removedVertices.or( vertexBits );
+			addedVertices.clear();
+			edgeBits.andNot( addedEdges );
+			removedEdges.or( edgeBits );
+			addedEdges.clear();
+
+			vertexBits.clear();
+			edgeBits.clear();
+			numSelectedVertices = 0;
+			numSelectedEdges = 0;
+			vertexSnapshot = null;
+			edgeSnapshot = null;
+			shouldEmitEvent = true;
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
 		notifyListeners();
 		return true;
 	}
@@ -290,10 +406,21 @@ public class DefaultSelectionModel< V extends Vertex< E >, E extends Edge< V > >
 	 * @return a <b>new</b> {@link RefSet} containing the selected edges.
 	 */
 	@Override
-	public synchronized RefSet< E > getSelectedEdges()
+	public RefSet< E > getSelectedEdges()
 	{
 		final RefSet< E > set = RefCollections.createRefSet( graph.edges() );
-		set.addAll( selectedEdges );
+		final E ref = graph.edgeRef();
+		lock.readLock().lock();
+		try
+		{
+			for ( int id = edgeBits.nextSetBit( 0 ); id >= 0; id = edgeBits.nextSetBit( id + 1 ) )
+				set.add( idmap.getEdge( id, ref ) );
+		}
+		finally
+		{
+			lock.readLock().unlock();
+			graph.releaseRef( ref );
+		}
 		return set;
 	}
 
@@ -303,17 +430,86 @@ public class DefaultSelectionModel< V extends Vertex< E >, E extends Edge< V > >
 	 * @return a <b>new</b> {@link RefSet} containing the selected vertices.
 	 */
 	@Override
-	public synchronized RefSet< V > getSelectedVertices()
+	public RefSet< V > getSelectedVertices()
 	{
 		final RefSet< V > set = RefCollections.createRefSet( graph.vertices() );
-		set.addAll( selectedVertices );
+		final V ref = graph.vertexRef();
+		lock.readLock().lock();
+		try
+		{
+			for ( int id = vertexBits.nextSetBit( 0 ); id >= 0; id = vertexBits.nextSetBit( id + 1 ) )
+				set.add( idmap.getVertex( id, ref ) );
+		}
+		finally
+		{
+			lock.readLock().unlock();
+			graph.releaseRef( ref );
+		}
 		return set;
 	}
 
+	/**
+	 * Get the ids of the selected vertices. The returned snapshot does not
+	 * change, and the same instance is returned until the selection changes.
+	 *
+	 * @return the ids of the selected vertices.
+	 */
+	public IdSet getSelectedVertexIds()
+	{
+		lock.readLock().lock();
+		try
+		{
+			IdSet snapshot = vertexSnapshot;
+			if ( snapshot == null )
+			{
+				snapshot = new IdSet( ( BitSet ) vertexBits.clone() );
+				vertexSnapshot = snapshot;
+			}
+			return snapshot;
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Get the ids of the selected edges. The returned snapshot does not
+	 * change, and the same instance is returned until the selection changes.
+	 *
+	 * @return the ids of the selected edges.
+	 */
+	public IdSet getSelectedEdgeIds()
+	{
+		lock.readLock().lock();
+		try
+		{
+			IdSet snapshot = edgeSnapshot;
+			if ( snapshot == null )
+			{
+				snapshot = new IdSet( ( BitSet ) edgeBits.clone() );
+				edgeSnapshot = snapshot;
+			}
+			return snapshot;
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
 	@Override
 	public boolean isEmpty()
 	{
-		return selectedVertices.isEmpty() && selectedEdges.isEmpty();
+		lock.readLock().lock();
+		try
+		{
+			return numSelectedVertices == 0 && numSelectedEdges == 0;
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
 	}
 
 	@Override
@@ -321,11 +517,52 @@ public class DefaultSelectionModel< V extends Vertex< E >, E extends Edge< V > >
 	{
 		final StringBuilder sb = new StringBuilder();
 		sb.append( super.toString() );
-		sb.append( "\nVertices: " + selectedVertices );
-		sb.append( "\nEdges:    " + selectedEdges );
+		sb.append( "\nVertices: " + getSelectedVertices() );
+		sb.append( "\nEdges:    " + getSelectedEdges() );
 		return sb.toString();
 	}
 
+	/**
+	 * Sets the selected state of a vertex id and records the change. Must be
+	 * called with the write lock held.
+	 */
+	private boolean setVertexSelected( final int id, final boolean selected )
+	{
+		if ( vertexBits.get( id ) == selected )
+			return false;
+		vertexBits.set( id, selected );
+		numSelectedVertices += selected ? 1 : -1;
+		record( id, selected, addedVertices, removedVertices );
+		vertexSnapshot = null;
+		shouldEmitEvent = true;
+		return true;
+	}
+
+	/**
+	 * Sets the selected state of an edge id and records the change. Must be
+	 * called with the write lock held.
+	 */
+	private boolean setEdgeSelected( final int id, final boolean selected )
+	{
+		if ( edgeBits.get( id ) == selected )
+			return false;
+		edgeBits.set( id, selected );
+		numSelectedEdges += selected ? 1 : -1;
+		record( id, selected, addedEdges, removedEdges );
+		edgeSnapshot = null;
+		shouldEmitEvent = true;
+		return true;
+	}
+
+	private static void record( final int id, final boolean selected, final BitSet added, final BitSet removed )
+	{
+		final BitSet undone = selected ? removed : added;
+		if ( undone.get( id ) )
+			undone.clear( id );
+		else
+			( selected ? added : removed ).set( id );
+	}
+
 	/*
 	 * GraphListener
 	 */
@@ -362,31 +599,115 @@ public class DefaultSelectionModel< V extends Vertex< E >, E extends Edge< V > >
 		return listeners;
 	}
 
+	/**
+	 * Get the listeners that are notified of which vertices and edges were
+	 * selected and unselected. They are notified after the
+	 * {@link #listeners()}.
+	 *
+	 * @return the delta listeners.
+	 */
+	public Listeners< SelectionDeltaListener > deltaListeners()
+	{
+		return deltaListeners;
+	}
+
+	/**
+	 * Notifies the listeners of the changes since the last notification, if
+	 * any, and if listeners are not paused. Must be called without holding the
+	 * lock.
+	 * <p>
+	 * The changes are queued while the write lock is held, so that the queue
+	 * is in the order of the changes. If another call is already delivering
+	 * the queue, in this thread (from a listener) or in another thread, this
+	 * method returns and leaves the delivery to it. No lock is held while
+	 * listeners are called.
+	 */
 	private void notifyListeners()
 	{
-		if ( emitEvents )
-			for ( final SelectionListener l : listeners.list )
-				l.selectionChanged();
-		else
-			shouldEmitEvent = true;
+		lock.writeLock().lock();
+		try
+		{
+			if ( !emitEvents || !shouldEmitEvent )
+				return;
+			final SelectionDelta delta = new SelectionDelta( addedVertices, removedVertices, addedEdges, removedEdges );
+			addedVertices = new BitSet();
+			removedVertices = new BitSet();
+			addedEdges = new BitSet();
+			removedEdges = new BitSet();
+			shouldEmitEvent = false;
+			synchronized ( pendingDeltas )
+			{
+				pendingDeltas.add( delta );
+				if ( delivering )
+					return;
+				delivering = true;
+			}
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+
+		boolean done = false;
+		try
+		{
+			while ( !done )
+			{
+				final SelectionDelta delta;
+				synchronized ( pendingDeltas )
+				{
+					delta = pendingDeltas.poll();
+					if ( delta == null )
+					{
+						delivering = false;
+						done = true;
+						break;
+					}
+				}
+				for ( final SelectionListener l : listeners.list )
+					l.selectionChanged();
+				for ( final SelectionDeltaListener l : deltaListeners.list )
+					l.selectionChanged( delta );
+			}
+		}
+		finally
+		{
+			// A listener threw: let the next notification deliver the rest.
+			if ( !done )
+				synchronized ( pendingDeltas )
+				{
+					delivering = false;
+				}
+		}
 	}
 
 	@Override
 	public void resumeListeners()
 	{
-		emitEvents = true;
-		if ( shouldEmitEvent )
+		lock.writeLock().lock();
+		try
 		{
-			// Catchup.
-			for ( final SelectionListener l : listeners.list )
-				l.selectionChanged();
-			shouldEmitEvent = false;
+			emitEvents = true;
+		}
+		finally
+		{
+			lock.writeLock().unlock();
 		}
+		// Catchup.
+		notifyListeners();
 	}
 
 	@Override
 	public void pauseListeners()
 	{
-		emitEvents = false;
+		lock.writeLock().lock();
+		try
+		{
+			emitEvents = false;
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
 	}
 }
@@ -0,0 +1,303 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2021 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.model;
+
+import java.util.BitSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.mastodon.graph.Edge;
+import org.mastodon.graph.GraphIdBimap;
+import org.mastodon.graph.GraphListener;
+import org.mastodon.graph.ListenableReadOnlyGraph;
+import org.mastodon.graph.Vertex;
+import org.mastodon.undo.UndoPointMarker;
+import org.scijava.listeners.Listeners;
+
+/**
+ * A batch of modifications of a graph, made as one transaction.
+ * <p>
+ * Creating the edit takes the write lock of the graph, and starts recording
+ * which vertices and edges are added and removed. Between creation and
+ * {@link #commit()} or {@link #abort()}, the graph is modified with its usual
+ * methods, from the thread that created the edit. Committing:
+ * <ul>
+ * <li>sets an undo point, so that the whole batch is undone in one step;</li>
+ * <li>lets the {@link GraphEditListener}s update their derived state
+ * once;</li>
+ * <li>notifies the graph change listeners once;</li>
+ * <li>releases the write lock;</li>
+ * <li>and notifies the {@link GraphChangeSetListener}s with the
+ * {@link GraphChangeSet} of the edit.</li>
+ * </ul>
+ * Aborting undoes the modifications made so far instead. {@code GraphEdit} is
+ * {@link AutoCloseable}, and meant to be used in a try-with-resources
+ * statement. Closing an edit that was not committed aborts it, so that an
+ * exception thrown in the middle of the batch does not leave half of it in the
+ * graph:
+ *
+ * <pre>
+ * try (GraphEdit&lt; Spot, Link &gt; edit = model.beginEdit())
+ * {
+ * 	graph.addVertex( ref ).init( timepoint, pos, radius );
+ * 	...
+ * 	edit.commit();
+ * }
+ * </pre>
+ *
+ * {@link GraphListener}s are still notified of each vertex and edge, because
+ * undo recording and the spatial index rely on them. State derived from the
+ * graph that can catch up in one pass registers as a {@link GraphEditListener}
+ * instead, and skips these per-element updates while the edit is open.
+ *
+ * @param <V>
+ *            the type of vertices.
+ * @param <E>
+ *            the type of edges.
+ */
+public class GraphEdit< V extends Vertex< E >, E extends Edge< V > > implements AutoCloseable
+{
+	private final ListenableReadOnlyGraph< V, E > graph;
+
+	private final GraphIdBimap< V, E > idmap;
+
+	private final ReentrantReadWriteLock lock;
+
+	private final UndoPointMarker undo;
+
+	private final Runnable rollback;
+
+	private final Runnable notifyGraphChanged;
+
+	private final Listeners.List< GraphChangeSetListener > listeners;
+
+	private final Listeners.List< GraphEditListener > editListeners;
+
+	private final ChangeRecorder recorder;
+
+	private boolean open;
+
+	/**
+	 * Begins an edit of the specified graph. Blocks until the write lock can
+	 * be acquired.
+	 *
+	 * @param graph
+	 *            the graph to edit.
+	 * @param idmap
+	 *            the id map of the graph.
+	 * @param lock
+	 *            the lock of the graph.
+	 * @param undo
+	 *            marks undo points.
+	 * @param rollback
+	 *            undoes the modifications recorded since the undo point set
+	 *            when the edit began. Used by {@link #abort()}.
+	 * @param notifyGraphChanged
+	 *            notifies the graph change listeners of the graph.
+	 * @param listeners
+	 *            the listeners to notify of the changes when the edit is
+	 *            committed.
+	 * @param editListeners
+	 *            the listeners to notify when the edit begins and ends.
+	 */
+	public GraphEdit(
+			final ListenableReadOnlyGraph< V, E > graph,
+			final GraphIdBimap< V, E > idmap,
+			final ReentrantReadWriteLock lock,
+			final UndoPointMarker undo,
+			final Runnable rollback,
+			final Runnable notifyGraphChanged,
+			final Listeners.List< GraphChangeSetListener > listeners,
+			final Listeners.List< GraphEditListener > editListeners )
+	{
+		this.graph = graph;
+		this.idmap = idmap;
+		this.lock = lock;
+		this.undo = undo;
+		this.rollback = rollback;
+		this.notifyGraphChanged = notifyGraphChanged;
+		this.listeners = listeners;
+		this.editListeners = editListeners;
+		this.recorder = new ChangeRecorder();
+
+		lock.writeLock().lock();
+		// Do not merge previous unmarked modifications in this undo step.
+		undo.setUndoPoint();
+		graph.addGraphListener( recorder );
+		editListeners.list.forEach( GraphEditListener::editStarted );
+		open = true;
+	}
+
+	/**
+	 * Returns the changes made so far by this edit.
+	 *
+	 * @return a new change set.
+	 */
+	public GraphChangeSet getChanges()
+	{
+		return recorder.changes();
+	}
+
+	/**
+	 * Commits this edit. Must be called from the thread that created the
+	 * edit.
+	 *
+	 * @return the changes made by this edit.
+	 * @throws IllegalStateException
+	 *             if this edit was already committed or aborted.
+	 */
+	public GraphChangeSet commit()
+	{
+		if ( !open )
+			throw new IllegalStateException( "edit already ended" );
+		open = false;
+
+		final GraphChangeSet changes;
+		try
+		{
+			graph.removeGraphListener( recorder );
+			changes = recorder.changes();
+			undo.setUndoPoint();
+		}
+		finally
+		{
+			end();
+		}
+
+		if ( !changes.isEmpty() )
+			listeners.list.forEach( l -> l.graphChanged( changes ) );
+		return changes;
+	}
+
+	/**
+	 * Aborts this edit, undoing the modifications made since it began. Must
+	 * be called from the thread that created the edit. The
+	 * {@link GraphChangeSetListener}s are not notified.
+	 * <p>
+	 * The modifications are reverted with the undo history of the graph, so
+	 * they can still be redone until a new modification is recorded.
+	 *
+	 * @throws IllegalStateException
+	 *             if this edit was already committed or aborted.
+	 */
+	public void abort()
+	{
+		if ( !open )
+			throw new IllegalStateException( "edit already ended" );
+		open = false;
+
+		try
+		{
+			graph.removeGraphListener( recorder );
+			rollback.run();
+		}
+		finally
+		{
+			end();
+		}
+	}
+
+	/**
+	 * Aborts this edit, if it was neither committed nor aborted.
+	 */
+	@Override
+	public void close()
+	{
+		if ( open )
+			abort();
+	}
+
+	private void end()
+	{
+		try
+		{
+			editListeners.list.forEach( GraphEditListener::editEnded );
+			notifyGraphChanged.run();
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	private class ChangeRecorder implements GraphListener< V, E >
+	{
+		private final BitSet addedVertices = new BitSet();
+
+		private final BitSet removedVertices = new BitSet();
+
+		private final BitSet addedEdges = new BitSet();
+
+		private final BitSet removedEdges = new BitSet();
+
+		@Override
+		public void graphRebuilt()
+		{}
+
+		@Override
+		public void vertexAdded( final V vertex )
+		{
+			addedVertices.set( idmap.getVertexId( vertex ) );
+		}
+
+		@Override
+		public void vertexRemoved( final V vertex )
+		{
+			removed( idmap.getVertexId( vertex ), addedVertices, removedVertices );
+		}
+
+		@Override
+		public void edgeAdded( final E edge )
+		{
+			addedEdges.set( idmap.getEdgeId( edge ) );
+		}
+
+		@Override
+		public void edgeRemoved( final E edge )
+		{
+			removed( idmap.getEdgeId( edge ), addedEdges, removedEdges );
+		}
+
+		private void removed( final int id, final BitSet added, final BitSet removed )
+		{
+			if ( added.get( id ) )
+				added.clear( id );
+			else
+				removed.set( id );
+		}
+
+		GraphChangeSet changes()
+		{
+			return new GraphChangeSet(
+					( BitSet ) addedVertices.clone(),
+					( BitSet ) removedVertices.clone(),
+					( BitSet ) addedEdges.clone(),
+					( BitSet ) removedEdges.clone() );
+		}
+	}
+}
@@ -0,0 +1,100 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2021 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.model;
+
+import java.util.BitSet;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * An immutable set of pool ids, backed by a {@link BitSet}.
+ */
+public final class IdSet
+{
+	private final BitSet bits;
+
+	private final int size;
+
+	/**
+	 * Creates a new id set. The specified bit set is not copied and must not
+	 * be modified afterwards.
+	 *
+	 * @param bits
+	 *            the ids in the set.
+	 */
+	IdSet( final BitSet bits )
+	{
+		this.bits = bits;
+		this.size = bits.cardinality();
+	}
+
+	/**
+	 * Returns whether the specified id is in this set.
+	 *
+	 * @param id
+	 *            the id.
+	 * @return {@code true} if the id is in this set.
+	 */
+	public boolean contains( final int id )
+	{
+		return id >= 0 && bits.get( id );
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	/**
+	 * Returns the ids in this set, in increasing order.
+	 *
+	 * @return a stream of ids.
+	 */
+	public IntStream stream()
+	{
+		return bits.stream();
+	}
+
+	public void forEach( final IntConsumer action )
+	{
+		for ( int id = bits.nextSetBit( 0 ); id >= 0; id = bits.nextSetBit( id + 1 ) )
+			action.accept( id );
+	}
+
+	@Override
+	public String toString()
+	{
+		return bits.toString();
+	}
+}
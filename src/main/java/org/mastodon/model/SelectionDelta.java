@@ -0,0 +1,112 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2021 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.model;
+
+import java.util.BitSet;
+
+/**
+ * The vertices and edges that were added to or removed from a selection, as
+ * sets of pool ids.
+ * <p>
+ * The change is net: an object that was selected and then unselected while
+ * the listeners were paused is in neither set.
+ */
+public final class SelectionDelta
+{
+	private final IdSet addedVertices;
+
+	private final IdSet removedVertices;
+
+	private final IdSet addedEdges;
+
+	private final IdSet removedEdges;
+
+	SelectionDelta( final BitSet addedVertices, final BitSet removedVertices, final BitSet addedEdges, final BitSet removedEdges )
+	{
+		this.addedVertices = new IdSet( addedVertices );
+		this.removedVertices = new IdSet( removedVertices );
+		this.addedEdges = new IdSet( addedEdges );
+		this.removedEdges = new IdSet( removedEdges );
+	}
+
+	/**
+	 * Returns the ids of the vertices that were selected.
+	 *
+	 * @return the vertex ids.
+	 */
+	public IdSet getAddedVertices()
+	{
+		return addedVertices;
+	}
+
+	/**
+	 * Returns the ids of the vertices that were unselected.
+	 *
+	 * @return the vertex ids.
+	 */
+	public IdSet getRemovedVertices()
+	{
+		return removedVertices;
+	}
+
+	/**
+	 * Returns the ids of the edges that were selected.
+	 *
+	 * @return the edge ids.
+	 */
+	public IdSet getAddedEdges()
+	{
+		return addedEdges;
+	}
+
+	/**
+	 * Returns the ids of the edges that were unselected.
+	 *
+	 * @return the edge ids.
+	 */
+	public IdSet getRemovedEdges()
+	{
+		return removedEdges;
+	}
+
+	/**
+	 * Returns the total number of vertices and edges in this change.
+	 *
+	 * @return the number of changes.
+	 */
+	public int size()
+	{
+		return addedVertices.size() + removedVertices.size() + addedEdges.size() + removedEdges.size();
+	}
+
+	public boolean isEmpty()
+	{
+		return size() == 0;
+	}
+}
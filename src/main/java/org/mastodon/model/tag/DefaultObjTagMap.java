@@ -29,6 +29,7 @@
 package org.mastodon.model.tag;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -36,6 +37,7 @@ import java.util.List;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import org.mastodon.RefPool;
 import org.mastodon.labels.LabelSet;
 import org.mastodon.labels.LabelSets;
 import org.mastodon.model.tag.TagSetStructure.Tag;
@@ -55,6 +57,15 @@ import org.mastodon.properties.ObjPropertyMap;
  * Tags must map to {@link Integer} IDs that are globally unique across all tag
  * sets. {@code DefaultObjTagMap} is backed a {@link LabelSets} property of the
  * objects (which can be shared among all {@code DefaultObjTagMap}s).
+ * <p>
+ * When created with a {@link RefPool}, the tag of each object is also cached
+ * in an {@code int} array indexed by object id, so that {@link #get(Object)}
+ * costs one array read once the tag has been looked up in the
+ * {@link LabelSets}. The cache is updated by {@link #set(Object, Object)} and
+ * {@link #remove(Object)}. Changes made directly to the {@link LabelSets},
+ * and objects created with a recycled id, must be reported with
+ * {@link #invalidate(Object)} or {@link #invalidateAll()}, unless the cache
+ * is {@link #suspendCache() suspended}.
  *
  * @param <O>
  *            the type of object to tag.
@@ -78,6 +89,38 @@ public class DefaultObjTagMap< O, T > implements ObjTagMap< O, T >
 
 	private final HashMap< Integer, List< Integer > > idToOtherIds = new HashMap<>();
 
+	private static final int UNKNOWN = -2;
+
+	private static final int NO_TAG = -1;
+
+	/**
+	 * The pool of the tagged objects, or {@code null} if tags are not cached.
+	 */
+	private final RefPool< O > pool;
+
+	/**
+	 * Tags, in the order of {@link #ids}.
+	 */
+	private final ArrayList< T > tagList = new ArrayList<>();
+
+	/**
+	 * Index in {@link #tagList} of the tag of each object id, {@link #NO_TAG}
+	 * for none, {@link #UNKNOWN} if not looked up yet. Ids beyond the end of
+	 * the array are unknown.
+	 */
+	private volatile int[] tagIndices = new int[ 0 ];
+
+	/**
+	 * Incremented by every invalidation, so that a lookup racing with a change
+	 * does not store a stale tag.
+	 */
+	private volatile int modCount;
+
+	/**
+	 * Whether looked-up tags are not stored, see {@link #suspendCache()}.
+	 */
+	private volatile boolean suspended;
+
 	/**
 	 * Create a tag map with the given set of mutually exclusive {@code tags},
 	 * mapped to IDs by the specified {@code tagToIdFunction} and backed by the
@@ -94,8 +137,34 @@ public class DefaultObjTagMap< O, T > implements ObjTagMap< O, T >
 			final LabelSets< O, Integer > idLabelSets,
 			final Collection< T > tags,
 			final Function< T, Integer > tagToIdFunction )
+	{
+		this( idLabelSets, tags, tagToIdFunction, null );
+	}
+
+	/**
+	 * Create a tag map with the given set of mutually exclusive {@code tags},
+	 * mapped to IDs by the specified {@code tagToIdFunction} and backed by the
+	 * specified {@code idLabelSets} property. The tags of objects are cached by
+	 * object id.
+	 *
+	 * @param idLabelSets
+	 *            the backing {@code LabelSets} property.
+	 * @param tags
+	 *            set of mutually exclusive {@code tags}.
+	 * @param tagToIdFunction
+	 *            maps tags to integer IDs (globally unique across all tag sets).
+	 * @param pool
+	 *            the pool of the tagged objects, or {@code null} to not cache
+	 *            tags.
+	 */
+	public DefaultObjTagMap(
+			final LabelSets< O, Integer > idLabelSets,
+			final Collection< T > tags,
+			final Function< T, Integer > tagToIdFunction,
+			final RefPool< O > pool )
 	{
 		this.idLabelSets = idLabelSets;
+		this.pool = pool;
 		this.tagToIdFunction = tagToIdFunction;
 		update( tags );
 	}
@@ -115,6 +184,7 @@ public class DefaultObjTagMap< O, T > implements ObjTagMap< O, T >
 			labels.removeAll( idToOtherIds.get( id ) );
 			labels.add( id );
 			idLabelSets.releaseRef( ref );
+			invalidate( object );
 		}
 	}
 
@@ -124,19 +194,99 @@ public class DefaultObjTagMap< O, T > implements ObjTagMap< O, T >
 		final LabelSet< O, Integer > ref = idLabelSets.createRef();
 		idLabelSets.getLabels( object, ref ).removeAll( ids );
 		idLabelSets.releaseRef( ref );
+		invalidate( object );
 	}
 
 	@Override
 	public T get( final O object )
+	{
+		if ( pool == null )
+			return tagAt( lookUp( object ) );
+
+		final int id = pool.getId( object );
+		final int[] indices = tagIndices;
+		final int index = id < indices.length ? indices[ id ] : UNKNOWN;
+		if ( index != UNKNOWN )
+			return tagAt( index );
+
+		final int expectedModCount = modCount;
+		final int found = lookUp( object );
+		synchronized ( this )
+		{
+			if ( modCount == expectedModCount && !suspended )
+			{
+				ensureCapacity( id + 1 );
+				tagIndices[ id ] = found;
+			}
+		}
+		return tagAt( found );
+	}
+
+	/**
+	 * Forgets the cached tag of the specified object. Must be called when the
+	 * tag of the object was changed without going through this map, or when a
+	 * new object was created.
+	 *
+	 * @param object
+	 *            the object.
+	 */
+	public void invalidate( final O object )
+	{
+		if ( pool == null )
+			return;
+		final int id = pool.getId( object );
+		synchronized ( this )
+		{
+			modCount++;
+			if ( id < tagIndices.length )
+				tagIndices[ id ] = UNKNOWN;
+		}
+	}
+
+	/**
+	 * Forgets the cached tags of all objects.
+	 */
+	public synchronized void invalidateAll()
+	{
+		modCount++;
+		Arrays.fill( tagIndices, UNKNOWN );
+	}
+
+	/**
+	 * Forgets the cached tags of all objects, and stops caching tags until
+	 * {@link #resumeCache()}. Meanwhile, {@link #get(Object)} looks tags up in
+	 * the {@link LabelSets}, and objects created with a recycled id need not
+	 * be reported.
+	 */
+	public synchronized void suspendCache()
+	{
+		suspended = true;
+		invalidateAll();
+	}
+
+	/**
+	 * Resumes caching tags after {@link #suspendCache()}.
+	 */
+	public synchronized void resumeCache()
+	{
+		suspended = false;
+	}
+
+	/**
+	 * Looks up the tag of an object in the backing {@link LabelSets}.
+	 *
+	 * @return the index of the tag in {@link #tagList}, or {@link #NO_TAG}.
+	 */
+	private int lookUp( final O object )
 	{
 		final LabelSet< O, Integer > ref = idLabelSets.createRef();
 		try
 		{
 			final LabelSet< O, Integer > labels = idLabelSets.getLabels( object, ref );
-			for ( final Integer id : ids )
-				if ( labels.contains( id ) )
-					return idToTag.get( id );
-			return null;
+			for ( int i = 0; i < ids.size(); i++ )
+				if ( labels.contains( ids.get( i ) ) )
+					return i;
+			return NO_TAG;
 		}
 		finally
 		{
@@ -144,6 +294,21 @@ public class DefaultObjTagMap< O, T > implements ObjTagMap< O, T >
 		}
 	}
 
+	private T tagAt( final int index )
+	{
+		return index < 0 ? null : tagList.get( index );
+	}
+
+	private void ensureCapacity( final int capacity )
+	{
+		if ( capacity <= tagIndices.length )
+			return;
+		final int oldLength = tagIndices.length;
+		final int newLength = Math.max( capacity, oldLength + ( oldLength >> 1 ) + 16 );
+		tagIndices = Arrays.copyOf( tagIndices, newLength );
+		Arrays.fill( tagIndices, oldLength, newLength, UNKNOWN );
+	}
+
 	@Override
 	public Collection< O > getTaggedWith( final Tag tag )
 	{
@@ -159,6 +324,7 @@ public class DefaultObjTagMap< O, T > implements ObjTagMap< O, T >
 	private void update( final Collection< T > tags )
 	{
 		ids.clear();
+		tagList.clear();
 		tagToId.clear();
 		idToTag.clear();
 		idToOtherIds.clear();
@@ -168,6 +334,7 @@ public class DefaultObjTagMap< O, T > implements ObjTagMap< O, T >
 			if ( ids.contains( id ) )
 				throw new IllegalArgumentException( "inconsistent tag set: ids are not unique" );
 			ids.add( id );
+			tagList.add( tag );
 			tagToId.put( tag, id );
 			idToTag.put( id, tag );
 		}
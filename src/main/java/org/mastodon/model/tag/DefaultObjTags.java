@@ -32,6 +32,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.mastodon.RefPool;
 import org.mastodon.labels.LabelSets;
 import org.mastodon.model.tag.TagSetStructure.Tag;
 import org.mastodon.model.tag.TagSetStructure.TagSet;
@@ -49,15 +50,44 @@ public class DefaultObjTags< O > implements ObjTags< O >
 {
 	private final LabelSets< O, Integer > idLabelSets;
 
+	private final RefPool< O > pool;
+
 	private final Map< Tag, TagSet > tagToTagSet = new HashMap<>();
 
 	private final Map< TagSet, DefaultObjTagMap< O, Tag > > tagSetToTagMap = new HashMap<>();
 
+	/**
+	 * Whether the caches of the tag maps are suspended, see
+	 * {@link #suspendCaches()}.
+	 */
+	private boolean suspended;
+
 	public DefaultObjTags(
 			final LabelSets< O, Integer > idLabelSets,
 			final TagSetStructure tagSetStructure )
+	{
+		this( idLabelSets, tagSetStructure, null );
+	}
+
+	/**
+	 * Creates tags for the objects of the specified pool. The tag of each
+	 * object is cached by object id, see {@link DefaultObjTagMap}.
+	 *
+	 * @param idLabelSets
+	 *            the backing {@code LabelSets} property.
+	 * @param tagSetStructure
+	 *            the tag-sets.
+	 * @param pool
+	 *            the pool of the tagged objects, or {@code null} to not cache
+	 *            tags.
+	 */
+	public DefaultObjTags(
+			final LabelSets< O, Integer > idLabelSets,
+			final TagSetStructure tagSetStructure,
+			final RefPool< O > pool )
 	{
 		this.idLabelSets = idLabelSets;
+		this.pool = pool;
 		update( tagSetStructure );
 	}
 
@@ -97,9 +127,59 @@ public class DefaultObjTags< O > implements ObjTags< O >
 		tagSetToTagMap.clear();
 		for ( final TagSet tagSet : tagSetStructure.getTagSets() )
 		{
-			tagSetToTagMap.put( tagSet, new DefaultObjTagMap<>( idLabelSets, tagSet.getTags(), Tag::id ) );
+			final DefaultObjTagMap< O, Tag > tagMap = new DefaultObjTagMap<>( idLabelSets, tagSet.getTags(), Tag::id, pool );
+			if ( suspended )
+				tagMap.suspendCache();
+			tagSetToTagMap.put( tagSet, tagMap );
 			for ( final Tag tag : tagSet.getTags() )
 				tagToTagSet.put( tag, tagSet );
 		}
 	}
+
+	/**
+	 * Forgets the cached tags of the specified object, in all tag-sets.
+	 *
+	 * @param object
+	 *            the object.
+	 */
+	void invalidate( final O object )
+	{
+		for ( final DefaultObjTagMap< O, Tag > tagMap : tagSetToTagMap.values() )
+			tagMap.invalidate( object );
+	}
+
+	/**
+	 * Forgets the cached tags of all objects, in all tag-sets.
+	 */
+	void invalidateAll()
+	{
+		for ( final DefaultObjTagMap< O, Tag > tagMap : tagSetToTagMap.values() )
+			tagMap.invalidateAll();
+	}
+
+	/**
+	 * Suspends the caches of all tag-sets, see
+	 * {@link DefaultObjTagMap#suspendCache()}.
+	 */
+	void suspendCaches()
+	{
+		suspended = true;
+		for ( final DefaultObjTagMap< O, Tag > tagMap : tagSetToTagMap.values() )
+			tagMap.suspendCache();
+	}
+
+	/**
+	 * Resumes the caches of all tag-sets after {@link #suspendCaches()}.
+	 */
+	void resumeCaches()
+	{
+		suspended = false;
+		for ( final DefaultObjTagMap< O, Tag > tagMap : tagSetToTagMap.values() )
+			tagMap.resumeCache();
+	}
+
+	boolean isSuspended()
+	{
+		return suspended;
+	}
 }
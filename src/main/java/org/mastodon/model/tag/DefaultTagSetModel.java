@@ -28,6 +28,8 @@
  */
 package org.mastodon.model.tag;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -35,12 +37,16 @@ import org.mastodon.RefPool;
 import org.mastodon.collection.RefCollections;
 import org.mastodon.collection.RefSet;
 import org.mastodon.graph.Edge;
+import org.mastodon.graph.GraphListener;
+import org.mastodon.graph.ListenableReadOnlyGraph;
 import org.mastodon.graph.ReadOnlyGraph;
 import org.mastodon.graph.Vertex;
 import org.mastodon.labels.LabelSet;
 import org.mastodon.labels.LabelSets;
+import org.mastodon.model.GraphEditListener;
 import org.mastodon.model.tag.TagSetStructure.Tag;
 import org.mastodon.model.tag.TagSetStructure.TagSet;
+import org.mastodon.properties.IntPropertyMap;
 import org.mastodon.undo.Recorder;
 import org.mastodon.undo.UndoableEdit;
 import org.scijava.listeners.Listeners;
@@ -60,7 +66,7 @@ import org.scijava.listeners.Listeners;
  * @author Jean-Yves Tinevez
  * @author Tobias Pietzsch
  */
-public class DefaultTagSetModel< V extends Vertex< E >, E extends Edge< V > > implements TagSetModel< V, E >
+public class DefaultTagSetModel< V extends Vertex< E >, E extends Edge< V > > implements TagSetModel< V, E >, GraphEditListener
 {
 	private final ReadOnlyGraph< V, E > graph;
 
@@ -78,23 +84,75 @@ public class DefaultTagSetModel< V extends Vertex< E >, E extends Edge< V > > im
 
 	private Recorder< SetTagSetStructureUndoableEdit > editRecorder;
 
+	private Recorder< SetTagsUndoableEdit > tagsEditRecorder;
+
+	/**
+	 * The pools of vertices and edges, and the keys identifying their objects
+	 * across undo and redo, or {@code null} if the graph is not a
+	 * {@link ListenableReadOnlyGraph}, in which case
+	 * {@link #setTags(TagSet, Tag, Collection, Collection)} writes the labels
+	 * object by object.
+	 */
+	private final RefPool< V > vertexPool;
+
+	private final RefPool< E > edgePool;
+
+	private final UndoKeys< V > vertexUndoKeys;
+
+	private final UndoKeys< E > edgeUndoKeys;
+
 	private boolean emitEvents;
 
+	/**
+	 * Whether a {@link org.mastodon.model.GraphEdit GraphEdit} is open. The
+	 * first vertex or edge added during an edit suspends the tag caches until
+	 * the edit ends, instead of invalidating the cache of each new object.
+	 */
+	private boolean editing;
+
 	public DefaultTagSetModel( final ReadOnlyGraph< V, E > graph )
 	{
 		this( graph, RefCollections.tryGetRefPool( graph.vertices() ), RefCollections.tryGetRefPool( graph.edges() ) );
 	}
 
+	/**
+	 * Creates a tag-set model for the specified graph. If the graph is a
+	 * {@link ListenableReadOnlyGraph}, the tags of vertices and edges are
+	 * cached by id (see {@link DefaultObjTagMap}). The cache of an object is
+	 * invalidated when it is added to the graph, and the whole cache when the
+	 * graph is rebuilt. Edits of the tag storage that do not go through this
+	 * model, e.g. undo and redo of graph edits, must be followed by a call to
+	 * {@link #invalidateTagCaches()}.
+	 *
+	 * @param graph
+	 *            the graph.
+	 * @param vertexPool
+	 *            the pool of vertices.
+	 * @param edgePool
+	 *            the pool of edges.
+	 */
+	@SuppressWarnings( "unchecked" )
 	public DefaultTagSetModel( final ReadOnlyGraph< V, E > graph, final RefPool< V > vertexPool, final RefPool< E > edgePool )
 	{
 		this.graph = graph;
 		this.tagSetStructure = new TagSetStructure();
 		vertexIdLabelSets = new LabelSets<>( vertexPool );
 		edgeIdLabelSets = new LabelSets<>( edgePool );
-		vertexTags = new DefaultObjTags<>( vertexIdLabelSets, tagSetStructure );
-		edgeTags = new DefaultObjTags<>( edgeIdLabelSets, tagSetStructure );
+		final boolean cacheTags = graph instanceof ListenableReadOnlyGraph;
+		this.vertexPool = cacheTags ? vertexPool : null;
+		this.edgePool = cacheTags ? edgePool : null;
+		vertexUndoKeys = cacheTags ? new UndoKeys<>( vertexPool, graph.vertices() ) : null;
+		edgeUndoKeys = cacheTags ? new UndoKeys<>( edgePool, graph.edges() ) : null;
+		vertexTags = new DefaultObjTags<>( vertexIdLabelSets, tagSetStructure, cacheTags ? vertexPool : null );
+		edgeTags = new DefaultObjTags<>( edgeIdLabelSets, tagSetStructure, cacheTags ? edgePool : null );
 		listeners = new Listeners.SynchronizedList<>();
 		emitEvents = true;
+
+		if ( cacheTags )
+		{
+			final ListenableReadOnlyGraph< V, E > listenableGraph = ( ListenableReadOnlyGraph< V, E > ) graph;
+			listenableGraph.addGraphListener( new TagGraphListener() );
+		}
 	}
 
 	@Override
@@ -161,6 +219,117 @@ public class DefaultTagSetModel< V extends Vertex< E >, E extends Edge< V > > im
 		this.editRecorder = editRecorder;
 	}
 
+	public void setTagsUndoRecorder( final Recorder< SetTagsUndoableEdit > tagsEditRecorder )
+	{
+		this.tagsEditRecorder = tagsEditRecorder;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The labels of all objects are written in one pass, skipping objects that
+	 * already have the tag. The tag caches are then invalidated and listeners
+	 * notified once. If the graph is a {@link ListenableReadOnlyGraph}, the
+	 * change is recorded for undo as a single {@link SetTagsUndoableEdit}
+	 * instead of one edit per object.
+	 */
+	@Override
+	public void setTags( final TagSet tagSet, final Tag tag, final Collection< V > vertices, final Collection< E > edges )
+	{
+		final List< Integer > tagSetLabels = tagSet.getTags().stream().map( Tag::id ).collect( Collectors.toList() );
+		if ( vertexUndoKeys != null && edgeUndoKeys != null )
+		{
+			final int label = tag == null ? TagAssignment.NO_LABEL : tag.id();
+			final SetTagsUndoableEdit edit = new SetTagsUndoableEdit(
+					this,
+					new TagAssignment<>( vertexIdLabelSets, vertexPool, vertexUndoKeys, vertices, tagSetLabels, label ),
+					new TagAssignment<>( edgeIdLabelSets, edgePool, edgeUndoKeys, edges, tagSetLabels, label ) );
+			if ( edit.isEmpty() )
+				return;
+
+			edit.redo();
+			if ( tagsEditRecorder != null )
+				tagsEditRecorder.record( edit );
+			return;
+		}
+
+		final Integer label = tag == null ? null : tag.id();
+		final boolean vchanged = setLabels( vertexIdLabelSets, vertices, tagSetLabels, label );
+		final boolean echanged = setLabels( edgeIdLabelSets, edges, tagSetLabels, label );
+		if ( vchanged || echanged )
+			notifyTagsChanged();
+	}
+
+	/**
+	 * Removes the labels of a tag-set from the specified objects, and adds the
+	 * specified label if it is not {@code null}.
+	 *
+	 * @return {@code true} if the labels of at least one object changed.
+	 */
+	private static < O > boolean setLabels( final LabelSets< O, Integer > labelSets, final Collection< O > objs, final List< Integer > tagSetLabels, final Integer label )
+	{
+		boolean changed = false;
+		final LabelSet< O, Integer > ref = labelSets.createRef();
+		for ( final O o : objs )
+		{
+			final LabelSet< O, Integer > labelSet = labelSets.getLabels( o, ref );
+			if ( hasOnly( labelSet, tagSetLabels, label ) )
+				continue;
+			labelSet.removeAll( tagSetLabels );
+			if ( label != null )
+				labelSet.add( label );
+			changed = true;
+		}
+		labelSets.releaseRef( ref );
+		return changed;
+	}
+
+	/**
+	 * Returns {@code true} if the only label of the tag-set in the specified
+	 * label set is {@code label}, or if it has no label of the tag-set and
+	 * {@code label} is {@code null}.
+	 */
+	private static boolean hasOnly( final LabelSet< ?, Integer > labelSet, final List< Integer > tagSetLabels, final Integer label )
+	{
+		for ( final Integer l : tagSetLabels )
+			if ( labelSet.contains( l ) != l.equals( label ) )
+				return false;
+		return true;
+	}
+
+	/**
+	 * Forgets the cached tags of all vertices and edges. Must be called after
+	 * the backing {@code LabelSets} were modified without going through this
+	 * model, for instance when the graph undo recorder restores them, or when
+	 * they are read from a file.
+	 */
+	public void invalidateTagCaches()
+	{
+		vertexTags.invalidateAll();
+		edgeTags.invalidateAll();
+	}
+
+	private void notifyTagsChanged()
+	{
+		invalidateTagCaches();
+		if ( emitEvents )
+			listeners.list.forEach( TagSetModelListener::tagsChanged );
+	}
+
+	@Override
+	public void editStarted()
+	{
+		editing = true;
+	}
+
+	@Override
+	public void editEnded()
+	{
+		editing = false;
+		vertexTags.resumeCaches();
+		edgeTags.resumeCaches();
+	}
+
 	@Override
 	public Listeners< TagSetModelListener > listeners()
 	{
@@ -186,6 +355,55 @@ public class DefaultTagSetModel< V extends Vertex< E >, E extends Edge< V > > im
 	{
 		vertexIdLabelSets.clear();
 		edgeIdLabelSets.clear();
+		invalidateTagCaches();
+	}
+
+	/**
+	 * Forgets the cached tags of new vertices and edges, which may reuse the
+	 * id of a removed one. During an edit, the caches are suspended instead.
+	 * Also keeps the {@link UndoKeys} from resolving keys to the ids of
+	 * removed objects.
+	 */
+	private class TagGraphListener implements GraphListener< V, E >
+	{
+		@Override
+		public void graphRebuilt()
+		{
+			vertexTags.invalidateAll();
+			edgeTags.invalidateAll();
+			vertexUndoKeys.clear();
+			edgeUndoKeys.clear();
+		}
+
+		@Override
+		public void vertexAdded( final V vertex )
+		{
+			if ( !editing )
+				vertexTags.invalidate( vertex );
+			else if ( !vertexTags.isSuspended() )
+				vertexTags.suspendCaches();
+		}
+
+		@Override
+		public void vertexRemoved( final V vertex )
+		{
+			vertexUndoKeys.removed( vertex );
+		}
+
+		@Override
+		public void edgeAdded( final E edge )
+		{
+			if ( !editing )
+				edgeTags.invalidate( edge );
+			else if ( !edgeTags.isSuspended() )
+				edgeTags.suspendCaches();
+		}
+
+		@Override
+		public void edgeRemoved( final E edge )
+		{
+			edgeUndoKeys.removed( edge );
+		}
 	}
 
 	/**
@@ -216,6 +434,26 @@ public class DefaultTagSetModel< V extends Vertex< E >, E extends Edge< V > > im
 			return tagSetModel.edgeIdLabelSets;
 		}
 
+		/**
+		 * Returns the keys identifying vertices across undo and redo of
+		 * {@link SetTagsUndoableEdit}s, to be recorded with the other undoable
+		 * vertex properties. {@code null} if the graph is not listenable.
+		 */
+		protected IntPropertyMap< V > getVertexUndoKeys()
+		{
+			return tagSetModel.vertexUndoKeys == null ? null : tagSetModel.vertexUndoKeys.property();
+		}
+
+		/**
+		 * Returns the keys identifying edges across undo and redo of
+		 * {@link SetTagsUndoableEdit}s, to be recorded with the other undoable
+		 * edge properties. {@code null} if the graph is not listenable.
+		 */
+		protected IntPropertyMap< E > getEdgeUndoKeys()
+		{
+			return tagSetModel.edgeUndoKeys == null ? null : tagSetModel.edgeUndoKeys.property();
+		}
+
 		protected void updateObjTags()
 		{
 			tagSetModel.vertexTags.update( tagSetModel.tagSetStructure );
@@ -259,6 +497,48 @@ public class DefaultTagSetModel< V extends Vertex< E >, E extends Edge< V > > im
 		}
 	}
 
+	/**
+	 * Undoable edit assigning one tag, or no tag, of a tag-set to many
+	 * vertices and edges. Stores the keys of the objects and their previous
+	 * tags, see {@link TagAssignment}.
+	 */
+	public static class SetTagsUndoableEdit implements UndoableEdit
+	{
+		private final DefaultTagSetModel< ?, ? > tagSetModel;
+
+		private final TagAssignment< ? > vertexAssignment;
+
+		private final TagAssignment< ? > edgeAssignment;
+
+		SetTagsUndoableEdit( final DefaultTagSetModel< ?, ? > tagSetModel, final TagAssignment< ? > vertexAssignment, final TagAssignment< ? > edgeAssignment )
+		{
+			this.tagSetModel = tagSetModel;
+			this.vertexAssignment = vertexAssignment;
+			this.edgeAssignment = edgeAssignment;
+		}
+
+		boolean isEmpty()
+		{
+			return vertexAssignment.size() == 0 && edgeAssignment.size() == 0;
+		}
+
+		@Override
+		public void undo()
+		{
+			vertexAssignment.revert();
+			edgeAssignment.revert();
+			tagSetModel.notifyTagsChanged();
+		}
+
+		@Override
+		public void redo()
+		{
+			vertexAssignment.apply();
+			edgeAssignment.apply();
+			tagSetModel.notifyTagsChanged();
+		}
+	}
+
 	@Override
 	public String toString()
 	{
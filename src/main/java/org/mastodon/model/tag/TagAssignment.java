@@ -0,0 +1,186 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2021 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.model.tag;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.mastodon.RefPool;
+import org.mastodon.labels.LabelSet;
+import org.mastodon.labels.LabelSets;
+
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * The assignment of one tag (or no tag) of a tag-set to many objects, with
+ * the tags the objects had before, so that the assignment can be undone and
+ * redone.
+ * <p>
+ * Objects are recorded by their {@link UndoKeys} key rather than by pool id,
+ * so that objects removed and restored by undo in the meantime are found
+ * again. Objects that already have the tag are not recorded.
+ * <p>
+ * Labels are written with the listeners of the {@link LabelSets} paused, so
+ * that the change is not recorded object by object for undo.
+ *
+ * @param <O>
+ *            the type of objects.
+ */
+final class TagAssignment< O >
+{
+	static final int NO_LABEL = -1;
+
+	private final LabelSets< O, Integer > labelSets;
+
+	private final RefPool< O > pool;
+
+	private final UndoKeys< O > undoKeys;
+
+	/**
+	 * The label ids of all the tags of the tag-set.
+	 */
+	private final List< Integer > tagSetLabels;
+
+	/**
+	 * The label id of the assigned tag, or {@link #NO_LABEL}.
+	 */
+	private final int label;
+
+	private final int[] keys;
+
+	/**
+	 * The label id of the tag of each object before the assignment, or
+	 * {@link #NO_LABEL}.
+	 */
+	private final int[] previousLabels;
+
+	/**
+	 * Records the current tags of the specified objects in a new assignment.
+	 * The assignment itself is not performed until {@link #apply()} is called.
+	 */
+	TagAssignment(
+			final LabelSets< O, Integer > labelSets,
+			final RefPool< O > pool,
+			final UndoKeys< O > undoKeys,
+			final Collection< O > objs,
+			final List< Integer > tagSetLabels,
+			final int label )
+	{
+		this.labelSets = labelSets;
+		this.pool = pool;
+		this.undoKeys = undoKeys;
+		this.tagSetLabels = tagSetLabels;
+		this.label = label;
+
+		final TIntArrayList keyList = new TIntArrayList( objs.size() );
+		final TIntArrayList previousList = new TIntArrayList( objs.size() );
+		final LabelSet< O, Integer > ref = labelSets.createRef();
+		for ( final O o : objs )
+		{
+			final LabelSet< O, Integer > labelSet = labelSets.getLabels( o, ref );
+			final int previous = labelOf( labelSet );
+			if ( previous == label && hasAtMostOne( labelSet ) )
+				continue;
+			keyList.add( undoKeys.keyOf( o ) );
+			previousList.add( previous );
+		}
+		labelSets.releaseRef( ref );
+
+		this.keys = keyList.toArray();
+		this.previousLabels = previousList.toArray();
+	}
+
+	/**
+	 * Returns the number of objects in this assignment.
+	 */
+	int size()
+	{
+		return keys.length;
+	}
+
+	/**
+	 * Assigns the tag to the objects.
+	 */
+	void apply()
+	{
+		write( null );
+	}
+
+	/**
+	 * Restores the tags the objects had before the assignment.
+	 */
+	void revert()
+	{
+		write( previousLabels );
+	}
+
+	private void write( final int[] labels )
+	{
+		final O ref = pool.createRef();
+		final LabelSet< O, Integer > lref = labelSets.createRef();
+		labelSets.pauseListeners();
+		try
+		{
+			for ( int i = 0; i < keys.length; i++ )
+			{
+				final O o = undoKeys.getObject( keys[ i ], ref );
+				if ( o == null )
+					continue;
+				final LabelSet< O, Integer > labelSet = labelSets.getLabels( o, lref );
+				labelSet.removeAll( tagSetLabels );
+				final int l = labels == null ? label : labels[ i ];
+				if ( l != NO_LABEL )
+					labelSet.add( l );
+			}
+		}
+		finally
+		{
+			labelSets.resumeListeners();
+			labelSets.releaseRef( lref );
+			pool.releaseRef( ref );
+		}
+	}
+
+	private int labelOf( final LabelSet< O, Integer > labelSet )
+	{
+		for ( final Integer l : tagSetLabels )
+			if ( labelSet.contains( l ) )
+				return l;
+		return NO_LABEL;
+	}
+
+	private boolean hasAtMostOne( final LabelSet< O, Integer > labelSet )
+	{
+		int n = 0;
+		for ( final Integer l : tagSetLabels )
+			if ( labelSet.contains( l ) )
+				n++;
+		return n <= 1;
+	}
+}
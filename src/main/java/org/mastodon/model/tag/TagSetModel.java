@@ -28,6 +28,10 @@
  */
 package org.mastodon.model.tag;
 
+import java.util.Collection;
+
+import org.mastodon.model.tag.TagSetStructure.Tag;
+import org.mastodon.model.tag.TagSetStructure.TagSet;
 import org.scijava.listeners.Listeners;
 
 /**
@@ -57,9 +61,38 @@ public interface TagSetModel< V, E >
 
 	void setTagSetStructure( final TagSetStructure tss );
 
+	/**
+	 * Assigns the specified tag to all the specified vertices and edges, or
+	 * removes their tag in the specified tag-set if {@code tag} is
+	 * {@code null}.
+	 * <p>
+	 * Equivalent to calling {@link ObjTagMap#set(Object, Object)} for each
+	 * object, but implementations may apply the change in bulk, record it as a
+	 * single undoable edit, and notify {@link TagSetModelListener#tagsChanged()}
+	 * once.
+	 *
+	 * @param tagSet
+	 *            the tag-set.
+	 * @param tag
+	 *            the tag to assign, from {@code tagSet}, or {@code null}.
+	 * @param vertices
+	 *            the vertices to tag.
+	 * @param edges
+	 *            the edges to tag.
+	 */
+	void setTags( TagSet tagSet, Tag tag, Collection< V > vertices, Collection< E > edges );
+
 	interface TagSetModelListener
 	{
 		void tagSetStructureChanged();
+
+		/**
+		 * Notifies that the tags of many objects were changed at once, by
+		 * {@link TagSetModel#setTags(TagSet, Tag, Collection, Collection)} or
+		 * by undoing or redoing it.
+		 */
+		default void tagsChanged()
+		{}
 	}
 
 	Listeners< TagSetModelListener > listeners();
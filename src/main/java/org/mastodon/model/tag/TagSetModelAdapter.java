@@ -28,10 +28,15 @@
  */
 package org.mastodon.model.tag;
 
+import java.util.Collection;
+
+import org.mastodon.adapter.CollectionAdapterReverse;
 import org.mastodon.adapter.ForwardedListeners;
 import org.mastodon.adapter.RefBimap;
 import org.mastodon.graph.Edge;
 import org.mastodon.graph.Vertex;
+import org.mastodon.model.tag.TagSetStructure.Tag;
+import org.mastodon.model.tag.TagSetStructure.TagSet;
 import org.scijava.listeners.Listeners;
 
 /**
@@ -58,6 +63,10 @@ public class TagSetModelAdapter< V extends Vertex< E >, E extends Edge< V >, WV
 
 	private final ObjTags< WE > edgeTags;
 
+	private final RefBimap< V, WV > vertexMap;
+
+	private final RefBimap< E, WE > edgeMap;
+
 	private final ForwardedListeners< TagSetModelListener > listeners;
 
 	public TagSetModelAdapter(
@@ -66,6 +75,8 @@ public class TagSetModelAdapter< V extends Vertex< E >, E extends Edge< V >, WV
 			final RefBimap< E, WE > edgeMap )
 	{
 		this.tagSetModel = tagSetModel;
+		this.vertexMap = vertexMap;
+		this.edgeMap = edgeMap;
 		vertexTags = new ObjTagsAdapter<>( tagSetModel.getVertexTags(), vertexMap );
 		edgeTags = new ObjTagsAdapter<>( tagSetModel.getEdgeTags(), edgeMap );
 		this.listeners = new ForwardedListeners.List<>( tagSetModel.listeners() );
@@ -95,6 +106,14 @@ public class TagSetModelAdapter< V extends Vertex< E >, E extends Edge< V >, WV
 		tagSetModel.setTagSetStructure( tss );
 	}
 
+	@Override
+	public void setTags( final TagSet tagSet, final Tag tag, final Collection< WV > vertices, final Collection< WE > edges )
+	{
+		tagSetModel.setTags( tagSet, tag,
+				new CollectionAdapterReverse<>( vertices, vertexMap ),
+				new CollectionAdapterReverse<>( edges, edgeMap ) );
+	}
+
 	@Override
 	public Listeners< TagSetModelListener > listeners()
 	{
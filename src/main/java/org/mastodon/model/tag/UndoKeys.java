@@ -0,0 +1,162 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2021 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.model.tag;
+
+import java.util.Collection;
+
+import org.mastodon.RefPool;
+import org.mastodon.properties.IntPropertyMap;
+
+import gnu.trove.map.hash.TIntIntHashMap;
+
+/**
+ * Persistent keys identifying objects across undo and redo.
+ * <p>
+ * The pool id of an object is not stable: when an object is removed and
+ * restored by undo, it is re-created with a different id. A key is stored in
+ * an {@link IntPropertyMap}. When this map is registered as an undoable
+ * property of the graph undo recorder, the key of a removed object is saved
+ * with its other properties and restored with the object. Keys are assigned
+ * with the listeners of the map paused, so that assigning a key is not itself
+ * recorded for undo.
+ *
+ * @param <O>
+ *            the type of objects.
+ */
+final class UndoKeys< O >
+{
+	static final int NO_KEY = -1;
+
+	private final RefPool< O > pool;
+
+	private final Collection< O > objs;
+
+	private final IntPropertyMap< O > keys;
+
+	/**
+	 * Maps keys to the pool id of the object that currently holds it. Entries
+	 * are removed when the object is removed. Objects restored by undo are
+	 * added back by {@link #getObject(int, Object)} on demand.
+	 */
+	private final TIntIntHashMap keyToId;
+
+	private int nextKey;
+
+	/**
+	 * Creates keys for the objects of a pool.
+	 *
+	 * @param pool
+	 *            the pool of objects.
+	 * @param objs
+	 *            all the objects of the pool, scanned to find objects restored
+	 *            by undo.
+	 */
+	UndoKeys( final RefPool< O > pool, final Collection< O > objs )
+	{
+		this.pool = pool;
+		this.objs = objs;
+		this.keys = new IntPropertyMap<>( pool, NO_KEY );
+		this.keyToId = new TIntIntHashMap( 10, 0.5f, NO_KEY, -1 );
+	}
+
+	/**
+	 * Returns the property map storing the keys, to be registered with the
+	 * graph undo recorder.
+	 */
+	IntPropertyMap< O > property()
+	{
+		return keys;
+	}
+
+	/**
+	 * Returns the key of the specified object, assigning a new one if it has
+	 * none.
+	 */
+	synchronized int keyOf( final O o )
+	{
+		int key = keys.getInt( o );
+		if ( key == NO_KEY )
+		{
+			key = nextKey++;
+			keys.pauseListeners();
+			try
+			{
+				keys.set( o, key );
+			}
+			finally
+			{
+				keys.resumeListeners();
+			}
+		}
+		keyToId.put( key, pool.getId( o ) );
+		return key;
+	}
+
+	/**
+	 * Returns the object with the specified key, or {@code null} if no object
+	 * has it.
+	 */
+	synchronized O getObject( final int key, final O ref )
+	{
+		int id = keyToId.get( key );
+		if ( id < 0 )
+		{
+			// Objects restored by undo are not indexed yet.
+			for ( final O o : objs )
+			{
+				final int k = keys.getInt( o );
+				if ( k != NO_KEY )
+					keyToId.put( k, pool.getId( o ) );
+			}
+			id = keyToId.get( key );
+			if ( id < 0 )
+				return null;
+		}
+		return pool.getObject( id, ref );
+	}
+
+	/**
+	 * Must be called when an object is removed, so that its id is no longer
+	 * resolved to its key.
+	 */
+	synchronized void removed( final O o )
+	{
+		final int key = keys.getInt( o );
+		if ( key != NO_KEY )
+			keyToId.remove( key );
+	}
+
+	/**
+	 * Must be called when all objects were replaced.
+	 */
+	synchronized void clear()
+	{
+		keyToId.clear();
+	}
+}
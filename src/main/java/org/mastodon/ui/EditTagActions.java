@@ -52,7 +52,6 @@ import org.mastodon.collection.RefSet;
 import org.mastodon.graph.Edge;
 import org.mastodon.graph.Vertex;
 import org.mastodon.model.SelectionModel;
-import org.mastodon.model.tag.ObjTagMap;
 import org.mastodon.model.tag.TagSetModel;
 import org.mastodon.model.tag.TagSetStructure;
 import org.mastodon.model.tag.TagSetStructure.Tag;
@@ -362,12 +361,7 @@ public class EditTagActions< V extends Vertex< E >, E extends Edge< V > >
 		final RefSet< V > vertices = selectionModel.getSelectedVertices();
 		final RefSet< E > edges = selectionModel.getSelectedEdges();
 		for ( final TagSet tagSet : tagModel.getTagSetStructure().getTagSets() )
-		{
-			final ObjTagMap< V, Tag > vertexTags = tagModel.getVertexTags().tags( tagSet );
-			final ObjTagMap< E, Tag > edgeTags = tagModel.getEdgeTags().tags( tagSet );
-			vertices.forEach( v -> vertexTags.set( v, null ) );
-			edges.forEach( e -> edgeTags.set( e, null ) );
-		}
+			tagModel.setTags( tagSet, null, vertices, edges );
 
 		undo.setUndoPoint();
 		done();
@@ -405,10 +399,7 @@ public class EditTagActions< V extends Vertex< E >, E extends Edge< V > >
 
 	private void setTag( final Collection< V > vertices, final Collection< E > edges, final Tag tag )
 	{
-		final ObjTagMap< V, Tag > vertexTags = tagModel.getVertexTags().tags( tagSet );
-		final ObjTagMap< E, Tag > edgeTags = tagModel.getEdgeTags().tags( tagSet );
-		vertices.forEach( v -> vertexTags.set( v, tag ) );
-		edges.forEach( e -> edgeTags.set( e, tag ) );
+		tagModel.setTags( tagSet, tag, vertices, edges );
 	}
 
 	private final static Color BACKGROUND_COLOR = new Color( 255, 255, 255, 230 );
@@ -30,6 +30,7 @@ package org.mastodon.ui;
 
 import java.awt.event.ActionEvent;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
 
 import javax.swing.SwingUtilities;
 
@@ -37,16 +38,15 @@ import org.mastodon.collection.RefCollections;
 import org.mastodon.collection.RefSet;
 import org.mastodon.graph.Edge;
 import org.mastodon.graph.Graph;
-import org.mastodon.graph.GraphChangeNotifier;
 import org.mastodon.graph.Vertex;
 import org.mastodon.graph.algorithm.traversal.DepthFirstSearch;
 import org.mastodon.graph.algorithm.traversal.GraphSearch.SearchDirection;
 import org.mastodon.graph.algorithm.traversal.SearchListener;
+import org.mastodon.model.GraphEdit;
 import org.mastodon.model.SelectionModel;
 import org.mastodon.ui.keymap.CommandDescriptionProvider;
 import org.mastodon.ui.keymap.CommandDescriptions;
 import org.mastodon.ui.keymap.KeyConfigContexts;
-import org.mastodon.undo.UndoPointMarker;
 import org.scijava.plugin.Plugin;
 import org.scijava.ui.behaviour.util.AbstractNamedAction;
 import org.scijava.ui.behaviour.util.Actions;
@@ -121,22 +121,20 @@ public class SelectionActions< V extends Vertex< E >, E extends Edge< V > >
 	 * @param lock
 	 *            a reentrant read/write lock to prevent concurrent modification
 	 *            of the graph.
-	 * @param notify
-	 *            is notified when the graph is changed by these actions.
 	 * @param selection
 	 *            the selection model.
-	 * @param undo
-	 *            used to set undo points after a batch of graph changes completes.
+	 * @param beginEdit
+	 *            begins the {@link GraphEdit} in which the selection is
+	 *            deleted.
 	 */
 	public static < V extends Vertex< E >, E extends Edge< V > > void install(
 			final Actions actions,
 			final Graph< V, E > graph,
 			final ReentrantReadWriteLock lock,
-			final GraphChangeNotifier notify,
 			final SelectionModel< V, E > selection,
-			final UndoPointMarker undo )
+			final Supplier< GraphEdit< V, E > > beginEdit )
 	{
-		final SelectionActions< V, E > sa = new SelectionActions<>( graph, lock, notify, selection, undo );
+		final SelectionActions< V, E > sa = new SelectionActions<>( graph, lock, selection, beginEdit );
 		actions.namedAction( sa.deleteSelectionAction, DELETE_SELECTION_KEYS );
 		actions.namedAction( sa.selectWholeTrackAction, SELECT_WHOLE_TRACK_KEYS );
 		actions.namedAction( sa.selectTrackDownwardAction, SELECT_TRACK_DOWNWARD_KEYS );
@@ -150,11 +148,9 @@ public class SelectionActions< V extends Vertex< E >, E extends Edge< V > >
 
 	private final ReentrantReadWriteLock lock;
 
-	private final GraphChangeNotifier notify;
-
 	private final SelectionModel< V, E > selection;
 
-	private final UndoPointMarker undo;
+	private final Supplier< GraphEdit< V, E > > beginEdit;
 
 	private final DeleteSelectionAction deleteSelectionAction;
 
@@ -173,15 +169,13 @@ public class SelectionActions< V extends Vertex< E >, E extends Edge< V > >
 	private SelectionActions(
 			final Graph< V, E > graph,
 			final ReentrantReadWriteLock lock,
-			final GraphChangeNotifier notify,
 			final SelectionModel< V, E > selection,
-			final UndoPointMarker undo )
+			final Supplier< GraphEdit< V, E > > beginEdit )
 	{
 		this.graph = graph;
 		this.lock = lock;
-		this.notify = notify;
 		this.selection = selection;
-		this.undo = undo;
+		this.beginEdit = beginEdit;
 		deleteSelectionAction = new DeleteSelectionAction( DELETE_SELECTION );
 		selectWholeTrackAction = new TrackSelectionAction( SELECT_WHOLE_TRACK, SearchDirection.UNDIRECTED );
 		selectTrackDownwardAction = new TrackSelectionAction( SELECT_TRACK_DOWNWARD, SearchDirection.DIRECTED );
@@ -209,27 +203,23 @@ public class SelectionActions< V extends Vertex< E >, E extends Edge< V > >
 			if ( selection.isEmpty() )
 				return;
 
-			lock.writeLock().lock();
-			try
+			selection.pauseListeners();
+			try (final GraphEdit< V, E > edit = beginEdit.get())
 			{
 				final RefSet< E > edges = selection.getSelectedEdges();
 				final RefSet< V > vertices = selection.getSelectedVertices();
 
-				selection.pauseListeners();
-
 				for ( final E e : edges )
 					graph.remove( e );
 
 				for ( final V v : vertices )
 					graph.remove( v );
 
-				undo.setUndoPoint();
-				notify.notifyGraphChanged();
-				selection.resumeListeners();
+				edit.commit();
 			}
 			finally
 			{
-				lock.writeLock().unlock();
+				selection.resumeListeners();
 			}
 		}
 	}
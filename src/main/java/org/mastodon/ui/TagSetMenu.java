@@ -41,7 +41,6 @@ import javax.swing.JSeparator;
 import org.mastodon.graph.Edge;
 import org.mastodon.graph.Vertex;
 import org.mastodon.model.SelectionModel;
-import org.mastodon.model.tag.ObjTagMap;
 import org.mastodon.model.tag.TagSetModel;
 import org.mastodon.model.tag.TagSetStructure;
 import org.mastodon.model.tag.TagSetStructure.Tag;
@@ -145,10 +144,7 @@ public class TagSetMenu< V extends Vertex< E >, E extends Edge< V > > implements
 			lock.readLock().lock();
 			try
 			{
-				final ObjTagMap< V, Tag > vertexTags = tagSetModel.getVertexTags().tags( tagSet );
-				final ObjTagMap< E, Tag > edgeTags = tagSetModel.getEdgeTags().tags( tagSet );
-				selectionModel.getSelectedVertices().forEach( v -> vertexTags.set( v, tag ) );
-				selectionModel.getSelectedEdges().forEach( e -> edgeTags.set( e, tag ) );
+				tagSetModel.setTags( tagSet, tag, selectionModel.getSelectedVertices(), selectionModel.getSelectedEdges() );
 			}
 			finally
 			{
@@ -189,10 +185,7 @@ public class TagSetMenu< V extends Vertex< E >, E extends Edge< V > > implements
 			lock.readLock().lock();
 			try
 			{
-				final ObjTagMap< V, Tag > vertexTags = tagSetModel.getVertexTags().tags( tagSet );
-				final ObjTagMap< E, Tag > edgeTags = tagSetModel.getEdgeTags().tags( tagSet );
-				selectionModel.getSelectedVertices().forEach( v -> vertexTags.set( v, null ) );
-				selectionModel.getSelectedEdges().forEach( e -> edgeTags.set( e, null ) );
+				tagSetModel.setTags( tagSet, null, selectionModel.getSelectedVertices(), selectionModel.getSelectedEdges() );
 			}
 			finally
 			{
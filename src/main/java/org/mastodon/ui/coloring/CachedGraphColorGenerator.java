@@ -0,0 +1,204 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2021 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.ui.coloring;
+
+import java.util.Arrays;
+
+import org.mastodon.RefPool;
+import org.mastodon.graph.Edge;
+import org.mastodon.graph.Vertex;
+
+/**
+ * A {@link GraphColorGenerator} that remembers the colors computed by another
+ * generator, so that they are computed once per object instead of once per
+ * object and per repaint.
+ * <p>
+ * Colors are stored in arrays indexed by the pool index of the objects. The
+ * cache has to be told when the colors it holds become stale, with
+ * {@link #invalidateVertex(Vertex)}, {@link #invalidateEdge(Edge)} or
+ * {@link #invalidateAll()}.
+ *
+ * @param <V>
+ *            the type of the vertices.
+ * @param <E>
+ *            the type of the edges.
+ */
+public class CachedGraphColorGenerator< V extends Vertex< E >, E extends Edge< V > > implements GraphColorGenerator< V, E >
+{
+	/**
+	 * Cached colors are stored as the color in the lower 32 bits, with this
+	 * flag set. An entry of 0 means that no color is cached.
+	 */
+	private static final long CACHED = 1L << 32;
+
+	private final GraphColorGenerator< V, E > colorGenerator;
+
+	private final RefPool< V > vertexPool;
+
+	private final RefPool< E > edgePool;
+
+	private volatile long[] vertexColors;
+
+	private volatile long[] edgeColors;
+
+	/**
+	 * Incremented by every invalidation, so that a color computed
+	 * concurrently with an invalidation is not stored.
+	 */
+	private volatile int modCount;
+
+	/**
+	 * Creates a cache for the colors of the specified generator.
+	 *
+	 * @param colorGenerator
+	 *            the generator to cache the colors of.
+	 * @param vertexPool
+	 *            the pool of the vertices, used to index them.
+	 * @param edgePool
+	 *            the pool of the edges, used to index them.
+	 */
+	public CachedGraphColorGenerator(
+			final GraphColorGenerator< V, E > colorGenerator,
+			final RefPool< V > vertexPool,
+			final RefPool< E > edgePool )
+	{
+		this.colorGenerator = colorGenerator;
+		this.vertexPool = vertexPool;
+		this.edgePool = edgePool;
+		this.vertexColors = new long[ 0 ];
+		this.edgeColors = new long[ 0 ];
+	}
+
+	@Override
+	public int color( final V vertex )
+	{
+		final int id = vertexPool.getId( vertex );
+		final long[] cache = vertexColors;
+		if ( id < cache.length && cache[ id ] != 0 )
+			return ( int ) cache[ id ];
+
+		final int mc = modCount;
+		final int color = colorGenerator.color( vertex );
+		store( mc, id, color, true );
+		return color;
+	}
+
+	@Override
+	public int color( final E edge, final V source, final V target )
+	{
+		final int id = edgePool.getId( edge );
+		final long[] cache = edgeColors;
+		if ( id < cache.length && cache[ id ] != 0 )
+			return ( int ) cache[ id ];
+
+		final int mc = modCount;
+		final int color = colorGenerator.color( edge, source, target );
+		store( mc, id, color, false );
+		return color;
+	}
+
+	private synchronized void store( final int mc, final int id, final int color, final boolean vertex )
+	{
+		if ( mc != modCount )
+			return; // invalidated meanwhile, the color might be stale.
+
+		long[] current = vertex ? vertexColors : edgeColors;
+		if ( id >= current.length )
+		{
+			current = Arrays.copyOf( current, Math.max( id + 1, 2 * current.length ) );
+			if ( vertex )
+				vertexColors = current;
+			else
+				edgeColors = current;
+		}
+		current[ id ] = CACHED | ( color & 0xFFFFFFFFL );
+	}
+
+	/**
+	 * Forgets the color of the specified vertex, of its edges, and of the
+	 * vertices at the other end of these edges. The colors of vertices can
+	 * depend on the features of their edges and the other way round.
+	 *
+	 * @param vertex
+	 *            the vertex whose color is stale.
+	 */
+	public synchronized void invalidateVertex( final V vertex )
+	{
+		++modCount;
+		clear( vertexColors, vertexPool.getId( vertex ) );
+		final long[] ecache = edgeColors;
+		final long[] vcache = vertexColors;
+		final V ref = vertexPool.createRef();
+		for ( final E e : vertex.incomingEdges() )
+		{
+			clear( ecache, edgePool.getId( e ) );
+			clear( vcache, vertexPool.getId( e.getSource( ref ) ) );
+		}
+		for ( final E e : vertex.outgoingEdges() )
+		{
+			clear( ecache, edgePool.getId( e ) );
+			clear( vcache, vertexPool.getId( e.getTarget( ref ) ) );
+		}
+		vertexPool.releaseRef( ref );
+	}
+
+	/**
+	 * Forgets the color of the specified edge and of its source and target
+	 * vertices.
+	 *
+	 * @param edge
+	 *            the edge whose color is stale.
+	 */
+	public synchronized void invalidateEdge( final E edge )
+	{
+		++modCount;
+		clear( edgeColors, edgePool.getId( edge ) );
+		final long[] vcache = vertexColors;
+		final V ref = vertexPool.createRef();
+		clear( vcache, vertexPool.getId( edge.getSource( ref ) ) );
+		clear( vcache, vertexPool.getId( edge.getTarget( ref ) ) );
+		vertexPool.releaseRef( ref );
+	}
+
+	/**
+	 * Forgets all cached colors.
+	 */
+	public synchronized void invalidateAll()
+	{
+		++modCount;
+		vertexColors = new long[ 0 ];
+		edgeColors = new long[ 0 ];
+	}
+
+	private static void clear( final long[] cache, final int id )
+	{
+		if ( id < cache.length )
+			cache[ id ] = 0;
+	}
+}
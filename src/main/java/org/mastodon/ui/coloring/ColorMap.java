@@ -92,6 +92,12 @@ public class ColorMap
 
 	private final int nColors;
 
+	/**
+	 * Lookup table of colors sampled from this colormap, built on first use by
+	 * {@link #lookup(double)}.
+	 */
+	private volatile int[] lut;
+
 	final int notApplicableColor;
 
 	String name;
@@ -241,6 +247,58 @@ public class ColorMap
 		return ( a << 24 ) | ( r << 16 ) | ( g << 8 ) | b;
 	}
 
+	/**
+	 * Number of entries in the lookup table used by {@link #lookup(double)}.
+	 */
+	public static final int LUT_SIZE = 1024;
+
+	/**
+	 * Returns the color associated with the specified value in the range from 0
+	 * to 1, read from a lookup table of {@link #LUT_SIZE} colors sampled
+	 * regularly from this colormap.
+	 * <p>
+	 * This is a cheaper approximation of {@link #get(double)}, meant for
+	 * coloring many objects at every repaint. The returned color is the one of
+	 * {@link #get(double)} for the value rounded to the nearest multiple of
+	 * {@code 1 / (LUT_SIZE - 1)}. Values outside the 0 to 1 range and
+	 * {@link Double#NaN} are handled as in {@link #get(double)}.
+	 *
+	 * @param val
+	 *            the value.
+	 * @return a color (as ARGB bytes packed into {@code int}).
+	 */
+	public int lookup( final double val )
+	{
+		if ( Double.isNaN( val ) )
+			return notApplicableColor;
+		final int[] table = getLUT();
+		if ( val <= 0. )
+			return table[ 0 ];
+		if ( val >= 1. )
+			return table[ LUT_SIZE - 1 ];
+		return table[ ( int ) ( val * ( LUT_SIZE - 1 ) + 0.5 ) ];
+	}
+
+	/**
+	 * Returns the lookup table used by {@link #lookup(double)}. Entry
+	 * {@code i} holds the color for the value {@code i / (LUT_SIZE - 1)}. The
+	 * returned array is shared and must not be modified.
+	 *
+	 * @return the lookup table, of length {@link #LUT_SIZE}.
+	 */
+	int[] getLUT()
+	{
+		int[] table = lut;
+		if ( table == null )
+		{
+			table = new int[ LUT_SIZE ];
+			for ( int i = 0; i < LUT_SIZE; i++ )
+				table[ i ] = get( ( double ) i / ( LUT_SIZE - 1 ) );
+			lut = table;
+		}
+		return table;
+	}
+
 	/**
 	 * Returns the jet colormap, that interpolates colors from blue, then green,
 	 * then red.
@@ -55,6 +55,6 @@ public class FeatureColorGenerator< T > implements ColorGenerator< T >
 			return 0;
 
 		final double alpha = ( featureProjection.value( object ) - min ) / ( max - min );
-		return colorMap.get( alpha );
+		return colorMap.lookup( alpha );
 	}
 }
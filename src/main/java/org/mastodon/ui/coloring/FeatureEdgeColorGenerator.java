@@ -57,6 +57,6 @@ public class FeatureEdgeColorGenerator< V extends Vertex< E >, E extends Edge< V
 			return 0;
 
 		final double alpha = ( featureProjection.value( edge ) - min ) / ( max - min );
-		return colorMap.get( alpha );
+		return colorMap.lookup( alpha );
 	}
 }
@@ -29,13 +29,18 @@
 package org.mastodon.ui.coloring.feature;
 
 import java.util.Collection;
-import java.util.DoubleSummaryStatistics;
 
+import org.mastodon.feature.FeatureModel;
 import org.mastodon.feature.FeatureProjection;
+import org.mastodon.feature.FeatureStatistics;
 
 /**
  * A {@link FeatureRangeCalculator} computing statistics over a
  * {@code Collection<O>} of objects of one specific target type {@code O}.
+ * <p>
+ * If a {@link FeatureModel} is specified, statistics are obtained from its
+ * cache, so that repeated requests for the same projection do not iterate
+ * over all objects again.
  *
  * @param <O>
  *            target type.
@@ -46,14 +51,51 @@ public class DefaultFeatureRangeCalculator< O > implements FeatureRangeCalculato
 
 	private final Projections projections;
 
+	private final FeatureModel featureModel;
+
 	public DefaultFeatureRangeCalculator( final Collection< O > objs, final Projections projections )
+	{
+		this( objs, projections, null );
+	}
+
+	public DefaultFeatureRangeCalculator( final Collection< O > objs, final Projections projections, final FeatureModel featureModel )
 	{
 		this.objs = objs;
 		this.projections = projections;
+		this.featureModel = featureModel;
 	}
 
 	@Override
 	public double[] computeMinMax( final FeatureProjectionId id )
+	{
+		final FeatureStatistics stats = getStatistics( id );
+		if ( null == stats )
+			return null;
+
+		return new double[] { stats.getMin(), stats.getMax() };
+	}
+
+	@Override
+	public double[] computeRange( final FeatureProjectionId id, final double lowerQuantile, final double upperQuantile )
+	{
+		final FeatureStatistics stats = getStatistics( id );
+		if ( null == stats )
+			return null;
+
+		return new double[] { stats.getQuantile( lowerQuantile ), stats.getQuantile( upperQuantile ) };
+	}
+
+	/**
+	 * Returns the statistics of the specified projection over the objects of
+	 * this calculator.
+	 *
+	 * @param id
+	 *            the feature projection id.
+	 * @return the statistics, or {@code null} if there are no objects, or if
+	 *         the projection does not exist for them, or if the projection is
+	 *         not set for any of them.
+	 */
+	public FeatureStatistics getStatistics( final FeatureProjectionId id )
 	{
 		if ( objs.isEmpty() )
 			return null;
@@ -65,10 +107,9 @@ public class DefaultFeatureRangeCalculator< O > implements FeatureRangeCalculato
 		if ( null == projection )
 			return null;
 
-		final DoubleSummaryStatistics stats = objs.stream()
-				.filter( projection::isSet )
-				.mapToDouble( projection::value )
-				.summaryStatistics();
-		return new double[] { stats.getMin(), stats.getMax() };
+		final FeatureStatistics stats = featureModel == null
+				? FeatureStatistics.compute( objs, projection )
+				: featureModel.getStatistics( projection, objs );
+		return stats.getCount() == 0 ? null : stats;
 	}
 }
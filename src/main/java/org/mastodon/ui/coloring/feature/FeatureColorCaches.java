@@ -0,0 +1,218 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2021 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.ui.coloring.feature;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.mastodon.RefPool;
+import org.mastodon.feature.FeatureModel.FeatureModelListener;
+import org.mastodon.graph.Edge;
+import org.mastodon.graph.GraphListener;
+import org.mastodon.graph.Vertex;
+import org.mastodon.model.GraphEdit;
+import org.mastodon.model.GraphEditListener;
+import org.mastodon.properties.PropertyChangeListener;
+import org.mastodon.ui.coloring.CachedGraphColorGenerator;
+import org.mastodon.ui.coloring.ColoringModel;
+import org.mastodon.ui.coloring.feature.FeatureColorModeManager.FeatureColorModesListener;
+
+/**
+ * The feature color caches of a graph, one per {@link FeatureColorMode}, so
+ * that all the views that color by the same mode share one cache and the
+ * invalidation work is done once.
+ * <p>
+ * The caches must be told about the changes that make colors stale: this
+ * instance must be registered as a listener to the feature model, to the
+ * feature color mode manager, to the graph, to the graph edits of the model,
+ * and to the vertex properties that features depend on. The caches of all
+ * modes are then invalidated when features are recomputed and when the graph
+ * is rebuilt, and the colors of the changed vertices and edges otherwise.
+ * During a {@link GraphEdit}, changes are only noted, and all caches are
+ * invalidated once when the edit ends. The caches of modes that are removed
+ * from the manager are dropped.
+ *
+ * @param <V>
+ *            the type of vertices.
+ * @param <E>
+ *            the type of edges.
+ */
+public class FeatureColorCaches< V extends Vertex< E >, E extends Edge< V > >
+		implements FeatureModelListener, FeatureColorModesListener, GraphListener< V, E >, GraphEditListener, PropertyChangeListener< V >
+{
+	private final FeatureColorModeManager featureColorModeManager;
+
+	private final RefPool< V > vertexPool;
+
+	private final RefPool< E > edgePool;
+
+	private final Map< FeatureColorMode, CachedGraphColorGenerator< V, E > > caches;
+
+	/**
+	 * Whether a {@link GraphEdit} is open.
+	 */
+	private boolean editing;
+
+	/**
+	 * Whether the graph changed during the current {@link GraphEdit}.
+	 */
+	private boolean changedDuringEdit;
+
+	/**
+	 * Creates an empty set of caches.
+	 *
+	 * @param featureColorModeManager
+	 *            the manager of the feature color modes.
+	 * @param vertexPool
+	 *            the pool of the vertices, used to index them.
+	 * @param edgePool
+	 *            the pool of the edges, used to index them.
+	 */
+	public FeatureColorCaches(
+			final FeatureColorModeManager featureColorModeManager,
+			final RefPool< V > vertexPool,
+			final RefPool< E > edgePool )
+	{
+		this.featureColorModeManager = featureColorModeManager;
+		this.vertexPool = vertexPool;
+		this.edgePool = edgePool;
+		this.caches = new HashMap<>();
+	}
+
+	/**
+	 * Returns the cache of the feature color mode of the specified coloring
+	 * model. The cache is created on the first request for the mode, with the
+	 * color generator of the specified coloring model.
+	 *
+	 * @param coloringModel
+	 *            the coloring model.
+	 * @return the shared cache, or {@code null} if the coloring model does not
+	 *         color by feature.
+	 */
+	public synchronized CachedGraphColorGenerator< V, E > getCache( final ColoringModel coloringModel )
+	{
+		final FeatureColorMode mode = coloringModel.getFeatureColorMode();
+		if ( mode == null )
+			return null;
+		CachedGraphColorGenerator< V, E > cache = caches.get( mode );
+		if ( cache == null )
+		{
+			cache = new CachedGraphColorGenerator<>( coloringModel.getFeatureGraphColorGenerator(), vertexPool, edgePool );
+			caches.put( mode, cache );
+		}
+		return cache;
+	}
+
+	/**
+	 * Forgets the colors held by all the caches.
+	 */
+	public synchronized void invalidateAll()
+	{
+		caches.values().forEach( CachedGraphColorGenerator::invalidateAll );
+	}
+
+	@Override
+	public void featureModelChanged()
+	{
+		invalidateAll();
+	}
+
+	@Override
+	public synchronized void featureColorModesChanged()
+	{
+		final Set< FeatureColorMode > modes = new HashSet<>( featureColorModeManager.getBuiltinStyles() );
+		modes.addAll( featureColorModeManager.getUserStyles() );
+		caches.keySet().retainAll( modes );
+	}
+
+	@Override
+	public void graphRebuilt()
+	{
+		invalidateAll();
+	}
+
+	@Override
+	public void vertexAdded( final V vertex )
+	{
+		propertyChanged( vertex );
+	}
+
+	@Override
+	public void vertexRemoved( final V vertex )
+	{
+		propertyChanged( vertex );
+	}
+
+	@Override
+	public synchronized void edgeAdded( final E edge )
+	{
+		if ( editing )
+		{
+			changedDuringEdit = true;
+			return;
+		}
+		for ( final CachedGraphColorGenerator< V, E > cache : caches.values() )
+			cache.invalidateEdge( edge );
+	}
+
+	@Override
+	public void edgeRemoved( final E edge )
+	{
+		edgeAdded( edge );
+	}
+
+	@Override
+	public synchronized void propertyChanged( final V vertex )
+	{
+		if ( editing )
+		{
+			changedDuringEdit = true;
+			return;
+		}
+		for ( final CachedGraphColorGenerator< V, E > cache : caches.values() )
+			cache.invalidateVertex( vertex );
+	}
+
+	@Override
+	public synchronized void editStarted()
+	{
+		changedDuringEdit = false;
+		editing = true;
+	}
+
+	@Override
+	public synchronized void editEnded()
+	{
+		editing = false;
+		if ( changedDuringEdit )
+			invalidateAll();
+	}
+}
@@ -42,4 +42,22 @@ public interface FeatureRangeCalculator
 	 *         feature on.
 	 */
 	public double[] computeMinMax( final FeatureProjectionId projection );
+
+	/**
+	 * Returns a robust range for the specified feature projection, from the
+	 * {@code lowerQuantile} to the {@code upperQuantile} of its values. For
+	 * instance {@code computeRange( projection, 0.01, 0.99 )} returns the 1st
+	 * and 99th percentiles, ignoring outliers. Quantiles may be approximate.
+	 *
+	 * @param projection
+	 *            the feature projection id.
+	 * @param lowerQuantile
+	 *            the quantile of the lower bound, from 0 to 1.
+	 * @param upperQuantile
+	 *            the quantile of the upper bound, from 0 to 1.
+	 * @return the range as a new <code>double[]</code> 2-elements array, or
+	 *         <code>null</code> if the calculation could not proceed, as for
+	 *         {@link #computeMinMax(FeatureProjectionId)}.
+	 */
+	public double[] computeRange( final FeatureProjectionId projection, final double lowerQuantile, final double upperQuantile );
 }
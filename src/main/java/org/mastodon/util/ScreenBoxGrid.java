@@ -0,0 +1,232 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2021 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.util;
+
+import java.util.Arrays;
+
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * A uniform grid over axis-aligned boxes in screen coordinates, to answer
+ * rectangle queries without scanning all boxes. Used for mouse interaction
+ * (highlighting, clicking, picking) in TrackScheme and the BDV overlay.
+ * Points are stored as boxes of size zero.
+ * <p>
+ * Boxes are referred to by their index. Queries return <em>candidates</em>,
+ * i.e., all boxes stored in grid cells that overlap the query rectangle.
+ * Callers have to do exact hit-testing on the candidates.
+ * <p>
+ * The grid covers a rectangular area that is specified when building it.
+ * Boxes extending outside of that area are stored in the border cells.
+ * Storage is re-used between builds.
+ */
+public class ScreenBoxGrid
+{
+	private static final double MIN_CELL_SIZE = 32;
+
+	private static final int MAX_CELLS_PER_DIM = 256;
+
+	/**
+	 * Boxes overlapping more cells than this are not stored in cells, but in
+	 * {@link #largeBoxes}, which is checked for every query.
+	 */
+	private static final int MAX_CELLS_PER_BOX = 64;
+
+	private double minX;
+
+	private double minY;
+
+	private double cellSize;
+
+	private int nx;
+
+	private int ny;
+
+	/**
+	 * Bounding box of all boxes stored in cells. Queries that do not overlap
+	 * it only return {@link #largeBoxes}.
+	 */
+	private double boundsMinX;
+
+	private double boundsMinY;
+
+	private double boundsMaxX;
+
+	private double boundsMaxY;
+
+	/**
+	 * Boxes of cell {@code c} are {@code cellItems[cellStart[c]]} to
+	 * {@code cellItems[cellStart[c+1]-1]}.
+	 */
+	private int[] cellStart = new int[ 2 ];
+
+	private int[] cellItems = new int[ 0 ];
+
+	private final TIntArrayList largeBoxes = new TIntArrayList();
+
+	/**
+	 * Rebuilds the grid.
+	 *
+	 * @param n
+	 *            the number of boxes.
+	 * @param boxes
+	 *            min x, min y, max x, max y of each box.
+	 * @param minX
+	 *            min x of the area covered by the grid.
+	 * @param minY
+	 *            min y of the area covered by the grid.
+	 * @param maxX
+	 *            max x of the area covered by the grid.
+	 * @param maxY
+	 *            max y of the area covered by the grid.
+	 */
+	public void build( final int n, final double[] boxes, final double minX, final double minY, final double maxX, final double maxY )
+	{
+		this.minX = minX;
+		this.minY = minY;
+		final double w = Math.max( maxX - minX, 0 );
+		final double h = Math.max( maxY - minY, 0 );
+		cellSize = Math.max( MIN_CELL_SIZE, Math.max( w, h ) / MAX_CELLS_PER_DIM );
+		nx = ( int ) ( w / cellSize ) + 1;
+		ny = ( int ) ( h / cellSize ) + 1;
+		final int numCells = nx * ny;
+
+		boundsMinX = Double.POSITIVE_INFINITY;
+		boundsMinY = Double.POSITIVE_INFINITY;
+		boundsMaxX = Double.NEGATIVE_INFINITY;
+		boundsMaxY = Double.NEGATIVE_INFINITY;
+		largeBoxes.resetQuick();
+		cellStart = ensureSize( cellStart, numCells + 1 );
+		final int[] cs = cellStart;
+		Arrays.fill( cs, 0, numCells + 1, 0 );
+		int numItems = 0;
+		for ( int i = 0; i < n; ++i )
+		{
+			final int b = 4 * i;
+			final int cx0 = cellX( boxes[ b ] );
+			final int cy0 = cellY( boxes[ b + 1 ] );
+			final int cx1 = cellX( boxes[ b + 2 ] );
+			final int cy1 = cellY( boxes[ b + 3 ] );
+			final int cells = ( cx1 - cx0 + 1 ) * ( cy1 - cy0 + 1 );
+			if ( cells > MAX_CELLS_PER_BOX )
+			{
+				largeBoxes.add( i );
+				continue;
+			}
+			boundsMinX = Math.min( boundsMinX, boxes[ b ] );
+			boundsMinY = Math.min( boundsMinY, boxes[ b + 1 ] );
+			boundsMaxX = Math.max( boundsMaxX, boxes[ b + 2 ] );
+			boundsMaxY = Math.max( boundsMaxY, boxes[ b + 3 ] );
+			numItems += cells;
+			for ( int cy = cy0; cy <= cy1; ++cy )
+				for ( int cx = cx0; cx <= cx1; ++cx )
+					++cs[ cellIndex( cx, cy ) + 1 ];
+		}
+		for ( int c = 0; c < numCells; ++c )
+			cs[ c + 1 ] += cs[ c ];
+		cellItems = ensureSize( cellItems, numItems );
+		for ( int i = 0; i < n; ++i )
+		{
+			final int b = 4 * i;
+			final int cx0 = cellX( boxes[ b ] );
+			final int cy0 = cellY( boxes[ b + 1 ] );
+			final int cx1 = cellX( boxes[ b + 2 ] );
+			final int cy1 = cellY( boxes[ b + 3 ] );
+			if ( ( cx1 - cx0 + 1 ) * ( cy1 - cy0 + 1 ) > MAX_CELLS_PER_BOX )
+				continue;
+			for ( int cy = cy0; cy <= cy1; ++cy )
+				for ( int cx = cx0; cx <= cx1; ++cx )
+					cellItems[ cs[ cellIndex( cx, cy ) ]++ ] = i;
+		}
+		// shift back start indices
+		for ( int c = numCells; c > 0; --c )
+			cs[ c ] = cs[ c - 1 ];
+		cs[ 0 ] = 0;
+	}
+
+	/**
+	 * Adds to {@code candidates} the indices of all boxes that possibly
+	 * intersect the rectangle {@code (x1, y1)} to {@code (x2, y2)}. The same
+	 * index may be added more than once.
+	 *
+	 * @param x1
+	 *            min x of the query rectangle.
+	 * @param y1
+	 *            min y of the query rectangle.
+	 * @param x2
+	 *            max x of the query rectangle.
+	 * @param y2
+	 *            max y of the query rectangle.
+	 * @param candidates
+	 *            list to which box indices are added.
+	 */
+	public void getCandidates( final double x1, final double y1, final double x2, final double y2, final TIntArrayList candidates )
+	{
+		candidates.addAll( largeBoxes );
+		if ( x2 < boundsMinX || y2 < boundsMinY || x1 > boundsMaxX || y1 > boundsMaxY )
+			return;
+		final int cx0 = cellX( x1 );
+		final int cx1 = cellX( x2 );
+		final int cy0 = cellY( y1 );
+		final int cy1 = cellY( y2 );
+		for ( int cy = cy0; cy <= cy1; ++cy )
+		{
+			for ( int cx = cx0; cx <= cx1; ++cx )
+			{
+				final int c = cellIndex( cx, cy );
+				for ( int k = cellStart[ c ]; k < cellStart[ c + 1 ]; ++k )
+					candidates.add( cellItems[ k ] );
+			}
+		}
+	}
+
+	/*
+	 * Coordinates outside the grid area are clamped to the border cells.
+	 */
+
+	private int cellX( final double x )
+	{
+		return Math.max( 0, Math.min( nx - 1, ( int ) ( ( x - minX ) / cellSize ) ) );
+	}
+
+	private int cellY( final double y )
+	{
+		return Math.max( 0, Math.min( ny - 1, ( int ) ( ( y - minY ) / cellSize ) ) );
+	}
+
+	private int cellIndex( final int cx, final int cy )
+	{
+		return cy * nx + cx;
+	}
+
+	private static int[] ensureSize( final int[] array, final int size )
+	{
+		return array.length >= size ? array : new int[ Math.max( size, array.length * 3 / 2 ) ];
+	}
+}
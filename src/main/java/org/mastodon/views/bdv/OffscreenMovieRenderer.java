@@ -0,0 +1,351 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2021 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.views.bdv;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.ImageIO;
+
+import org.mastodon.adapter.FocusModelAdapter;
+import org.mastodon.adapter.HighlightModelAdapter;
+import org.mastodon.adapter.RefBimap;
+import org.mastodon.adapter.SelectionModelAdapter;
+import org.mastodon.mamut.model.BoundingSphereRadiusStatistics;
+import org.mastodon.mamut.model.Link;
+import org.mastodon.mamut.model.Model;
+import org.mastodon.mamut.model.ModelGraph;
+import org.mastodon.mamut.model.ModelOverlayProperties;
+import org.mastodon.mamut.model.Spot;
+import org.mastodon.model.DefaultFocusModel;
+import org.mastodon.model.DefaultHighlightModel;
+import org.mastodon.model.DefaultSelectionModel;
+import org.mastodon.ui.coloring.GraphColorGenerator;
+import org.mastodon.ui.coloring.GraphColorGeneratorAdapter;
+import org.mastodon.views.bdv.overlay.OverlayGraphRenderer;
+import org.mastodon.views.bdv.overlay.RenderSettings;
+import org.mastodon.views.bdv.overlay.wrap.OverlayEdgeWrapper;
+import org.mastodon.views.bdv.overlay.wrap.OverlayGraphWrapper;
+import org.mastodon.views.bdv.overlay.wrap.OverlayVertexWrapper;
+
+import bdv.cache.CacheControl;
+import bdv.viewer.BasicViewerState;
+import bdv.viewer.DisplayMode;
+import bdv.viewer.render.MultiResolutionRenderer;
+import bdv.viewer.render.RenderTarget;
+import bdv.viewer.render.awt.BufferedImageRenderResult;
+import net.imglib2.realtransform.AffineTransform3D;
+
+/**
+ * Renders the image data of a {@link SharedBigDataViewerData} together with
+ * the spots and links of a {@link Model}, as painted by
+ * {@link OverlayGraphRenderer}, into image files, without displaying anything.
+ * Works in headless mode ({@code java.awt.headless=true}).
+ * <p>
+ * Timepoints are rendered in parallel, by a pool of renderers that is created
+ * once and reused for every call to {@link #render}. All renderers read image
+ * data through the cache of the {@link SharedBigDataViewerData} image loader,
+ * which is kept between frames and calls. Volatile image data is not used:
+ * each frame is rendered at full resolution, blocking until the data is
+ * loaded.
+ * <p>
+ * The renderers cache spot and link geometry between calls, and listen to the
+ * model to keep it up to date. Call {@link #close()} when the movie renderer
+ * is no longer used, to unregister them.
+ */
+public class OffscreenMovieRenderer
+{
+	private final SharedBigDataViewerData sharedBdvData;
+
+	private final BlockingQueue< FrameRenderer > pool;
+
+	private final int numThreads;
+
+	private final List< OverlayGraphRenderer< ?, ? > > overlays;
+
+	/**
+	 * Creates a new movie renderer.
+	 *
+	 * @param model
+	 *            the model whose spots and links are painted.
+	 * @param radiusStats
+	 *            the bounding sphere radius statistics of the model, e.g.,
+	 *            {@code MamutAppModel.getRadiusStats()}. They are shared
+	 *            rather than created here, because they stay registered as
+	 *            listeners of the model.
+	 * @param sharedBdvData
+	 *            the image data to render, with its converter (brightness and
+	 *            color) settings.
+	 * @param renderSettings
+	 *            how to paint the spots and links.
+	 * @param coloring
+	 *            the coloring of spots and links.
+	 * @param numThreads
+	 *            the number of timepoints rendered in parallel.
+	 */
+	public OffscreenMovieRenderer(
+			final Model model,
+			final BoundingSphereRadiusStatistics radiusStats,
+			final SharedBigDataViewerData sharedBdvData,
+			final RenderSettings renderSettings,
+			final GraphColorGenerator< Spot, Link > coloring,
+			final int numThreads )
+	{
+		this.sharedBdvData = sharedBdvData;
+		this.numThreads = Math.max( 1, numThreads );
+
+		final ModelGraph graph = model.getGraph();
+		final OverlayGraphWrapper< Spot, Link > viewGraph = new OverlayGraphWrapper<>(
+				graph,
+				model.getGraphIdBimap(),
+				model.getSpatioTemporalIndex(),
+				graph.getLock(),
+				new ModelOverlayProperties( graph, radiusStats ) );
+		final RefBimap< Spot, OverlayVertexWrapper< Spot, Link > > vertexMap = viewGraph.getVertexMap();
+		final RefBimap< Link, OverlayEdgeWrapper< Spot, Link > > edgeMap = viewGraph.getEdgeMap();
+
+		final SelectionModelAdapter< Spot, Link, OverlayVertexWrapper< Spot, Link >, OverlayEdgeWrapper< Spot, Link > > viewSelection =
+				new SelectionModelAdapter<>( new DefaultSelectionModel<>( graph, model.getGraphIdBimap() ), vertexMap, edgeMap );
+		final FocusModelAdapter< Spot, Link, OverlayVertexWrapper< Spot, Link >, OverlayEdgeWrapper< Spot, Link > > viewFocus =
+				new FocusModelAdapter<>( new DefaultFocusModel<>( model.getGraphIdBimap() ), vertexMap, edgeMap );
+		final HighlightModelAdapter< Spot, Link, OverlayVertexWrapper< Spot, Link >, OverlayEdgeWrapper< Spot, Link > > viewHighlight =
+				new HighlightModelAdapter<>( new DefaultHighlightModel<>( model.getGraphIdBimap() ), vertexMap, edgeMap );
+		final GraphColorGeneratorAdapter< Spot, Link, OverlayVertexWrapper< Spot, Link >, OverlayEdgeWrapper< Spot, Link > > viewColoring =
+				new GraphColorGeneratorAdapter<>( vertexMap, edgeMap );
+		viewColoring.setColorGenerator( coloring );
+
+		pool = new ArrayBlockingQueue<>( this.numThreads );
+		overlays = new ArrayList<>( this.numThreads );
+		for ( int i = 0; i < this.numThreads; ++i )
+		{
+			final OverlayGraphRenderer< OverlayVertexWrapper< Spot, Link >, OverlayEdgeWrapper< Spot, Link > > overlay =
+					new OverlayGraphRenderer<>( viewGraph, viewHighlight, viewFocus, viewSelection, viewColoring );
+			overlay.setRenderSettings( renderSettings );
+			overlays.add( overlay );
+			pool.add( new FrameRenderer( overlay ) );
+		}
+	}
+
+	/**
+	 * Unregisters the renderers from the model. This movie renderer must not
+	 * be used afterwards.
+	 */
+	public void close()
+	{
+		overlays.forEach( OverlayGraphRenderer::close );
+	}
+
+	/**
+	 * Renders timepoints {@code minTimepoint} to {@code maxTimepoint}
+	 * (inclusive) into PNG files {@code img-<timepoint>.png} in {@code dir}.
+	 *
+	 * @param viewerTransform
+	 *            the viewer transform, for a canvas of size {@code width}
+	 *            &times; {@code height}.
+	 * @param width
+	 *            the width of the images.
+	 * @param height
+	 *            the height of the images.
+	 * @param minTimepoint
+	 *            the first timepoint to render.
+	 * @param maxTimepoint
+	 *            the last timepoint to render.
+	 * @param dir
+	 *            the folder to write the images to.
+	 * @throws IOException
+	 *             if an image could not be written.
+	 */
+	public void render(
+			final AffineTransform3D viewerTransform,
+			final int width,
+			final int height,
+			final int minTimepoint,
+			final int maxTimepoint,
+			final File dir ) throws IOException
+	{
+		if ( !dir.exists() )
+			dir.mkdirs();
+
+		final List< Callable< Void > > tasks = new ArrayList<>();
+		for ( int t = minTimepoint; t <= maxTimepoint; ++t )
+		{
+			final int timepoint = t;
+			final File file = new File( dir, String.format( "img-%05d.png", timepoint ) );
+			tasks.add( () -> {
+				final FrameRenderer renderer = pool.take();
+				try
+				{
+					final BufferedImage image = renderer.render( viewerTransform, width, height, timepoint );
+					ImageIO.write( image, "png", file );
+				}
+				finally
+				{
+					pool.put( renderer );
+				}
+				return null;
+			} );
+		}
+
+		final ExecutorService executor = Executors.newFixedThreadPool( numThreads );
+		try
+		{
+			final List< Future< Void > > futures = executor.invokeAll( tasks );
+			for ( final Future< Void > future : futures )
+				future.get();
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException( "Rendering was interrupted.", e );
+		}
+		catch ( final ExecutionException e )
+		{
+			final Throwable cause = e.getCause();
+			if ( cause instanceof IOException )
+				throw ( IOException ) cause;
+			throw new IOException( "Could not render timepoint.", cause );
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Renders image data and overlay of one timepoint. Not thread-safe: each
+	 * instance is used by one thread at a time.
+	 */
+	private class FrameRenderer
+	{
+		private final OverlayGraphRenderer< ?, ? > overlay;
+
+		private final Target target;
+
+		private final MultiResolutionRenderer renderer;
+
+		private final BasicViewerState state;
+
+		FrameRenderer( final OverlayGraphRenderer< ?, ? > overlay )
+		{
+			this.overlay = overlay;
+			target = new Target();
+			renderer = new MultiResolutionRenderer(
+					target,
+					() -> {},
+					new double[] { 1 },
+					0,
+					1,
+					null,
+					false,
+					sharedBdvData.getOptions().values.getAccumulateProjectorFactory(),
+					new CacheControl.Dummy() );
+			state = new BasicViewerState();
+			state.addSources( sharedBdvData.getSources() );
+			state.setSourcesActive( sharedBdvData.getSources(), true );
+			state.setNumTimepoints( sharedBdvData.getNumTimepoints() );
+			state.setDisplayMode( DisplayMode.FUSED );
+		}
+
+		BufferedImage render( final AffineTransform3D viewerTransform, final int width, final int height, final int timepoint )
+		{
+			target.width = width;
+			target.height = height;
+			state.setViewerTransform( viewerTransform );
+			state.setCurrentTimepoint( timepoint );
+			renderer.requestRepaint();
+			renderer.paint( state );
+
+			final BufferedImage source = target.renderResult.getBufferedImage();
+			final BufferedImage image = new BufferedImage( width, height, BufferedImage.TYPE_INT_ARGB );
+			final Graphics2D g = image.createGraphics();
+			g.drawImage( source, 0, 0, width, height, null );
+
+			overlay.setCanvasSize( width, height );
+			overlay.transformChanged( viewerTransform );
+			overlay.timePointChanged( timepoint );
+			overlay.drawOverlays( g );
+			g.dispose();
+			return image;
+		}
+	}
+
+	private static class Target implements RenderTarget< BufferedImageRenderResult >
+	{
+		int width;
+
+		int height;
+
+		/**
+		 * The result set by the {@link MultiResolutionRenderer} at the end of
+		 * the last {@code paint()}.
+		 */
+		BufferedImageRenderResult renderResult = new BufferedImageRenderResult();
+
+		@Override
+		public BufferedImageRenderResult getReusableRenderResult()
+		{
+			return renderResult;
+		}
+
+		@Override
+		public BufferedImageRenderResult createRenderResult()
+		{
+			return new BufferedImageRenderResult();
+		}
+
+		@Override
+		public void setRenderResult( final BufferedImageRenderResult renderResult )
+		{
+			this.renderResult = renderResult;
+		}
+
+		@Override
+		public int getWidth()
+		{
+			return width;
+		}
+
+		@Override
+		public int getHeight()
+		{
+			return height;
+		}
+	}
+}
@@ -0,0 +1,276 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2021 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.views.bdv.overlay;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import bdv.viewer.OverlayRenderer;
+import bdv.viewer.TimePointListener;
+import bdv.viewer.TransformListener;
+import net.imglib2.realtransform.AffineTransform3D;
+
+/**
+ * Paints an {@link OverlayRenderer} asynchronously.
+ * <p>
+ * Frames are rendered by a worker thread into an off-screen image, and
+ * {@link #drawOverlays(Graphics)} only draws the most recent finished frame.
+ * This way, painting the BDV never waits for locks held by the wrapped
+ * renderer, e.g., while the model is being edited.
+ * <p>
+ * A new frame is requested whenever the canvas size, transform or timepoint
+ * changes, or {@link #requestFrame()} is called. When a frame is finished, it
+ * is published and the {@code repaint} callback is run. If more frames were
+ * requested while rendering, the worker then starts over. A finished frame is
+ * only dropped if the canvas size, transform or timepoint changed while it was
+ * rendered, because its geometry no longer matches the display. Even then, it
+ * is published if the displayed frame is older than
+ * {@value #MAX_STALE_MILLIS} ms, so that continuous navigation does not starve
+ * the display. If the wrapped renderer throws while painting a frame, the
+ * error is printed, the frame is dropped, and the worker waits for the next
+ * request.
+ * <p>
+ * The wrapped renderer must receive transform and timepoint changes before
+ * this {@link AsyncOverlayRenderer}, so that it renders with the current
+ * state when a frame is requested.
+ */
+public class AsyncOverlayRenderer implements OverlayRenderer, TransformListener< AffineTransform3D >, TimePointListener
+{
+	/**
+	 * Frames whose geometry is outdated are still published if the displayed
+	 * frame is older than this.
+	 */
+	private static final long MAX_STALE_MILLIS = 100;
+
+	private final OverlayRenderer renderer;
+
+	private final Runnable repaint;
+
+	private final Thread worker;
+
+	private int width;
+
+	private int height;
+
+	/**
+	 * Incremented for every frame request.
+	 */
+	private long requested;
+
+	/**
+	 * Value of {@link #requested} for which the last frame was rendered.
+	 */
+	private long rendered;
+
+	/**
+	 * Incremented when the canvas size, transform or timepoint changes.
+	 */
+	private long geometry;
+
+	/**
+	 * Time ({@link System#currentTimeMillis()}) at which {@link #front} was
+	 * last updated.
+	 */
+	private long publishedMillis;
+
+	/**
+	 * The last finished frame. Only drawn while holding the monitor of
+	 * {@code this}.
+	 */
+	private BufferedImage front;
+
+	/**
+	 * The image the worker renders into.
+	 */
+	private BufferedImage back;
+
+	private volatile boolean stopped;
+
+	/**
+	 * Creates a new asynchronous renderer and starts its worker thread.
+	 *
+	 * @param renderer
+	 *            the renderer that paints the frames.
+	 * @param repaint
+	 *            called when a new frame is available, to repaint the
+	 *            display.
+	 */
+	public AsyncOverlayRenderer( final OverlayRenderer renderer, final Runnable repaint )
+	{
+		this.renderer = renderer;
+		this.repaint = repaint;
+		this.requested = 0;
+		this.rendered = 0;
+		this.worker = new Thread( this::run, "Mastodon overlay renderer" );
+		worker.setDaemon( true );
+		worker.start();
+	}
+
+	/**
+	 * Requests that a new frame is rendered. The display is repainted when it
+	 * is finished.
+	 */
+	public synchronized void requestFrame()
+	{
+		++requested;
+		notifyAll();
+	}
+
+	/**
+	 * Requests a new frame because the canvas size, transform or timepoint
+	 * changed. Frames currently being rendered are outdated.
+	 */
+	private synchronized void requestGeometry()
+	{
+		++geometry;
+		requestFrame();
+	}
+
+	/**
+	 * Stops the worker thread.
+	 */
+	public void stop()
+	{
+		stopped = true;
+		worker.interrupt();
+	}
+
+	@Override
+	public void drawOverlays( final Graphics g )
+	{
+		synchronized ( this )
+		{
+			if ( front != null )
+				g.drawImage( front, 0, 0, null );
+		}
+	}
+
+	@Override
+	public void setCanvasSize( final int width, final int height )
+	{
+		synchronized ( this )
+		{
+			this.width = width;
+			this.height = height;
+		}
+		renderer.setCanvasSize( width, height );
+		requestGeometry();
+	}
+
+	@Override
+	public void transformChanged( final AffineTransform3D transform )
+	{
+		requestGeometry();
+	}
+
+	@Override
+	public void timePointChanged( final int timepoint )
+	{
+		requestGeometry();
+	}
+
+	private void run()
+	{
+		try
+		{
+			while ( !stopped )
+			{
+				final long request;
+				final long requestGeometry;
+				final int w;
+				final int h;
+				synchronized ( this )
+				{
+					while ( requested == rendered )
+						wait();
+					request = requested;
+					requestGeometry = geometry;
+					w = width;
+					h = height;
+				}
+
+				if ( w <= 0 || h <= 0 )
+				{
+					synchronized ( this )
+					{
+						rendered = request;
+					}
+					continue;
+				}
+
+				if ( back == null || back.getWidth() != w || back.getHeight() != h )
+					back = new BufferedImage( w, h, BufferedImage.TYPE_INT_ARGB );
+
+				final Graphics2D g = back.createGraphics();
+				boolean failed = false;
+				try
+				{
+					g.setComposite( AlphaComposite.Clear );
+					g.fillRect( 0, 0, w, h );
+					g.setComposite( AlphaComposite.SrcOver );
+					renderer.drawOverlays( g );
+				}
+				catch ( final RuntimeException e )
+				{
+					// Keep the worker alive. The frame is dropped, the next
+					// request renders again.
+					System.err.println( "Could not paint the overlay:" );
+					e.printStackTrace();
+					failed = true;
+				}
+				finally
+				{
+					g.dispose();
+				}
+
+				synchronized ( this )
+				{
+					rendered = request;
+					if ( failed )
+						continue;
+					final long now = System.currentTimeMillis();
+					if ( requestGeometry != geometry && now - publishedMillis < MAX_STALE_MILLIS )
+						continue; // outdated geometry, render again
+
+					final BufferedImage tmp = front;
+					front = back;
+					back = tmp;
+					publishedMillis = now;
+				}
+				repaint.run();
+			}
+		}
+		catch ( final InterruptedException e )
+		{
+			// stopped
+		}
+	}
+}
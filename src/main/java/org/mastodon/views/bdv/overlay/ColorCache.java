@@ -0,0 +1,67 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2021 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.views.bdv.overlay;
+
+import java.awt.Color;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+/**
+ * Maps packed ARGB values to {@link Color} instances, so that painting does
+ * not allocate a new {@link Color} for every spot and link.
+ * <p>
+ * Not thread-safe. The cache is cleared when it exceeds a fixed number of
+ * entries, so continuously varying colors cannot grow it without bounds.
+ */
+class ColorCache
+{
+	private static final int MAX_SIZE = 4096;
+
+	private final TIntObjectHashMap< Color > colors = new TIntObjectHashMap<>();
+
+	/**
+	 * Get a {@link Color} for the specified ARGB value (including alpha).
+	 *
+	 * @param argb
+	 *            ARGB bytes packed into {@code int}.
+	 * @return the color.
+	 */
+	public Color get( final int argb )
+	{
+		Color color = colors.get( argb );
+		if ( color == null )
+		{
+			if ( colors.size() >= MAX_SIZE )
+				colors.clear();
+			color = new Color( argb, true );
+			colors.put( argb, color );
+		}
+		return color;
+	}
+}
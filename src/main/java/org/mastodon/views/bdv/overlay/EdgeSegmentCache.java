@@ -0,0 +1,123 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2021 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.views.bdv.overlay;
+
+import java.util.Arrays;
+
+import org.mastodon.collection.RefCollections;
+import org.mastodon.collection.RefList;
+import org.mastodon.spatial.SpatioTemporalIndex;
+
+/**
+ * Caches, for each timepoint, the global coordinates of all edges that end
+ * in a vertex of that timepoint. Used by {@link OverlayGraphRenderer} to
+ * paint links over a time window ("tails") without clipping the spatial
+ * index and re-localizing vertices for every timepoint on every repaint.
+ * <p>
+ * Entries must be invalidated when edges are added or removed, and when a
+ * vertex moves, for its own timepoint and for the timepoints of the targets of
+ * its outgoing edges, which may be more than one timepoint later.
+ * {@link #get(int)} must be called while holding the read locks of the graph
+ * and the spatial index.
+ *
+ * @param <V>
+ *            the type of vertex.
+ * @param <E>
+ *            the type of edge.
+ */
+class EdgeSegmentCache< V extends OverlayVertex< V, E >, E extends OverlayEdge< E, V > > extends TimepointCache< EdgeSegmentCache.Segments< E > >
+{
+	/**
+	 * Edges ending in one timepoint.
+	 */
+	static class Segments< E >
+	{
+		/**
+		 * The edges. Edge {@code i} corresponds to {@code coords[6*i]} to
+		 * {@code coords[6*i+5]}.
+		 */
+		final RefList< E > edges;
+
+		/**
+		 * Source x, y, z followed by target x, y, z for each edge, in global
+		 * coordinates.
+		 */
+		final float[] coords;
+
+		Segments( final RefList< E > edges, final float[] coords )
+		{
+			this.edges = edges;
+			this.coords = coords;
+		}
+
+		int size()
+		{
+			return edges.size();
+		}
+	}
+
+	private final OverlayGraph< V, E > graph;
+
+	private final SpatioTemporalIndex< V > index;
+
+	EdgeSegmentCache( final OverlayGraph< V, E > graph )
+	{
+		this.graph = graph;
+		this.index = graph.getIndex();
+	}
+
+	@Override
+	protected Segments< E > build( final int timepoint )
+	{
+		final RefList< E > edges = RefCollections.createRefList( graph.edges() );
+		float[] coords = new float[ 6 * 64 ];
+		final double[] pos = new double[ 3 ];
+		final V ref = graph.vertexRef();
+		int i = 0;
+		for ( final V vertex : index.getSpatialIndex( timepoint ) )
+		{
+			for ( final E edge : vertex.incomingEdges() )
+			{
+				if ( i + 6 > coords.length )
+					coords = Arrays.copyOf( coords, 2 * coords.length );
+				edge.getSource( ref ).localize( pos );
+				coords[ i++ ] = ( float ) pos[ 0 ];
+				coords[ i++ ] = ( float ) pos[ 1 ];
+				coords[ i++ ] = ( float ) pos[ 2 ];
+				vertex.localize( pos );
+				coords[ i++ ] = ( float ) pos[ 0 ];
+				coords[ i++ ] = ( float ) pos[ 1 ];
+				coords[ i++ ] = ( float ) pos[ 2 ];
+				edges.add( edge );
+			}
+		}
+		graph.releaseRef( ref );
+		return new Segments<>( edges, Arrays.copyOf( coords, i ) );
+	}
+}
@@ -44,6 +44,27 @@ public interface OverlayGraph< V extends OverlayVertex< V, E >, E extends Overla
 
 	public ReentrantReadWriteLock getLock();
 
+	/**
+	 * Registers a listener to be notified when vertices or edges are added,
+	 * removed, or moved.
+	 *
+	 * @param listener
+	 *            the listener to register.
+	 * @return {@code true} if the listener was registered, {@code false} if it
+	 *         was already registered.
+	 */
+	public boolean addOverlayGraphListener( final OverlayGraphListener listener );
+
+	/**
+	 * Removes a listener registered with
+	 * {@link #addOverlayGraphListener(OverlayGraphListener)}.
+	 *
+	 * @param listener
+	 *            the listener to remove.
+	 * @return {@code true} if the listener was registered and is removed.
+	 */
+	public boolean removeOverlayGraphListener( final OverlayGraphListener listener );
+
 	/**
 	 * Triggers a {@link GraphChangeListener#graphChanged()} event.
 	 *
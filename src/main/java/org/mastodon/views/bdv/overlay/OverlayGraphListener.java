@@ -0,0 +1,70 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2021 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.views.bdv.overlay;
+
+import org.mastodon.graph.GraphChangeListener;
+
+/**
+ * Listener for changes of an {@link OverlayGraph} that affect where its
+ * vertices and edges are painted. Changes are reported per timepoint, so that
+ * geometry cached per timepoint can be discarded selectively.
+ *
+ * @see OverlayGraph#addOverlayGraphListener(OverlayGraphListener)
+ */
+public interface OverlayGraphListener
+{
+	/**
+	 * Called when a vertex of the specified timepoint was added, removed, or
+	 * moved.
+	 *
+	 * @param timepoint
+	 *            the timepoint of the vertex.
+	 */
+	public void verticesChanged( int timepoint );
+
+	/**
+	 * Called when an edge whose target is in the specified timepoint was added
+	 * or removed, or when its source or target was moved.
+	 *
+	 * @param timepoint
+	 *            the timepoint of the edge target.
+	 */
+	public void edgesChanged( int timepoint );
+
+	/**
+	 * Called when the whole graph was rebuilt, e.g. after loading.
+	 */
+	public void graphRebuilt();
+
+	/**
+	 * Called at the end of a batch of changes, see
+	 * {@link GraphChangeListener#graphChanged()}.
+	 */
+	public void graphChanged();
+}
@@ -37,11 +37,9 @@ import java.awt.GradientPaint;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
-import java.awt.font.FontRenderContext;
-import java.awt.font.TextLayout;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Ellipse2D;
-import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
 
 import org.mastodon.collection.RefCollection;
 import org.mastodon.collection.RefCollections;
@@ -55,11 +53,14 @@ import org.mastodon.spatial.SpatialIndex;
 import org.mastodon.spatial.SpatioTemporalIndex;
 import org.mastodon.ui.coloring.GraphColorGenerator;
 import org.mastodon.util.GeometryUtil;
+import org.mastodon.views.bdv.overlay.EdgeSegmentCache.Segments;
 import org.mastodon.views.bdv.overlay.ScreenVertexMath.Ellipse;
 import org.mastodon.views.bdv.overlay.Visibilities.Visibility;
 import org.mastodon.views.bdv.overlay.Visibilities.VisibilityMode;
 import org.mastodon.views.bdv.overlay.util.BdvRendererUtil;
 
+import gnu.trove.list.array.TIntArrayList;
+
 import bdv.util.Affine3DHelpers;
 import bdv.viewer.TimePointListener;
 import net.imglib2.RealPoint;
@@ -100,13 +101,28 @@ import net.imglib2.util.LinAlgHelpers;
 public class OverlayGraphRenderer< V extends OverlayVertex< V, E >, E extends OverlayEdge< E, V > >
 		implements OverlayRenderer, TransformListener< AffineTransform3D >, TimePointListener
 {
-	private int width;
+	/*
+	 * Canvas size, timepoint, and settings used for painting and picking.
+	 * These are latched from the requested values at the start of
+	 * drawOverlays(), so that a frame painted on a worker thread uses one
+	 * consistent state.
+	 */
+
+	private volatile int width;
 
-	private int height;
+	private volatile int height;
 
 	private final AffineTransform3D renderTransform;
 
-	private int renderTimepoint;
+	private volatile int renderTimepoint;
+
+	private volatile int requestedWidth;
+
+	private volatile int requestedHeight;
+
+	private volatile int requestedTimepoint;
+
+	private volatile RenderSettings requestedSettings;
 
 	private final OverlayGraph< V, E > graph;
 
@@ -120,10 +136,65 @@ public class OverlayGraphRenderer< V extends OverlayVertex< V, E >, E extends Ov
 
 	private final GraphColorGenerator< V, E > coloring;
 
-	private RenderSettings settings;
+	private volatile RenderSettings settings;
 
 	private final Visibilities< V, E > visibilities;
 
+	/**
+	 * Spots and links collected for the frame currently being painted. Only
+	 * accessed from {@link #drawOverlays(Graphics)}.
+	 */
+	private PaintedFrame< V, E > paintingFrame;
+
+	/**
+	 * The last frame painted completely, with indexed screen geometry for
+	 * {@link #getVertexAt(int, int, double, OverlayVertex)} and
+	 * {@link #getEdgeAt(int, int, double, OverlayEdge)}. Guarded by
+	 * {@link #pickLock}. {@code null} if invalidated.
+	 */
+	private PaintedFrame< V, E > paintedFrame;
+
+	/**
+	 * Invalidated {@link #paintedFrame}, recycled as the next
+	 * {@link #paintingFrame}. Guarded by {@link #pickLock}.
+	 */
+	private PaintedFrame< V, E > spareFrame;
+
+	private final Object pickLock = new Object();
+
+	/**
+	 * Global geometry of links, per timepoint.
+	 */
+	private final EdgeSegmentCache< V, E > edgeSegments;
+
+	/**
+	 * {@link Color}s used for painting. Only accessed from
+	 * {@link #drawOverlays(Graphics)}.
+	 */
+	private final ColorCache colorCache;
+
+	/**
+	 * Spot labels of the frame currently being painted. Only accessed from
+	 * {@link #drawOverlays(Graphics)}.
+	 */
+	private final SpotLabels spotLabels;
+
+	/**
+	 * Candidate vertices for {@link #getVertexAt(int, int, double, OverlayVertex)}.
+	 */
+	private final ScreenVertices< V > pickVertices;
+
+	/**
+	 * Keeps {@link #edgeSegments} and {@link #paintedFrame} consistent with
+	 * the graph.
+	 */
+	private final CacheInvalidator cacheInvalidator;
+
+	/**
+	 * Creates a renderer for the specified graph. The renderer registers
+	 * itself as a listener of the graph to keep its caches up to date, and
+	 * must be {@link #close() closed} when it is no longer used.
+	 */
 	public OverlayGraphRenderer(
 			final OverlayGraph< V, E > graph,
 			final HighlightModel< V, E > highlight,
@@ -138,15 +209,30 @@ public class OverlayGraphRenderer< V extends OverlayVertex< V, E >, E extends Ov
 		this.coloring = coloring;
 		this.visibilities = new Visibilities<>( graph, selection, focus, graph.getLock() );
 		index = graph.getIndex();
+		this.paintingFrame = new PaintedFrame<>( graph );
+		this.edgeSegments = new EdgeSegmentCache<>( graph );
+		this.colorCache = new ColorCache();
+		this.spotLabels = new SpotLabels();
+		this.pickVertices = new ScreenVertices<>( graph );
 		renderTransform = new AffineTransform3D();
 		setRenderSettings( RenderSettings.defaultStyle() ); // default RenderSettings
+		this.cacheInvalidator = new CacheInvalidator();
+		graph.addOverlayGraphListener( cacheInvalidator );
+	}
+
+	/**
+	 * Unregisters this renderer from the graph.
+	 */
+	public void close()
+	{
+		graph.removeOverlayGraphListener( cacheInvalidator );
 	}
 
 	@Override
 	public void setCanvasSize( final int width, final int height )
 	{
-		this.width = width;
-		this.height = height;
+		this.requestedWidth = width;
+		this.requestedHeight = height;
 	}
 
 	@Override
@@ -161,12 +247,26 @@ public class OverlayGraphRenderer< V extends OverlayVertex< V, E >, E extends Ov
 	@Override
 	public void timePointChanged( final int timepoint )
 	{
-		renderTimepoint = timepoint;
+		requestedTimepoint = timepoint;
 	}
 
 	public void setRenderSettings( final RenderSettings settings )
 	{
-		this.settings = settings;
+		this.requestedSettings = settings;
+		this.settings = settings.copy();
+	}
+
+	/**
+	 * Takes the requested canvas size, timepoint, and a copy of the requested
+	 * settings as the state of the frame to paint. The settings are copied
+	 * because they are edited in place on the EDT.
+	 */
+	private void latchRequestedState()
+	{
+		width = requestedWidth;
+		height = requestedHeight;
+		renderTimepoint = requestedTimepoint;
+		settings = requestedSettings.copy();
 	}
 
 	public VisibilityMode nextVisibilityMode()
@@ -181,6 +281,16 @@ public class OverlayGraphRenderer< V extends OverlayVertex< V, E >, E extends Ov
 
 	public static final double pointRadius = 2.5;
 
+	private static final BasicStroke DEFAULT_VERTEX_STROKE = new BasicStroke();
+
+	private static final BasicStroke HIGHLIGHTED_VERTEX_STROKE = new BasicStroke( 4f );
+
+	private static final BasicStroke FOCUSED_VERTEX_STROKE = new BasicStroke( 2f, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 1f, new float[] { 8f, 3f }, 0 );
+
+	private static final BasicStroke DEFAULT_EDGE_STROKE = new BasicStroke();
+
+	private static final BasicStroke HIGHLIGHTED_EDGE_STROKE = new BasicStroke( 3f );
+
 	/**
 	 * Return signed distance of p to z=0 plane, truncated at cutoff and scaled
 	 * by 1/cutoff. A point on the plane has d=0. A Point that is at cutoff or
@@ -251,9 +361,12 @@ public class OverlayGraphRenderer< V extends OverlayVertex< V, E >, E extends Ov
 	 * @param isSelected
 	 *            whether to use selected or un-selected color scheme.
 	 * @param color the color assigned to the object when using a coloring scheme.
-	 * @return vertex/edge color suitable for display in a BDV.
+	 * @return vertex/edge color suitable for display in a BDV, as ARGB bytes
+	 *         packed into {@code int}. Alpha is quantized to
+	 *         {@link #ALPHA_LEVELS} levels, so that the {@link Color} instances
+	 *         for the result can be cached, see {@link ColorCache}.
 	 */
-	private static Color getColor(
+	private static int getColor(
 			final double sd,
 			final double td,
 			final double sdFade,
@@ -314,7 +427,7 @@ public class OverlayGraphRenderer< V extends OverlayVertex< V, E >, E extends Ov
 							? 0.8
 							: ( isSelected ? 0.6 : 0.4 ),
 					( 1 + tf ) * ( 1 - Math.abs( sf ) ) );
-			return new Color( truncRGBA( r, g, b, a ), true );
+			return truncRGBA( r, g, b, a ) & ALPHA_QUANTIZATION_MASK;
 		}
 		else
 		{
@@ -335,10 +448,22 @@ public class OverlayGraphRenderer< V extends OverlayVertex< V, E >, E extends Ov
 							? 0.8
 							: ( isSelected ? 0.6 : 0.4 ),
 					a0 / 255f * ( 1 + tf ) * ( 1 - Math.abs( sf ) ) );
-			return new Color( truncRGBA( r, g, b, a ), true );
+			return truncRGBA( r, g, b, a ) & ALPHA_QUANTIZATION_MASK;
 		}
 	}
 
+	/**
+	 * Number of distinct alpha values produced by
+	 * {@link #getColor(double, double, double, double, boolean, boolean, int, int, int, int)}.
+	 */
+	private static final int ALPHA_LEVELS = 64;
+
+	/**
+	 * Clears the low bits of the alpha byte to quantize it to
+	 * {@link #ALPHA_LEVELS} levels.
+	 */
+	private static final int ALPHA_QUANTIZATION_MASK = ~( ( 256 / ALPHA_LEVELS - 1 ) << 24 );
+
 	private static final int complementaryColor( final int color )
 	{
 		return 0xff000000 | ~color;
@@ -484,53 +609,83 @@ public class OverlayGraphRenderer< V extends OverlayVertex< V, E >, E extends Ov
 		final Visibility< V, E > visibility = visibilities.getVisibility();
 		final boolean drawLinksAheadInTime = settings.getDrawLinksAheadInTime();
 		final double maxDepth = getMaxDepth( transform );
+		final double globalToViewerScale = Affine3DHelpers.extractScale( transform, 0 );
 
-		final V ref = graph.vertexRef();
-		final double[] gPos = new double[ 3 ];
-		final double[] lPos = new double[ 3 ];
+		final E ref = graph.edgeRef();
+
+		final double m00 = transform.get( 0, 0 );
+		final double m01 = transform.get( 0, 1 );
+		final double m02 = transform.get( 0, 2 );
+		final double m03 = transform.get( 0, 3 );
+		final double m10 = transform.get( 1, 0 );
+		final double m11 = transform.get( 1, 1 );
+		final double m12 = transform.get( 1, 2 );
+		final double m13 = transform.get( 1, 3 );
+		final double m20 = transform.get( 2, 0 );
+		final double m21 = transform.get( 2, 1 );
+		final double m22 = transform.get( 2, 2 );
+		final double m23 = transform.get( 2, 3 );
 
 		final int timeLimit = settings.getTimeLimit();
 		final int minT = Math.max( 0, currentTimepoint - timeLimit + 1 );
 		final int maxT = drawLinksAheadInTime
 				? currentTimepoint + timeLimit - 1
 				: currentTimepoint;
+		edgeSegments.retain( minT, maxT );
 
 		for ( int t = minT; t <= maxT; ++t )
 		{
 			final double td0 = timeDistance( t - 1, currentTimepoint, timeLimit );
 			final double td1 = timeDistance( t, currentTimepoint, timeLimit );
 
-			final SpatialIndex< V > si = index.getSpatialIndex( t );
-			final ClipConvexPolytope< V > ccp = si.getClipConvexPolytope();
-			ccp.clip( getVisiblePolytopeGlobal( transform, t ) );
-			for ( final V vertex : ccp.getInsideValues() )
+			/*
+			 * Edges are considered if their target lies in the visible volume
+			 * extended by the largest bounding sphere radius at t, like the
+			 * polytope used to clip the spatial index.
+			 */
+			final double border = globalToViewerScale * Math.sqrt( graph.getMaxBoundingSphereRadiusSquared( t ) );
+			final double minX = -border;
+			final double maxX = width + border;
+			final double minY = -border;
+			final double maxY = height + border;
+			final double maxZ = maxDepth + border;
+
+			final Segments< E > segments = edgeSegments.get( t );
+			final float[] c = segments.coords;
+			final int n = segments.size();
+			for ( int i = 0, o = 0; i < n; ++i, o += 6 )
 			{
-				vertex.localize( gPos );
-				transform.apply( gPos, lPos );
-				final int x1 = ( int ) lPos[ 0 ];
-				final int y1 = ( int ) lPos[ 1 ];
+				final double gx1 = c[ o + 3 ];
+				final double gy1 = c[ o + 4 ];
+				final double gz1 = c[ o + 5 ];
+				final double z1 = m20 * gx1 + m21 * gy1 + m22 * gz1 + m23;
+				if ( z1 < -maxZ || z1 > maxZ )
+					continue;
+				final double lx1 = m00 * gx1 + m01 * gy1 + m02 * gz1 + m03;
+				if ( lx1 < minX || lx1 > maxX )
+					continue;
+				final double ly1 = m10 * gx1 + m11 * gy1 + m12 * gz1 + m13;
+				if ( ly1 < minY || ly1 > maxY )
+					continue;
 
-				final double z1 = lPos[ 2 ];
-				final double sd1 = sliceDistance( z1, maxDepth );
+				final double gx0 = c[ o ];
+				final double gy0 = c[ o + 1 ];
+				final double gz0 = c[ o + 2 ];
+				final double z0 = m20 * gx0 + m21 * gy0 + m22 * gz0 + m23;
 
-				for ( final E edge : vertex.incomingEdges() )
+				final double sd0 = sliceDistance( z0, maxDepth );
+				final double sd1 = sliceDistance( z1, maxDepth );
+				if ( ( sd0 > -1 && sd0 < 1 ) || ( sd1 > -1 && sd1 < 1 ) )
 				{
+					final E edge = segments.edges.get( i, ref );
 					if ( !visibility.isVisible( edge ) )
 						continue;
 
-					final V source = edge.getSource( ref );
-					source.localize( gPos );
-					transform.apply( gPos, lPos );
-					final int x0 = ( int ) lPos[ 0 ];
-					final int y0 = ( int ) lPos[ 1 ];
-
-					final double z0 = lPos[ 2 ];
-					final double sd0 = sliceDistance( z0, maxDepth );
-
-					if ( ( sd0 > -1 && sd0 < 1 ) || ( sd1 > -1 && sd1 < 1 ) )
-					{
-						edgeOperation.apply( edge, td0, td1, sd0, sd1, x0, y0, x1, y1 );
-					}
+					final int x0 = ( int ) ( m00 * gx0 + m01 * gy0 + m02 * gz0 + m03 );
+					final int y0 = ( int ) ( m10 * gx0 + m11 * gy0 + m12 * gz0 + m13 );
+					final int x1 = ( int ) lx1;
+					final int y1 = ( int ) ly1;
+					edgeOperation.apply( edge, td0, td1, sd0, sd1, x0, y0, x1, y1 );
 				}
 			}
 		}
@@ -538,18 +693,69 @@ public class OverlayGraphRenderer< V extends OverlayVertex< V, E >, E extends Ov
 		graph.releaseRef( ref );
 	}
 
+	/**
+	 * Discard the screen geometry of the last painted frame. Until the next
+	 * frame is painted, {@link #getVertexAt(int, int, double, OverlayVertex)}
+	 * and {@link #getEdgeAt(int, int, double, OverlayEdge)} search the spatial
+	 * index.
+	 */
+	private void invalidatePaintedFrame()
+	{
+		synchronized ( pickLock )
+		{
+			if ( paintedFrame != null )
+			{
+				spareFrame = paintedFrame;
+				paintedFrame = null;
+			}
+		}
+	}
+
+	/**
+	 * Discards cached geometry of the timepoints changed in the graph.
+	 */
+	private class CacheInvalidator implements OverlayGraphListener
+	{
+		@Override
+		public void verticesChanged( final int timepoint )
+		{
+			invalidatePaintedFrame();
+		}
+
+		@Override
+		public void edgesChanged( final int timepoint )
+		{
+			edgeSegments.invalidate( timepoint );
+			invalidatePaintedFrame();
+		}
+
+		@Override
+		public void graphRebuilt()
+		{
+			edgeSegments.invalidateAll();
+			invalidatePaintedFrame();
+		}
+
+		@Override
+		public void graphChanged()
+		{
+			invalidatePaintedFrame();
+		}
+	}
+
 	@Override
 	public void drawOverlays( final Graphics g )
 	{
+		latchRequestedState();
 		if ( visibilities.getMode() == VisibilityMode.NONE )
 			return;
 
 		final Graphics2D graphics = ( Graphics2D ) g;
-		final BasicStroke defaultVertexStroke = new BasicStroke();
-		final BasicStroke highlightedVertexStroke = new BasicStroke( 4f );
-		final BasicStroke focusedVertexStroke = new BasicStroke( 2f, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 1f, new float[] { 8f, 3f }, 0 );
-		final BasicStroke defaultEdgeStroke = new BasicStroke();
-		final BasicStroke highlightedEdgeStroke = new BasicStroke( 3f );
+		final BasicStroke defaultVertexStroke = DEFAULT_VERTEX_STROKE;
+		final BasicStroke highlightedVertexStroke = HIGHLIGHTED_VERTEX_STROKE;
+		final BasicStroke focusedVertexStroke = FOCUSED_VERTEX_STROKE;
+		final BasicStroke defaultEdgeStroke = DEFAULT_EDGE_STROKE;
+		final BasicStroke highlightedEdgeStroke = HIGHLIGHTED_EDGE_STROKE;
 
 		final AffineTransform3D transform = getRenderTransformCopy();
 		final int currentTimepoint = renderTimepoint;
@@ -570,7 +776,6 @@ public class OverlayGraphRenderer< V extends OverlayVertex< V, E >, E extends Ov
 		final double sliceDistanceFade = settings.getEllipsoidFadeDepth();
 		final double timepointDistanceFade = 0.5;
 
-		final ScreenVertexMath screenVertexMath = new ScreenVertexMath();
 		final boolean drawPointsAlways = drawPointsAlways();
 		final boolean drawPointsMaybe = drawPointsMaybe();
 		final boolean useGradient = settings.getUseGradient();
@@ -579,6 +784,13 @@ public class OverlayGraphRenderer< V extends OverlayVertex< V, E >, E extends Ov
 		final int colorPast = settings.getColorPast();
 		final int colorFuture = settings.getColorFuture();
 
+		final PaintedFrame< V, E > frame = paintingFrame;
+		final ScreenVertices< V > screenVertices = frame.vertices;
+		final ScreenEdges< E > screenEdges = frame.edges;
+		final TIntArrayList pastSpots = frame.pastSpots;
+		screenVertices.clear();
+		screenEdges.clear();
+		pastSpots.resetQuick();
 		graph.getLock().readLock().lock();
 		index.readLock().lock();
 		try
@@ -593,7 +805,7 @@ public class OverlayGraphRenderer< V extends OverlayVertex< V, E >, E extends Ov
 					edge.getSource( source );
 					edge.getTarget( target );
 					final int edgeColor = coloring.color( edge, source, target );
-					final Color c1 = getColor(
+					final int c1 = getColor(
 							sd1,
 							td1,
 							sliceDistanceFade,
@@ -606,7 +818,7 @@ public class OverlayGraphRenderer< V extends OverlayVertex< V, E >, E extends Ov
 							edgeColor );
 					if ( useGradient )
 					{
-						final Color c0 = getColor(
+						final int c0 = getColor(
 								sd0,
 								td0,
 								sliceDistanceFade,
@@ -617,15 +829,19 @@ public class OverlayGraphRenderer< V extends OverlayVertex< V, E >, E extends Ov
 								colorPast,
 								colorFuture,
 								edgeColor );
-						graphics.setPaint( new GradientPaint( x0, y0, c0, x1, y1, c1 ) );
+						if ( c0 == c1 )
+							graphics.setPaint( colorCache.get( c1 ) );
+						else
+							graphics.setPaint( new GradientPaint( x0, y0, colorCache.get( c0 ), x1, y1, colorCache.get( c1 ) ) );
 					}
 					else
 					{
-						graphics.setPaint( c1 );
+						graphics.setPaint( colorCache.get( c1 ) );
 					}
 					if ( isHighlighted )
 						graphics.setStroke( highlightedEdgeStroke );
 					graphics.drawLine( x0, y0, x1, y1 );
+					screenEdges.add( edge, x0, y0, x1, y1 );
 
 					// Draw arrows for edge direction.
 					if ( drawArrowHeads )
@@ -650,19 +866,18 @@ public class OverlayGraphRenderer< V extends OverlayVertex< V, E >, E extends Ov
 
 			if ( settings.getDrawSpots() )
 			{
-				final double ellipsoidFadeDepth = settings.getEllipsoidFadeDepth();
+				/*
+				 * Collect the visible vertices with their display attributes
+				 * while the locks are held. Screen geometry is computed and
+				 * painted from the collected arrays after the locks are
+				 * released.
+				 */
 				final boolean drawSpotLabels = settings.getDrawSpotLabels();
-				final boolean drawEllipsoidSliceIntersection = settings.getDrawEllipsoidSliceIntersection();
-				final boolean drawEllipsoidSliceProjection = settings.getDrawEllipsoidSliceProjection();
-				final double pointFadeDepth = settings.getPointFadeDepth();
 				final Visibility< V, E > visibility = visibilities.getVisibility();
 
 				final V highlighted = highlight.getHighlightedVertex( ref1 );
 				final V focused = focus.getFocusedVertex( ref2 );
 
-				graphics.setStroke( defaultVertexStroke );
-				final AffineTransform torig = graphics.getTransform();
-
 				final ConvexPolytope cropPolytopeGlobal = getVisiblePolytopeGlobal( transform, currentTimepoint );
 				final ClipConvexPolytope< V > ccp = index.getSpatialIndex( currentTimepoint ).getClipConvexPolytope();
 				ccp.clip( cropPolytopeGlobal );
@@ -671,116 +886,362 @@ public class OverlayGraphRenderer< V extends OverlayVertex< V, E >, E extends Ov
 					if ( !visibility.isVisible( vertex ) )
 						continue;
 
-					final int color = coloring.color( vertex );
-					final boolean isHighlighted = vertex.equals( highlighted );
-					final boolean isFocused = vertex.equals( focused );
+					byte flags = 0;
+					if ( selection.isSelected( vertex ) )
+						flags |= ScreenVertices.SELECTED;
+					if ( vertex.equals( highlighted ) )
+						flags |= ScreenVertices.HIGHLIGHTED;
+					if ( vertex.equals( focused ) )
+						flags |= ScreenVertices.FOCUSED;
+					screenVertices.add(
+							vertex,
+							coloring.color( vertex ),
+							flags,
+							drawSpotLabels ? vertex.getLabel() : null );
+				}
 
-					screenVertexMath.init( vertex, transform );
+				if ( settings.getSpotTimeLimit() > 0 )
+					collectPastSpots( transform, currentTimepoint, maxDepth, visibility, pastSpots );
+			}
+		}
+		finally
+		{
+			graph.getLock().readLock().unlock();
+			index.readLock().unlock();
+		}
+		graph.releaseRef( ref1 );
+		graph.releaseRef( ref2 );
+		graph.releaseRef( ref3 );
+		graph.releaseRef( source );
+		graph.releaseRef( target );
 
-					final double x = screenVertexMath.getViewPos()[ 0 ];
-					final double y = screenVertexMath.getViewPos()[ 1 ];
-					final double z = screenVertexMath.getViewPos()[ 2 ];
-					final double sd = sliceDistance( z, maxDepth );
+		if ( settings.getDrawSpots() )
+		{
+			final int numPastSpots = pastSpots.size() / 3;
+			for ( int i = 0; i < numPastSpots; ++i )
+			{
+				graphics.setColor( colorCache.get( pastSpots.getQuick( 3 * i + 2 ) ) );
+				final int ox = ( int ) ( pastSpots.getQuick( 3 * i ) - pointRadius );
+				final int oy = ( int ) ( pastSpots.getQuick( 3 * i + 1 ) - pointRadius );
+				final int ow = ( int ) ( 2 * pointRadius );
+				graphics.fillOval( ox, oy, ow, ow );
+			}
+
+			screenVertices.computeGeometry(
+					transform,
+					settings.getDrawEllipsoidSliceIntersection() || drawPointsMaybe,
+					settings.getDrawEllipsoidSliceProjection() );
+
+			final double ellipsoidFadeDepth = settings.getEllipsoidFadeDepth();
+			final boolean drawSpotLabels = settings.getDrawSpotLabels();
+			final boolean drawEllipsoidSliceIntersection = settings.getDrawEllipsoidSliceIntersection();
+			final boolean drawEllipsoidSliceProjection = settings.getDrawEllipsoidSliceProjection();
+			final double pointFadeDepth = settings.getPointFadeDepth();
+
+			graphics.setStroke( defaultVertexStroke );
+			final AffineTransform torig = graphics.getTransform();
+			final Ellipse ellipse = new Ellipse();
+			spotLabels.clear();
+
+			final int n = screenVertices.size();
+			for ( int i = 0; i < n; ++i )
+			{
+				final int color = screenVertices.color[ i ];
+				final byte flags = screenVertices.flags[ i ];
+				final boolean isSelected = ( flags & ScreenVertices.SELECTED ) != 0;
+				final boolean isHighlighted = ( flags & ScreenVertices.HIGHLIGHTED ) != 0;
+				final boolean isFocused = ( flags & ScreenVertices.FOCUSED ) != 0;
+				final boolean intersects = screenVertices.intersects[ i ];
+
+				final double x = screenVertices.vPos[ 3 * i ];
+				final double y = screenVertices.vPos[ 3 * i + 1 ];
+				final double z = screenVertices.vPos[ 3 * i + 2 ];
+				final double sd = sliceDistance( z, maxDepth );
 
-					if ( drawEllipsoidSliceIntersection )
+				if ( drawEllipsoidSliceIntersection )
+				{
+					if ( intersects )
 					{
-						if ( screenVertexMath.intersectsViewPlane() )
-						{
-							final Ellipse ellipse = screenVertexMath.getIntersectEllipse();
-
-							graphics.setColor( getColor(
-									0,
-									0,
-									ellipsoidFadeDepth,
-									timepointDistanceFade,
-									selection.isSelected( vertex ),
-									isHighlighted,
-									colorSpot,
-									colorPast,
-									colorFuture,
-									color ) );
-							if ( isHighlighted )
-								graphics.setStroke( highlightedVertexStroke );
-							else if ( isFocused )
-								graphics.setStroke( focusedVertexStroke );
-							drawEllipse( graphics, ellipse, torig );
-							if ( isHighlighted || isFocused )
-								graphics.setStroke( defaultVertexStroke );
-
-							if ( !drawEllipsoidSliceProjection && drawSpotLabels )
-								drawEllipseLabel( graphics, ellipse, vertex.getLabel() );
-						}
+						screenVertices.getIntersectEllipse( i, ellipse );
+
+						final int ellipseColor = getColor(
+								0,
+								0,
+								ellipsoidFadeDepth,
+								timepointDistanceFade,
+								isSelected,
+								isHighlighted,
+								colorSpot,
+								colorPast,
+								colorFuture,
+								color );
+						graphics.setColor( colorCache.get( ellipseColor ) );
+						if ( isHighlighted )
+							graphics.setStroke( highlightedVertexStroke );
+						else if ( isFocused )
+							graphics.setStroke( focusedVertexStroke );
+						drawEllipse( graphics, ellipse, torig );
+						if ( isHighlighted || isFocused )
+							graphics.setStroke( defaultVertexStroke );
+
+						if ( !drawEllipsoidSliceProjection && drawSpotLabels )
+							addEllipseLabel( ellipse, screenVertices.labels[ i ], ellipseColor, isHighlighted || isFocused );
 					}
+				}
 
-					if ( sd > -1 && sd < 1 )
+				if ( sd > -1 && sd < 1 )
+				{
+					if ( drawEllipsoidSliceProjection )
 					{
-						if ( drawEllipsoidSliceProjection )
-						{
-							final Ellipse ellipse = screenVertexMath.getProjectEllipse();
-
-							graphics.setColor( getColor(
-									sd,
-									0,
-									ellipsoidFadeDepth,
-									timepointDistanceFade,
-									selection.isSelected( vertex ),
-									isHighlighted,
-									colorSpot,
-									colorPast,
-									colorFuture,
-									color ) );
-							if ( isHighlighted )
-								graphics.setStroke( highlightedVertexStroke );
-							else if ( isFocused )
-								graphics.setStroke( focusedVertexStroke );
-							drawEllipse( graphics, ellipse, torig );
-							if ( isHighlighted || isFocused )
-								graphics.setStroke( defaultVertexStroke );
-
-							if ( drawSpotLabels )
-								drawEllipseLabel( graphics, ellipse, vertex.getLabel() );
-
-							graphics.setTransform( torig );
-						}
+						screenVertices.getProjectEllipse( i, ellipse );
 
-						if ( drawPointsAlways || ( drawPointsMaybe && !screenVertexMath.intersectsViewPlane() ) )
-						{
-							graphics.setColor( getColor(
-									sd,
-									0,
-									pointFadeDepth,
-									timepointDistanceFade,
-									selection.isSelected( vertex ),
-									isHighlighted,
-									colorSpot,
-									colorPast,
-									colorFuture,
-									color ) );
-							double radius = pointRadius;
-							if ( isHighlighted || isFocused )
-								radius *= 2;
-							final int ox = ( int ) ( x - radius );
-							final int oy = ( int ) ( y - radius );
-							final int ow = ( int ) ( 2 * radius );
-							if ( isFocused )
-								graphics.fillRect( ox, oy, ow, ow );
-							else
-								graphics.fillOval( ox, oy, ow, ow );
-						}
+						final int ellipseColor = getColor(
+								sd,
+								0,
+								ellipsoidFadeDepth,
+								timepointDistanceFade,
+								isSelected,
+								isHighlighted,
+								colorSpot,
+								colorPast,
+								colorFuture,
+								color );
+						graphics.setColor( colorCache.get( ellipseColor ) );
+						if ( isHighlighted )
+							graphics.setStroke( highlightedVertexStroke );
+						else if ( isFocused )
+							graphics.setStroke( focusedVertexStroke );
+						drawEllipse( graphics, ellipse, torig );
+						if ( isHighlighted || isFocused )
+							graphics.setStroke( defaultVertexStroke );
+
+						if ( drawSpotLabels )
+							addEllipseLabel( ellipse, screenVertices.labels[ i ], ellipseColor, isHighlighted || isFocused );
+
+						graphics.setTransform( torig );
+					}
+
+					if ( drawPointsAlways || ( drawPointsMaybe && !intersects ) )
+					{
+						graphics.setColor( colorCache.get( getColor(
+								sd,
+								0,
+								pointFadeDepth,
+								timepointDistanceFade,
+								isSelected,
+								isHighlighted,
+								colorSpot,
+								colorPast,
+								colorFuture,
+								color ) ) );
+						double radius = pointRadius;
+						if ( isHighlighted || isFocused )
+							radius *= 2;
+						final int ox = ( int ) ( x - radius );
+						final int oy = ( int ) ( y - radius );
+						final int ow = ( int ) ( 2 * radius );
+						if ( isFocused )
+							graphics.fillRect( ox, oy, ow, ow );
+						else
+							graphics.fillOval( ox, oy, ow, ow );
 					}
 				}
 			}
+
+			if ( drawSpotLabels )
+				spotLabels.draw( graphics, font, colorCache, width, height );
 		}
-		finally
+
+		publishFrame( frame, transform, currentTimepoint, maxDepth );
+	}
+
+	/**
+	 * Collect the screen positions and colors of the spots in the
+	 * {@link RenderSettings#getSpotTimeLimit()} timepoints before
+	 * {@code currentTimepoint}, oldest first. As for the current timepoint,
+	 * the spatial index of each timepoint is clipped to the visible volume
+	 * first, so only spots that may be visible are projected.
+	 * <p>
+	 * Must be called while holding the read locks of the graph and the
+	 * spatial index.
+	 *
+	 * @param pastSpots
+	 *            receives x, y, and ARGB color of each spot to paint.
+	 */
+	private void collectPastSpots(
+			final AffineTransform3D transform,
+			final int currentTimepoint,
+			final double maxDepth,
+			final Visibility< V, E > visibility,
+			final TIntArrayList pastSpots )
+	{
+		final double m00 = transform.get( 0, 0 );
+		final double m01 = transform.get( 0, 1 );
+		final double m02 = transform.get( 0, 2 );
+		final double m03 = transform.get( 0, 3 );
+		final double m10 = transform.get( 1, 0 );
+		final double m11 = transform.get( 1, 1 );
+		final double m12 = transform.get( 1, 2 );
+		final double m13 = transform.get( 1, 3 );
+		final double m20 = transform.get( 2, 0 );
+		final double m21 = transform.get( 2, 1 );
+		final double m22 = transform.get( 2, 2 );
+		final double m23 = transform.get( 2, 3 );
+
+		final double minX = -pointRadius;
+		final double maxX = width + pointRadius;
+		final double minY = -pointRadius;
+		final double maxY = height + pointRadius;
+
+		final double pointFadeDepth = settings.getPointFadeDepth();
+		final double timepointDistanceFade = 0.5;
+		final int colorSpot = settings.getColorSpot();
+		final int colorPast = settings.getColorPast();
+		final int colorFuture = settings.getColorFuture();
+
+		final int spotTimeLimit = settings.getSpotTimeLimit();
+		final int minT = Math.max( 0, currentTimepoint - spotTimeLimit );
+
+		// Past spots are painted as points, so only their centers must be visible.
+		final ConvexPolytope visiblePolytope = BdvRendererUtil.getPolytopeGlobal( transform,
+				minX, maxX, minY, maxY, -maxDepth, maxDepth );
+		final double[] gPos = new double[ 3 ];
+		for ( int t = minT; t < currentTimepoint; ++t )
 		{
-			graph.getLock().readLock().unlock();
-			index.readLock().unlock();
+			final double td = timeDistance( t, currentTimepoint, spotTimeLimit + 1 );
+			final ClipConvexPolytope< V > ccp = index.getSpatialIndex( t ).getClipConvexPolytope();
+			ccp.clip( visiblePolytope );
+			for ( final V vertex : ccp.getInsideValues() )
+			{
+				vertex.localize( gPos );
+				final double gx = gPos[ 0 ];
+				final double gy = gPos[ 1 ];
+				final double gz = gPos[ 2 ];
+				final double z = m20 * gx + m21 * gy + m22 * gz + m23;
+				final double sd = sliceDistance( z, maxDepth );
+				if ( sd <= -1 || sd >= 1 )
+					continue;
+				final double x = m00 * gx + m01 * gy + m02 * gz + m03;
+				if ( x < minX || x > maxX )
+					continue;
+				final double y = m10 * gx + m11 * gy + m12 * gz + m13;
+				if ( y < minY || y > maxY )
+					continue;
+
+				if ( !visibility.isVisible( vertex ) )
+					continue;
+
+				pastSpots.add( ( int ) x );
+				pastSpots.add( ( int ) y );
+				pastSpots.add( getColor(
+						sd,
+						td,
+						pointFadeDepth,
+						timepointDistanceFade,
+						selection.isSelected( vertex ),
+						false,
+						colorSpot,
+						colorPast,
+						colorFuture,
+						coloring.color( vertex ) ) );
+			}
+		}
+	}
+
+	/**
+	 * Index the screen geometry of the {@code frame} that was just painted and
+	 * make it available for picking.
+	 */
+	private void publishFrame( final PaintedFrame< V, E > frame, final AffineTransform3D transform, final int timepoint, final double maxDepth )
+	{
+		frame.transform.set( transform );
+		frame.timepoint = timepoint;
+		frame.maxDepth = maxDepth;
+		frame.drawSpots = settings.getDrawSpots();
+		frame.drawLinks = settings.getDrawLinks();
+		frame.intersection = settings.getDrawEllipsoidSliceIntersection();
+		frame.projection = settings.getDrawEllipsoidSliceProjection();
+		frame.visibilityMode = visibilities.getMode();
+		if ( frame.drawSpots )
+			frame.vertices.buildGrid( width, height, frame.intersection || drawPointsMaybe(), frame.projection, 2 * pointRadius );
+		if ( frame.drawLinks )
+			frame.edges.buildGrid( width, height );
+
+		synchronized ( pickLock )
+		{
+			final PaintedFrame< V, E > previous = paintedFrame;
+			paintedFrame = frame;
+			if ( previous != null )
+				paintingFrame = previous;
+			else if ( spareFrame != null )
+			{
+				paintingFrame = spareFrame;
+				spareFrame = null;
+			}
+			else
+				paintingFrame = new PaintedFrame<>( graph );
+		}
+	}
+
+	/**
+	 * Get the last painted frame, if it is valid for picking with the current
+	 * transform, timepoint, and settings. Must be called while holding
+	 * {@link #pickLock}.
+	 */
+	private PaintedFrame< V, E > getPickableFrame( final AffineTransform3D transform, final int timepoint )
+	{
+		final PaintedFrame< V, E > frame = paintedFrame;
+		if ( frame == null
+				|| frame.timepoint != timepoint
+				|| frame.visibilityMode != visibilities.getMode()
+				|| frame.drawSpots != settings.getDrawSpots()
+				|| frame.drawLinks != settings.getDrawLinks()
+				|| frame.intersection != settings.getDrawEllipsoidSliceIntersection()
+				|| frame.projection != settings.getDrawEllipsoidSliceProjection()
+				|| frame.maxDepth != getMaxDepth( transform ) )
+			return null;
+		final double[] a = frame.transform.getRowPackedCopy();
+		final double[] b = transform.getRowPackedCopy();
+		return Arrays.equals( a, b ) ? frame : null;
+	}
+
+	/**
+	 * Screen geometry of the spots and links painted in one frame, and the
+	 * parameters it was painted with.
+	 */
+	private static final class PaintedFrame< V extends OverlayVertex< V, E >, E extends OverlayEdge< E, V > >
+	{
+		final ScreenVertices< V > vertices;
+
+		final ScreenEdges< E > edges;
+
+		/**
+		 * x, y, and color of spots from past timepoints. Painted, but not
+		 * picked.
+		 */
+		final TIntArrayList pastSpots = new TIntArrayList();
+
+		final AffineTransform3D transform = new AffineTransform3D();
+
+		int timepoint;
+
+		double maxDepth;
+
+		boolean drawSpots;
+
+		boolean drawLinks;
+
+		boolean intersection;
+
+		boolean projection;
+
+		VisibilityMode visibilityMode;
+
+		PaintedFrame( final OverlayGraph< V, E > graph )
+		{
+			vertices = new ScreenVertices<>( graph );
+			edges = new ScreenEdges<>( graph );
 		}
-		graph.releaseRef( ref1 );
-		graph.releaseRef( ref2 );
-		graph.releaseRef( ref3 );
-		graph.releaseRef( source );
-		graph.releaseRef( target );
 	}
 
 	static void drawEllipse( final Graphics2D graphics, final Ellipse ellipse, AffineTransform torig )
@@ -804,15 +1265,10 @@ public class OverlayGraphRenderer< V extends OverlayVertex< V, E >, E extends Ov
 	// TODO: move to RenderSettings
 	static final Font font = new Font( "SansSerif", Font.PLAIN, 9 );
 
-	static void drawEllipseLabel( final Graphics2D graphics, final Ellipse ellipse, final String label )
+	private void addEllipseLabel( final Ellipse ellipse, final String label, final int color, final boolean isPriority )
 	{
 		final double[] tr = ellipse.getCenter();
-		final FontRenderContext frc = graphics.getFontRenderContext();
-		final TextLayout layout = new TextLayout( label, font, frc );
-		final Rectangle2D bounds = layout.getBounds();
-		final float tx = ( float ) ( tr[ 0 ] - bounds.getCenterX() );
-		final float ty = ( float ) ( tr[ 1 ] - bounds.getCenterY() );
-		layout.draw( graphics, tx, ty );
+		spotLabels.add( label, tr[ 0 ], tr[ 1 ], 2 * ellipse.getHalfWidth(), color, isPriority );
 	}
 
 	/**
@@ -858,6 +1314,13 @@ public class OverlayGraphRenderer< V extends OverlayVertex< V, E >, E extends Ov
 		final AffineTransform3D transform = getRenderTransformCopy();
 		final int currentTimepoint = renderTimepoint;
 
+		synchronized ( pickLock )
+		{
+			final PaintedFrame< V, E > frame = getPickableFrame( transform, currentTimepoint );
+			if ( frame != null )
+				return getPaintedEdgeAt( frame.edges, x, y, tolerance, ref );
+		}
+
 		class Op implements EdgeOperation< E >
 		{
 			final double squTolerance = tolerance * tolerance;
@@ -892,6 +1355,29 @@ public class OverlayGraphRenderer< V extends OverlayVertex< V, E >, E extends Ov
 		return op.found ? ref : null;
 	}
 
+	/**
+	 * Find the closest edge to {@code (x, y)} among the segments painted in the
+	 * last frame.
+	 */
+	private E getPaintedEdgeAt( final ScreenEdges< E > edges, final int x, final int y, final double tolerance, final E ref )
+	{
+		final TIntArrayList candidates = new TIntArrayList();
+		edges.getCandidates( x - tolerance, y - tolerance, x + tolerance, y + tolerance, candidates );
+		double bestSquDist = tolerance * tolerance;
+		int best = -1;
+		for ( int k = 0; k < candidates.size(); ++k )
+		{
+			final int i = candidates.getQuick( k );
+			final double squDist = edges.squaredDistance( i, x, y );
+			if ( squDist <= bestSquDist )
+			{
+				bestSquDist = squDist;
+				best = i;
+			}
+		}
+		return best < 0 ? null : edges.getEdge( best, ref );
+	}
+
 	/**
 	 * Transform viewer coordinates to global (world) coordinates.
 	 *
@@ -981,6 +1467,13 @@ public class OverlayGraphRenderer< V extends OverlayVertex< V, E >, E extends Ov
 		final ScreenVertexMath screenVertexMath = new ScreenVertexMath();
 		transform.applyInverse( gPos, lPos );
 
+		synchronized ( pickLock )
+		{
+			final PaintedFrame< V, E > frame = getPickableFrame( transform, currentTimepoint );
+			if ( frame != null )
+				return getPaintedVertexAt( frame.vertices, x, y, gPos, maxDepth, tolerance, ref );
+		}
+
 		boolean found = false;
 
 		index.readLock().lock();
@@ -989,32 +1482,38 @@ public class OverlayGraphRenderer< V extends OverlayVertex< V, E >, E extends Ov
 
 		if ( settings.getDrawEllipsoidSliceProjection() )
 		{
-			final double[] xy = new double[] { x, y };
 			final double[] vPos = new double[ 3 ];
 			double minDist = Double.MAX_VALUE;
 
 			final ConvexPolytope cropPolytopeGlobal = getSurroundingPolytopeGlobal( x, y, transform, currentTimepoint );
 			final ClipConvexPolytope< V > ccp = index.getSpatialIndex( currentTimepoint ).getClipConvexPolytope();
 			ccp.clip( cropPolytopeGlobal );
-			for ( final V vertex : ccp.getInsideValues() )
+			synchronized ( pickVertices )
 			{
-				if ( !visibility.isVisible( vertex ) )
-					continue;
+				pickVertices.clear();
+				for ( final V vertex : ccp.getInsideValues() )
+					if ( visibility.isVisible( vertex ) )
+						pickVertices.add( vertex, 0, ( byte ) 0, null );
+				pickVertices.computeGeometry( transform, false, true );
 
-				screenVertexMath.init( vertex, transform );
-				final double z = screenVertexMath.getViewPos()[ 2 ];
-				final double sd = sliceDistance( z, maxDepth );
-				if ( sd > -1 && sd < 1 && screenVertexMath.projectionContainsView( xy ) )
+				final V vertex = graph.vertexRef();
+				for ( int i = 0; i < pickVertices.size(); ++i )
 				{
-					found = true;
-					vertex.localize( vPos );
-					final double d = LinAlgHelpers.squareDistance( vPos, gPos );
-					if ( d < minDist )
+					final double z = pickVertices.vPos[ 3 * i + 2 ];
+					final double sd = sliceDistance( z, maxDepth );
+					if ( sd > -1 && sd < 1 && ScreenVertexMath.ellipseContains( pickVertices.projectEllipses, i, x, y ) )
 					{
-						minDist = d;
-						ref.refTo( vertex );
+						found = true;
+						pickVertices.getVertex( i, vertex ).localize( vPos );
+						final double d = LinAlgHelpers.squareDistance( vPos, gPos );
+						if ( d < minDist )
+						{
+							minDist = d;
+							ref.refTo( vertex );
+						}
 					}
 				}
+				graph.releaseRef( vertex );
 			}
 		}
 
@@ -1070,6 +1569,80 @@ public class OverlayGraphRenderer< V extends OverlayVertex< V, E >, E extends Ov
 		return found ? ref : null;
 	}
 
+	/**
+	 * Find the vertex at {@code (x, y)} among the spots painted in the last
+	 * frame. Applies the same criteria as the search in the spatial index:
+	 * first the projection ellipses, then the intersection ellipses, then the
+	 * spot centers.
+	 */
+	private V getPaintedVertexAt( final ScreenVertices< V > vertices, final int x, final int y, final double[] gPos, final double maxDepth, final double tolerance, final V ref )
+	{
+		final TIntArrayList candidates = new TIntArrayList();
+		vertices.getCandidates( x, y, x, y, candidates );
+
+		int best = -1;
+		double minDist = Double.MAX_VALUE;
+		if ( settings.getDrawEllipsoidSliceProjection() )
+		{
+			for ( int k = 0; k < candidates.size(); ++k )
+			{
+				final int i = candidates.getQuick( k );
+				final double sd = sliceDistance( vertices.vPos[ 3 * i + 2 ], maxDepth );
+				if ( sd > -1 && sd < 1 && ScreenVertexMath.ellipseContains( vertices.projectEllipses, i, x, y ) )
+				{
+					final double d = vertices.squaredGlobalDistance( i, gPos );
+					if ( d < minDist )
+					{
+						minDist = d;
+						best = i;
+					}
+				}
+			}
+		}
+
+		if ( best < 0 && settings.getDrawEllipsoidSliceIntersection() )
+		{
+			for ( int k = 0; k < candidates.size(); ++k )
+			{
+				final int i = candidates.getQuick( k );
+				if ( vertices.intersects[ i ] && ScreenVertexMath.ellipseContains( vertices.intersectEllipses, i, x, y ) )
+				{
+					final double d = vertices.squaredGlobalDistance( i, gPos );
+					if ( d < minDist )
+					{
+						minDist = d;
+						best = i;
+					}
+				}
+			}
+		}
+
+		if ( best < 0 && settings.getDrawSpotCenters() )
+		{
+			final double dr = pointRadius + tolerance;
+			candidates.resetQuick();
+			vertices.getCandidates( x - dr, y - dr, x + dr, y + dr, candidates );
+			for ( int k = 0; k < candidates.size(); ++k )
+			{
+				final int i = candidates.getQuick( k );
+				final double sd = sliceDistance( vertices.vPos[ 3 * i + 2 ], maxDepth );
+				final double dx = vertices.vPos[ 3 * i ] - x;
+				final double dy = vertices.vPos[ 3 * i + 1 ] - y;
+				if ( sd > -1 && sd < 1 && dx * dx + dy * dy <= dr * dr )
+				{
+					final double d = vertices.squaredGlobalDistance( i, gPos );
+					if ( d < minDist )
+					{
+						minDist = d;
+						best = i;
+					}
+				}
+			}
+		}
+
+		return best < 0 ? null : vertices.getVertex( best, ref );
+	}
+
 	/**
 	 * Get all vertices that would be visible with the current display settings
 	 * and the specified {@code transform} and {@code timepoint}. This is used
@@ -56,6 +56,7 @@ public class RenderSettings implements Style< RenderSettings >
 	public static final boolean DEFAULT_DRAW_POINTS = !DEFAULT_DRAW_ELLIPSE || (DEFAULT_DRAW_ELLIPSE && DEFAULT_DRAW_SLICE_INTERSECTION);
 	public static final boolean DEFAULT_DRAW_POINTS_FOR_ELLIPSE = false;
 	public static final boolean DEFAULT_DRAW_SPOT_LABELS = false;
+	public static final int DEFAULT_SPOT_TIME_LIMIT = 0;
 	public static final boolean DEFAULT_IS_FOCUS_LIMIT_RELATIVE = true;
 	public static final double DEFAULT_ELLIPSOID_FADE_DEPTH = 0.2;
 	public static final int DEFAULT_COLOR_SPOT_AND_PRESENT = Color.GREEN.getRGB();
@@ -112,6 +113,7 @@ public class RenderSettings implements Style< RenderSettings >
 		drawPoints = settings.drawPoints;
 		drawPointsForEllipses = settings.drawPointsForEllipses;
 		drawSpotLabels = settings.drawSpotLabels;
+		spotTimeLimit = settings.spotTimeLimit;
 		focusLimit = settings.focusLimit;
 		isFocusLimitViewRelative = settings.isFocusLimitViewRelative;
 		ellipsoidFadeDepth = settings.ellipsoidFadeDepth;
@@ -205,6 +207,13 @@ public class RenderSettings implements Style< RenderSettings >
 	 */
 	private boolean drawSpotLabels;
 
+	/**
+	 * Maximum number of timepoints into the past for which spot centers
+	 * should be drawn, in addition to the spots of the current timepoint.
+	 * {@code 0} means that only the current timepoint is drawn.
+	 */
+	private int spotTimeLimit;
+
 	/**
 	 * Maximum distance from view plane up to which to draw spots.
 	 *
@@ -379,6 +388,35 @@ public class RenderSettings implements Style< RenderSettings >
 		}
 	}
 
+	/**
+	 * Gets the maximum number of time-points into the past for which spot
+	 * centers are drawn, in addition to the spots of the current time-point.
+	 *
+	 * @return maximum number of time-points into the past to draw spots.
+	 */
+	public int getSpotTimeLimit()
+	{
+		return spotTimeLimit;
+	}
+
+	/**
+	 * Sets the maximum number of time-points into the past for which spot
+	 * centers are drawn, in addition to the spots of the current time-point.
+	 * Spots are drawn increasingly faded the further they are in the past.
+	 *
+	 * @param spotTimeLimit
+	 *            maximum number of time-points into the past to draw spots.
+	 *            {@code 0} draws only the current time-point.
+	 */
+	public synchronized void setSpotTimeLimit( final int spotTimeLimit )
+	{
+		if ( this.spotTimeLimit != spotTimeLimit )
+		{
+			this.spotTimeLimit = spotTimeLimit;
+			notifyListeners();
+		}
+	}
+
 	/**
 	 * Gets whether to draw links (at all). For specific settings, see
 	 * {@link #getTimeLimit()}, {@link #getUseGradient()}.
@@ -886,6 +924,7 @@ public class RenderSettings implements Style< RenderSettings >
 		df.drawPoints = DEFAULT_DRAW_POINTS;
 		df.drawPointsForEllipses = DEFAULT_DRAW_POINTS_FOR_ELLIPSE;
 		df.drawSpotLabels = DEFAULT_DRAW_SPOT_LABELS;
+		df.spotTimeLimit = DEFAULT_SPOT_TIME_LIMIT;
 		df.focusLimit = DEFAULT_LIMIT_FOCUS_RANGE;
 		df.isFocusLimitViewRelative = DEFAULT_IS_FOCUS_LIMIT_RELATIVE;
 		df.ellipsoidFadeDepth = DEFAULT_ELLIPSOID_FADE_DEPTH;
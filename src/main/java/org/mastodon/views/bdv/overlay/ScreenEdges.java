@@ -0,0 +1,136 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2021 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.views.bdv.overlay;
+
+import java.util.Arrays;
+
+import org.mastodon.collection.RefCollections;
+import org.mastodon.collection.RefList;
+import org.mastodon.util.GeometryUtil;
+import org.mastodon.util.ScreenBoxGrid;
+
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * Screen-space line segments of the links painted in one BDV overlay frame,
+ * with a grid to pick them.
+ *
+ * @param <E>
+ *            the type of edge.
+ */
+class ScreenEdges< E extends OverlayEdge< E, ? > >
+{
+	private final RefList< E > edges;
+
+	private int size;
+
+	/**
+	 * x0, y0, x1, y1 of each segment.
+	 */
+	private int[] coords = new int[ 4 * 256 ];
+
+	private double[] boxes = new double[ 0 ];
+
+	private final ScreenBoxGrid grid = new ScreenBoxGrid();
+
+	ScreenEdges( final OverlayGraph< ?, E > graph )
+	{
+		edges = RefCollections.createRefList( graph.edges() );
+		size = 0;
+	}
+
+	void clear()
+	{
+		edges.clear();
+		size = 0;
+	}
+
+	int size()
+	{
+		return size;
+	}
+
+	void add( final E edge, final int x0, final int y0, final int x1, final int y1 )
+	{
+		if ( coords.length < 4 * ( size + 1 ) )
+			coords = Arrays.copyOf( coords, 2 * coords.length );
+		final int o = 4 * size;
+		coords[ o ] = x0;
+		coords[ o + 1 ] = y0;
+		coords[ o + 2 ] = x1;
+		coords[ o + 3 ] = y1;
+		edges.add( edge );
+		++size;
+	}
+
+	/**
+	 * Get the edge at position {@code i}. Only valid as long as the edge
+	 * exists.
+	 */
+	E getEdge( final int i, final E ref )
+	{
+		return edges.get( i, ref );
+	}
+
+	/**
+	 * Squared distance of {@code (x, y)} to segment {@code i}.
+	 */
+	double squaredDistance( final int i, final double x, final double y )
+	{
+		final int o = 4 * i;
+		return GeometryUtil.squSegmentDist( x, y, coords[ o ], coords[ o + 1 ], coords[ o + 2 ], coords[ o + 3 ] );
+	}
+
+	/**
+	 * Index the bounding boxes of the segments for {@link #getCandidates}.
+	 */
+	void buildGrid( final int width, final int height )
+	{
+		if ( boxes.length < 4 * size )
+			boxes = new double[ coords.length ];
+		for ( int i = 0, o = 0; i < size; ++i, o += 4 )
+		{
+			boxes[ o ] = Math.min( coords[ o ], coords[ o + 2 ] );
+			boxes[ o + 1 ] = Math.min( coords[ o + 1 ], coords[ o + 3 ] );
+			boxes[ o + 2 ] = Math.max( coords[ o ], coords[ o + 2 ] );
+			boxes[ o + 3 ] = Math.max( coords[ o + 1 ], coords[ o + 3 ] );
+		}
+		grid.build( size, boxes, 0, 0, width, height );
+	}
+
+	/**
+	 * Adds to {@code candidates} the indices of all segments that possibly
+	 * intersect the rectangle {@code (x1, y1)} to {@code (x2, y2)}. Requires
+	 * {@link #buildGrid}.
+	 */
+	void getCandidates( final double x1, final double y1, final double x2, final double y2, final TIntArrayList candidates )
+	{
+		grid.getCandidates( x1, y1, x2, y2, candidates );
+	}
+}
@@ -48,11 +48,22 @@ import net.imglib2.util.LinAlgHelpers;
  * triggers all necessary computations to provide the requested value.
  * Intermediate results are cached.
  * </ol>
+ * <p>
+ * For many vertices, {@link #computeEllipses} computes positions and ellipses
+ * of a batch of vertices given as primitive arrays, without eigenvalue
+ * decompositions.
  *
  * @author Tobias Pietzsch
  */
 public class ScreenVertexMath
 {
+	/**
+	 * Number of {@code double}s per ellipse in the arrays used by
+	 * {@link #computeEllipses}: center x, center y, theta, half-width,
+	 * half-height.
+	 */
+	public static final int ELLIPSE_SIZE = 5;
+
 	public static class Ellipse
 	{
 		/**
@@ -577,4 +588,188 @@ public class ScreenVertexMath
 
 		intersectionComputed = true;
 	}
+
+	/**
+	 * Computes viewer positions and ellipses for vertices {@code from}
+	 * (inclusive) to {@code to} (exclusive) in one pass.
+	 * <p>
+	 * Inputs and outputs are packed arrays: 3 {@code double}s per vertex for
+	 * positions, 6 for covariances (upper triangle, row-major: xx, xy, xz, yy,
+	 * yz, zz) and {@link #ELLIPSE_SIZE} for ellipses. The results are the same
+	 * as those of {@link #getViewPos()}, {@link #getProjectEllipse()},
+	 * {@link #intersectsViewPlane()} and {@link #getIntersectEllipse()}. The
+	 * intersection ellipse is obtained directly from the viewer covariance
+	 * (the conditional covariance given z=0), and the 2D eigenvalue
+	 * decompositions are computed in closed form.
+	 * <p>
+	 * Disjoint ranges can be computed concurrently.
+	 *
+	 * @param transform
+	 *            the viewer transform.
+	 * @param from
+	 *            index of the first vertex.
+	 * @param to
+	 *            index after the last vertex.
+	 * @param gPos
+	 *            vertex positions in global coordinates.
+	 * @param gCov
+	 *            vertex covariances in global coordinates.
+	 * @param vPos
+	 *            receives vertex positions in viewer coordinates.
+	 * @param intersects
+	 *            receives whether the ellipsoids intersect the z=0 plane. May
+	 *            be {@code null} if {@code intersectEllipses} is.
+	 * @param intersectEllipses
+	 *            receives the ellipses obtained by intersecting the ellipsoids
+	 *            with the z=0 plane (only where {@code intersects}). May be
+	 *            {@code null}, then intersections are not computed.
+	 * @param projectEllipses
+	 *            receives the ellipses obtained by projecting the ellipsoids
+	 *            to the z=0 plane. May be {@code null}, then projections are
+	 *            not computed.
+	 */
+	public static void computeEllipses(
+			final AffineTransform3D transform,
+			final int from,
+			final int to,
+			final double[] gPos,
+			final double[] gCov,
+			final double[] vPos,
+			final boolean[] intersects,
+			final double[] intersectEllipses,
+			final double[] projectEllipses )
+	{
+		final double t00 = transform.get( 0, 0 );
+		final double t01 = transform.get( 0, 1 );
+		final double t02 = transform.get( 0, 2 );
+		final double t03 = transform.get( 0, 3 );
+		final double t10 = transform.get( 1, 0 );
+		final double t11 = transform.get( 1, 1 );
+		final double t12 = transform.get( 1, 2 );
+		final double t13 = transform.get( 1, 3 );
+		final double t20 = transform.get( 2, 0 );
+		final double t21 = transform.get( 2, 1 );
+		final double t22 = transform.get( 2, 2 );
+		final double t23 = transform.get( 2, 3 );
+
+		for ( int i = from; i < to; ++i )
+		{
+			final int p = 3 * i;
+			final int c = 6 * i;
+			final int e = ELLIPSE_SIZE * i;
+
+			// transform spot position into viewer coordinates
+			final double gx = gPos[ p ];
+			final double gy = gPos[ p + 1 ];
+			final double gz = gPos[ p + 2 ];
+			final double x = t00 * gx + t01 * gy + t02 * gz + t03;
+			final double y = t10 * gx + t11 * gy + t12 * gz + t13;
+			final double z = t20 * gx + t21 * gy + t22 * gz + t23;
+			vPos[ p ] = x;
+			vPos[ p + 1 ] = y;
+			vPos[ p + 2 ] = z;
+
+			// transform spot covariance into viewer coordinates: T * S * T^T
+			final double s00 = gCov[ c ];
+			final double s01 = gCov[ c + 1 ];
+			final double s02 = gCov[ c + 2 ];
+			final double s11 = gCov[ c + 3 ];
+			final double s12 = gCov[ c + 4 ];
+			final double s22 = gCov[ c + 5 ];
+			final double a00 = t00 * s00 + t01 * s01 + t02 * s02;
+			final double a01 = t00 * s01 + t01 * s11 + t02 * s12;
+			final double a02 = t00 * s02 + t01 * s12 + t02 * s22;
+			final double a10 = t10 * s00 + t11 * s01 + t12 * s02;
+			final double a11 = t10 * s01 + t11 * s11 + t12 * s12;
+			final double a12 = t10 * s02 + t11 * s12 + t12 * s22;
+			final double a20 = t20 * s00 + t21 * s01 + t22 * s02;
+			final double a21 = t20 * s01 + t21 * s11 + t22 * s12;
+			final double a22 = t20 * s02 + t21 * s12 + t22 * s22;
+			final double v00 = a00 * t00 + a01 * t01 + a02 * t02;
+			final double v01 = a00 * t10 + a01 * t11 + a02 * t12;
+			final double v02 = a00 * t20 + a01 * t21 + a02 * t22;
+			final double v11 = a10 * t10 + a11 * t11 + a12 * t12;
+			final double v12 = a10 * t20 + a11 * t21 + a12 * t22;
+			final double v22 = a20 * t20 + a21 * t21 + a22 * t22;
+
+			if ( projectEllipses != null )
+				setEllipse( projectEllipses, e, x, y, v00, v01, v11 );
+
+			if ( intersectEllipses != null )
+			{
+				/*
+				 * The ellipsoid intersects z=0 iff z^2 < v22. The intersection
+				 * is centered at the conditional mean given z=0, and its shape
+				 * is the conditional covariance, scaled by 1 - z^2 / v22.
+				 */
+				final double zz = z * z;
+				if ( zz < v22 )
+				{
+					intersects[ i ] = true;
+					final double radius2 = 1.0 - zz / v22;
+					final double k = z / v22;
+					setEllipse( intersectEllipses, e,
+							x - k * v02,
+							y - k * v12,
+							radius2 * ( v00 - v02 * v02 / v22 ),
+							radius2 * ( v01 - v02 * v12 / v22 ),
+							radius2 * ( v11 - v12 * v12 / v22 ) );
+				}
+				else
+					intersects[ i ] = false;
+			}
+		}
+	}
+
+	/**
+	 * Tests whether the point {@code (x, y)} lies within the ellipse
+	 * {@code i} of the packed array {@code ellipses} (as filled by
+	 * {@link #computeEllipses}).
+	 *
+	 * @param ellipses
+	 *            the packed ellipses.
+	 * @param i
+	 *            the index of the ellipse.
+	 * @param x
+	 *            the x coordinate of the point.
+	 * @param y
+	 *            the y coordinate of the point.
+	 * @return {@code true} iff the point lies within the ellipse.
+	 */
+	public static boolean ellipseContains( final double[] ellipses, final int i, final double x, final double y )
+	{
+		final int e = ELLIPSE_SIZE * i;
+		final double dx = x - ellipses[ e ];
+		final double dy = y - ellipses[ e + 1 ];
+		final double theta = ellipses[ e + 2 ];
+		final double cos = Math.cos( theta );
+		final double sin = Math.sin( theta );
+		final double u = ( cos * dx + sin * dy ) / ellipses[ e + 3 ];
+		final double v = ( -sin * dx + cos * dy ) / ellipses[ e + 4 ];
+		return u * u + v * v < 1;
+	}
+
+	/**
+	 * Stores the ellipse with the specified center and covariance
+	 * {@code [a b; b c]} at offset {@code e} in {@code ellipses}. The
+	 * eigenvalue decomposition of the covariance is computed in closed form.
+	 */
+	private static void setEllipse(
+			final double[] ellipses,
+			final int e,
+			final double cx,
+			final double cy,
+			final double a,
+			final double b,
+			final double c )
+	{
+		final double mean = 0.5 * ( a + c );
+		final double hdiff = 0.5 * ( a - c );
+		final double r = Math.sqrt( hdiff * hdiff + b * b );
+		ellipses[ e ] = cx;
+		ellipses[ e + 1 ] = cy;
+		ellipses[ e + 2 ] = 0.5 * Math.atan2( 2 * b, a - c );
+		ellipses[ e + 3 ] = Math.sqrt( mean + r );
+		ellipses[ e + 4 ] = Math.sqrt( Math.max( 0, mean - r ) );
+	}
 }
@@ -0,0 +1,329 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2021 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.views.bdv.overlay;
+
+import static org.mastodon.views.bdv.overlay.ScreenVertexMath.ELLIPSE_SIZE;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import org.mastodon.collection.RefCollections;
+import org.mastodon.collection.RefList;
+import org.mastodon.util.ScreenBoxGrid;
+import org.mastodon.views.bdv.overlay.ScreenVertexMath.Ellipse;
+
+import gnu.trove.list.array.TIntArrayList;
+import net.imglib2.realtransform.AffineTransform3D;
+
+/**
+ * Screen-space geometry and display attributes of the spots painted in one
+ * BDV overlay frame, stored as primitive arrays.
+ * <p>
+ * A frame is produced in two steps. While holding the graph read lock, the
+ * visible vertices are collected with {@link #add}, which copies their
+ * position and covariance together with their color and selection state.
+ * Then {@link #computeGeometry} computes their screen positions and ellipses
+ * with {@link ScreenVertexMath#computeEllipses}, in parallel chunks for large
+ * frames. This second step only reads the arrays, so it does not need the
+ * lock.
+ *
+ * @param <V>
+ *            the type of vertex.
+ */
+class ScreenVertices< V extends OverlayVertex< V, ? > >
+{
+	/**
+	 * Number of vertices processed by one task when computing the geometry
+	 * in parallel.
+	 */
+	private static final int CHUNK_SIZE = 1024;
+
+	static final byte SELECTED = 1;
+
+	static final byte HIGHLIGHTED = 2;
+
+	static final byte FOCUSED = 4;
+
+	private final RefList< V > vertices;
+
+	private int size;
+
+	private int capacity;
+
+	/**
+	 * Spot centers in global coordinates, 3 per vertex.
+	 */
+	private double[] gPos = new double[ 0 ];
+
+	/**
+	 * Spot covariances in global coordinates, 6 per vertex (xx, xy, xz, yy,
+	 * yz, zz).
+	 */
+	private double[] gCov = new double[ 0 ];
+
+	/**
+	 * Spot centers in viewer coordinates, 3 per vertex.
+	 */
+	double[] vPos = new double[ 0 ];
+
+	/**
+	 * Whether the ellipsoid intersects the z=0 plane.
+	 */
+	boolean[] intersects = new boolean[ 0 ];
+
+	/**
+	 * Ellipses obtained by intersecting the ellipsoids with the z=0 plane,
+	 * {@link ScreenVertexMath#ELLIPSE_SIZE} per vertex. Only valid if
+	 * {@code intersects[i]}.
+	 */
+	double[] intersectEllipses = new double[ 0 ];
+
+	/**
+	 * Ellipses obtained by projecting the ellipsoids to the z=0 plane,
+	 * {@link ScreenVertexMath#ELLIPSE_SIZE} per vertex.
+	 */
+	double[] projectEllipses = new double[ 0 ];
+
+	/**
+	 * Color assigned by the coloring scheme (0 if none).
+	 */
+	int[] color = new int[ 0 ];
+
+	/**
+	 * Combination of {@link #SELECTED}, {@link #HIGHLIGHTED}, and
+	 * {@link #FOCUSED}.
+	 */
+	byte[] flags = new byte[ 0 ];
+
+	/**
+	 * Spot labels, or {@code null} entries if labels are not painted.
+	 */
+	String[] labels = new String[ 0 ];
+
+	/**
+	 * Screen bounding boxes of the painted vertices, for {@link #grid}.
+	 */
+	private double[] boxes = new double[ 0 ];
+
+	private final ScreenBoxGrid grid = new ScreenBoxGrid();
+
+	private final double[] tmpPos = new double[ 3 ];
+
+	private final double[][] tmpCov = new double[ 3 ][ 3 ];
+
+	ScreenVertices( final OverlayGraph< V, ? > graph )
+	{
+		vertices = RefCollections.createRefList( graph.vertices() );
+		size = 0;
+		capacity = 0;
+		ensureCapacity( 256 );
+	}
+
+	/**
+	 * Remove all vertices. Array storage is kept for the next frame.
+	 */
+	void clear()
+	{
+		vertices.clear();
+		Arrays.fill( labels, 0, size, null );
+		size = 0;
+	}
+
+	int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Get the vertex at position {@code i}. Only valid as long as no vertices
+	 * have been removed from the graph since the frame was collected.
+	 */
+	V getVertex( final int i, final V ref )
+	{
+		return vertices.get( i, ref );
+	}
+
+	/**
+	 * Append a vertex, copying its position and covariance. Its geometry is
+	 * computed later, by {@link #computeGeometry}.
+	 */
+	void add( final V vertex, final int color, final byte flags, final String label )
+	{
+		ensureCapacity( size + 1 );
+		vertices.add( vertex );
+
+		vertex.localize( tmpPos );
+		System.arraycopy( tmpPos, 0, gPos, 3 * size, 3 );
+
+		vertex.getCovariance( tmpCov );
+		final int c = 6 * size;
+		gCov[ c ] = tmpCov[ 0 ][ 0 ];
+		gCov[ c + 1 ] = tmpCov[ 0 ][ 1 ];
+		gCov[ c + 2 ] = tmpCov[ 0 ][ 2 ];
+		gCov[ c + 3 ] = tmpCov[ 1 ][ 1 ];
+		gCov[ c + 4 ] = tmpCov[ 1 ][ 2 ];
+		gCov[ c + 5 ] = tmpCov[ 2 ][ 2 ];
+
+		this.color[ size ] = color;
+		this.flags[ size ] = flags;
+		this.labels[ size ] = label;
+		++size;
+	}
+
+	/**
+	 * Compute screen positions and ellipses of all vertices.
+	 *
+	 * @param transform
+	 *            the viewer transform.
+	 * @param intersection
+	 *            whether to compute the slice intersection ellipses.
+	 * @param projection
+	 *            whether to compute the slice projection ellipses.
+	 */
+	void computeGeometry( final AffineTransform3D transform, final boolean intersection, final boolean projection )
+	{
+		final int n = size;
+		final double[] ie = intersection ? intersectEllipses : null;
+		final double[] pe = projection ? projectEllipses : null;
+		if ( !intersection )
+			Arrays.fill( intersects, 0, n, false );
+		final int numChunks = ( n + CHUNK_SIZE - 1 ) / CHUNK_SIZE;
+		if ( numChunks <= 1 )
+			ScreenVertexMath.computeEllipses( transform, 0, n, gPos, gCov, vPos, intersects, ie, pe );
+		else
+			IntStream.range( 0, numChunks ).parallel().forEach( k -> ScreenVertexMath.computeEllipses(
+					transform, k * CHUNK_SIZE, Math.min( n, ( k + 1 ) * CHUNK_SIZE ), gPos, gCov, vPos, intersects, ie, pe ) );
+	}
+
+	/**
+	 * Get the squared distance between the global position of vertex
+	 * {@code i} and {@code p}.
+	 */
+	double squaredGlobalDistance( final int i, final double[] p )
+	{
+		final double dx = gPos[ 3 * i ] - p[ 0 ];
+		final double dy = gPos[ 3 * i + 1 ] - p[ 1 ];
+		final double dz = gPos[ 3 * i + 2 ] - p[ 2 ];
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	/**
+	 * Index the screen bounding boxes of the vertices, as painted with the
+	 * specified settings, for {@link #getCandidates}.
+	 *
+	 * @param width
+	 *            the canvas width.
+	 * @param height
+	 *            the canvas height.
+	 * @param intersection
+	 *            whether intersection ellipses were painted.
+	 * @param projection
+	 *            whether projection ellipses were painted.
+	 * @param pointRadius
+	 *            the largest radius of painted spot centers.
+	 */
+	void buildGrid( final int width, final int height, final boolean intersection, final boolean projection, final double pointRadius )
+	{
+		if ( boxes.length < 4 * size )
+			boxes = new double[ 4 * capacity ];
+		for ( int i = 0; i < size; ++i )
+		{
+			final double x = vPos[ 3 * i ];
+			final double y = vPos[ 3 * i + 1 ];
+			final int e = ELLIPSE_SIZE * i;
+			double r = pointRadius;
+			if ( projection )
+				r = Math.max( r, projectEllipses[ e + 3 ] );
+			if ( intersection && intersects[ i ] )
+			{
+				final double dx = intersectEllipses[ e ] - x;
+				final double dy = intersectEllipses[ e + 1 ] - y;
+				r = Math.max( r, Math.sqrt( dx * dx + dy * dy ) + intersectEllipses[ e + 3 ] );
+			}
+			final int b = 4 * i;
+			boxes[ b ] = x - r;
+			boxes[ b + 1 ] = y - r;
+			boxes[ b + 2 ] = x + r;
+			boxes[ b + 3 ] = y + r;
+		}
+		grid.build( size, boxes, 0, 0, width, height );
+	}
+
+	/**
+	 * Adds to {@code candidates} the indices of all vertices whose painted
+	 * shapes possibly intersect the rectangle {@code (x1, y1)} to
+	 * {@code (x2, y2)}. Requires {@link #buildGrid}.
+	 */
+	void getCandidates( final double x1, final double y1, final double x2, final double y2, final TIntArrayList candidates )
+	{
+		grid.getCandidates( x1, y1, x2, y2, candidates );
+	}
+
+	/**
+	 * Set {@code ellipse} to the intersection ellipse of vertex {@code i}.
+	 */
+	void getIntersectEllipse( final int i, final Ellipse ellipse )
+	{
+		setEllipse( intersectEllipses, i, ellipse );
+	}
+
+	/**
+	 * Set {@code ellipse} to the projection ellipse of vertex {@code i}.
+	 */
+	void getProjectEllipse( final int i, final Ellipse ellipse )
+	{
+		setEllipse( projectEllipses, i, ellipse );
+	}
+
+	private static void setEllipse( final double[] ellipses, final int i, final Ellipse ellipse )
+	{
+		final int e = ELLIPSE_SIZE * i;
+		ellipse.setCenter( ellipses[ e ], ellipses[ e + 1 ] );
+		ellipse.setTheta( ellipses[ e + 2 ] );
+		ellipse.setAxisHalfLength( ellipses[ e + 3 ], ellipses[ e + 4 ] );
+	}
+
+	private void ensureCapacity( final int minCapacity )
+	{
+		if ( minCapacity <= capacity )
+			return;
+
+		final int c = Math.max( minCapacity, 2 * capacity );
+		gPos = Arrays.copyOf( gPos, 3 * c );
+		gCov = Arrays.copyOf( gCov, 6 * c );
+		vPos = Arrays.copyOf( vPos, 3 * c );
+		intersects = Arrays.copyOf( intersects, c );
+		intersectEllipses = Arrays.copyOf( intersectEllipses, ELLIPSE_SIZE * c );
+		projectEllipses = Arrays.copyOf( projectEllipses, ELLIPSE_SIZE * c );
+		color = Arrays.copyOf( color, c );
+		flags = Arrays.copyOf( flags, c );
+		labels = Arrays.copyOf( labels, c );
+		capacity = c;
+	}
+}
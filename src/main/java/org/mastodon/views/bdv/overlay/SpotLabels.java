@@ -0,0 +1,226 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2021 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.views.bdv.overlay;
+
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.font.FontRenderContext;
+import java.awt.font.TextLayout;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Spot labels of one BDV overlay frame. Labels are collected while spots are
+ * painted and drawn afterwards, in one batch on top of all ellipses.
+ * <p>
+ * Labels are skipped if they are larger than the ellipse they belong to, or if
+ * they would overlap a label that was already drawn. Labels of highlighted and
+ * focused spots are drawn first, and are never skipped for being too large.
+ * Text layouts are cached by label string, for the current font and
+ * {@link FontRenderContext}.
+ * <p>
+ * Not thread-safe.
+ */
+class SpotLabels
+{
+	private static final int MAX_CACHE_SIZE = 4096;
+
+	/**
+	 * Cell size (in pixels) of the occupancy grid used to detect overlapping
+	 * labels.
+	 */
+	private static final int CELL_SIZE = 4;
+
+	private final Map< String, Label > layouts = new HashMap<>();
+
+	private Font layoutFont;
+
+	private FontRenderContext layoutFrc;
+
+	private int size;
+
+	private String[] labels = new String[ 64 ];
+
+	/**
+	 * Center x, center y, and size (major axis length) of the ellipse of each
+	 * label.
+	 */
+	private double[] ellipses = new double[ 3 * 64 ];
+
+	private int[] colors = new int[ 64 ];
+
+	private boolean[] priority = new boolean[ 64 ];
+
+	private final BitSet occupied = new BitSet();
+
+	private int cellsX;
+
+	private int cellsY;
+
+	/**
+	 * A cached text layout and its bounds.
+	 */
+	private static final class Label
+	{
+		final TextLayout layout;
+
+		final Rectangle2D bounds;
+
+		Label( final TextLayout layout )
+		{
+			this.layout = layout;
+			this.bounds = layout.getBounds();
+		}
+	}
+
+	void clear()
+	{
+		Arrays.fill( labels, 0, size, null );
+		size = 0;
+	}
+
+	/**
+	 * Add a label to draw.
+	 *
+	 * @param label
+	 *            the label.
+	 * @param x
+	 *            center x of the ellipse.
+	 * @param y
+	 *            center y of the ellipse.
+	 * @param ellipseSize
+	 *            the length of the major axis of the ellipse.
+	 * @param color
+	 *            ARGB color to draw the label with.
+	 * @param isPriority
+	 *            whether to draw this label before others (highlighted or
+	 *            focused spots).
+	 */
+	void add( final String label, final double x, final double y, final double ellipseSize, final int color, final boolean isPriority )
+	{
+		if ( size == labels.length )
+		{
+			final int c = 2 * size;
+			labels = Arrays.copyOf( labels, c );
+			ellipses = Arrays.copyOf( ellipses, 3 * c );
+			colors = Arrays.copyOf( colors, c );
+			priority = Arrays.copyOf( priority, c );
+		}
+		labels[ size ] = label;
+		ellipses[ 3 * size ] = x;
+		ellipses[ 3 * size + 1 ] = y;
+		ellipses[ 3 * size + 2 ] = ellipseSize;
+		colors[ size ] = color;
+		priority[ size ] = isPriority;
+		++size;
+	}
+
+	/**
+	 * Draw the collected labels.
+	 *
+	 * @param graphics
+	 *            the graphics to draw to.
+	 * @param font
+	 *            the font to use.
+	 * @param colorCache
+	 *            provides the label colors.
+	 * @param width
+	 *            width of the canvas.
+	 * @param height
+	 *            height of the canvas.
+	 */
+	void draw( final Graphics2D graphics, final Font font, final ColorCache colorCache, final int width, final int height )
+	{
+		final FontRenderContext frc = graphics.getFontRenderContext();
+		if ( !font.equals( layoutFont ) || !frc.equals( layoutFrc ) || layouts.size() >= MAX_CACHE_SIZE )
+		{
+			layouts.clear();
+			layoutFont = font;
+			layoutFrc = frc;
+		}
+
+		cellsX = width / CELL_SIZE + 1;
+		cellsY = height / CELL_SIZE + 1;
+		occupied.clear();
+
+		for ( int i = 0; i < size; ++i )
+			if ( priority[ i ] )
+				draw( graphics, i, colorCache );
+		for ( int i = 0; i < size; ++i )
+			if ( !priority[ i ] )
+				draw( graphics, i, colorCache );
+	}
+
+	private void draw( final Graphics2D graphics, final int i, final ColorCache colorCache )
+	{
+		final String text = labels[ i ];
+		Label label = layouts.get( text );
+		if ( label == null )
+		{
+			label = new Label( new TextLayout( text, layoutFont, layoutFrc ) );
+			layouts.put( text, label );
+		}
+
+		final Rectangle2D bounds = label.bounds;
+		if ( !priority[ i ] && bounds.getWidth() > ellipses[ 3 * i + 2 ] )
+			return;
+
+		final float tx = ( float ) ( ellipses[ 3 * i ] - bounds.getCenterX() );
+		final float ty = ( float ) ( ellipses[ 3 * i + 1 ] - bounds.getCenterY() );
+		final double minX = tx + bounds.getMinX();
+		final double minY = ty + bounds.getMinY();
+		final double maxX = tx + bounds.getMaxX();
+		final double maxY = ty + bounds.getMaxY();
+		final int cx0 = Math.max( 0, ( int ) Math.floor( minX / CELL_SIZE ) );
+		final int cy0 = Math.max( 0, ( int ) Math.floor( minY / CELL_SIZE ) );
+		final int cx1 = Math.min( cellsX - 1, ( int ) Math.floor( maxX / CELL_SIZE ) );
+		final int cy1 = Math.min( cellsY - 1, ( int ) Math.floor( maxY / CELL_SIZE ) );
+		if ( cx0 > cx1 || cy0 > cy1 )
+			return; // not on screen
+
+		for ( int cy = cy0; cy <= cy1; ++cy )
+		{
+			final int o = cy * cellsX;
+			final int next = occupied.nextSetBit( o + cx0 );
+			if ( next >= 0 && next <= o + cx1 )
+				return; // overlaps a label that was already drawn
+		}
+		for ( int cy = cy0; cy <= cy1; ++cy )
+		{
+			final int o = cy * cellsX;
+			occupied.set( o + cx0, o + cx1 + 1 );
+		}
+
+		graphics.setColor( colorCache.get( colors[ i ] ) );
+		label.layout.draw( graphics, tx, ty );
+	}
+}
@@ -0,0 +1,117 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2021 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.views.bdv.overlay;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+/**
+ * Caches one value per timepoint, built on demand by {@link #build(int)}.
+ * <p>
+ * Entries must be invalidated when the data they were built from changes, see
+ * {@link #invalidate(int)} and {@link #invalidateAll()}. Entries are assumed
+ * to be immutable once built, so a reader can keep using an entry that is
+ * concurrently invalidated.
+ *
+ * @param <T>
+ *            the type of cached values.
+ */
+abstract class TimepointCache< T >
+{
+	private final TIntObjectHashMap< T > cache = new TIntObjectHashMap<>();
+
+	/**
+	 * Incremented on every invalidation. Values built concurrently with an
+	 * invalidation are not put into the cache.
+	 */
+	private int generation;
+
+	/**
+	 * Builds the value of {@code timepoint}. Called without holding the lock
+	 * of this cache.
+	 */
+	protected abstract T build( final int timepoint );
+
+	/**
+	 * Get the value of {@code timepoint}, building it if necessary.
+	 */
+	T get( final int timepoint )
+	{
+		final int gen;
+		synchronized ( cache )
+		{
+			final T value = cache.get( timepoint );
+			if ( value != null )
+				return value;
+			gen = generation;
+		}
+
+		final T value = build( timepoint );
+		synchronized ( cache )
+		{
+			if ( gen == generation )
+				cache.put( timepoint, value );
+		}
+		return value;
+	}
+
+	/**
+	 * Discard cached values of timepoints outside {@code [minT, maxT]}.
+	 */
+	void retain( final int minT, final int maxT )
+	{
+		synchronized ( cache )
+		{
+			cache.retainEntries( ( t, v ) -> t >= minT && t <= maxT );
+		}
+	}
+
+	/**
+	 * Discard the cached value of {@code timepoint}.
+	 */
+	void invalidate( final int timepoint )
+	{
+		synchronized ( cache )
+		{
+			++generation;
+			cache.remove( timepoint );
+		}
+	}
+
+	/**
+	 * Discard all cached values.
+	 */
+	void invalidateAll()
+	{
+		synchronized ( cache )
+		{
+			++generation;
+			cache.clear();
+		}
+	}
+}
@@ -33,11 +33,11 @@ import java.util.List;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.mastodon.collection.RefCollections;
-import org.mastodon.collection.RefSet;
+import org.mastodon.collection.RefIntMap;
+import org.mastodon.collection.RefStack;
 import org.mastodon.graph.Edge;
 import org.mastodon.graph.ReadOnlyGraph;
 import org.mastodon.graph.Vertex;
-import org.mastodon.graph.algorithm.AbstractGraphAlgorithm;
 import org.mastodon.graph.algorithm.util.Graphs;
 import org.mastodon.model.FocusListener;
 import org.mastodon.model.FocusModel;
@@ -102,6 +102,13 @@ public class Visibilities< V extends Vertex< E >, E extends Edge< V > >
 	 */
 	private FocusListener previousFocusListener;
 
+	/**
+	 * Track labels used by the {@link VisibilityMode#TRACK_OF_FOCUSED_VERTEX}
+	 * mode. Kept across focus and mode changes, and discarded when the graph
+	 * changes.
+	 */
+	private final TrackLabels< V, E > tracks;
+
 	/**
 	 * Creates a new visibilities instance.
 	 *
@@ -128,9 +135,24 @@ public class Visibilities< V extends Vertex< E >, E extends Edge< V > >
 		this.focusModel = focusModel;
 		this.lock = lock;
 		this.visibilityListeners = new Listeners.SynchronizedList<>();
+		this.tracks = new TrackLabels<>( graph );
 		setMode( VisibilityMode.ALL );
 	}
 
+	/**
+	 * Discards the track labels of the
+	 * {@link VisibilityMode#TRACK_OF_FOCUSED_VERTEX} mode. Must be called when
+	 * the graph changes, typically by registering it as a
+	 * {@code GraphChangeListener} of the graph, for as long as the owner of
+	 * this instance is in use.
+	 */
+	public void graphChanged()
+	{
+		tracks.clear();
+		if ( null != previousFocusListener )
+			previousFocusListener.focusChanged();
+	}
+
 	/**
 	 * Cycles to the next visibility mode.
 	 *
@@ -290,49 +312,46 @@ public class Visibilities< V extends Vertex< E >, E extends Edge< V > >
 
 		private final FocusModel< V, E > focusModel;
 
-		private final ReadOnlyGraph< V, E > graph;
-
-		private final RefSet< V > vertices;
-
-		private final RefSet< E > edges;
+		private final V ref;
 
 		private final ReentrantReadWriteLock lock;
 
+		/**
+		 * Label of the track of the focused vertex in {@link #tracks}, or
+		 * {@code -1} if no vertex is focused.
+		 */
+		private volatile int track;
+
 		public TrackOfFocusedVisibility( final ReadOnlyGraph< V, E > graph, final FocusModel< V, E > focusModel, final ReentrantReadWriteLock lock )
 		{
-			this.graph = graph;
 			this.focusModel = focusModel;
 			this.lock = lock;
-			this.vertices = RefCollections.createRefSet( graph.vertices() );
-			this.edges = RefCollections.createRefSet( graph.edges() );
+			this.ref = graph.vertexRef();
+			this.track = -1;
 		}
 
 		@Override
 		public boolean isVisible( final V v )
 		{
-			return vertices.contains( v );
+			final int t = track;
+			return t >= 0 && tracks.getVertexTrack( v ) == t;
 		}
 
 		@Override
 		public boolean isVisible( final E e )
 		{
-			return edges.contains( e );
+			final int t = track;
+			return t >= 0 && tracks.getEdgeTrack( e ) == t;
 		}
 
 		@Override
 		public void focusChanged()
 		{
-			vertices.clear();
-			edges.clear();
 			lock.readLock().lock();
 			try
 			{
-				final V focused = focusModel.getFocusedVertex( graph.vertexRef() );
-				if ( null != focused )
-				{
-					final ConnectedComponent< V, E > visitor = new ConnectedComponent<>( graph, vertices, edges );
-					visitor.visit( focused );
-				}
+				final V focused = focusModel.getFocusedVertex( ref );
+				track = ( null == focused ) ? -1 : tracks.label( focused );
 				notifyListeners();
 			}
 			finally
@@ -343,32 +362,100 @@ public class Visibilities< V extends Vertex< E >, E extends Edge< V > >
 
 	}
 
-	private static class ConnectedComponent< V extends Vertex< E >, E extends Edge< V > > extends AbstractGraphAlgorithm< V, E >
+	/**
+	 * Labels the connected components (tracks) of the graph. A track is
+	 * labeled the first time one of its vertices is passed to
+	 * {@link #label(Vertex)}, and keeps its label until the graph changes.
+	 * Labeling is iterative, with an explicit stack, and costs time
+	 * proportional to the size of the track.
+	 * <p>
+	 * All methods are synchronized, because the labels are read by painting
+	 * threads while they are written on focus and graph changes.
+	 */
+	private static class TrackLabels< V extends Vertex< E >, E extends Edge< V > >
 	{
 
-		private final RefSet< V > vertices;
+		private final RefIntMap< V > vertexTracks;
+
+		private final RefIntMap< E > edgeTracks;
+
+		private final RefStack< V > stack;
+
+		private final V ref1;
 
-		private final RefSet< E > edges;
+		private final V ref2;
 
-		public ConnectedComponent( final ReadOnlyGraph< V, E > graph, final RefSet< V > vertices, final RefSet< E > edges )
+		private int nextLabel;
+
+		public TrackLabels( final ReadOnlyGraph< V, E > graph )
 		{
-			super( graph );
-			this.vertices = vertices;
-			this.edges = edges;
+			this.vertexTracks = RefCollections.createRefIntMap( graph.vertices(), -1 );
+			this.edgeTracks = RefCollections.createRefIntMap( graph.edges(), -1 );
+			this.stack = RefCollections.createRefStack( graph.vertices() );
+			this.ref1 = graph.vertexRef();
+			this.ref2 = graph.vertexRef();
+			this.nextLabel = 0;
 		}
 
-		public void visit( final V v )
+		/**
+		 * Returns the label of the track of the specified vertex, or
+		 * {@code -1} if it was not labeled yet.
+		 */
+		public synchronized int getVertexTrack( final V v )
 		{
-			vertices.add( v );
-			for ( final E e : v.edges() )
-			{
-				edges.add( e );
-				final V target = Graphs.getOppositeVertex( e, v, graph.vertexRef() );
-				if ( vertices.contains( target ) )
-					continue;
+			return vertexTracks.get( v );
+		}
 
-				visit( target );
+		/**
+		 * Returns the label of the track of the specified edge, or {@code -1}
+		 * if it was not labeled yet.
+		 */
+		public synchronized int getEdgeTrack( final E e )
+		{
+			return edgeTracks.get( e );
+		}
+
+		/**
+		 * Returns the label of the track of the specified vertex, labeling the
+		 * track if necessary.
+		 */
+		public synchronized int label( final V v )
+		{
+			final int existing = vertexTracks.get( v );
+			if ( existing >= 0 )
+				return existing;
+
+			final int label = nextLabel++;
+			vertexTracks.put( v, label );
+			stack.push( v );
+			while ( !stack.isEmpty() )
+			{
+				final V current = stack.pop( ref1 );
+				for ( final E e : current.edges() )
+				{
+					if ( edgeTracks.get( e ) == label )
+						continue;
+					edgeTracks.put( e, label );
+
+					final V other = Graphs.getOppositeVertex( e, current, ref2 );
+					if ( vertexTracks.get( other ) != label )
+					{
+						vertexTracks.put( other, label );
+						stack.push( other );
+					}
+				}
 			}
+			return label;
+		}
+
+		/**
+		 * Discards all labels.
+		 */
+		public synchronized void clear()
+		{
+			vertexTracks.clear();
+			edgeTracks.clear();
+			nextLabel = 0;
 		}
 	}
 
@@ -198,6 +198,7 @@ public class RenderSettingsPanel extends JPanel
 				booleanElement( "draw spot centers", style::getDrawSpotCenters, style::setDrawSpotCenters ),
 				booleanElement( "draw spot centers for ellipses", style::getDrawSpotCentersForEllipses, style::setDrawSpotCentersForEllipses ),
 				booleanElement( "draw spot labels", style::getDrawSpotLabels, style::setDrawSpotLabels ),
+				intElement( "spot time limit (past spot centers)", 0, 200, style::getSpotTimeLimit, style::setSpotTimeLimit ),
 
 				separator(),
 
@@ -39,11 +39,18 @@ import org.mastodon.collection.RefCollection;
 import org.mastodon.collection.util.AbstractRefPoolCollectionWrapper;
 import org.mastodon.graph.Edge;
 import org.mastodon.graph.Edges;
+import org.mastodon.graph.GraphChangeListener;
 import org.mastodon.graph.GraphIdBimap;
+import org.mastodon.graph.GraphListener;
+import org.mastodon.graph.ListenableReadOnlyGraph;
 import org.mastodon.graph.ReadOnlyGraph;
 import org.mastodon.graph.Vertex;
 import org.mastodon.spatial.SpatioTemporalIndex;
+import org.mastodon.spatial.VertexPositionChangeProvider;
+import org.mastodon.spatial.VertexPositionListener;
 import org.mastodon.views.bdv.overlay.OverlayGraph;
+import org.mastodon.views.bdv.overlay.OverlayGraphListener;
+import org.scijava.listeners.Listeners;
 
 /**
  * TODO: implement remaining ReadOnlyGraph methods
@@ -78,6 +85,15 @@ public class OverlayGraphWrapper< V extends Vertex< E >, E extends Edge< V > > i
 
 	private final RefBimap< E, OverlayEdgeWrapper< V, E > > edgeMap;
 
+	private final Listeners.List< OverlayGraphListener > overlayGraphListeners;
+
+	/**
+	 * Forwards changes of the wrapped graph to the
+	 * {@link #overlayGraphListeners}. Registered with the wrapped graph only
+	 * while there are overlay graph listeners, {@code null} otherwise.
+	 */
+	private ModelGraphListener modelGraphListener;
+
 	public OverlayGraphWrapper(
 			final ReadOnlyGraph< V, E > graph,
 			final GraphIdBimap< V, E > idmap,
@@ -94,6 +110,7 @@ public class OverlayGraphWrapper< V extends Vertex< E >, E extends Edge< V > > i
 		wrappedIndex = new SpatioTemporalIndexWrapper<>( this, graphIndex );
 		vertexMap = new OverlayVertexWrapperBimap<>( this );
 		edgeMap = new OverlayEdgeWrapperBimap<>( this );
+		overlayGraphListeners = new Listeners.SynchronizedList<>();
 	}
 
 	@Override
@@ -234,6 +251,37 @@ public class OverlayGraphWrapper< V extends Vertex< E >, E extends Edge< V > > i
 		overlayProperties.notifyGraphChanged();
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Listeners are only notified if the wrapped graph is a
+	 * {@link ListenableReadOnlyGraph} and a
+	 * {@link VertexPositionChangeProvider}.
+	 */
+	@Override
+	public synchronized boolean addOverlayGraphListener( final OverlayGraphListener listener )
+	{
+		final boolean added = overlayGraphListeners.add( listener );
+		if ( added && modelGraphListener == null )
+		{
+			modelGraphListener = new ModelGraphListener();
+			modelGraphListener.register();
+		}
+		return added;
+	}
+
+	@Override
+	public synchronized boolean removeOverlayGraphListener( final OverlayGraphListener listener )
+	{
+		final boolean removed = overlayGraphListeners.remove( listener );
+		if ( removed && overlayGraphListeners.list.isEmpty() && modelGraphListener != null )
+		{
+			modelGraphListener.unregister();
+			modelGraphListener = null;
+		}
+		return removed;
+	}
+
 	/**
 	 * Get bidirectional mapping between model vertices and view vertices.
 	 *
@@ -370,4 +418,99 @@ public class OverlayGraphWrapper< V extends Vertex< E >, E extends Edge< V > > i
 		}
 	};
 
+	/**
+	 * Translates changes of the wrapped graph to the timepoints whose painted
+	 * geometry they affect.
+	 */
+	private class ModelGraphListener implements GraphListener< V, E >, GraphChangeListener, VertexPositionListener< V >
+	{
+		private final V ref = wrappedGraph.vertexRef();
+
+		@SuppressWarnings( "unchecked" )
+		void register()
+		{
+			if ( wrappedGraph instanceof ListenableReadOnlyGraph )
+			{
+				final ListenableReadOnlyGraph< V, E > graph = ( ListenableReadOnlyGraph< V, E > ) wrappedGraph;
+				graph.addGraphListener( this );
+				graph.addGraphChangeListener( this );
+			}
+			if ( wrappedGraph instanceof VertexPositionChangeProvider )
+				( ( VertexPositionChangeProvider< V > ) wrappedGraph ).addVertexPositionListener( this );
+		}
+
+		@SuppressWarnings( "unchecked" )
+		void unregister()
+		{
+			if ( wrappedGraph instanceof ListenableReadOnlyGraph )
+			{
+				final ListenableReadOnlyGraph< V, E > graph = ( ListenableReadOnlyGraph< V, E > ) wrappedGraph;
+				graph.removeGraphListener( this );
+				graph.removeGraphChangeListener( this );
+			}
+			if ( wrappedGraph instanceof VertexPositionChangeProvider )
+				( ( VertexPositionChangeProvider< V > ) wrappedGraph ).removeVertexPositionListener( this );
+			wrappedGraph.releaseRef( ref );
+		}
+
+		@Override
+		public void graphRebuilt()
+		{
+			overlayGraphListeners.list.forEach( OverlayGraphListener::graphRebuilt );
+		}
+
+		@Override
+		public void vertexAdded( final V vertex )
+		{
+			verticesChanged( overlayProperties.getTimepoint( vertex ) );
+		}
+
+		@Override
+		public void vertexRemoved( final V vertex )
+		{
+			verticesChanged( overlayProperties.getTimepoint( vertex ) );
+		}
+
+		@Override
+		public void edgeAdded( final E edge )
+		{
+			edgesChanged( overlayProperties.getTimepoint( edge.getTarget( ref ) ) );
+		}
+
+		@Override
+		public void edgeRemoved( final E edge )
+		{
+			edgesChanged( overlayProperties.getTimepoint( edge.getTarget( ref ) ) );
+		}
+
+		@Override
+		public void graphChanged()
+		{
+			overlayGraphListeners.list.forEach( OverlayGraphListener::graphChanged );
+		}
+
+		/**
+		 * Edges are reported by target timepoint. Incoming edges end in the
+		 * timepoint of the vertex, outgoing edges may skip timepoints.
+		 */
+		@Override
+		public void vertexPositionChanged( final V vertex )
+		{
+			final int timepoint = overlayProperties.getTimepoint( vertex );
+			verticesChanged( timepoint );
+			edgesChanged( timepoint );
+			for ( final E edge : vertex.outgoingEdges() )
+				edgesChanged( overlayProperties.getTimepoint( edge.getTarget( ref ) ) );
+		}
+
+		private void verticesChanged( final int timepoint )
+		{
+			overlayGraphListeners.list.forEach( l -> l.verticesChanged( timepoint ) );
+		}
+
+		private void edgesChanged( final int timepoint )
+		{
+			overlayGraphListeners.list.forEach( l -> l.edgesChanged( timepoint ) );
+		}
+	}
 }
@@ -43,6 +43,7 @@ import java.text.DecimalFormatSymbols;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.EventObject;
 import java.util.LinkedHashMap;
@@ -63,6 +64,8 @@ import javax.swing.JScrollPane;
 import javax.swing.JTable;
 import javax.swing.KeyStroke;
 import javax.swing.ListSelectionModel;
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
 import javax.swing.SwingConstants;
 import javax.swing.SwingUtilities;
 import javax.swing.border.Border;
@@ -74,7 +77,6 @@ import javax.swing.table.JTableHeader;
 import javax.swing.table.TableCellRenderer;
 import javax.swing.table.TableColumn;
 import javax.swing.table.TableColumnModel;
-import javax.swing.table.TableRowSorter;
 import javax.swing.text.JTextComponent;
 
 import org.mastodon.RefPool;
@@ -82,13 +84,17 @@ import org.mastodon.feature.Feature;
 import org.mastodon.feature.FeatureProjection;
 import org.mastodon.feature.FeatureSpec;
 import org.mastodon.feature.IntFeatureProjection;
+import org.mastodon.model.tag.ObjTagMap;
 import org.mastodon.model.tag.ObjTags;
 import org.mastodon.model.tag.TagSetStructure.Tag;
 import org.mastodon.model.tag.TagSetStructure.TagSet;
 import org.mastodon.ui.coloring.ColorGenerator;
 import org.mastodon.undo.UndoPointMarker;
+import org.mastodon.views.table.IndexSorter.IndexComparator;
 
-import gnu.trove.map.hash.TIntIntHashMap;
+import gnu.trove.iterator.TIntIterator;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.set.hash.TIntHashSet;
 
 public class FeatureTagTablePanel< O > extends JPanel
 {
@@ -103,6 +109,12 @@ public class FeatureTagTablePanel< O > extends JPanel
 
 	private static final int ROW_HEIGHT = 26;
 
+	/**
+	 * Above this number of ranges of removed rows, {@link #refreshRows()}
+	 * notifies a full table change instead of one event per range.
+	 */
+	private static final int MAX_REMOVED_ROW_RANGES = 64;
+
 	private final RefPool< O > idBimap;
 
 	private final ObjTags< O > tags;
@@ -136,25 +148,40 @@ public class FeatureTagTablePanel< O > extends JPanel
 	private int highlightRow = -1;
 
 	/**
-	 * Map of model row in the table to the id of the object the row display.
+	 * Map of model rows in the table to the ids of the objects they display.
+	 */
+	private RowMap rowMap = new RowMap();
+
+	/**
+	 * Map of filtered model rows in the table to the ids of the objects they
+	 * display.
 	 */
-	private TIntIntHashMap rowMap = new TIntIntHashMap( 1, 0.5f, -1, -1 );
+	private RowMap filterRowMap = new RowMap();
 
 	/**
-	 * Map of object ids to their model row in the table.
+	 * Rows of the collection passed to {@link #filter(Collection)}, or
+	 * <code>null</code> if there is none.
 	 */
-	private TIntIntHashMap idMap = new TIntIntHashMap( 1, 0.5f, -1, -1 );
+	private RowMap contentRowMap;
 
 	/**
-	 * Map of filtered model row in the table to the id of the object the row
-	 * display.
+	 * Ids passed to {@link #addRowForId(int)} since the last
+	 * {@link #refreshRows()}, in call order. Ids that were removed again are
+	 * not in {@link #pendingAddedIds}, and are skipped.
 	 */
-	private TIntIntHashMap filterRowMap;
+	private final TIntArrayList pendingAdded = new TIntArrayList();
 
 	/**
-	 * Map of filtered object ids to their model row in the table.
+	 * Ids queued to be added on the next {@link #refreshRows()}.
 	 */
-	private TIntIntHashMap filterIdMap = new TIntIntHashMap( 1, 0.5f, -1, -1 );
+	private final TIntHashSet pendingAddedIds = new TIntHashSet();
+
+	/**
+	 * Ids queued to be removed on the next {@link #refreshRows()}.
+	 */
+	private final TIntHashSet pendingRemovedIds = new TIntHashSet();
+
+	private FilterExpression< O > filterExpression;
 
 	private boolean doFilter = false;
 
@@ -236,8 +263,7 @@ public class FeatureTagTablePanel< O > extends JPanel
 		table.getSelectionModel().setSelectionMode( ListSelectionModel.MULTIPLE_INTERVAL_SELECTION );
 		refreshColumns();
 
-		final TableRowSorter< MyTableModel > sorter = new TableRowSorter<>( tableModel );
-		table.setRowSorter( sorter );
+		table.setRowSorter( new MyRowSorter() );
 
 		this.scrollPane = new JScrollPane( table, JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED, JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED );
 		table.setAutoResizeMode( JTable.AUTO_RESIZE_OFF );
@@ -271,13 +297,13 @@ public class FeatureTagTablePanel< O > extends JPanel
 		if ( viewRowIndex < 0 )
 			return null;
 		final int modelRow = table.convertRowIndexToModel( viewRowIndex );
-		final int id = doFilter ? filterRowMap.get( modelRow ) : rowMap.get( modelRow );
+		final int id = currentRowMap().getId( modelRow );
 		return idBimap.getObjectIfExists( id, ref );
 	}
 
 	public int getViewRowForObject( final O o )
 	{
-		final int modeRow = doFilter ? filterIdMap.get( idBimap.getId( o ) ) : idMap.get( idBimap.getId( o ) );
+		final int modeRow = currentRowMap().getRow( idBimap.getId( o ) );
 		if ( modeRow < 0 ) // Object not in table.
 			return -1;
 		return table.convertRowIndexToView( modeRow );
@@ -312,59 +338,293 @@ public class FeatureTagTablePanel< O > extends JPanel
 	 */
 	public void setRows( final Collection< O > rows )
 	{
-		final TIntIntHashMap idMap = new TIntIntHashMap( rows.size(), 0.5f, -1, -1 );
-		final TIntIntHashMap rowMap = new TIntIntHashMap( rows.size(), 0.5f, -1, -1 );
-		int row = 0;
+		final RowMap rowMap = new RowMap( rows.size() );
 		for ( final O o : rows )
-		{
-			final int id = idBimap.getId( o );
-			rowMap.put( row, id );
-			idMap.put( id, row );
-			row++;
-		}
+			rowMap.add( idBimap.getId( o ) );
 
 		synchronized ( this )
 		{
 			this.rowMap = rowMap;
-			this.idMap = idMap;
+			pendingAdded.clear();
+			pendingAddedIds.clear();
+			pendingRemovedIds.clear();
 		}
 		tableModel.fireTableDataChanged();
 	}
 
+	/**
+	 * Appends an object to the objects displayed in this table. Does nothing
+	 * if the object is already displayed.
+	 * <p>
+	 * The row is added on the next call to {@link #refreshRows()}, together
+	 * with all the other queued changes. When the table is filtered, the new
+	 * row is not shown until the filter is reset.
+	 *
+	 * @param o
+	 *            the object to add.
+	 */
+	public void addRow( final O o )
+	{
+		addRowForId( idBimap.getId( o ) );
+	}
+
+	/**
+	 * Appends the object with the specified id to the objects displayed in
+	 * this table. Does nothing if the object is already displayed.
+	 *
+	 * @param id
+	 *            the id of the object to add. The object must exist.
+	 * @see #addRow(Object)
+	 */
+	public synchronized void addRowForId( final int id )
+	{
+		if ( pendingAddedIds.add( id ) )
+			pendingAdded.add( id );
+	}
+
+	/**
+	 * Removes an object from the objects displayed in this table. Does nothing
+	 * if the object is not displayed.
+	 * <p>
+	 * The row is removed on the next call to {@link #refreshRows()}, together
+	 * with all the other queued changes.
+	 *
+	 * @param o
+	 *            the object to remove.
+	 */
+	public void removeRow( final O o )
+	{
+		removeRowForId( idBimap.getId( o ) );
+	}
+
+	/**
+	 * Removes the object with the specified id from the objects displayed in
+	 * this table. Does nothing if the object is not displayed.
+	 *
+	 * @param id
+	 *            the id of the object to remove.
+	 * @see #removeRow(Object)
+	 */
+	public synchronized void removeRowForId( final int id )
+	{
+		// An id added since the last refresh may also be a displayed one,
+		// if its object was removed and the id reused.
+		pendingAddedIds.remove( id );
+		pendingRemovedIds.add( id );
+	}
+
+	/**
+	 * Notifies this table that the values displayed in its rows may have
+	 * changed, and applies the rows queued with {@link #addRowForId(int)} and
+	 * {@link #removeRowForId(int)}. Removed and appended rows are notified as
+	 * row ranges, so that a sorted table keeps its order and does not sort
+	 * all its rows again; appended rows are shown at the bottom until the next
+	 * sort. If the table is filtered with an expression, it is filtered again
+	 * and fully refreshed.
+	 */
+	public void refreshRows()
+	{
+		if ( filterExpression != null )
+		{
+			applyPendingRows();
+			applyFilters();
+			tableModel.fireTableDataChanged();
+			return;
+		}
+
+		final TIntArrayList removedRows = new TIntArrayList();
+		final int firstAddedRow;
+		final int size;
+		synchronized ( this )
+		{
+			final RowMap current = currentRowMap();
+			final TIntIterator it = pendingRemovedIds.iterator();
+			while ( it.hasNext() )
+			{
+				final int row = current.getRow( it.next() );
+				if ( row >= 0 )
+					removedRows.add( row );
+			}
+			firstAddedRow = current.size() - removedRows.size();
+			applyPendingRows();
+			size = current.size();
+		}
+
+		removedRows.sort();
+		if ( countRanges( removedRows ) > MAX_REMOVED_ROW_RANGES )
+		{
+			tableModel.fireTableDataChanged();
+			return;
+		}
+		// Last range first, so that the rows of the next ones do not shift.
+		int end = removedRows.size() - 1;
+		while ( end >= 0 )
+		{
+			int start = end;
+			while ( start > 0 && removedRows.getQuick( start - 1 ) == removedRows.getQuick( start ) - 1 )
+				--start;
+			tableModel.fireTableRowsDeleted( removedRows.getQuick( start ), removedRows.getQuick( end ) );
+			end = start - 1;
+		}
+		if ( size > firstAddedRow )
+			tableModel.fireTableRowsInserted( firstAddedRow, size - 1 );
+		if ( firstAddedRow > 0 )
+			tableModel.fireTableRowsUpdated( 0, firstAddedRow - 1 );
+	}
+
+	/**
+	 * Returns the number of ranges of consecutive values in the specified
+	 * sorted list.
+	 */
+	private static int countRanges( final TIntArrayList sorted )
+	{
+		int n = 0;
+		for ( int i = 0; i < sorted.size(); i++ )
+			if ( i == 0 || sorted.getQuick( i ) != sorted.getQuick( i - 1 ) + 1 )
+				++n;
+		return n;
+	}
+
+	/**
+	 * Removes and then appends the queued rows, each in one pass, so that
+	 * large batches of graph edits do not shift the rows once per object.
+	 */
+	private synchronized void applyPendingRows()
+	{
+		if ( !pendingRemovedIds.isEmpty() )
+		{
+			rowMap.removeAll( pendingRemovedIds );
+			if ( contentRowMap != null && contentRowMap != filterRowMap )
+				contentRowMap.removeAll( pendingRemovedIds );
+			filterRowMap.removeAll( pendingRemovedIds );
+			pendingRemovedIds.clear();
+		}
+		for ( int i = 0; i < pendingAdded.size(); i++ )
+		{
+			final int id = pendingAdded.getQuick( i );
+			if ( pendingAddedIds.contains( id ) )
+				rowMap.add( id );
+		}
+		pendingAdded.clear();
+		pendingAddedIds.clear();
+	}
+
 	public void filter( final Collection< O > content )
 	{
+		applyPendingRows();
 		if ( null == content )
 		{
-			doFilter = false;
+			contentRowMap = null;
 		}
 		else
 		{
-			doFilter = true;
-			final TIntIntHashMap filterIdMap = new TIntIntHashMap( content.size(), 0.5f, -1, -1 );
-			final TIntIntHashMap filterRowMap = new TIntIntHashMap( content.size(), 0.5f, -1, -1 );
-
-			int filteredRow = 0;
+			final RowMap contentRowMap = new RowMap( content.size() );
 			for ( final O o : content )
 			{
 				final int id = idBimap.getId( o );
-				final int row = idMap.get( id );
-				if ( row < 0 )
+				if ( rowMap.getRow( id ) < 0 )
 					continue;
-
-				filterIdMap.put( id, filteredRow );
-				filterRowMap.put( filteredRow, id );
-				filteredRow++;
-			}
-
-			synchronized ( this )
-			{
-				this.filterIdMap = filterIdMap;
-				this.filterRowMap = filterRowMap;
+				contentRowMap.add( id );
 			}
+			this.contentRowMap = contentRowMap;
 		}
+		applyFilters();
+		tableModel.fireTableDataChanged();
+	}
+
+	/**
+	 * Filters the rows of this table with an expression over the feature
+	 * values and tags of the objects. The expression is applied on top of the
+	 * collection passed to {@link #filter(Collection)}. See
+	 * {@link FilterExpression} for the syntax.
+	 *
+	 * @param expression
+	 *            the expression, or <code>null</code> or empty to remove the
+	 *            expression filter.
+	 * @throws IllegalArgumentException
+	 *             if the expression cannot be compiled against the features
+	 *             and tag-sets of this table. The current filter is then left
+	 *             unchanged.
+	 */
+	public void setFilterExpression( final String expression )
+	{
+		filterExpression = ( expression == null || expression.trim().isEmpty() )
+				? null
+				: compileFilterExpression( expression );
+		applyFilters();
 		tableModel.fireTableDataChanged();
 	}
 
+	/**
+	 * Returns the expression the rows of this table are filtered with.
+	 *
+	 * @return the expression, or <code>null</code> if the table is not
+	 *         filtered with an expression.
+	 */
+	public String getFilterExpression()
+	{
+		return filterExpression == null ? null : filterExpression.getText();
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	private FilterExpression< O > compileFilterExpression( final String expression )
+	{
+		return FilterExpression.compile( expression, ( Map ) featureMap, tags, tagSets );
+	}
+
+	/**
+	 * Compiles the filter expression again against the current features and
+	 * tag-sets. The expression is dropped if it does not compile anymore.
+	 */
+	private void recompileFilterExpression()
+	{
+		if ( filterExpression == null )
+			return;
+		try
+		{
+			filterExpression = compileFilterExpression( filterExpression.getText() );
+		}
+		catch ( final IllegalArgumentException e )
+		{
+			filterExpression = null;
+		}
+		applyFilters();
+	}
+
+	private void applyFilters()
+	{
+		if ( contentRowMap == null && filterExpression == null )
+		{
+			doFilter = false;
+			return;
+		}
+
+		final RowMap base = contentRowMap == null ? rowMap : contentRowMap;
+		final RowMap filterRowMap;
+		if ( filterExpression == null )
+		{
+			filterRowMap = base;
+		}
+		else
+		{
+			final TIntArrayList ids = filterExpression.filter( base.getIds(), idBimap );
+			filterRowMap = new RowMap( ids.size() );
+			for ( int i = 0; i < ids.size(); i++ )
+				filterRowMap.add( ids.getQuick( i ) );
+		}
+
+		synchronized ( this )
+		{
+			this.filterRowMap = filterRowMap;
+			this.doFilter = true;
+		}
+	}
+
+	private RowMap currentRowMap()
+	{
+		return doFilter ? filterRowMap : rowMap;
+	}
+
 	private void refreshColumns()
 	{
 		// Class of columns.
@@ -510,6 +770,7 @@ public class FeatureTagTablePanel< O > extends JPanel
 			for ( final FeatureSpec< ?, O > fs : fss )
 				this.featureMap.put( fs, features.get( fs ) );
 		}
+		recompileFilterExpression();
 		refreshColumns();
 	}
 
@@ -521,6 +782,7 @@ public class FeatureTagTablePanel< O > extends JPanel
 			this.tagSets.addAll( tagSets );
 			this.tagSets.sort( ( o1, o2 ) -> o1.getName().compareTo( o2.getName() ) );
 		}
+		recompileFilterExpression();
 		refreshColumns();
 	}
 
@@ -580,7 +842,7 @@ public class FeatureTagTablePanel< O > extends JPanel
 		@Override
 		public int getRowCount()
 		{
-			return doFilter ? filterIdMap.size() : idMap.size();
+			return currentRowMap().size();
 		}
 
 		@Override
@@ -592,7 +854,7 @@ public class FeatureTagTablePanel< O > extends JPanel
 		@Override
 		public Object getValueAt( final int rowIndex, final int columnIndex )
 		{
-			final int id = doFilter ? filterRowMap.get( rowIndex ) : rowMap.get( rowIndex );
+			final int id = currentRowMap().getId( rowIndex );
 
 			final O o = idBimap.getObjectIfExists( id, ref );
 			if ( null == o )
@@ -632,7 +894,7 @@ public class FeatureTagTablePanel< O > extends JPanel
 		{
 			if ( columnIndex == 0 )
 			{
-				final int id = doFilter ? filterRowMap.get( rowIndex ) : rowMap.get( rowIndex );
+				final int id = currentRowMap().getId( rowIndex );
 
 				final O o = idBimap.getObjectIfExists( id, ref );
 				if ( null == o )
@@ -644,7 +906,7 @@ public class FeatureTagTablePanel< O > extends JPanel
 			else if ( columnIndex >= 2 + mapToProjections.size() )
 			{
 				final boolean isSet = ( boolean ) aValue;
-				final int id = doFilter ? filterRowMap.get( rowIndex ) : rowMap.get( rowIndex );
+				final int id = currentRowMap().getId( rowIndex );
 
 				final O o = idBimap.getObjectIfExists( id, ref );
 				if ( null == o )
@@ -664,6 +926,275 @@ public class FeatureTagTablePanel< O > extends JPanel
 		}
 	}
 
+	/**
+	 * Sorts the table on primitive copies of the sorted columns, indexed by
+	 * model row, rather than on the boxed values returned by the table model.
+	 * Large tables are sorted in parallel. Unset feature values and
+	 * <code>null</code> labels are sorted last in both orders.
+	 * <p>
+	 * The panel applies added and removed rows in batches, and then sorts
+	 * again. Single rows inserted at the end of the model are shown at the
+	 * bottom of the view until the table is sorted again, and deleted rows are
+	 * dropped from the view without sorting again.
+	 */
+	private class MyRowSorter extends RowSorter< MyTableModel >
+	{
+
+		private List< SortKey > sortKeys = Collections.emptyList();
+
+		/**
+		 * Model row of each view row, or <code>null</code> if the table is not
+		 * sorted.
+		 */
+		private int[] viewToModel;
+
+		/**
+		 * View row of each model row, or <code>null</code> if the table is not
+		 * sorted.
+		 */
+		private int[] modelToView;
+
+		@Override
+		public MyTableModel getModel()
+		{
+			return tableModel;
+		}
+
+		@Override
+		public void toggleSortOrder( final int column )
+		{
+			if ( column < 0 || column >= tableModel.getColumnCount() )
+				throw new IndexOutOfBoundsException( "Column " + column + " out of bounds." );
+			final boolean ascending = sortKeys.isEmpty()
+					|| sortKeys.get( 0 ).getColumn() != column
+					|| sortKeys.get( 0 ).getSortOrder() != SortOrder.ASCENDING;
+			setSortKeys( Collections.singletonList( new SortKey( column, ascending ? SortOrder.ASCENDING : SortOrder.DESCENDING ) ) );
+		}
+
+		@Override
+		public int convertRowIndexToModel( final int index )
+		{
+			return viewToModel == null ? index : viewToModel[ index ];
+		}
+
+		@Override
+		public int convertRowIndexToView( final int index )
+		{
+			return modelToView == null ? index : modelToView[ index ];
+		}
+
+		@Override
+		public void setSortKeys( final List< ? extends SortKey > keys )
+		{
+			final List< SortKey > newKeys = ( keys == null || keys.isEmpty() )
+					? Collections.emptyList()
+					: Collections.unmodifiableList( new ArrayList<>( keys ) );
+			if ( newKeys.equals( sortKeys ) )
+				return;
+			sortKeys = newKeys;
+			fireSortOrderChanged();
+			sort();
+		}
+
+		@Override
+		public List< ? extends SortKey > getSortKeys()
+		{
+			return sortKeys;
+		}
+
+		@Override
+		public int getViewRowCount()
+		{
+			return tableModel.getRowCount();
+		}
+
+		@Override
+		public int getModelRowCount()
+		{
+			return tableModel.getRowCount();
+		}
+
+		@Override
+		public void modelStructureChanged()
+		{
+			// Columns may have changed, the sort keys are not valid anymore.
+			sortKeys = Collections.emptyList();
+			viewToModel = null;
+			modelToView = null;
+		}
+
+		@Override
+		public void allRowsChanged()
+		{
+			sort();
+		}
+
+		@Override
+		public void rowsInserted( final int firstRow, final int endRow )
+		{
+			if ( viewToModel == null )
+				return;
+
+			final int[] previous = viewToModel;
+			if ( firstRow != previous.length )
+			{
+				sort();
+				return;
+			}
+			final int n = tableModel.getRowCount();
+			viewToModel = Arrays.copyOf( previous, n );
+			modelToView = Arrays.copyOf( modelToView, n );
+			for ( int r = previous.length; r < n; r++ )
+			{
+				viewToModel[ r ] = r;
+				modelToView[ r ] = r;
+			}
+			fireRowSorterChanged( previous );
+		}
+
+		@Override
+		public void rowsDeleted( final int firstRow, final int endRow )
+		{
+			if ( viewToModel == null )
+				return;
+
+			final int[] previous = viewToModel;
+			final int nRemoved = endRow - firstRow + 1;
+			viewToModel = new int[ previous.length - nRemoved ];
+			int v = 0;
+			for ( final int m : previous )
+			{
+				if ( m < firstRow )
+					viewToModel[ v++ ] = m;
+				else if ( m > endRow )
+					viewToModel[ v++ ] = m - nRemoved;
+			}
+			modelToView = invert( viewToModel );
+			fireRowSorterChanged( previous );
+		}
+
+		@Override
+		public void rowsUpdated( final int firstRow, final int endRow )
+		{}
+
+		@Override
+		public void rowsUpdated( final int firstRow, final int endRow, final int column )
+		{}
+
+		private void sort()
+		{
+			final int[] previous = viewToModel;
+			if ( sortKeys.isEmpty() )
+			{
+				viewToModel = null;
+				modelToView = null;
+			}
+			else
+			{
+				final int n = tableModel.getRowCount();
+				final IndexComparator[] comparators = new IndexComparator[ sortKeys.size() ];
+				for ( int k = 0; k < comparators.length; k++ )
+				{
+					final SortKey key = sortKeys.get( k );
+					comparators[ k ] = columnComparator( key.getColumn(), key.getSortOrder() != SortOrder.DESCENDING, n );
+				}
+
+				final int[] rows = new int[ n ];
+				for ( int r = 0; r < n; r++ )
+					rows[ r ] = r;
+				IndexSorter.sort( rows, ( r1, r2 ) -> {
+					for ( final IndexComparator comparator : comparators )
+					{
+						final int c = comparator.compare( r1, r2 );
+						if ( c != 0 )
+							return c;
+					}
+					return 0;
+				} );
+				viewToModel = rows;
+				modelToView = invert( rows );
+			}
+			fireRowSorterChanged( previous );
+		}
+
+		/**
+		 * Copies the values of the specified column for all the model rows,
+		 * and returns a comparator of model rows over these values.
+		 */
+		private IndexComparator columnComparator( final int column, final boolean ascending, final int n )
+		{
+			final RowMap rows = currentRowMap();
+			final int sign = ascending ? 1 : -1;
+			if ( column == 1 )
+			{
+				final int[] ids = new int[ n ];
+				for ( int r = 0; r < n; r++ )
+					ids[ r ] = rows.getId( r );
+				return ( r1, r2 ) -> sign * Integer.compare( ids[ r1 ], ids[ r2 ] );
+			}
+
+			final O ref = idBimap.createRef();
+			try
+			{
+				if ( column == 0 )
+				{
+					final String[] labels = new String[ n ];
+					for ( int r = 0; r < n; r++ )
+					{
+						final O o = idBimap.getObjectIfExists( rows.getId( r ), ref );
+						labels[ r ] = ( o == null ) ? null : labelGenerator.apply( o );
+					}
+					return ( r1, r2 ) -> {
+						final String l1 = labels[ r1 ];
+						final String l2 = labels[ r2 ];
+						if ( l1 == null )
+							return l2 == null ? 0 : 1;
+						if ( l2 == null )
+							return -1;
+						return sign * l1.compareTo( l2 );
+					};
+				}
+				else if ( column < 2 + mapToProjections.size() )
+				{
+					final FeatureProjection< O > featureProjection = mapToProjections.get( column - 2 );
+					final double[] values = new double[ n ];
+					for ( int r = 0; r < n; r++ )
+					{
+						final O o = idBimap.getObjectIfExists( rows.getId( r ), ref );
+						values[ r ] = ( o != null && featureProjection.isSet( o ) ) ? featureProjection.value( o ) : Double.NaN;
+					}
+					return ( r1, r2 ) -> {
+						final double v1 = values[ r1 ];
+						final double v2 = values[ r2 ];
+						if ( Double.isNaN( v1 ) )
+							return Double.isNaN( v2 ) ? 0 : 1;
+						if ( Double.isNaN( v2 ) )
+							return -1;
+						return sign * Double.compare( v1, v2 );
+					};
+				}
+				else
+				{
+					final int[] ids = mapToTagIndices.get( column - ( 2 + mapToProjections.size() ) );
+					final TagSet tagSet = tagSets.get( ids[ 0 ] );
+					final Tag columnTag = tagSet.getTags().get( ids[ 1 ] );
+					final ObjTagMap< O, Tag > tagMap = tags.tags( tagSet );
+					final boolean[] isSet = new boolean[ n ];
+					for ( int r = 0; r < n; r++ )
+					{
+						final O o = idBimap.getObjectIfExists( rows.getId( r ), ref );
+						isSet[ r ] = o != null && columnTag.equals( tagMap.get( o ) );
+					}
+					return ( r1, r2 ) -> sign * Boolean.compare( isSet[ r1 ], isSet[ r2 ] );
+				}
+			}
+			finally
+			{
+				idBimap.releaseRef( ref );
+			}
+		}
+	}
+
 	private class MyTagHeaderRenderer extends DefaultTableCellRenderer
 	{
 
@@ -916,4 +1447,19 @@ public class FeatureTagTablePanel< O > extends JPanel
 		else
 			return Color.WHITE;
 	}
+
+	/**
+	 * Returns the inverse of the specified row permutation.
+	 *
+	 * @param viewToModel
+	 *            the model row of each view row.
+	 * @return the view row of each model row.
+	 */
+	private static int[] invert( final int[] viewToModel )
+	{
+		final int[] modelToView = new int[ viewToModel.length ];
+		for ( int v = 0; v < viewToModel.length; v++ )
+			modelToView[ viewToModel[ v ] ] = v;
+		return modelToView;
+	}
 }
@@ -0,0 +1,584 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2021 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.views.table;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import org.mastodon.RefPool;
+import org.mastodon.feature.Feature;
+import org.mastodon.feature.FeatureProjection;
+import org.mastodon.feature.FeatureSpec;
+import org.mastodon.model.tag.ObjTagMap;
+import org.mastodon.model.tag.ObjTags;
+import org.mastodon.model.tag.TagSetStructure.Tag;
+import org.mastodon.model.tag.TagSetStructure.TagSet;
+
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * A compiled row filter, written as a boolean expression over feature
+ * projection values and tags. For instance:
+ *
+ * <pre>
+ * Spot intensity Mean ch1 &gt; 300 and Spot N links &gt;= 2 and tag:Fate = Neuron
+ * </pre>
+ *
+ * The grammar is:
+ * <ul>
+ * <li>conditions can be combined with <code>and</code>, <code>or</code>,
+ * <code>not</code> and parentheses. Keywords are case-insensitive.</li>
+ * <li>a comparison is a feature projection name, one of <code>&lt;</code>,
+ * <code>&lt;=</code>, <code>&gt;</code>, <code>&gt;=</code>, <code>=</code>,
+ * <code>!=</code>, and a number. The projection name is the feature key
+ * followed by the projection key, or only the feature key if the feature has
+ * a single projection. Names are case-insensitive. Objects for which the
+ * projection is not set never pass a comparison.</li>
+ * <li>a tag test is <code>tag:</code> followed by a tag-set name, and
+ * optionally by <code>=</code> or <code>!=</code> and a tag name. Without a
+ * tag name, the test passes for objects that have any tag of the tag-set.</li>
+ * <li>names that contain keywords or operators can be written between double
+ * quotes.</li>
+ * </ul>
+ * <p>
+ * Evaluation first copies the values of the projections and tags used by the
+ * expression into primitive arrays, in the calling thread, because feature
+ * projections are not required to be thread-safe. The expression is then
+ * evaluated in parallel over these arrays. The graph must not be modified
+ * during {@link #filter(int[], RefPool)}.
+ *
+ * @param <O>
+ *            the type of objects to filter.
+ */
+public class FilterExpression< O >
+{
+
+	/**
+	 * Number of rows evaluated by a parallel task.
+	 */
+	private static final int CHUNK_SIZE = 1 << 15;
+
+	private final String text;
+
+	private final Condition condition;
+
+	private final List< FeatureProjection< O > > projections;
+
+	private final List< TagTest< O > > tagTests;
+
+	private FilterExpression( final String text, final Condition condition, final List< FeatureProjection< O > > projections, final List< TagTest< O > > tagTests )
+	{
+		this.text = text;
+		this.condition = condition;
+		this.projections = projections;
+		this.tagTests = tagTests;
+	}
+
+	/**
+	 * Compiles a filter expression.
+	 *
+	 * @param <O>
+	 *            the type of objects to filter.
+	 * @param text
+	 *            the expression.
+	 * @param features
+	 *            the features whose projections can be used in the expression.
+	 * @param tags
+	 *            the tags of the objects.
+	 * @param tagSets
+	 *            the tag-sets that can be used in the expression.
+	 * @return the compiled expression.
+	 * @throws IllegalArgumentException
+	 *             if the expression cannot be parsed, or uses an unknown
+	 *             projection, tag-set or tag.
+	 */
+	public static < O > FilterExpression< O > compile(
+			final String text,
+			final Map< FeatureSpec< ?, O >, Feature< O > > features,
+			final ObjTags< O > tags,
+			final List< TagSet > tagSets )
+	{
+		final Parser< O > parser = new Parser<>( text, features, tags, tagSets );
+		final Condition condition = parser.parse();
+		return new FilterExpression<>( text, condition, parser.projections, parser.tagTests );
+	}
+
+	/**
+	 * Returns the text this expression was compiled from.
+	 *
+	 * @return the expression text.
+	 */
+	public String getText()
+	{
+		return text;
+	}
+
+	/**
+	 * Returns the ids of the objects that pass this filter.
+	 *
+	 * @param ids
+	 *            the ids of the objects to filter.
+	 * @param pool
+	 *            the pool of the objects.
+	 * @return the ids of the objects that pass, in the order of the input.
+	 */
+	public TIntArrayList filter( final int[] ids, final RefPool< O > pool )
+	{
+		final int n = ids.length;
+
+		// Copy the values used by the expression.
+		final double[][] values = new double[ projections.size() ][ n ];
+		final O ref = pool.createRef();
+		for ( int r = 0; r < n; r++ )
+		{
+			final O o = pool.getObjectIfExists( ids[ r ], ref );
+			for ( int p = 0; p < projections.size(); p++ )
+			{
+				final FeatureProjection< O > projection = projections.get( p );
+				values[ p ][ r ] = ( o != null && projection.isSet( o ) ) ? projection.value( o ) : Double.NaN;
+			}
+		}
+		pool.releaseRef( ref );
+		final BitSet[] tagged = new BitSet[ tagTests.size() ];
+		for ( int t = 0; t < tagged.length; t++ )
+			tagged[ t ] = tagTests.get( t ).taggedIds( pool );
+		final Columns columns = new Columns( ids, values, tagged );
+
+		// Evaluate in parallel.
+		final boolean[] pass = new boolean[ n ];
+		final int nChunks = ( n + CHUNK_SIZE - 1 ) / CHUNK_SIZE;
+		IntStream.range( 0, nChunks ).parallel().forEach( chunk -> {
+			final int end = Math.min( n, ( chunk + 1 ) * CHUNK_SIZE );
+			for ( int r = chunk * CHUNK_SIZE; r < end; r++ )
+				pass[ r ] = condition.test( columns, r );
+		} );
+
+		final TIntArrayList passing = new TIntArrayList();
+		for ( int r = 0; r < n; r++ )
+			if ( pass[ r ] )
+				passing.add( ids[ r ] );
+		return passing;
+	}
+
+	@Override
+	public String toString()
+	{
+		return text;
+	}
+
+	/*
+	 * EVALUATION
+	 */
+
+	/**
+	 * Primitive copies of the values used by an expression, indexed by row.
+	 */
+	private static class Columns
+	{
+
+		private final int[] ids;
+
+		private final double[][] values;
+
+		private final BitSet[] tagged;
+
+		private Columns( final int[] ids, final double[][] values, final BitSet[] tagged )
+		{
+			this.ids = ids;
+			this.values = values;
+			this.tagged = tagged;
+		}
+	}
+
+	@FunctionalInterface
+	private interface Condition
+	{
+		boolean test( Columns columns, int row );
+	}
+
+	/**
+	 * Objects having one of the specified tags of a tag-set.
+	 */
+	private static class TagTest< O >
+	{
+
+		private final ObjTagMap< O, Tag > tagMap;
+
+		private final Collection< Tag > tags;
+
+		private TagTest( final ObjTagMap< O, Tag > tagMap, final Collection< Tag > tags )
+		{
+			this.tagMap = tagMap;
+			this.tags = tags;
+		}
+
+		private BitSet taggedIds( final RefPool< O > pool )
+		{
+			final BitSet ids = new BitSet();
+			for ( final Tag tag : tags )
+				for ( final O o : tagMap.getTaggedWith( tag ) )
+					ids.set( pool.getId( o ) );
+			return ids;
+		}
+	}
+
+	/*
+	 * PARSING
+	 */
+
+	private enum TokenType
+	{
+		LEFT_PARENTHESIS, RIGHT_PARENTHESIS, COLON, OPERATOR, WORD, END;
+	}
+
+	private static class Token
+	{
+
+		private final TokenType type;
+
+		private final String text;
+
+		private final boolean quoted;
+
+		private Token( final TokenType type, final String text, final boolean quoted )
+		{
+			this.type = type;
+			this.text = text;
+			this.quoted = quoted;
+		}
+
+		private boolean isKeyword( final String keyword )
+		{
+			return type == TokenType.WORD && !quoted && text.equalsIgnoreCase( keyword );
+		}
+
+		private boolean isKeyword()
+		{
+			return isKeyword( "and" ) || isKeyword( "or" ) || isKeyword( "not" );
+		}
+	}
+
+	private static class Parser< O >
+	{
+
+		private final String text;
+
+		private final List< Token > tokens;
+
+		private final Map< String, FeatureProjection< O > > projectionNames;
+
+		private final ObjTags< O > tags;
+
+		private final List< TagSet > tagSets;
+
+		private final List< FeatureProjection< O > > projections = new ArrayList<>();
+
+		private final List< TagTest< O > > tagTests = new ArrayList<>();
+
+		private int pos = 0;
+
+		private Parser( final String text, final Map< FeatureSpec< ?, O >, Feature< O > > features, final ObjTags< O > tags, final List< TagSet > tagSets )
+		{
+			this.text = text;
+			this.tokens = tokenize( text );
+			this.tags = tags;
+			this.tagSets = tagSets;
+			this.projectionNames = new LinkedHashMap<>();
+			for ( final Feature< O > feature : features.values() )
+			{
+				if ( feature == null || feature.projections() == null )
+					continue;
+				final String featureKey = feature.getSpec().getKey();
+				for ( final FeatureProjection< O > projection : feature.projections() )
+				{
+					projectionNames.put( normalize( featureKey + " " + projection.getKey() ), projection );
+					if ( feature.projections().size() == 1 )
+						projectionNames.put( normalize( featureKey ), projection );
+				}
+			}
+		}
+
+		private Condition parse()
+		{
+			final Condition condition = parseOr();
+			if ( peek().type != TokenType.END )
+				throw error( "unexpected '" + peek().text + "'" );
+			return condition;
+		}
+
+		private Condition parseOr()
+		{
+			Condition condition = parseAnd();
+			while ( peek().isKeyword( "or" ) )
+			{
+				pos++;
+				final Condition c1 = condition;
+				final Condition c2 = parseAnd();
+				condition = ( columns, row ) -> c1.test( columns, row ) || c2.test( columns, row );
+			}
+			return condition;
+		}
+
+		private Condition parseAnd()
+		{
+			Condition condition = parseNot();
+			while ( peek().isKeyword( "and" ) )
+			{
+				pos++;
+				final Condition c1 = condition;
+				final Condition c2 = parseNot();
+				condition = ( columns, row ) -> c1.test( columns, row ) && c2.test( columns, row );
+			}
+			return condition;
+		}
+
+		private Condition parseNot()
+		{
+			if ( peek().isKeyword( "not" ) )
+			{
+				pos++;
+				final Condition c = parseNot();
+				return ( columns, row ) -> !c.test( columns, row );
+			}
+			return parsePrimary();
+		}
+
+		private Condition parsePrimary()
+		{
+			final Token token = peek();
+			if ( token.type == TokenType.LEFT_PARENTHESIS )
+			{
+				pos++;
+				final Condition condition = parseOr();
+				if ( next().type != TokenType.RIGHT_PARENTHESIS )
+					throw error( "missing ')'" );
+				return condition;
+			}
+			if ( token.isKeyword( "tag" ) && tokens.get( pos + 1 ).type == TokenType.COLON )
+			{
+				pos += 2;
+				return parseTagTest();
+			}
+			return parseComparison();
+		}
+
+		private Condition parseComparison()
+		{
+			final String name = parseName();
+			final FeatureProjection< O > projection = projectionNames.get( normalize( name ) );
+			if ( projection == null )
+				throw error( "unknown feature projection '" + name + "'" );
+			int index = projections.indexOf( projection );
+			if ( index < 0 )
+			{
+				index = projections.size();
+				projections.add( projection );
+			}
+			final int p = index;
+
+			final Token op = next();
+			if ( op.type != TokenType.OPERATOR )
+				throw error( "expected a comparison operator after '" + name + "'" );
+			final Token number = next();
+			final double t;
+			try
+			{
+				t = Double.parseDouble( number.text );
+			}
+			catch ( final NumberFormatException e )
+			{
+				throw error( "expected a number after '" + name + " " + op.text + "'" );
+			}
+
+			switch ( op.text )
+			{
+			case "<":
+				return ( columns, row ) -> columns.values[ p ][ row ] < t;
+			case "<=":
+				return ( columns, row ) -> columns.values[ p ][ row ] <= t;
+			case ">":
+				return ( columns, row ) -> columns.values[ p ][ row ] > t;
+			case ">=":
+				return ( columns, row ) -> columns.values[ p ][ row ] >= t;
+			case "=":
+			case "==":
+				return ( columns, row ) -> columns.values[ p ][ row ] == t;
+			case "!=":
+			default:
+				return ( columns, row ) -> {
+					final double v = columns.values[ p ][ row ];
+					return !Double.isNaN( v ) && v != t;
+				};
+			}
+		}
+
+		private Condition parseTagTest()
+		{
+			final String tagSetName = parseName();
+			TagSet tagSet = null;
+			for ( final TagSet ts : tagSets )
+				if ( normalize( ts.getName() ).equals( normalize( tagSetName ) ) )
+					tagSet = ts;
+			if ( tagSet == null )
+				throw error( "unknown tag-set '" + tagSetName + "'" );
+
+			final Collection< Tag > tested;
+			boolean negate = false;
+			if ( peek().type == TokenType.OPERATOR )
+			{
+				final String op = next().text;
+				if ( op.equals( "!=" ) )
+					negate = true;
+				else if ( !op.equals( "=" ) && !op.equals( "==" ) )
+					throw error( "expected '=' or '!=' after 'tag:" + tagSetName + "'" );
+				final String tagName = parseName();
+				Tag tag = null;
+				for ( final Tag tg : tagSet.getTags() )
+					if ( normalize( tg.label() ).equals( normalize( tagName ) ) )
+						tag = tg;
+				if ( tag == null )
+					throw error( "unknown tag '" + tagName + "' in tag-set '" + tagSet.getName() + "'" );
+				tested = new ArrayList<>();
+				tested.add( tag );
+			}
+			else
+			{
+				tested = tagSet.getTags();
+			}
+
+			final int t = tagTests.size();
+			tagTests.add( new TagTest<>( tags.tags( tagSet ), tested ) );
+			if ( negate )
+				return ( columns, row ) -> !columns.tagged[ t ].get( columns.ids[ row ] );
+			return ( columns, row ) -> columns.tagged[ t ].get( columns.ids[ row ] );
+		}
+
+		/**
+		 * Reads a name made of consecutive words, up to the next operator,
+		 * parenthesis or keyword.
+		 */
+		private String parseName()
+		{
+			final StringBuilder name = new StringBuilder();
+			while ( peek().type == TokenType.WORD && !peek().isKeyword() )
+			{
+				if ( name.length() > 0 )
+					name.append( ' ' );
+				name.append( next().text );
+			}
+			if ( name.length() == 0 )
+				throw error( peek().type == TokenType.END ? "unexpected end of expression" : "unexpected '" + peek().text + "'" );
+			return name.toString();
+		}
+
+		private Token peek()
+		{
+			return tokens.get( pos );
+		}
+
+		private Token next()
+		{
+			final Token token = tokens.get( pos );
+			if ( token.type != TokenType.END )
+				pos++;
+			return token;
+		}
+
+		private IllegalArgumentException error( final String message )
+		{
+			return new IllegalArgumentException( "Invalid filter expression '" + text + "': " + message + "." );
+		}
+	}
+
+	private static List< Token > tokenize( final String text )
+	{
+		final List< Token > tokens = new ArrayList<>();
+		int i = 0;
+		while ( i < text.length() )
+		{
+			final char c = text.charAt( i );
+			if ( Character.isWhitespace( c ) )
+			{
+				i++;
+			}
+			else if ( c == '(' )
+			{
+				tokens.add( new Token( TokenType.LEFT_PARENTHESIS, "(", false ) );
+				i++;
+			}
+			else if ( c == ')' )
+			{
+				tokens.add( new Token( TokenType.RIGHT_PARENTHESIS, ")", false ) );
+				i++;
+			}
+			else if ( c == ':' )
+			{
+				tokens.add( new Token( TokenType.COLON, ":", false ) );
+				i++;
+			}
+			else if ( c == '<' || c == '>' || c == '=' || c == '!' )
+			{
+				final boolean twoChars = i + 1 < text.length() && text.charAt( i + 1 ) == '=';
+				final String op = text.substring( i, twoChars ? i + 2 : i + 1 );
+				if ( op.equals( "!" ) )
+					throw new IllegalArgumentException( "Invalid filter expression '" + text + "': unexpected '!'." );
+				tokens.add( new Token( TokenType.OPERATOR, op, false ) );
+				i += op.length();
+			}
+			else if ( c == '"' )
+			{
+				final int end = text.indexOf( '"', i + 1 );
+				if ( end < 0 )
+					throw new IllegalArgumentException( "Invalid filter expression '" + text + "': missing closing '\"'." );
+				tokens.add( new Token( TokenType.WORD, text.substring( i + 1, end ), true ) );
+				i = end + 1;
+			}
+			else
+			{
+				final int start = i;
+				while ( i < text.length() && !Character.isWhitespace( text.charAt( i ) ) && "()<>=!:\"".indexOf( text.charAt( i ) ) < 0 )
+					i++;
+				tokens.add( new Token( TokenType.WORD, text.substring( start, i ), false ) );
+			}
+		}
+		tokens.add( new Token( TokenType.END, "", false ) );
+		return tokens;
+	}
+
+	private static String normalize( final String name )
+	{
+		return name.trim().replaceAll( "\\s+", " " ).toLowerCase( Locale.ROOT );
+	}
+}
@@ -0,0 +1,161 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2021 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.views.table;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Stable sort of {@code int} indices with a primitive comparator, so that
+ * table rows can be sorted on primitive column values without boxing them.
+ * Large arrays are sorted in parallel in the common {@link ForkJoinPool}.
+ */
+class IndexSorter
+{
+
+	/**
+	 * Compares two indices.
+	 */
+	@FunctionalInterface
+	interface IndexComparator
+	{
+		int compare( int i1, int i2 );
+	}
+
+	/**
+	 * Arrays at least this long are sorted in parallel. Also the size below
+	 * which parallel tasks stop splitting.
+	 */
+	static final int PARALLEL_THRESHOLD = 1 << 14;
+
+	private static final int INSERTION_SORT_THRESHOLD = 16;
+
+	private IndexSorter()
+	{}
+
+	/**
+	 * Sorts the specified indices in place. The sort is stable. The comparator
+	 * may be called concurrently from several threads when the array is large.
+	 *
+	 * @param indices
+	 *            the indices to sort.
+	 * @param comparator
+	 *            the comparator.
+	 */
+	static void sort( final int[] indices, final IndexComparator comparator )
+	{
+		final int n = indices.length;
+		final int[] aux = indices.clone();
+		if ( n >= PARALLEL_THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1 )
+			ForkJoinPool.commonPool().invoke( new SortTask( aux, indices, 0, n, comparator ) );
+		else
+			mergeSort( aux, indices, 0, n, comparator );
+	}
+
+	/**
+	 * Sorts {@code dest[low, high)}. {@code src} must hold the same values as
+	 * {@code dest} in that range, and is used as scratch space.
+	 */
+	private static void mergeSort( final int[] src, final int[] dest, final int low, final int high, final IndexComparator c )
+	{
+		final int length = high - low;
+		if ( length < INSERTION_SORT_THRESHOLD )
+		{
+			for ( int i = low + 1; i < high; i++ )
+				for ( int j = i; j > low && c.compare( dest[ j - 1 ], dest[ j ] ) > 0; j-- )
+				{
+					final int t = dest[ j ];
+					dest[ j ] = dest[ j - 1 ];
+					dest[ j - 1 ] = t;
+				}
+			return;
+		}
+		final int mid = ( low + high ) >>> 1;
+		mergeSort( dest, src, low, mid, c );
+		mergeSort( dest, src, mid, high, c );
+		merge( src, dest, low, mid, high, c );
+	}
+
+	private static void merge( final int[] src, final int[] dest, final int low, final int mid, final int high, final IndexComparator c )
+	{
+		// Already in order.
+		if ( c.compare( src[ mid - 1 ], src[ mid ] ) <= 0 )
+		{
+			System.arraycopy( src, low, dest, low, high - low );
+			return;
+		}
+		for ( int i = low, p = low, q = mid; i < high; i++ )
+		{
+			if ( q >= high || p < mid && c.compare( src[ p ], src[ q ] ) <= 0 )
+				dest[ i ] = src[ p++ ];
+			else
+				dest[ i ] = src[ q++ ];
+		}
+	}
+
+	private static class SortTask extends RecursiveAction
+	{
+
+		private static final long serialVersionUID = 1L;
+
+		private final int[] src;
+
+		private final int[] dest;
+
+		private final int low;
+
+		private final int high;
+
+		private final IndexComparator comparator;
+
+		SortTask( final int[] src, final int[] dest, final int low, final int high, final IndexComparator comparator )
+		{
+			this.src = src;
+			this.dest = dest;
+			this.low = low;
+			this.high = high;
+			this.comparator = comparator;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if ( high - low < PARALLEL_THRESHOLD )
+			{
+				mergeSort( src, dest, low, high, comparator );
+				return;
+			}
+			final int mid = ( low + high ) >>> 1;
+			invokeAll(
+					new SortTask( dest, src, low, mid, comparator ),
+					new SortTask( dest, src, mid, high, comparator ) );
+			merge( src, dest, low, mid, high, comparator );
+		}
+	}
+}
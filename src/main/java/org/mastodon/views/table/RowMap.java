@@ -0,0 +1,204 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2021 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.views.table;
+
+import java.util.Arrays;
+
+import gnu.trove.TIntCollection;
+import gnu.trove.iterator.TIntIterator;
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * Maps the model rows of a table to the pool ids of the objects they display,
+ * and back.
+ * <p>
+ * Rows are stored in a plain {@code int} list, and the reverse mapping in a
+ * dense {@code int} array indexed by object id, so that building the map for
+ * millions of objects does not go through hashing. Rows can be appended one
+ * at a time, and removed one at a time or in bulk, keeping the order of the
+ * other rows.
+ * <p>
+ * Not thread-safe.
+ */
+class RowMap
+{
+	private final TIntArrayList rowToId;
+
+	/**
+	 * Model row of each object id, or -1 if the object is not in the map.
+	 */
+	private int[] idToRow;
+
+	RowMap()
+	{
+		this( 10 );
+	}
+
+	RowMap( final int capacity )
+	{
+		rowToId = new TIntArrayList( capacity );
+		idToRow = new int[ 0 ];
+	}
+
+	/**
+	 * Returns the number of rows.
+	 *
+	 * @return the number of rows.
+	 */
+	public int size()
+	{
+		return rowToId.size();
+	}
+
+	/**
+	 * Returns the id of the object displayed at the specified row.
+	 *
+	 * @param row
+	 *            the model row.
+	 * @return the object id, or -1 if the row is out of bounds.
+	 */
+	public int getId( final int row )
+	{
+		return ( row < 0 || row >= rowToId.size() ) ? -1 : rowToId.getQuick( row );
+	}
+
+	/**
+	 * Returns the ids of the objects in all the rows, in row order.
+	 *
+	 * @return a new array of object ids.
+	 */
+	public int[] getIds()
+	{
+		return rowToId.toArray();
+	}
+
+	/**
+	 * Returns the row of the object with the specified id.
+	 *
+	 * @param id
+	 *            the object id.
+	 * @return the model row, or -1 if the object is not in the map.
+	 */
+	public int getRow( final int id )
+	{
+		return ( id < 0 || id >= idToRow.length ) ? -1 : idToRow[ id ];
+	}
+
+	/**
+	 * Appends the object with the specified id as a new last row.
+	 *
+	 * @param id
+	 *            the object id.
+	 * @return the row of the new object, or -1 if it was already in the map.
+	 */
+	public int add( final int id )
+	{
+		if ( getRow( id ) >= 0 )
+			return -1;
+		ensureIdCapacity( id + 1 );
+		final int row = rowToId.size();
+		rowToId.add( id );
+		idToRow[ id ] = row;
+		return row;
+	}
+
+	/**
+	 * Removes the object with the specified id. The rows after it move up by
+	 * one. This is linear in the number of rows, use
+	 * {@link #removeAll(TIntCollection)} to remove many objects.
+	 *
+	 * @param id
+	 *            the object id.
+	 * @return the row the object was at, or -1 if it was not in the map.
+	 */
+	public int remove( final int id )
+	{
+		final int row = getRow( id );
+		if ( row < 0 )
+			return -1;
+		rowToId.removeAt( row );
+		idToRow[ id ] = -1;
+		for ( int r = row; r < rowToId.size(); r++ )
+			idToRow[ rowToId.getQuick( r ) ] = r;
+		return row;
+	}
+
+	/**
+	 * Removes the objects with the specified ids, in a single pass over the
+	 * rows. The remaining rows keep their order. Ids that are not in the map
+	 * are ignored.
+	 *
+	 * @param ids
+	 *            the object ids.
+	 * @return the number of rows removed.
+	 */
+	public int removeAll( final TIntCollection ids )
+	{
+		int nRemoved = 0;
+		final TIntIterator it = ids.iterator();
+		while ( it.hasNext() )
+		{
+			final int id = it.next();
+			final int row = getRow( id );
+			if ( row >= 0 )
+			{
+				// Mark the row, ids are never negative.
+				rowToId.setQuick( row, -1 );
+				idToRow[ id ] = -1;
+				++nRemoved;
+			}
+		}
+		if ( nRemoved == 0 )
+			return 0;
+
+		final int size = rowToId.size();
+		int row = 0;
+		for ( int r = 0; r < size; r++ )
+		{
+			final int id = rowToId.getQuick( r );
+			if ( id >= 0 )
+			{
+				rowToId.setQuick( row, id );
+				idToRow[ id ] = row++;
+			}
+		}
+		rowToId.remove( row, size - row );
+		return nRemoved;
+	}
+
+	private void ensureIdCapacity( final int capacity )
+	{
+		if ( capacity <= idToRow.length )
+			return;
+		final int oldLength = idToRow.length;
+		final int newLength = Math.max( capacity, oldLength + ( oldLength >> 1 ) );
+		idToRow = Arrays.copyOf( idToRow, newLength );
+		Arrays.fill( idToRow, oldLength, newLength, -1 );
+	}
+}
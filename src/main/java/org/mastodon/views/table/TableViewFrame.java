@@ -29,6 +29,7 @@
 package org.mastodon.views.table;
 
 import java.awt.BorderLayout;
+import java.awt.Color;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -38,8 +39,11 @@ import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import javax.swing.Box;
+import javax.swing.JLabel;
 import javax.swing.JTabbedPane;
 import javax.swing.JTable;
+import javax.swing.JTextField;
+import javax.swing.UIManager;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
 
@@ -96,6 +100,11 @@ public class TableViewFrame<
 
 	private static final long serialVersionUID = 1L;
 
+	private static final String FILTER_TOOLTIP = "<html>"
+			+ "Filter the rows of the current table. For instance:<br>"
+			+ "<code>Spot intensity Mean ch1 &gt; 300 and tag:Fate = Neuron</code>"
+			+ "</html>";
+
 	private final SelectionModel< V, E > selectionModel;
 
 	private final FocusModel< V, E > focusModel;
@@ -132,6 +141,8 @@ public class TableViewFrame<
 
 	private final ContextChooser< V > contextChooser;
 
+	private final JTextField filterField;
+
 	public TableViewFrame(
 			final M appModel,
 			final VG viewGraph,
@@ -165,6 +176,13 @@ public class TableViewFrame<
 
 		final GroupLocksPanel navigationLocksPanel = new GroupLocksPanel( groupHandle );
 		settingsPanel.add( navigationLocksPanel );
+		settingsPanel.add( Box.createHorizontalStrut( 5 ) );
+		settingsPanel.add( new JLabel( "Filter:" ) );
+		this.filterField = new JTextField( 30 );
+		filterField.setMaximumSize( filterField.getPreferredSize() );
+		filterField.setToolTipText( FILTER_TOOLTIP );
+		filterField.addActionListener( e -> applyFilterExpression() );
+		settingsPanel.add( filterField );
 		settingsPanel.add( Box.createHorizontalGlue() );
 
 		this.contextChooser = new ContextChooser<>( this );
@@ -334,6 +352,11 @@ public class TableViewFrame<
 		pane = new JTabbedPane( JTabbedPane.LEFT );
 		pane.add( "Vertices", vertexTable );
 		pane.add( "Edges", edgeTable );
+		pane.addChangeListener( e -> {
+			filterField.setText( getCurrentlyDisplayedTable().getFilterExpression() );
+			filterField.setForeground( UIManager.getColor( "TextField.foreground" ) );
+			filterField.setToolTipText( FILTER_TOOLTIP );
+		} );
 		add( pane, BorderLayout.CENTER );
 	}
 
@@ -450,6 +473,13 @@ public class TableViewFrame<
 		ignoreTableSelectionChange = false;
 	}
 
+	@Override
+	public void tagsChanged()
+	{
+		vertexTable.refreshRows();
+		edgeTable.refreshRows();
+	}
+
 	public FeatureTagTablePanel< ? > getCurrentlyDisplayedTable()
 	{
 		final int selectedIndex = pane.getSelectedIndex();
@@ -471,6 +501,29 @@ public class TableViewFrame<
 		getCurrentlyDisplayedTable().toggleCurrentTag();
 	}
 
+	/**
+	 * Filters the currently displayed table with the expression in the filter
+	 * field.
+	 */
+	private void applyFilterExpression()
+	{
+		ignoreTableSelectionChange = true;
+		try
+		{
+			getCurrentlyDisplayedTable().setFilterExpression( filterField.getText() );
+			filterField.setForeground( UIManager.getColor( "TextField.foreground" ) );
+			filterField.setToolTipText( FILTER_TOOLTIP );
+		}
+		catch ( final IllegalArgumentException e )
+		{
+			filterField.setForeground( Color.RED );
+			filterField.setToolTipText( e.getMessage() );
+		}
+		if ( mirrorSelection )
+			selectionChanged();
+		ignoreTableSelectionChange = false;
+	}
+
 	@Override
 	public void contextChanged( final Context< V > context )
 	{
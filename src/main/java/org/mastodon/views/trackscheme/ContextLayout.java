@@ -32,6 +32,8 @@ import org.mastodon.collection.RefCollections;
 import org.mastodon.collection.RefList;
 import org.mastodon.views.context.Context;
 
+import gnu.trove.list.array.TIntArrayList;
+
 /**
  * Algorithm:
  * <ol>
@@ -58,6 +60,27 @@ public class ContextLayout
 
 	private int previousMaxTimepoint;
 
+	/**
+	 * The inside vertices (TrackScheme vertex pool indices) of the previous
+	 * context that was laid out. For each timepoint in
+	 * {@code [previousMinTimepoint, previousMaxTimepoint]}, this contains the
+	 * number of inside vertices, followed by their sorted indices.
+	 */
+	private final TIntArrayList previousInside;
+
+	/**
+	 * The inside vertices of the current context, in the same format as
+	 * {@link #previousInside}.
+	 */
+	private final TIntArrayList currentInside;
+
+	/**
+	 * The {@link LineageTreeLayout#getCurrentLayoutTimestamp() layout
+	 * timestamp} after the previous context layout. If the layout timestamp
+	 * differs, somebody else has laid out the graph in the meantime.
+	 */
+	private int previousLayoutTimestamp;
+
 	public ContextLayout(
 			final TrackSchemeGraph< ?, ? > graph,
 			final LineageTreeLayout layout )
@@ -66,6 +89,9 @@ public class ContextLayout
 		this.layout = layout;
 		this.previousMinTimepoint = -1;
 		this.previousMaxTimepoint = -1;
+		this.previousInside = new TIntArrayList();
+		this.currentInside = new TIntArrayList();
+		this.previousLayoutTimestamp = -1;
 	}
 
 	/**
@@ -75,6 +101,10 @@ public class ContextLayout
 	 * {@link ScreenTransform#getMaxY()} of {@code transform} determines the
 	 * time-point range to cover. If the time-point range is the same as in the
 	 * previous call nothing is updated, unless {@code forceUpdate == true}.
+	 * <p>
+	 * If {@code forceUpdate == true}, the context is still only laid out again
+	 * if the set of inside vertices changed for at least one timepoint in the
+	 * range (or the graph was laid out by somebody else in between).
 	 *
 	 * @param context
 	 *            the context to layout.
@@ -93,41 +123,84 @@ public class ContextLayout
 	{
 		final int minTimepoint = ( int ) transform.getMinY();
 		final int maxTimepoint = ( int ) transform.getMaxY() + 1;
-		if ( minTimepoint == previousMinTimepoint && maxTimepoint == previousMaxTimepoint && !forceUpdate )
+		final boolean sameRange = minTimepoint == previousMinTimepoint && maxTimepoint == previousMaxTimepoint;
+		if ( sameRange && !forceUpdate )
+			return false;
+
+		context.readLock().lock();
+		try
+		{
+			collectInsideVertices( context, minTimepoint, maxTimepoint, currentInside );
+		}
+		finally
+		{
+			context.readLock().unlock();
+		}
+
+		if ( sameRange
+				&& previousLayoutTimestamp == layout.getCurrentLayoutTimestamp()
+				&& currentInside.equals( previousInside ) )
 			return false;
 
 		previousMinTimepoint = minTimepoint;
 		previousMaxTimepoint = maxTimepoint;
+		previousInside.resetQuick();
+		previousInside.addAll( currentInside );
 
 		final int ghostmark = layout.nextLayoutTimestamp();
 		final int mark = layout.nextLayoutTimestamp();
 		final RefList< TrackSchemeVertex > roots = RefCollections.createRefList( graph.vertices() );
 
-		context.readLock().lock();
-		try
+		final TrackSchemeVertex tv = graph.vertexRef();
+		final TIntArrayList stack = new TIntArrayList();
+		int i = 0;
+		for ( int t = minTimepoint; t <= maxTimepoint; ++t )
 		{
-			for ( int t = minTimepoint; t <= maxTimepoint; ++t )
+			final int n = currentInside.getQuick( i++ );
+			for ( final int end = i + n; i < end; ++i )
 			{
-				for ( final TrackSchemeVertex tv : context.getInsideVertices( t ) )
-				{
-					tv.setLayoutTimestamp( mark );
-					if ( t == minTimepoint )
-						roots.add( tv );
-					else
-						buildContextTraceParents( tv, ghostmark, minTimepoint, roots );
-				}
+				graph.getVertexPool().getObject( currentInside.getQuick( i ), tv );
+				tv.setLayoutTimestamp( mark );
+				if ( t == minTimepoint )
+					roots.add( tv );
+				else
+					buildContextTraceParents( tv, ghostmark, minTimepoint, roots, stack );
 			}
 		}
-		finally
-		{
-			context.readLock().unlock();
-		}
+		graph.releaseRef( tv );
 
 		layout.layout( LexicographicalVertexOrder.sort( graph, roots ), mark );
+		previousLayoutTimestamp = layout.getCurrentLayoutTimestamp();
 
 		return true;
 	}
 
+	/**
+	 * Writes the inside vertices of {@code context} for timepoints
+	 * {@code minTimepoint} to {@code maxTimepoint} into {@code inside}. For
+	 * each timepoint, the number of inside vertices is written, followed by
+	 * the sorted pool indices of the inside vertices.
+	 */
+	private static void collectInsideVertices(
+			final Context< TrackSchemeVertex > context,
+			final int minTimepoint,
+			final int maxTimepoint,
+			final TIntArrayList inside )
+	{
+		inside.resetQuick();
+		for ( int t = minTimepoint; t <= maxTimepoint; ++t )
+		{
+			final int countIndex = inside.size();
+			inside.add( 0 );
+			for ( final TrackSchemeVertex tv : context.getInsideVertices( t ) )
+				if ( tv != null )
+					inside.add( tv.getInternalPoolIndex() );
+			final int n = inside.size() - countIndex - 1;
+			inside.setQuick( countIndex, n );
+			inside.sort( countIndex + 1, inside.size() );
+		}
+	}
+
 	/**
 	 * Follow backwards along incoming edges until
 	 * <ul>
@@ -136,29 +209,40 @@ public class ContextLayout
 	 * <li>(B) vertex is reached that has timepoint &lt;= minTimepoint.
 	 * </ul>
 	 *
-	 * Mark all recursively visited vertices as ghosts. In case (B), add the
-	 * final vertex to set of roots.
+	 * Mark all visited vertices as ghosts. In case (B), add the final vertex to
+	 * set of roots. Vertices to visit are kept on an explicit {@code stack}
+	 * (of vertex pool indices), so that long tracks do not cause deep
+	 * recursion.
 	 */
-	private void buildContextTraceParents( final TrackSchemeVertex tv, final int ghostmark, final int minTimepoint, final RefList< TrackSchemeVertex > roots )
+	private void buildContextTraceParents( final TrackSchemeVertex start, final int ghostmark, final int minTimepoint, final RefList< TrackSchemeVertex > roots, final TIntArrayList stack )
 	{
-		if( tv.incomingEdges().isEmpty() )
-			roots.add( tv );
-		else
+		if ( start.incomingEdges().isEmpty() )
+		{
+			roots.add( start );
+			return;
+		}
+
+		final TrackSchemeVertex tv = graph.vertexRef();
+		final TrackSchemeVertex ref = graph.vertexRef();
+		stack.resetQuick();
+		stack.add( start.getInternalPoolIndex() );
+		while ( !stack.isEmpty() )
 		{
-			final TrackSchemeVertex ref = graph.vertexRef();
+			graph.getVertexPool().getObject( stack.removeAt( stack.size() - 1 ), tv );
 			for ( final TrackSchemeEdge te : tv.incomingEdges() )
 			{
 				final TrackSchemeVertex parent = te.getSource( ref );
 				if ( parent.getLayoutTimestamp() < ghostmark )
 				{
 					parent.setLayoutTimestamp( ghostmark );
-					if ( parent.getTimepoint() <= minTimepoint )
+					if ( parent.getTimepoint() <= minTimepoint || parent.incomingEdges().isEmpty() )
 						roots.add( parent );
 					else
-						buildContextTraceParents( parent, ghostmark, minTimepoint, roots );
+						stack.add( parent.getInternalPoolIndex() );
 				}
 			}
-			graph.releaseRef( ref );
 		}
+		graph.releaseRef( ref );
+		graph.releaseRef( tv );
 	}
 }
@@ -0,0 +1,179 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2021 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.views.trackscheme;
+
+
+import org.mastodon.collection.RefList;
+import org.mastodon.util.ScreenBoxGrid;
+
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * A uniform grid over the {@link ScreenVertex screen vertices} and
+ * {@link ScreenEdge screen edges} of a {@link ScreenEntities}, to answer point
+ * and rectangle queries in screen coordinates without scanning all entities.
+ * This is used for mouse interaction (highlighting, clicking, linking).
+ * <p>
+ * Entities are referred to by their index in {@link ScreenEntities#getVertices()}
+ * and {@link ScreenEntities#getEdges()}. Queries return <em>candidates</em>,
+ * i.e., all entities stored in grid cells that overlap the query rectangle.
+ * Callers have to do exact hit-testing on the candidates.
+ * <p>
+ * The grid must be {@link #build(ScreenEntities) rebuilt} whenever the
+ * entities change. Storage is re-used between builds.
+ */
+public class ScreenEntitiesGrid
+{
+	private final ScreenBoxGrid vertexGrid = new ScreenBoxGrid();
+
+	private final ScreenBoxGrid edgeGrid = new ScreenBoxGrid();
+
+	/**
+	 * Screen coordinates of vertices, in list order. Stored to avoid going
+	 * through the vertex pool while building.
+	 */
+	private double[] xs = new double[ 0 ];
+
+	private double[] ys = new double[ 0 ];
+
+	/**
+	 * Boxes of vertices (of size zero) or edges, see
+	 * {@link ScreenBoxGrid#build}.
+	 */
+	private double[] boxes = new double[ 0 ];
+
+	/**
+	 * Rebuilds the grid for the specified entities.
+	 *
+	 * @param entities
+	 *            the entities to index.
+	 */
+	public void build( final ScreenEntities entities )
+	{
+		final RefList< ScreenVertex > vertices = entities.getVertices();
+		final RefList< ScreenEdge > edges = entities.getEdges();
+		final int numVertices = vertices.size();
+		final int numEdges = edges.size();
+
+		if ( xs.length < numVertices )
+		{
+			xs = new double[ numVertices ];
+			ys = new double[ numVertices ];
+		}
+		if ( boxes.length < 4 * Math.max( numVertices, numEdges ) )
+			boxes = new double[ 4 * Math.max( numVertices, numEdges ) ];
+
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		final ScreenVertex v = vertices.createRef();
+		for ( int i = 0; i < numVertices; ++i )
+		{
+			vertices.get( i, v );
+			final double x = v.getX();
+			final double y = v.getY();
+			xs[ i ] = x;
+			ys[ i ] = y;
+			final int b = 4 * i;
+			boxes[ b ] = boxes[ b + 2 ] = x;
+			boxes[ b + 1 ] = boxes[ b + 3 ] = y;
+			minX = Math.min( minX, x );
+			minY = Math.min( minY, y );
+			maxX = Math.max( maxX, x );
+			maxY = Math.max( maxY, y );
+		}
+		vertices.releaseRef( v );
+		if ( numVertices == 0 )
+		{
+			minX = minY = maxX = maxY = 0;
+		}
+		vertexGrid.build( numVertices, boxes, minX, minY, maxX, maxY );
+
+		/*
+		 * Each edge goes into all cells overlapped by its bounding box, unless
+		 * that are too many.
+		 */
+		final ScreenEdge e = edges.createRef();
+		for ( int j = 0; j < numEdges; ++j )
+		{
+			edges.get( j, e );
+			final int s = e.getSourceScreenVertexIndex();
+			final int t = e.getTargetScreenVertexIndex();
+			final int b = 4 * j;
+			boxes[ b ] = Math.min( xs[ s ], xs[ t ] );
+			boxes[ b + 1 ] = Math.min( ys[ s ], ys[ t ] );
+			boxes[ b + 2 ] = Math.max( xs[ s ], xs[ t ] );
+			boxes[ b + 3 ] = Math.max( ys[ s ], ys[ t ] );
+		}
+		edges.releaseRef( e );
+		edgeGrid.build( numEdges, boxes, minX, minY, maxX, maxY );
+	}
+
+	/**
+	 * Adds to {@code candidates} the indices of all vertices that are possibly
+	 * within the rectangle {@code (x1, y1)} to {@code (x2, y2)}.
+	 *
+	 * @param x1
+	 *            min x of the query rectangle.
+	 * @param y1
+	 *            min y of the query rectangle.
+	 * @param x2
+	 *            max x of the query rectangle.
+	 * @param y2
+	 *            max y of the query rectangle.
+	 * @param candidates
+	 *            list to which vertex indices are added.
+	 */
+	public void getVertexCandidates( final double x1, final double y1, final double x2, final double y2, final TIntArrayList candidates )
+	{
+		vertexGrid.getCandidates( x1, y1, x2, y2, candidates );
+	}
+
+	/**
+	 * Adds to {@code candidates} the indices of all edges that possibly
+	 * intersect the rectangle {@code (x1, y1)} to {@code (x2, y2)}. The same
+	 * edge index may be added more than once.
+	 *
+	 * @param x1
+	 *            min x of the query rectangle.
+	 * @param y1
+	 *            min y of the query rectangle.
+	 * @param x2
+	 *            max x of the query rectangle.
+	 * @param y2
+	 *            max y of the query rectangle.
+	 * @param candidates
+	 *            list to which edge indices are added.
+	 */
+	public void getEdgeCandidates( final double x1, final double y1, final double x2, final double y2, final TIntArrayList candidates )
+	{
+		edgeGrid.getCandidates( x1, y1, x2, y2, candidates );
+	}
+}
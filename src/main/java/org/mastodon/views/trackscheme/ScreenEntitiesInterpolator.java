@@ -34,21 +34,77 @@ import static org.mastodon.views.trackscheme.ScreenVertex.Transition.DISAPPEAR;
 import static org.mastodon.views.trackscheme.ScreenVertex.Transition.NONE;
 import static org.mastodon.views.trackscheme.ScreenVertex.Transition.SELECTING;
 
-import org.mastodon.collection.ref.IntRefHashMap;
+import java.util.Arrays;
+import java.util.stream.IntStream;
 
+import org.mastodon.collection.RefList;
+
+import gnu.trove.map.hash.TIntIntHashMap;
+
+/**
+ * Interpolates between two sets of {@link ScreenEntities}, for animating
+ * TrackScheme layout transitions.
+ * <p>
+ * Start and end entities are aligned by TrackScheme id once, when the
+ * interpolator is created. The alignment and the start/end coordinates are
+ * kept in primitive arrays, so that computing an interpolated frame does not
+ * require any map lookups. Interpolated frames are computed in parallel chunks
+ * when there are many entities.
+ */
 public class ScreenEntitiesInterpolator
 {
+	/**
+	 * Number of entities processed by one task when interpolating in parallel.
+	 */
+	private static final int CHUNK_SIZE = 4096;
+
 	private final ScreenEntities start;
 
 	private final ScreenEntities end;
 
-	private final IntRefHashMap< ScreenVertex > idToStartVertex;
+	private final ScreenTransform incrementalStartTransform;
 
-	private final IntRefHashMap< ScreenVertex > idToEndVertex;
+	/**
+	 * For the {@code i}th interpolated vertex, the index of the corresponding
+	 * vertex in the start entities list, or -1 if the vertex appears.
+	 */
+	private final int[] ipStartIndex;
 
-	private final IntRefHashMap< ScreenEdge > idToStartEdge;
+	/**
+	 * For the {@code i}th interpolated vertex, the index of the corresponding
+	 * vertex in the end entities list, or -1 if the vertex disappears.
+	 */
+	private final int[] ipEndIndex;
 
-	private final ScreenTransform incrementalStartTransform;
+	/**
+	 * Start coordinates of interpolated vertices, with the incremental start
+	 * transform already applied.
+	 */
+	private final double[] startX;
+
+	private final double[] startY;
+
+	/**
+	 * End coordinates of interpolated vertices.
+	 */
+	private final double[] endX;
+
+	private final double[] endY;
+
+	/**
+	 * For the {@code j}th edge of the end entities, the indices of the
+	 * interpolated source and target vertices.
+	 */
+	private final int[] edgeSource;
+
+	private final int[] edgeTarget;
+
+	/**
+	 * For the {@code j}th edge of the end entities, the selection state of the
+	 * corresponding start edge: 1 if selected, 0 if not selected, -1 if there
+	 * is no corresponding start edge.
+	 */
+	private final byte[] edgeStartSelected;
 
 	/**
 	 * Create an interpolator between two sets of {@link ScreenEntities}.
@@ -80,20 +136,117 @@ public class ScreenEntitiesInterpolator
 	{
 		this.start = start;
 		this.end = end;
+		this.incrementalStartTransform = incrementalStartTransform;
 
-		idToStartVertex = new IntRefHashMap< ScreenVertex >( start.getVertexPool(), -1, start.getVertices().size() );
-		for ( final ScreenVertex v : start.getVertices() )
-			idToStartVertex.put( v.getTrackSchemeVertexId(), v );
+		final RefList< ScreenVertex > startVertices = start.getVertices();
+		final RefList< ScreenVertex > endVertices = end.getVertices();
+		final int nStart = startVertices.size();
+		final int nEnd = endVertices.size();
 
-		idToEndVertex = new IntRefHashMap< ScreenVertex >( end.getVertexPool(), -1, end.getVertices().size() );
-		for ( final ScreenVertex v : end.getVertices() )
-			idToEndVertex.put( v.getTrackSchemeVertexId(), v );
+		final TIntIntHashMap idToEndIndex = new TIntIntHashMap( 2 * nEnd + 1, 0.5f, -1, -1 );
+		final ScreenVertex vRef = end.getVertexPool().createRef();
+		for ( int i = 0; i < nEnd; ++i )
+			idToEndIndex.put( endVertices.get( i, vRef ).getTrackSchemeVertexId(), i );
+		end.getVertexPool().releaseRef( vRef );
 
-		idToStartEdge = new IntRefHashMap< ScreenEdge >( start.getEdgePool(), -1, start.getEdges().size() );
-		for ( final ScreenEdge e : start.getEdges() )
-			idToStartEdge.put( e.getTrackSchemeEdgeId(), e );
+		/*
+		 * Align vertices. Interpolated vertices are all (valid) start vertices
+		 * in order, followed by the end vertices that have no start
+		 * counterpart.
+		 */
+		final int[] endToIp = new int[ nEnd ];
+		Arrays.fill( endToIp, -1 );
+		final int[] tmpStart = new int[ nStart + nEnd ];
+		final int[] tmpEnd = new int[ nStart + nEnd ];
+		int n = 0;
+		final ScreenVertex sRef = start.getVertexPool().createRef();
+		for ( int i = 0; i < nStart; ++i )
+		{
+			final int vId = startVertices.get( i, sRef ).getTrackSchemeVertexId();
+			if ( vId < 0 )
+				continue;
+			final int j = idToEndIndex.get( vId );
+			tmpStart[ n ] = i;
+			tmpEnd[ n ] = j;
+			if ( j >= 0 )
+				endToIp[ j ] = n;
+			++n;
+		}
+		for ( int j = 0; j < nEnd; ++j )
+		{
+			if ( endToIp[ j ] < 0 )
+			{
+				tmpStart[ n ] = -1;
+				tmpEnd[ n ] = j;
+				endToIp[ j ] = n;
+				++n;
+			}
+		}
+		ipStartIndex = Arrays.copyOf( tmpStart, n );
+		ipEndIndex = Arrays.copyOf( tmpEnd, n );
 
-		this.incrementalStartTransform = incrementalStartTransform;
+		startX = new double[ n ];
+		startY = new double[ n ];
+		endX = new double[ n ];
+		endY = new double[ n ];
+		final ScreenVertex eRef = end.getVertexPool().createRef();
+		for ( int i = 0; i < n; ++i )
+		{
+			if ( ipEndIndex[ i ] >= 0 )
+			{
+				final ScreenVertex ve = endVertices.get( ipEndIndex[ i ], eRef );
+				endX[ i ] = ve.getX();
+				endY[ i ] = ve.getY();
+			}
+			if ( ipStartIndex[ i ] >= 0 )
+			{
+				final ScreenVertex vs = startVertices.get( ipStartIndex[ i ], sRef );
+				double x = vs.getX();
+				double y = vs.getY();
+				if ( incrementalStartTransform != null )
+				{
+					x = incrementalStartTransform.layoutToScreenX( x );
+					y = incrementalStartTransform.layoutToScreenY( y );
+				}
+				startX[ i ] = x;
+				startY[ i ] = y;
+			}
+			else
+			{
+				startX[ i ] = endX[ i ];
+				startY[ i ] = endY[ i ];
+			}
+			if ( ipEndIndex[ i ] < 0 )
+			{
+				endX[ i ] = startX[ i ];
+				endY[ i ] = startY[ i ];
+			}
+		}
+		start.getVertexPool().releaseRef( sRef );
+		end.getVertexPool().releaseRef( eRef );
+
+		/*
+		 * Align edges. Only edges of the end entities are interpolated.
+		 */
+		final RefList< ScreenEdge > startEdges = start.getEdges();
+		final RefList< ScreenEdge > endEdges = end.getEdges();
+		final TIntIntHashMap idToStartEdgeSelected = new TIntIntHashMap( 2 * startEdges.size() + 1, 0.5f, -1, -1 );
+		for ( final ScreenEdge e : startEdges )
+			idToStartEdgeSelected.put( e.getTrackSchemeEdgeId(), e.isSelected() ? 1 : 0 );
+
+		final int nEdges = endEdges.size();
+		edgeSource = new int[ nEdges ];
+		edgeTarget = new int[ nEdges ];
+		edgeStartSelected = new byte[ nEdges ];
+		final ScreenEdge edgeRef = end.getEdgePool().createRef();
+		for ( int j = 0; j < nEdges; ++j )
+		{
+			final ScreenEdge e = endEdges.get( j, edgeRef );
+			edgeSource[ j ] = endToIp[ e.getSourceScreenVertexIndex() ];
+			edgeTarget[ j ] = endToIp[ e.getTargetScreenVertexIndex() ];
+			edgeStartSelected[ j ] = ( byte ) idToStartEdgeSelected.get( e.getTrackSchemeEdgeId() );
+		}
+		end.getEdgePool().releaseRef( edgeRef );
 	}
 
 	public static ScreenTransform getIncrementalY( final ScreenEntities start, final ScreenEntities end )
@@ -108,6 +261,15 @@ public class ScreenEntitiesInterpolator
 		return end.screenTransform().concatenate( start.screenTransform().inverse() );
 	}
 
+	/**
+	 * Computes the interpolated entities at the specified ratio and adds them
+	 * to {@code current}, which is expected to be empty.
+	 *
+	 * @param currentRatio
+	 *            the interpolation ratio, from 0 (start) to 1 (end).
+	 * @param current
+	 *            the {@link ScreenEntities} to fill.
+	 */
 	public void interpolate( final double currentRatio, final ScreenEntities current )
 	{
 		final double accelRatio = Math.sin( Math.PI * Math.sin( Math.PI * currentRatio / 2 ) / 2 );
@@ -115,57 +277,31 @@ public class ScreenEntitiesInterpolator
 		// Interpolate vertices
 		// ====================
 		// Each interpolated vertex either moves, appears, disappears, gets selected or gets de-selected.
+		// Pool objects and labels are created sequentially (this is not
+		// thread-safe), all other attributes are set in parallel chunks.
+		final int nVertices = ipStartIndex.length;
 		final ScreenVertex vCurrent = current.getVertexPool().createRef();
 		final ScreenVertex vStart = start.getVertexPool().createRef();
 		final ScreenVertex vEnd = end.getVertexPool().createRef();
-		for ( final ScreenVertex v : start.getVertices() )
+		for ( int i = 0; i < nVertices; ++i )
 		{
-			final int vId = v.getTrackSchemeVertexId();
-			if ( vId < 0 )
-				continue;
-
 			current.getVertices().add( current.getVertexPool().create( vCurrent ) );
-			if ( idToEndVertex.get( vId, vEnd ) != null )
-				interpolate( v, vEnd, accelRatio, vCurrent );
-			else
-				disappear( v, accelRatio, vCurrent );
-		}
-		for ( final ScreenVertex v : end.getVertices() )
-		{
-			if ( idToStartVertex.get( v.getTrackSchemeVertexId(), vStart ) == null )
-			{
-				current.getVertices().add( current.getVertexPool().create( vCurrent ) );
-				appear( v, accelRatio, vCurrent );
-			}
+			final int e = ipEndIndex[ i ];
+			vCurrent.setLabel( e >= 0
+					? end.getVertices().get( e, vEnd ).getLabel()
+					: start.getVertices().get( ipStartIndex[ i ], vStart ).getLabel() );
 		}
+		forEachChunk( nVertices, ( from, to ) -> interpolateVertices( from, to, accelRatio, current ) );
 
 		// Interpolate edges
 		// =================
 		// For now, only edges between non-disappearing interpolated vertices
 		// are added.
+		final int nEdges = edgeSource.length;
 		final ScreenEdge eCurrent = current.getEdgePool().createRef();
-		final ScreenEdge eStart = start.getEdgePool().createRef();
-		for ( final ScreenEdge e : end.getEdges() )
-		{
-			final int sourceIndex = end.getVertices().get( e.getSourceScreenVertexIndex(), vEnd ).getInterpolatedScreenVertexIndex();
-			final int targetIndex = end.getVertices().get( e.getTargetScreenVertexIndex(), vEnd ).getInterpolatedScreenVertexIndex();
-			final boolean endSelected = e.isSelected();
-			current.getEdges().add( current.getEdgePool().create( eCurrent ).init(
-					e.getTrackSchemeEdgeId(),
-					sourceIndex,
-					targetIndex,
-					endSelected,
-					e.getColor() ) );
-			if ( idToStartEdge.get( e.getTrackSchemeEdgeId(), eStart ) != null )
-			{
-				// changing selection state?
-				if ( endSelected != eStart.isSelected() )
-				{
-					eCurrent.setTransition( endSelected ? SELECTING : DESELECTING );
-					eCurrent.setInterpolationCompletionRatio( accelRatio );
-				}
-			}
-		}
+		for ( int j = 0; j < nEdges; ++j )
+			current.getEdges().add( current.getEdgePool().create( eCurrent ) );
+		forEachChunk( nEdges, ( from, to ) -> interpolateEdges( from, to, accelRatio, current ) );
 
 		// Interpolate dense vertex ranges
 		// ===============================
@@ -192,70 +328,119 @@ public class ScreenEntitiesInterpolator
 		start.getVertexPool().releaseRef( vStart );
 		end.getVertexPool().releaseRef( vEnd );
 		current.getEdgePool().releaseRef( eCurrent );
-		current.getEdgePool().releaseRef( eStart );
 	}
 
-	private void interpolate( final ScreenVertex vStart, final ScreenVertex vEnd, final double ratio, final ScreenVertex vCurrent )
+	private void interpolateVertices(
+			final int from,
+			final int to,
+			final double ratio,
+			final ScreenEntities current )
 	{
-		vCurrent.setTrackSchemeVertexId( vEnd.getTrackSchemeVertexId() );
-		vCurrent.setLabel( vEnd.getLabel() );
-		final boolean endSelected = vEnd.isSelected();
-		vCurrent.setSelected( endSelected );
-		vCurrent.setGhost( vEnd.isGhost() );
-		vCurrent.setVertexDist( vEnd.getVertexDist() );
-		double startX = vStart.getX();
-		double startY = vStart.getY();
-		if ( incrementalStartTransform != null )
+		final ScreenVertex vCurrent = current.getVertexPool().createRef();
+		final ScreenVertex vStart = start.getVertexPool().createRef();
+		final ScreenVertex vEnd = end.getVertexPool().createRef();
+		final double r1 = 1 - ratio;
+		for ( int i = from; i < to; ++i )
 		{
-			startX = incrementalStartTransform.layoutToScreenX( startX );
-			startY = incrementalStartTransform.layoutToScreenY( startY );
+			current.getVertices().get( i, vCurrent );
+			final int s = ipStartIndex[ i ];
+			final int e = ipEndIndex[ i ];
+			if ( s < 0 )
+			{
+				// appear
+				end.getVertices().get( e, vEnd );
+				vCurrent.setTrackSchemeVertexId( vEnd.getTrackSchemeVertexId() );
+				vCurrent.setSelected( vEnd.isSelected() );
+				vCurrent.setGhost( vEnd.isGhost() );
+				vCurrent.setVertexDist( vEnd.getVertexDist() );
+				vCurrent.setTransition( APPEAR );
+				vCurrent.setColor( vEnd.getColor() );
+			}
+			else if ( e < 0 )
+			{
+				// disappear
+				start.getVertices().get( s, vStart );
+				vCurrent.setTrackSchemeVertexId( -1 );
+				vCurrent.setSelected( vStart.isSelected() );
+				vCurrent.setGhost( vStart.isGhost() );
+				vCurrent.setVertexDist( vStart.getVertexDist() );
+				vCurrent.setTransition( DISAPPEAR );
+				vCurrent.setColor( vStart.getColor() );
+			}
+			else
+			{
+				// move
+				start.getVertices().get( s, vStart );
+				end.getVertices().get( e, vEnd );
+				final boolean endSelected = vEnd.isSelected();
+				vCurrent.setTrackSchemeVertexId( vEnd.getTrackSchemeVertexId() );
+				vCurrent.setSelected( endSelected );
+				vCurrent.setGhost( vEnd.isGhost() );
+				vCurrent.setVertexDist( vEnd.getVertexDist() );
+				vCurrent.setTransition(
+						( vStart.isSelected() == endSelected )
+								? NONE
+								: ( endSelected
+										? SELECTING
+										: DESELECTING ) );
+				vCurrent.setColor( vEnd.getColor() );
+			}
+			vCurrent.setX( ratio * endX[ i ] + r1 * startX[ i ] );
+			vCurrent.setY( ratio * endY[ i ] + r1 * startY[ i ] );
+			vCurrent.setInterpolationCompletionRatio( ratio );
 		}
-		vCurrent.setX( ratio * vEnd.getX() + ( 1 - ratio ) * startX );
-		vCurrent.setY( ratio * vEnd.getY() + ( 1 - ratio ) * startY );
-		vCurrent.setTransition(
-				( vStart.isSelected() == endSelected )
-						? NONE
-						: ( endSelected
-								? SELECTING
-								: DESELECTING ) );
-		vCurrent.setColor( vEnd.getColor() );
-		vCurrent.setInterpolationCompletionRatio( ratio );
-		vEnd.setInterpolatedScreenVertexIndex( vCurrent.getInternalPoolIndex() );
+		current.getVertexPool().releaseRef( vCurrent );
+		start.getVertexPool().releaseRef( vStart );
+		end.getVertexPool().releaseRef( vEnd );
 	}
 
-	private void disappear( final ScreenVertex vStart, final double ratio, final ScreenVertex vCurrent )
+	private void interpolateEdges(
+			final int from,
+			final int to,
+			final double ratio,
+			final ScreenEntities current )
 	{
-		vCurrent.setTrackSchemeVertexId( -1 );
-		vCurrent.setLabel( vStart.getLabel() );
-		vCurrent.setSelected( vStart.isSelected() );
-		vCurrent.setGhost( vStart.isGhost() );
-		vCurrent.setVertexDist( vStart.getVertexDist() );
-		double startX = vStart.getX();
-		double startY = vStart.getY();
-		if ( incrementalStartTransform != null )
+		final ScreenEdge eCurrent = current.getEdgePool().createRef();
+		final ScreenEdge eEnd = end.getEdgePool().createRef();
+		for ( int j = from; j < to; ++j )
 		{
-			startX = incrementalStartTransform.layoutToScreenX( startX );
-			startY = incrementalStartTransform.layoutToScreenY( startY );
+			current.getEdges().get( j, eCurrent );
+			end.getEdges().get( j, eEnd );
+			final boolean endSelected = eEnd.isSelected();
+			eCurrent.init(
+					eEnd.getTrackSchemeEdgeId(),
+					edgeSource[ j ],
+					edgeTarget[ j ],
+					endSelected,
+					eEnd.getColor() );
+			final byte startSelected = edgeStartSelected[ j ];
+			// changing selection state?
+			if ( startSelected >= 0 && endSelected != ( startSelected == 1 ) )
+			{
+				eCurrent.setTransition( endSelected ? SELECTING : DESELECTING );
+				eCurrent.setInterpolationCompletionRatio( ratio );
+			}
 		}
-		vCurrent.setX( startX );
-		vCurrent.setY( startY );
-		vCurrent.setTransition( DISAPPEAR );
-		vCurrent.setInterpolationCompletionRatio( ratio );
-		vCurrent.setColor( vStart.getColor() );
+		current.getEdgePool().releaseRef( eCurrent );
+		end.getEdgePool().releaseRef( eEnd );
+	}
+
+	private interface ChunkTask
+	{
+		void run( int from, int to );
 	}
 
-	private void appear( final ScreenVertex vEnd, final double ratio, final ScreenVertex vCurrent )
+	/**
+	 * Runs {@code task} over {@code [0, n)}, split into chunks of
+	 * {@link #CHUNK_SIZE} that are processed in parallel.
+	 */
+	private static void forEachChunk( final int n, final ChunkTask task )
 	{
-		vCurrent.setTrackSchemeVertexId( vEnd.getTrackSchemeVertexId() );
-		vCurrent.setLabel( vEnd.getLabel() );
-		vCurrent.setSelected( vEnd.isSelected() );
-		vCurrent.setGhost( vEnd.isGhost() );
-		vCurrent.setVertexDist( vEnd.getVertexDist() );
-		vCurrent.setX( vEnd.getX() );
-		vCurrent.setY( vEnd.getY() );
-		vCurrent.setTransition( APPEAR );
-		vCurrent.setInterpolationCompletionRatio( ratio );
-		vCurrent.setColor( vEnd.getColor() );
-		vEnd.setInterpolatedScreenVertexIndex( vCurrent.getInternalPoolIndex() );
+		final int numChunks = ( n + CHUNK_SIZE - 1 ) / CHUNK_SIZE;
+		if ( numChunks <= 1 )
+			task.run( 0, n );
+		else
+			IntStream.range( 0, numChunks ).parallel().forEach(
+					k -> task.run( k * CHUNK_SIZE, Math.min( n, ( k + 1 ) * CHUNK_SIZE ) ) );
 	}
 }
@@ -28,6 +28,7 @@
  */
 package org.mastodon.views.trackscheme;
 
+import java.util.BitSet;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.mastodon.RefPool;
@@ -36,8 +37,10 @@ import org.mastodon.app.ViewGraph;
 import org.mastodon.collection.IntRefMap;
 import org.mastodon.collection.RefSet;
 import org.mastodon.collection.ref.IntRefArrayMap;
+import org.mastodon.collection.ref.RefArrayList;
 import org.mastodon.collection.ref.RefSetImp;
 import org.mastodon.graph.Edge;
+import org.mastodon.graph.Edges;
 import org.mastodon.graph.GraphChangeListener;
 import org.mastodon.graph.GraphChangeNotifier;
 import org.mastodon.graph.GraphIdBimap;
@@ -440,38 +443,176 @@ public class TrackSchemeGraph<
 	 * GraphListener
 	 */
 
+	/**
+	 * Brings this {@link TrackSchemeGraph} back in sync with the model graph
+	 * after a batch of changes that were not reported individually (for
+	 * example, after the model graph listeners were paused and resumed).
+	 * <p>
+	 * Instead of discarding and re-creating all TrackScheme vertices and
+	 * edges, the current mirror is reconciled with the model graph: entities
+	 * whose model counterpart disappeared (or whose model id was re-used for
+	 * an edge with different endpoints) are removed, and entities that are
+	 * missing are added. Unchanged entities are left untouched, so the cost of
+	 * a rebuild is dominated by a single pass over the model graph and no
+	 * TrackScheme storage is re-allocated.
+	 */
 	@Override
 	public void graphRebuilt()
 	{
-		idToTrackSchemeVertex.clear();
-		idToTrackSchemeEdge.clear();
-		roots.clear();
+		final BitSet modelVertexIds = new BitSet( modelGraph.vertices().size() );
+		for ( final V v : modelGraph.vertices() )
+			modelVertexIds.set( idmap.getVertexId( v ) );
+
+		final BitSet modelEdgeIds = new BitSet( modelGraph.edges().size() );
+		for ( final E e : modelGraph.edges() )
+			modelEdgeIds.set( idmap.getEdgeId( e ) );
+
+		/*
+		 * Remove TrackScheme edges that do not correspond to a model edge
+		 * (anymore). This also removes all edges incident to TrackScheme
+		 * vertices that will be removed below.
+		 */
+		final E eref = modelGraph.edgeRef();
+		final RefArrayList< TrackSchemeEdge > staleEdges = new RefArrayList<>( edgePool );
+		for ( final TrackSchemeEdge edge : edges() )
+		{
+			final int id = edge.getModelEdgeId();
+			if ( !modelEdgeIds.get( id ) )
+				staleEdges.add( edge );
+			else
+			{
+				final E e = idmap.getEdge( id, eref );
+				if ( idmap.getVertexId( e.getSource( mv ) ) != edge.getSource( tsv ).getModelVertexId()
+						|| idmap.getVertexId( e.getTarget( mv ) ) != edge.getTarget( tsv ).getModelVertexId() )
+					staleEdges.add( edge );
+			}
+		}
+		modelGraph.releaseRef( eref );
+		for ( final TrackSchemeEdge edge : staleEdges )
+			removeTrackSchemeEdge( edge );
+
+		/*
+		 * Remove TrackScheme vertices that do not correspond to a model vertex
+		 * (anymore). Update timepoints of the remaining ones, because model
+		 * ids might have been re-used.
+		 */
+		final RefArrayList< TrackSchemeVertex > staleVertices = new RefArrayList<>( vertexPool );
+		for ( final TrackSchemeVertex vertex : vertices() )
+		{
+			if ( modelVertexIds.get( vertex.getModelVertexId() ) )
+				vertex.updateTimepointFromModel();
+			else
+				staleVertices.add( vertex );
+		}
+		for ( final TrackSchemeVertex vertex : staleVertices )
+			removeTrackSchemeVertex( vertex );
 
+		/*
+		 * Add missing vertices and edges.
+		 */
 		for ( final V v : modelGraph.vertices() )
 		{
 			final int id = idmap.getVertexId( v );
-			super.addVertex( tsv ).initModelId( id );
-			idToTrackSchemeVertex.put( id, tsv );
-			if ( v.incomingEdges().isEmpty() )
-				roots.add( tsv );
+			if ( idToTrackSchemeVertex.get( id, tsv ) == null )
+				addTrackSchemeVertex( id );
 		}
-		for ( final E e : modelGraph.edges() )
+		for ( final V v : modelGraph.vertices() )
 		{
-			final int id = idmap.getEdgeId( e );
-			idToTrackSchemeVertex.get( idmap.getVertexId( e.getSource( mv ) ), tsv );
-			idToTrackSchemeVertex.get( idmap.getVertexId( e.getTarget( mv ) ), tsv2 );
-			super.insertEdge( tsv, e.getSourceOutIndex(), tsv2, e.getTargetInIndex(), tse ).initModelId( id );
-			idToTrackSchemeEdge.put( id, tse );
+			// Iterate outgoing edges in order, so that insertion indices are
+			// valid when edges are added.
+			for ( final E e : v.outgoingEdges() )
+			{
+				final int id = idmap.getEdgeId( e );
+				if ( idToTrackSchemeEdge.get( id, tse ) == null )
+					addTrackSchemeEdge( e );
+			}
 		}
 	}
 
+	/**
+	 * Removes this {@link TrackSchemeGraph} from the listeners of the model
+	 * graph. After calling this method, this {@link TrackSchemeGraph} does not
+	 * follow changes of the model graph anymore, and can be garbage-collected
+	 * independently of the model graph. This should be called when the view
+	 * that uses this graph is closed.
+	 */
+	public void close()
+	{
+		modelGraph.removeGraphListener( this );
+		modelGraph.removeGraphChangeListener( this );
+	}
+
+	private void addTrackSchemeVertex( final int modelId )
+	{
+		super.addVertex( tsv ).initModelId( modelId );
+		idToTrackSchemeVertex.put( modelId, tsv );
+		roots.add( tsv );
+	}
+
+	private void removeTrackSchemeVertex( final TrackSchemeVertex vertex )
+	{
+		idToTrackSchemeVertex.remove( vertex.getModelVertexId(), tsv2 );
+		if ( vertex.incomingEdges().isEmpty() )
+			roots.remove( vertex );
+		super.remove( vertex );
+	}
+
+	private void addTrackSchemeEdge( final E edge )
+	{
+		final int id = idmap.getEdgeId( edge );
+		idToTrackSchemeVertex.get( idmap.getVertexId( edge.getSource( mv ) ), tsv );
+		idToTrackSchemeVertex.get( idmap.getVertexId( edge.getTarget( mv ) ), tsv2 );
+		if ( tsv2.incomingEdges().isEmpty() )
+			roots.remove( tsv2 );
+		final int sourceOutIndex = mirroredEdgesBefore( edge.getSource( mv ).outgoingEdges(), edge.getSourceOutIndex(), tsv.outgoingEdges().size() );
+		final int targetInIndex = mirroredEdgesBefore( edge.getTarget( mv ).incomingEdges(), edge.getTargetInIndex(), tsv2.incomingEdges().size() );
+		super.insertEdge( tsv, sourceOutIndex, tsv2, targetInIndex, tse ).initModelId( id );
+		idToTrackSchemeEdge.put( id, tse );
+	}
+
+	/**
+	 * Returns the insertion index in a TrackScheme edge list that keeps it in
+	 * the order of the corresponding model edge list, i.e., the number of
+	 * model edges before {@code index} that already have a TrackScheme edge.
+	 * During reconciliation, some of these might not have been added yet.
+	 *
+	 * @param modelEdges
+	 *            the incoming or outgoing edges of the model vertex.
+	 * @param index
+	 *            the index of the edge to add in {@code modelEdges}.
+	 * @param mirroredSize
+	 *            the current size of the TrackScheme edge list.
+	 * @return the insertion index.
+	 */
+	private int mirroredEdgesBefore( final Edges< E > modelEdges, final int index, final int mirroredSize )
+	{
+		// All other model edges already mirrored: the index can be used as is.
+		if ( mirroredSize == modelEdges.size() - 1 )
+			return index;
+
+		final E eref = modelGraph.edgeRef();
+		int n = 0;
+		for ( int i = 0; i < index; ++i )
+			if ( idToTrackSchemeEdge.containsKey( idmap.getEdgeId( modelEdges.get( i, eref ) ) ) )
+				++n;
+		modelGraph.releaseRef( eref );
+		return n;
+	}
+
+	private void removeTrackSchemeEdge( final TrackSchemeEdge edge )
+	{
+		idToTrackSchemeEdge.remove( edge.getModelEdgeId(), tse );
+		final TrackSchemeVertex target = edge.getTarget( tsv2 );
+		final boolean becomesRoot = target.incomingEdges().size() == 1;
+		super.remove( edge );
+		if ( becomesRoot )
+			roots.add( target );
+	}
+
 	@Override
 	public void vertexAdded( final V vertex )
 	{
-		final int id = idmap.getVertexId( vertex );
-		super.addVertex( tsv ).initModelId( id );
-		idToTrackSchemeVertex.put( id, tsv );
-		roots.add( tsv );
+		addTrackSchemeVertex( idmap.getVertexId( vertex ) );
 	}
 
 	@Override
@@ -489,13 +630,7 @@ public class TrackSchemeGraph<
 	@Override
 	public void edgeAdded( final E edge )
 	{
-		final int id = idmap.getEdgeId( edge );
-		idToTrackSchemeVertex.get( idmap.getVertexId( edge.getSource( mv ) ), tsv );
-		idToTrackSchemeVertex.get( idmap.getVertexId( edge.getTarget( mv ) ), tsv2 );
-		if ( tsv2.incomingEdges().isEmpty() )
-			roots.remove( tsv2 );
-		super.insertEdge( tsv, edge.getSourceOutIndex(), tsv2, edge.getTargetInIndex(), tse ).initModelId( id );
-		idToTrackSchemeEdge.put( id, tse );
+		addTrackSchemeEdge( edge );
 	}
 
 	@Override
@@ -215,6 +215,21 @@ public class PaintGraph
 		return ( dx * dx + dy * dy < radius * radius );
 	}
 
+	/**
+	 * Returns an upper bound for the radius (in screen coordinates) of painted
+	 * vertices, as used by {@link #isInsidePaintedVertex(double, double, ScreenVertex)}.
+	 * This is used to restrict the vertices that need to be tested when
+	 * looking for the vertex at a given screen position. Subclasses that
+	 * override {@link #isInsidePaintedVertex(double, double, ScreenVertex)}
+	 * should override this method accordingly.
+	 *
+	 * @return the maximal radius of a painted vertex.
+	 */
+	public double getMaxPaintedVertexRadius()
+	{
+		return Math.max( maxDisplayVertexSize / 2, simplifiedVertexRadius + simplifiedVertexSelectTolerance );
+	}
+
 	/**
 	 * Configures the graphics object prior to drawing vertices.
 	 */
@@ -39,6 +39,7 @@ import org.mastodon.model.FocusModel;
 import org.mastodon.model.HighlightModel;
 import org.mastodon.views.trackscheme.ScreenEdge;
 import org.mastodon.views.trackscheme.ScreenEntities;
+import org.mastodon.views.trackscheme.ScreenEntitiesGrid;
 import org.mastodon.views.trackscheme.ScreenVertex;
 import org.mastodon.views.trackscheme.ScreenVertexRange;
 import org.mastodon.views.trackscheme.TrackSchemeEdge;
@@ -47,6 +48,8 @@ import org.mastodon.views.trackscheme.TrackSchemeVertex;
 import org.mastodon.views.trackscheme.display.OffsetHeaders.OffsetHeadersListener;
 import org.mastodon.views.trackscheme.display.style.TrackSchemeStyle;
 
+import gnu.trove.list.array.TIntArrayList;
+
 /**
  * An {@link OverlayRenderer} that paints {@link ScreenEntities} of a
  * TrackScheme graph. Comprises methods to paint vertices, edges, and dense
@@ -124,6 +127,23 @@ public class TrackSchemeOverlay implements OverlayRenderer, OffsetHeadersListene
 
 	private final PaintGraph paintGraph;
 
+	/**
+	 * Spatial index over {@link #entities}, for mouse interaction. Built lazily
+	 * on the first query after {@link #entities} changed.
+	 */
+	private final ScreenEntitiesGrid grid;
+
+	/**
+	 * Whether {@link #grid} is up-to-date with {@link #entities}. Guarded by
+	 * {@link #entities}.
+	 */
+	private boolean gridValid;
+
+	/**
+	 * Re-used storage for grid query results. Guarded by {@link #entities}.
+	 */
+	private final TIntArrayList candidates;
+
 	/**
 	 * The {@link OverlayRenderer}s that draw above the background
 	 */
@@ -163,6 +183,9 @@ public class TrackSchemeOverlay implements OverlayRenderer, OffsetHeadersListene
 		width = options.values.getWidth();
 		height = options.values.getHeight();
 		entities = new ScreenEntities( graph );
+		grid = new ScreenEntitiesGrid();
+		gridValid = false;
+		candidates = new TIntArrayList();
 		overlayRenderers = new CopyOnWriteArrayList<>();
 	}
 
@@ -230,21 +253,33 @@ public class TrackSchemeOverlay implements OverlayRenderer, OffsetHeadersListene
 		synchronized ( entities )
 		{
 			final RefList< ScreenVertex > vertices = entities.getVertices();
+			final RefList< ScreenEdge > edges = entities.getEdges();
 			final ScreenVertex vt = vertices.createRef();
 			final ScreenVertex vs = vertices.createRef();
+			final ScreenEdge e = edges.createRef();
 
-			int i = -1;
-			for ( final ScreenEdge e : entities.getEdges() )
+			candidates.resetQuick();
+			getGrid().getEdgeCandidates( x - tolerance, y - tolerance, x + tolerance, y + tolerance, candidates );
+
+			// Among the candidates, take the first edge (in painting order)
+			// that is within tolerance.
+			int iBest = Integer.MAX_VALUE;
+			for ( int k = 0; k < candidates.size(); ++k )
 			{
+				final int j = candidates.getQuick( k );
+				if ( j >= iBest )
+					continue;
+				edges.get( j, e );
 				vertices.get( e.getSourceScreenVertexIndex(), vs );
 				vertices.get( e.getTargetScreenVertexIndex(), vt );
 				if ( paintGraph.distanceToPaintedEdge( x, y, e, vs, vt ) <= tolerance )
-				{
-					i = e.getTrackSchemeEdgeId();
-					break;
-				}
+					iBest = j;
 			}
+			final int i = ( iBest == Integer.MAX_VALUE )
+					? -1
+					: edges.get( iBest, e ).getTrackSchemeEdgeId();
 
+			edges.releaseRef( e );
 			vertices.releaseRef( vs );
 			vertices.releaseRef( vt );
 
@@ -276,10 +311,18 @@ public class TrackSchemeOverlay implements OverlayRenderer, OffsetHeadersListene
 	{
 		synchronized ( entities )
 		{
+			final RefList< ScreenVertex > vertices = entities.getVertices();
+			final ScreenVertex v = vertices.createRef();
+
+			final double r = paintGraph.getMaxPaintedVertexRadius();
+			candidates.resetQuick();
+			getGrid().getVertexCandidates( x - r, y - r, x + r, y + r, candidates );
+
 			double d2Best = Double.POSITIVE_INFINITY;
 			int iBest = -1;
-			for ( final ScreenVertex v : entities.getVertices() )
+			for ( int k = 0; k < candidates.size(); ++k )
 			{
+				vertices.get( candidates.getQuick( k ), v );
 				if ( paintGraph.isInsidePaintedVertex( x, y, v ) )
 				{
 					final int i = v.getTrackSchemeVertexId();
@@ -297,12 +340,31 @@ public class TrackSchemeOverlay implements OverlayRenderer, OffsetHeadersListene
 				}
 			}
 
+			vertices.releaseRef( v );
+
 			return ( iBest >= 0 )
 					? graph.getVertexPool().getObjectIfExists( iBest, ref )
 					: null;
 		}
 	}
 
+	/**
+	 * Returns the spatial index over the currently painted entities, building
+	 * it if necessary. Must be called while holding the lock on
+	 * {@link #entities}.
+	 *
+	 * @return the up-to-date spatial index.
+	 */
+	private ScreenEntitiesGrid getGrid()
+	{
+		if ( !gridValid )
+		{
+			grid.build( entities );
+			gridValid = true;
+		}
+		return grid;
+	}
+
 	@Override
 	public void setCanvasSize( final int width, final int height )
 	{
@@ -389,6 +451,7 @@ public class TrackSchemeOverlay implements OverlayRenderer, OffsetHeadersListene
 			{
 				entities.set( pendingEntities );
 				pending = false;
+				gridValid = false;
 			}
 		}
 		return entities;
@@ -45,6 +45,7 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 import javax.swing.Box;
 import javax.swing.JPanel;
 import javax.swing.JScrollBar;
+import javax.swing.Timer;
 import javax.swing.UIManager;
 
 import org.mastodon.graph.GraphChangeListener;
@@ -89,6 +90,13 @@ public class TrackSchemePanel extends JPanel implements
 
 	private final long ANIMATION_MILLISECONDS;
 
+	/**
+	 * Minimum time between two context layouts. Context changes arriving
+	 * faster than that (e.g., during continuous BDV navigation) are coalesced
+	 * and processed when the interval has elapsed.
+	 */
+	private static final int CONTEXT_UPDATE_INTERVAL_MILLIS = 100;
+
 	private final TrackSchemeGraph< ?, ? > graph;
 
 	/**
@@ -137,6 +145,19 @@ public class TrackSchemePanel extends JPanel implements
 	// TODO rename
 	private final Flags flags;
 
+	/**
+	 * Triggers a deferred context update, see
+	 * {@link #CONTEXT_UPDATE_INTERVAL_MILLIS}.
+	 */
+	private final Timer contextUpdateTimer;
+
+	/**
+	 * Time (in {@code System.currentTimeMillis()}) of the last context
+	 * update request passed on to the painter thread. Guarded by
+	 * {@link #contextUpdateTimer}.
+	 */
+	private long lastContextUpdateMillis;
+
 	/**
 	 * Minimum timepoint in dataset.
 	 */
@@ -251,6 +272,9 @@ public class TrackSchemePanel extends JPanel implements
 		entityAnimator = new ScreenEntityAnimator();
 		painterThread = new PainterThread( this );
 		flags = new Flags();
+		contextUpdateTimer = new Timer( CONTEXT_UPDATE_INTERVAL_MILLIS, e -> requestContextUpdate() );
+		contextUpdateTimer.setRepeats( false );
+		lastContextUpdateMillis = 0;
 
 		final MouseHighlightHandler highlightHandler = new MouseHighlightHandler( graphOverlay, highlight, graph );
 		display.addMouseMotionListener( highlightHandler );
@@ -331,6 +355,7 @@ public class TrackSchemePanel extends JPanel implements
 	 */
 	public void stop()
 	{
+		contextUpdateTimer.stop();
 		painterThread.interrupt();
 	}
 
@@ -506,6 +531,25 @@ public class TrackSchemePanel extends JPanel implements
 			return;
 
 		this.context = context;
+		synchronized ( contextUpdateTimer )
+		{
+			final long elapsed = System.currentTimeMillis() - lastContextUpdateMillis;
+			if ( elapsed >= CONTEXT_UPDATE_INTERVAL_MILLIS )
+				requestContextUpdate();
+			else if ( !contextUpdateTimer.isRunning() )
+			{
+				contextUpdateTimer.setInitialDelay( ( int ) ( CONTEXT_UPDATE_INTERVAL_MILLIS - elapsed ) );
+				contextUpdateTimer.start();
+			}
+		}
+	}
+
+	private void requestContextUpdate()
+	{
+		synchronized ( contextUpdateTimer )
+		{
+			lastContextUpdateMillis = System.currentTimeMillis();
+		}
 		flags.setContextChanged();
 		painterThread.requestRepaint();
 	}
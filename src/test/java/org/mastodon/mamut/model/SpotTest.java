@@ -0,0 +1,91 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2021 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.model;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class SpotTest
+{
+	@Test
+	public void testBoundingSphereRadius()
+	{
+		final Model model = new Model();
+		final ModelGraph graph = model.getGraph();
+		final BoundingSphereRadiusStatistics radiusStats = new BoundingSphereRadiusStatistics( model );
+		final Spot spot = graph.addVertex().init( 0, new double[ 3 ], 2. );
+		model.setUndoPoint();
+		assertEquals( 4., spot.getBoundingSphereRadiusSquared(), 1e-9 );
+
+		spot.setCovariance( new double[][] {
+				{ 9, 0, 0 },
+				{ 0, 1, 0 },
+				{ 0, 0, 1 } } );
+		model.setUndoPoint();
+		assertEquals( 9., spot.getBoundingSphereRadiusSquared(), 1e-9 );
+		assertEquals( 9., radiusStats.getMaxBoundingSphereRadiusSquared( 0 ), 1e-9 );
+
+		model.undo();
+		assertEquals( 4., spot.getBoundingSphereRadiusSquared(), 1e-9 );
+		assertEquals( 4., radiusStats.getMaxBoundingSphereRadiusSquared( 0 ), 1e-9 );
+
+		model.redo();
+		assertEquals( 9., spot.getBoundingSphereRadiusSquared(), 1e-9 );
+	}
+
+	/**
+	 * The radius is not recorded as an undoable property. A deleted spot must
+	 * still get its radius back when the deletion is undone.
+	 */
+	@Test
+	public void testBoundingSphereRadiusAfterUndoDelete()
+	{
+		final Model model = new Model();
+		final ModelGraph graph = model.getGraph();
+		final Spot spot = graph.addVertex().init( 0, new double[ 3 ], new double[][] {
+				{ 9, 0, 0 },
+				{ 0, 1, 0 },
+				{ 0, 0, 1 } } );
+		model.setUndoPoint();
+
+		graph.remove( spot );
+		model.setUndoPoint();
+		assertEquals( 0, graph.vertices().size() );
+
+		model.undo();
+		assertEquals( 1, graph.vertices().size() );
+		final Spot restored = graph.vertices().iterator().next();
+		assertEquals( 9., restored.getBoundingSphereRadiusSquared(), 1e-9 );
+
+		model.redo();
+		model.undo();
+		assertEquals( 9., graph.vertices().iterator().next().getBoundingSphereRadiusSquared(), 1e-9 );
+	}
+}
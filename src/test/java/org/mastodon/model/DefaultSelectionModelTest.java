@@ -0,0 +1,198 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2021 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mastodon.graph.GraphIdBimap;
+import org.mastodon.mamut.model.Link;
+import org.mastodon.mamut.model.Model;
+import org.mastodon.mamut.model.ModelGraph;
+import org.mastodon.mamut.model.Spot;
+
+public class DefaultSelectionModelTest
+{
+	private static final int N_SPOTS = 10;
+
+	private GraphIdBimap< Spot, Link > idmap;
+
+	private DefaultSelectionModel< Spot, Link > selection;
+
+	private Spot[] spots;
+
+	private List< SelectionDelta > deltas;
+
+	@Before
+	public void setUp()
+	{
+		final Model model = new Model();
+		final ModelGraph graph = model.getGraph();
+		idmap = model.getGraphIdBimap();
+		selection = new DefaultSelectionModel<>( graph, idmap );
+		spots = new Spot[ N_SPOTS ];
+		final double[] pos = new double[ 3 ];
+		for ( int i = 0; i < N_SPOTS; i++ )
+			spots[ i ] = graph.addVertex().init( 0, pos, 1. );
+		deltas = new ArrayList<>();
+	}
+
+	@Test
+	public void testSelectThenUnselect()
+	{
+		selection.deltaListeners().add( deltas::add );
+		selection.setSelected( spots[ 0 ], true );
+		selection.setSelected( spots[ 0 ], false );
+		assertEquals( 2, deltas.size() );
+		assertVertices( deltas.get( 0 ).getAddedVertices(), 0 );
+		assertVertices( deltas.get( 0 ).getRemovedVertices() );
+		assertVertices( deltas.get( 1 ).getAddedVertices() );
+		assertVertices( deltas.get( 1 ).getRemovedVertices(), 0 );
+	}
+
+	@Test
+	public void testSelectThenUnselectWhilePaused()
+	{
+		selection.deltaListeners().add( deltas::add );
+		selection.pauseListeners();
+		selection.setSelected( spots[ 0 ], true );
+		selection.setSelected( spots[ 1 ], true );
+		selection.setSelected( spots[ 0 ], false );
+		selection.resumeListeners();
+		assertEquals( 1, deltas.size() );
+		assertVertices( deltas.get( 0 ).getAddedVertices(), 1 );
+		assertVertices( deltas.get( 0 ).getRemovedVertices() );
+	}
+
+	@Test
+	public void testClearSelectionWithPendingAdds()
+	{
+		selection.setSelected( spots[ 0 ], true );
+		selection.deltaListeners().add( deltas::add );
+
+		selection.pauseListeners();
+		selection.setSelected( spots[ 1 ], true );
+		selection.clearSelection();
+		selection.resumeListeners();
+
+		// Spot 1 was never selected as far as listeners know.
+		assertEquals( 1, deltas.size() );
+		assertVertices( deltas.get( 0 ).getAddedVertices() );
+		assertVertices( deltas.get( 0 ).getRemovedVertices(), 0 );
+		assertTrue( selection.isEmpty() );
+	}
+
+	@Test
+	public void testClearSelectionWithPendingRemoves()
+	{
+		selection.setSelected( spots[ 0 ], true );
+		selection.setSelected( spots[ 1 ], true );
+		selection.deltaListeners().add( deltas::add );
+
+		selection.pauseListeners();
+		selection.setSelected( spots[ 0 ], false );
+		selection.clearSelection();
+		selection.resumeListeners();
+
+		assertEquals( 1, deltas.size() );
+		assertVertices( deltas.get( 0 ).getAddedVertices() );
+		assertVertices( deltas.get( 0 ).getRemovedVertices(), 0, 1 );
+	}
+
+	@Test
+	public void testChangeFromListenerIsDeliveredAfter()
+	{
+		// The first listener selects spot 1 when spot 0 gets selected.
+		selection.deltaListeners().add( delta -> {
+			if ( delta.getAddedVertices().contains( idmap.getVertexId( spots[ 0 ] ) ) )
+				selection.setSelected( spots[ 1 ], true );
+		} );
+		selection.deltaListeners().add( deltas::add );
+
+		selection.setSelected( spots[ 0 ], true );
+
+		assertEquals( 2, deltas.size() );
+		assertVertices( deltas.get( 0 ).getAddedVertices(), 0 );
+		assertVertices( deltas.get( 1 ).getAddedVertices(), 1 );
+	}
+
+	@Test
+	public void testConcurrentChangesAreDeliveredInOrder() throws InterruptedException
+	{
+		// Replaying the deltas must give the final selection.
+		final BitSet replayed = new BitSet();
+		selection.deltaListeners().add( delta -> {
+			delta.getRemovedVertices().forEach( replayed::clear );
+			delta.getAddedVertices().forEach( replayed::set );
+		} );
+
+		final Thread[] threads = new Thread[ 4 ];
+		for ( int t = 0; t < threads.length; t++ )
+		{
+			final Random random = new Random( t );
+			threads[ t ] = new Thread( () -> {
+				for ( int k = 0; k < 2000; k++ )
+				{
+					final Spot spot = spots[ random.nextInt( N_SPOTS ) ];
+					if ( random.nextInt( 50 ) == 0 )
+						selection.clearSelection();
+					else
+						selection.setSelected( spot, random.nextBoolean() );
+				}
+			} );
+		}
+		for ( final Thread thread : threads )
+			thread.start();
+		for ( final Thread thread : threads )
+			thread.join();
+
+		final BitSet expected = new BitSet();
+		for ( final Spot spot : selection.getSelectedVertices() )
+			expected.set( idmap.getVertexId( spot ) );
+		assertEquals( expected, replayed );
+	}
+
+	/**
+	 * Checks that the id set contains exactly the ids of the spots with the
+	 * specified indices.
+	 */
+	private void assertVertices( final IdSet ids, final int... indices )
+	{
+		assertEquals( ids.toString(), indices.length, ids.size() );
+		for ( final int i : indices )
+			assertTrue( ids.contains( idmap.getVertexId( spots[ i ] ) ) );
+	}
+}
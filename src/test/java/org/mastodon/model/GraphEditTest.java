@@ -0,0 +1,156 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2021 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mastodon.mamut.model.BoundingSphereRadiusStatistics;
+import org.mastodon.mamut.model.Link;
+import org.mastodon.mamut.model.Model;
+import org.mastodon.mamut.model.ModelGraph;
+import org.mastodon.mamut.model.Spot;
+
+public class GraphEditTest
+{
+	private Model model;
+
+	private ModelGraph graph;
+
+	private BoundingSphereRadiusStatistics radiusStats;
+
+	private final double[] pos = new double[ 3 ];
+
+	@Before
+	public void setUp()
+	{
+		model = new Model();
+		graph = model.getGraph();
+		radiusStats = new BoundingSphereRadiusStatistics( model );
+		graph.addVertex().init( 0, pos, 1. );
+		model.setUndoPoint();
+	}
+
+	@Test
+	public void testCommit()
+	{
+		final int[] changeSets = new int[ 1 ];
+		model.graphChangeSetListeners().add( changes -> changeSets[ 0 ]++ );
+
+		try (final GraphEdit< Spot, Link > edit = model.beginEdit())
+		{
+			final Spot ref1 = graph.vertexRef();
+			final Spot ref2 = graph.vertexRef();
+			final Link eref = graph.edgeRef();
+			graph.addVertex( ref1 ).init( 0, pos, 3. );
+			graph.addVertex( ref2 ).init( 1, pos, 2. );
+			graph.addEdge( ref1, ref2, eref ).init();
+			edit.commit();
+		}
+
+		assertEquals( 3, graph.vertices().size() );
+		assertEquals( 1, graph.edges().size() );
+		assertEquals( 1, changeSets[ 0 ] );
+		assertEquals( 9., radiusStats.getMaxBoundingSphereRadiusSquared( 0 ), 1e-9 );
+		assertEquals( 4., radiusStats.getMaxBoundingSphereRadiusSquared( 1 ), 1e-9 );
+		assertTrue( !graph.getLock().isWriteLocked() );
+
+		// The whole edit is undone in one step.
+		model.undo();
+		assertEquals( 1, graph.vertices().size() );
+		assertEquals( 0, graph.edges().size() );
+	}
+
+	@Test
+	public void testAbort()
+	{
+		final int[] changeSets = new int[ 1 ];
+		model.graphChangeSetListeners().add( changes -> changeSets[ 0 ]++ );
+
+		try (final GraphEdit< Spot, Link > edit = model.beginEdit())
+		{
+			graph.addVertex().init( 0, pos, 5. );
+			graph.remove( graph.vertices().iterator().next() );
+			edit.abort();
+		}
+
+		assertEquals( 1, graph.vertices().size() );
+		assertEquals( 1., graph.vertices().iterator().next().getBoundingSphereRadiusSquared(), 1e-9 );
+		assertEquals( 1., radiusStats.getMaxBoundingSphereRadiusSquared( 0 ), 1e-9 );
+		assertEquals( 0, changeSets[ 0 ] );
+		assertTrue( !graph.getLock().isWriteLocked() );
+	}
+
+	@Test
+	public void testAbortEmptyEdit()
+	{
+		try (final GraphEdit< Spot, Link > edit = model.beginEdit())
+		{
+			edit.abort();
+		}
+		// The previous undo step is not undone.
+		assertEquals( 1, graph.vertices().size() );
+	}
+
+	@Test
+	public void testExceptionAborts()
+	{
+		try (final GraphEdit< Spot, Link > edit = model.beginEdit())
+		{
+			graph.addVertex().init( 2, pos, 1. );
+			throw new IllegalStateException();
+		}
+		catch ( final IllegalStateException e )
+		{
+			// Expected.
+		}
+		assertEquals( 1, graph.vertices().size() );
+		assertEquals( -1., radiusStats.getMaxBoundingSphereRadiusSquared( 2 ), 1e-9 );
+		assertTrue( !graph.getLock().isWriteLocked() );
+	}
+
+	@Test
+	public void testEditEnded()
+	{
+		final GraphEdit< Spot, Link > edit = model.beginEdit();
+		edit.commit();
+		try
+		{
+			edit.abort();
+			fail( "Expected IllegalStateException" );
+		}
+		catch ( final IllegalStateException e )
+		{
+			// Expected.
+		}
+	}
+}
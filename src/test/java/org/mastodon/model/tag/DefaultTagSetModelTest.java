@@ -0,0 +1,184 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2021 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.model.tag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mastodon.mamut.model.Link;
+import org.mastodon.mamut.model.Model;
+import org.mastodon.mamut.model.ModelGraph;
+import org.mastodon.mamut.model.Spot;
+import org.mastodon.model.tag.TagSetStructure.Tag;
+import org.mastodon.model.tag.TagSetStructure.TagSet;
+
+public class DefaultTagSetModelTest
+{
+	private Model model;
+
+	private ModelGraph graph;
+
+	private TagSetModel< Spot, Link > tagSetModel;
+
+	private TagSet fate;
+
+	private Tag neuron;
+
+	private Tag glia;
+
+	@Before
+	public void setUp()
+	{
+		model = new Model();
+		graph = model.getGraph();
+		tagSetModel = model.getTagSetModel();
+
+		final TagSetStructure tss = new TagSetStructure();
+		final TagSet ts = tss.createTagSet( "Fate" );
+		ts.createTag( "Neuron", 0xFF0000 );
+		ts.createTag( "Glia", 0x00FF00 );
+		tagSetModel.setTagSetStructure( tss );
+		fate = tagSetModel.getTagSetStructure().getTagSets().get( 0 );
+		neuron = fate.getTags().get( 0 );
+		glia = fate.getTags().get( 1 );
+
+		final double[] pos = new double[ 3 ];
+		for ( int i = 0; i < 3; i++ )
+			graph.addVertex().init( 0, pos, 1. );
+		model.setUndoPoint();
+	}
+
+	@Test
+	public void testSetTags()
+	{
+		final List< Spot > spots = spots();
+		tagSetModel.getVertexTags().tags( fate ).set( spots.get( 0 ), glia );
+
+		final int[] count = new int[ 1 ];
+		tagSetModel.listeners().add( new TagSetModel.TagSetModelListener()
+		{
+			@Override
+			public void tagSetStructureChanged()
+			{}
+
+			@Override
+			public void tagsChanged()
+			{
+				count[ 0 ]++;
+			}
+		} );
+
+		tagSetModel.setTags( fate, neuron, spots, Collections.emptyList() );
+		assertEquals( 1, count[ 0 ] );
+		for ( final Spot spot : spots )
+			assertEquals( neuron, tag( spot ) );
+
+		// Nothing changes, no notification.
+		tagSetModel.setTags( fate, neuron, spots, Collections.emptyList() );
+		assertEquals( 1, count[ 0 ] );
+
+		tagSetModel.setTags( fate, null, spots.subList( 0, 2 ), Collections.emptyList() );
+		assertEquals( 2, count[ 0 ] );
+		assertNull( tag( spots.get( 0 ) ) );
+		assertNull( tag( spots.get( 1 ) ) );
+		assertEquals( neuron, tag( spots.get( 2 ) ) );
+	}
+
+	@Test
+	public void testUndoRedo()
+	{
+		final List< Spot > spots = spots();
+		tagSetModel.getVertexTags().tags( fate ).set( spots.get( 0 ), glia );
+		model.setUndoPoint();
+
+		tagSetModel.setTags( fate, neuron, spots, Collections.emptyList() );
+		model.setUndoPoint();
+
+		model.undo();
+		assertEquals( Arrays.asList( glia, null, null ), tags() );
+
+		model.redo();
+		assertEquals( Arrays.asList( neuron, neuron, neuron ), tags() );
+	}
+
+	/**
+	 * Bulk-tag, delete a spot, undo the delete, undo the tagging: the restored
+	 * spot must lose the tag like the others.
+	 */
+	@Test
+	public void testUndoAcrossDeleteAndRestore()
+	{
+		final List< Spot > spots = spots();
+		tagSetModel.setTags( fate, neuron, spots, Collections.emptyList() );
+		model.setUndoPoint();
+
+		graph.remove( spots.get( 1 ) );
+		model.setUndoPoint();
+		assertEquals( 2, graph.vertices().size() );
+
+		model.undo();
+		assertEquals( Arrays.asList( neuron, neuron, neuron ), tags() );
+
+		model.undo();
+		assertEquals( Arrays.asList( null, null, null ), tags() );
+
+		model.redo();
+		assertEquals( Arrays.asList( neuron, neuron, neuron ), tags() );
+	}
+
+	private Tag tag( final Spot spot )
+	{
+		return tagSetModel.getVertexTags().tags( fate ).get( spot );
+	}
+
+	private List< Tag > tags()
+	{
+		final ObjTagMap< Spot, Tag > map = tagSetModel.getVertexTags().tags( fate );
+		final Tag[] tags = new Tag[ graph.vertices().size() ];
+		int i = 0;
+		for ( final Spot spot : graph.vertices() )
+			tags[ i++ ] = map.get( spot );
+		return Arrays.asList( tags );
+	}
+
+	private List< Spot > spots()
+	{
+		final Spot[] spots = new Spot[ graph.vertices().size() ];
+		int i = 0;
+		for ( final Spot spot : graph.vertices() )
+			spots[ i++ ] = graph.vertexRef().refTo( spot );
+		return Arrays.asList( spots );
+	}
+}
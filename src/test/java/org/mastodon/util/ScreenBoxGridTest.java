@@ -0,0 +1,134 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2021 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.util;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.set.hash.TIntHashSet;
+
+public class ScreenBoxGridTest
+{
+	private static final double WIDTH = 1000;
+
+	private static final double HEIGHT = 600;
+
+	/**
+	 * Candidates must include every box that intersects the query rectangle,
+	 * including points, boxes outside the grid area and very large boxes.
+	 */
+	@Test
+	public void testCandidatesContainIntersectingBoxes()
+	{
+		final Random random = new Random( 1l );
+		final ScreenBoxGrid grid = new ScreenBoxGrid();
+		// Build twice, to also check that storage is re-used correctly.
+		for ( final int n : new int[] { 2000, 300 } )
+		{
+			final double[] boxes = randomBoxes( random, n );
+			grid.build( n, boxes, 0, 0, WIDTH, HEIGHT );
+			final TIntArrayList candidates = new TIntArrayList();
+			for ( int q = 0; q < 500; q++ )
+			{
+				final double[] query = randomBox( random );
+				candidates.resetQuick();
+				grid.getCandidates( query[ 0 ], query[ 1 ], query[ 2 ], query[ 3 ], candidates );
+				final TIntHashSet found = new TIntHashSet( candidates );
+				for ( int i = 0; i < candidates.size(); i++ )
+					assertTrue( "Candidate out of range", candidates.getQuick( i ) >= 0 && candidates.getQuick( i ) < n );
+				for ( int i = 0; i < n; i++ )
+					if ( intersects( boxes, i, query ) )
+						assertTrue( "Box " + i + " missing for query " + q, found.contains( i ) );
+			}
+		}
+	}
+
+	/**
+	 * A query away from all boxes returns no candidates, except for large
+	 * boxes.
+	 */
+	@Test
+	public void testQueryOutsideBounds()
+	{
+		final ScreenBoxGrid grid = new ScreenBoxGrid();
+		final double[] boxes = new double[] {
+				10, 10, 20, 20,
+				50, 50, 50, 50,
+		};
+		grid.build( 2, boxes, 0, 0, WIDTH, HEIGHT );
+		final TIntArrayList candidates = new TIntArrayList();
+		grid.getCandidates( 500, 500, 510, 510, candidates );
+		assertTrue( candidates.isEmpty() );
+		grid.getCandidates( 50, 50, 50, 50, candidates );
+		assertTrue( candidates.contains( 1 ) );
+	}
+
+	private static boolean intersects( final double[] boxes, final int i, final double[] query )
+	{
+		final int b = 4 * i;
+		return boxes[ b ] <= query[ 2 ] && boxes[ b + 2 ] >= query[ 0 ]
+				&& boxes[ b + 1 ] <= query[ 3 ] && boxes[ b + 3 ] >= query[ 1 ];
+	}
+
+	private static double[] randomBoxes( final Random random, final int n )
+	{
+		final double[] boxes = new double[ 4 * n ];
+		for ( int i = 0; i < n; i++ )
+			System.arraycopy( randomBox( random ), 0, boxes, 4 * i, 4 );
+		return boxes;
+	}
+
+	/**
+	 * Mostly small boxes, some points, some boxes larger than the area, and
+	 * some boxes partly outside the area.
+	 */
+	private static double[] randomBox( final Random random )
+	{
+		final double x = -100 + random.nextDouble() * ( WIDTH + 200 );
+		final double y = -100 + random.nextDouble() * ( HEIGHT + 200 );
+		final double size;
+		switch ( random.nextInt( 10 ) )
+		{
+		case 0:
+			size = 0;
+			break;
+		case 1:
+			size = 2 * WIDTH * random.nextDouble();
+			break;
+		default:
+			size = 50 * random.nextDouble();
+			break;
+		}
+		return new double[] { x, y, x + size, y + size * random.nextDouble() };
+	}
+}
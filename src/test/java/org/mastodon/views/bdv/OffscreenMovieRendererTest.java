@@ -0,0 +1,143 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2021 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.views.bdv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mastodon.mamut.model.BoundingSphereRadiusStatistics;
+import org.mastodon.mamut.model.Model;
+import org.mastodon.mamut.model.ModelGraph;
+import org.mastodon.mamut.model.Spot;
+import org.mastodon.ui.coloring.DefaultGraphColorGenerator;
+import org.mastodon.util.DummySpimData;
+import org.mastodon.views.bdv.overlay.RenderSettings;
+
+import bdv.viewer.ViewerOptions;
+import net.imglib2.realtransform.AffineTransform3D;
+
+public class OffscreenMovieRendererTest
+{
+	private static final int SIZE = 100;
+
+	private Model model;
+
+	private Spot spot;
+
+	private OffscreenMovieRenderer renderer;
+
+	private File dir;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		System.setProperty( "java.awt.headless", "true" );
+
+		model = new Model();
+		final ModelGraph graph = model.getGraph();
+		final BoundingSphereRadiusStatistics radiusStats = new BoundingSphereRadiusStatistics( model );
+		spot = graph.addVertex().init( 0, new double[] { 30, 30, 0 }, 8 );
+		graph.addVertex().init( 1, new double[] { 30, 30, 0 }, 8 );
+		graph.notifyGraphChanged();
+
+		final String name = "x=" + SIZE + " y=" + SIZE + " z=10 sx=1 sy=1 sz=1 t=2.dummy";
+		final SharedBigDataViewerData bdvData = new SharedBigDataViewerData( name, DummySpimData.tryCreate( name ), ViewerOptions.options(), () -> {} );
+
+		// A single renderer, so that the second call reuses its caches.
+		renderer = new OffscreenMovieRenderer( model, radiusStats, bdvData, RenderSettings.defaultStyle(), new DefaultGraphColorGenerator<>(), 1 );
+		dir = Files.createTempDirectory( "mastodon-movie" ).toFile();
+	}
+
+	@After
+	public void tearDown()
+	{
+		renderer.close();
+		for ( final File file : dir.listFiles() )
+			file.delete();
+		dir.delete();
+	}
+
+	@Test
+	public void testRender() throws IOException
+	{
+		renderer.render( new AffineTransform3D(), SIZE, SIZE, 0, 1, dir );
+		for ( int t = 0; t <= 1; t++ )
+		{
+			final File file = new File( dir, String.format( "img-%05d.png", t ) );
+			assertTrue( file.exists() );
+			final BufferedImage image = ImageIO.read( file );
+			assertEquals( SIZE, image.getWidth() );
+			assertEquals( SIZE, image.getHeight() );
+		}
+	}
+
+	/**
+	 * Moving a spot between two calls must show in the second movie, although
+	 * the renderer cached the spot positions of the first.
+	 */
+	@Test
+	public void testRenderAfterModelChange() throws IOException
+	{
+		final File file = new File( dir, "img-00000.png" );
+		renderer.render( new AffineTransform3D(), SIZE, SIZE, 0, 0, dir );
+		final int[] before = pixels( ImageIO.read( file ) );
+
+		model.getGraph().getLock().writeLock().lock();
+		try
+		{
+			spot.setPosition( new double[] { 70, 70, 0 } );
+		}
+		finally
+		{
+			model.getGraph().getLock().writeLock().unlock();
+		}
+		model.getGraph().notifyGraphChanged();
+
+		renderer.render( new AffineTransform3D(), SIZE, SIZE, 0, 0, dir );
+		final int[] after = pixels( ImageIO.read( file ) );
+		assertFalse( Arrays.equals( before, after ) );
+	}
+
+	private static int[] pixels( final BufferedImage image )
+	{
+		return image.getRGB( 0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth() );
+	}
+}
@@ -0,0 +1,221 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2021 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.views.bdv.overlay;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.mastodon.mamut.model.BoundingSphereRadiusStatistics;
+import org.mastodon.mamut.model.Link;
+import org.mastodon.mamut.model.Model;
+import org.mastodon.mamut.model.ModelGraph;
+import org.mastodon.mamut.model.ModelOverlayProperties;
+import org.mastodon.mamut.model.Spot;
+import org.mastodon.views.bdv.overlay.ScreenVertexMath.Ellipse;
+import org.mastodon.views.bdv.overlay.wrap.OverlayGraphWrapper;
+import org.mastodon.views.bdv.overlay.wrap.OverlayVertexWrapper;
+
+import net.imglib2.realtransform.AffineTransform3D;
+
+/**
+ * Checks that {@link ScreenVertexMath#computeEllipses} gives the same results
+ * as the per-vertex {@link ScreenVertexMath} computations.
+ */
+public class ScreenVertexMathTest
+{
+	private static final int N_SPOTS = 500;
+
+	private static final int N_TRANSFORMS = 20;
+
+	@Test
+	public void testComputeEllipsesMatchesPerVertex()
+	{
+		final Random random = new Random( 42l );
+		final Model model = new Model();
+		final ModelGraph graph = model.getGraph();
+		final OverlayGraphWrapper< Spot, Link > viewGraph = new OverlayGraphWrapper<>(
+				graph,
+				model.getGraphIdBimap(),
+				model.getSpatioTemporalIndex(),
+				graph.getLock(),
+				new ModelOverlayProperties( graph, new BoundingSphereRadiusStatistics( model ) ) );
+
+		final double[] gPos = new double[ 3 * N_SPOTS ];
+		final double[] gCov = new double[ 6 * N_SPOTS ];
+		final Spot[] spots = new Spot[ N_SPOTS ];
+		final double[] pos = new double[ 3 ];
+		final double[][] cov = new double[ 3 ][ 3 ];
+		for ( int i = 0; i < N_SPOTS; ++i )
+		{
+			for ( int d = 0; d < 3; ++d )
+				pos[ d ] = 100 * random.nextGaussian();
+			randomCovariance( random, cov );
+			spots[ i ] = graph.addVertex().init( 0, pos, cov );
+
+			System.arraycopy( pos, 0, gPos, 3 * i, 3 );
+			gCov[ 6 * i ] = cov[ 0 ][ 0 ];
+			gCov[ 6 * i + 1 ] = cov[ 0 ][ 1 ];
+			gCov[ 6 * i + 2 ] = cov[ 0 ][ 2 ];
+			gCov[ 6 * i + 3 ] = cov[ 1 ][ 1 ];
+			gCov[ 6 * i + 4 ] = cov[ 1 ][ 2 ];
+			gCov[ 6 * i + 5 ] = cov[ 2 ][ 2 ];
+		}
+
+		final double[] vPos = new double[ 3 * N_SPOTS ];
+		final boolean[] intersects = new boolean[ N_SPOTS ];
+		final double[] intersectEllipses = new double[ ScreenVertexMath.ELLIPSE_SIZE * N_SPOTS ];
+		final double[] projectEllipses = new double[ ScreenVertexMath.ELLIPSE_SIZE * N_SPOTS ];
+		final ScreenVertexMath svm = new ScreenVertexMath();
+		final OverlayVertexWrapper< Spot, Link > ref = viewGraph.vertexRef();
+		final AffineTransform3D transform = new AffineTransform3D();
+		int nIntersecting = 0;
+		for ( int t = 0; t < N_TRANSFORMS; ++t )
+		{
+			randomTransform( random, transform );
+			ScreenVertexMath.computeEllipses( transform, 0, N_SPOTS, gPos, gCov, vPos, intersects, intersectEllipses, projectEllipses );
+
+			for ( int i = 0; i < N_SPOTS; ++i )
+			{
+				final OverlayVertexWrapper< Spot, Link > v = viewGraph.getVertexMap().getRight( spots[ i ], ref );
+				svm.init( v, transform );
+
+				final double[] expectedPos = svm.getViewPos();
+				for ( int d = 0; d < 3; ++d )
+					assertEquals( "viewer position", expectedPos[ d ], vPos[ 3 * i + d ], 1e-6 * Math.max( 1, Math.abs( expectedPos[ d ] ) ) );
+
+				assertSameEllipse( "projection", svm.getProjectEllipse(), projectEllipses, i );
+
+				/*
+				 * Spots that touch the view plane may be classified either way
+				 * because of rounding.
+				 */
+				final double z = expectedPos[ 2 ];
+				final double v22 = viewerCovarianceZZ( transform, gCov, i );
+				if ( Math.abs( z * z - v22 ) < 1e-9 * v22 )
+					continue;
+
+				assertEquals( "intersects view plane", svm.intersectsViewPlane(), intersects[ i ] );
+				if ( intersects[ i ] )
+				{
+					assertSameEllipse( "intersection", svm.getIntersectEllipse(), intersectEllipses, i );
+					++nIntersecting;
+				}
+			}
+		}
+		viewGraph.releaseRef( ref );
+
+		// Make sure that intersections were actually tested.
+		assertTrue( nIntersecting > N_TRANSFORMS );
+	}
+
+	/**
+	 * Compares ellipses through their covariance matrix, because the angle
+	 * and axes of an ellipse are not unique.
+	 */
+	private static void assertSameEllipse( final String message, final Ellipse expected, final double[] ellipses, final int i )
+	{
+		final int e = ScreenVertexMath.ELLIPSE_SIZE * i;
+		final double[] center = expected.getCenter();
+		final double scale = Math.max( 1, expected.getHalfWidth() * expected.getHalfWidth() + expected.getHalfHeight() * expected.getHalfHeight() );
+		assertEquals( message + " center x", center[ 0 ], ellipses[ e ], 1e-6 * Math.max( 1, Math.abs( center[ 0 ] ) ) );
+		assertEquals( message + " center y", center[ 1 ], ellipses[ e + 1 ], 1e-6 * Math.max( 1, Math.abs( center[ 1 ] ) ) );
+
+		final double[] c1 = ellipseCovariance( expected.getTheta(), expected.getHalfWidth(), expected.getHalfHeight() );
+		final double[] c2 = ellipseCovariance( ellipses[ e + 2 ], ellipses[ e + 3 ], ellipses[ e + 4 ] );
+		for ( int k = 0; k < 3; ++k )
+			assertEquals( message + " shape", c1[ k ], c2[ k ], 1e-6 * scale );
+	}
+
+	/**
+	 * Returns xx, xy and yy of the covariance of the ellipse with the
+	 * specified angle and half-axes.
+	 */
+	private static double[] ellipseCovariance( final double theta, final double w, final double h )
+	{
+		final double cos = Math.cos( theta );
+		final double sin = Math.sin( theta );
+		final double w2 = w * w;
+		final double h2 = h * h;
+		return new double[] {
+				w2 * cos * cos + h2 * sin * sin,
+				( w2 - h2 ) * sin * cos,
+				w2 * sin * sin + h2 * cos * cos };
+	}
+
+	private static double viewerCovarianceZZ( final AffineTransform3D transform, final double[] gCov, final int i )
+	{
+		final double[] t = { transform.get( 2, 0 ), transform.get( 2, 1 ), transform.get( 2, 2 ) };
+		final int c = 6 * i;
+		final double[][] s = {
+				{ gCov[ c ], gCov[ c + 1 ], gCov[ c + 2 ] },
+				{ gCov[ c + 1 ], gCov[ c + 3 ], gCov[ c + 4 ] },
+				{ gCov[ c + 2 ], gCov[ c + 4 ], gCov[ c + 5 ] } };
+		double v22 = 0;
+		for ( int r = 0; r < 3; ++r )
+			for ( int k = 0; k < 3; ++k )
+				v22 += t[ r ] * s[ r ][ k ] * t[ k ];
+		return v22;
+	}
+
+	/**
+	 * A random symmetric positive definite matrix A A^T + I, with A
+	 * scaled so that spots are a few tens of units wide.
+	 */
+	private static void randomCovariance( final Random random, final double[][] cov )
+	{
+		final double[][] a = new double[ 3 ][ 3 ];
+		for ( int r = 0; r < 3; ++r )
+			for ( int c = 0; c < 3; ++c )
+				a[ r ][ c ] = 20 * random.nextGaussian();
+		for ( int r = 0; r < 3; ++r )
+			for ( int c = 0; c < 3; ++c )
+			{
+				double s = ( r == c ) ? 1 : 0;
+				for ( int k = 0; k < 3; ++k )
+					s += a[ r ][ k ] * a[ c ][ k ];
+				cov[ r ][ c ] = s;
+			}
+	}
+
+	/**
+	 * A random rotation, followed by a random scaling and translation.
+	 */
+	private static void randomTransform( final Random random, final AffineTransform3D transform )
+	{
+		transform.identity();
+		transform.rotate( 0, 2 * Math.PI * random.nextDouble() );
+		transform.rotate( 1, 2 * Math.PI * random.nextDouble() );
+		transform.rotate( 2, 2 * Math.PI * random.nextDouble() );
+		transform.scale( 0.5 + random.nextDouble() );
+		transform.translate( 20 * random.nextGaussian(), 20 * random.nextGaussian(), 20 * random.nextGaussian() );
+	}
+}
@@ -0,0 +1,294 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2021 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.views.table;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mastodon.RefPool;
+import org.mastodon.feature.Dimension;
+import org.mastodon.feature.DoubleScalarFeature;
+import org.mastodon.feature.Feature;
+import org.mastodon.feature.FeatureProjectionSpec;
+import org.mastodon.feature.FeatureSpec;
+import org.mastodon.feature.Multiplicity;
+import org.mastodon.mamut.model.Model;
+import org.mastodon.mamut.model.ModelGraph;
+import org.mastodon.mamut.model.Spot;
+import org.mastodon.model.tag.ObjTags;
+import org.mastodon.model.tag.TagSetStructure;
+import org.mastodon.model.tag.TagSetStructure.Tag;
+import org.mastodon.model.tag.TagSetStructure.TagSet;
+
+import gnu.trove.list.array.TIntArrayList;
+
+public class FilterExpressionTest
+{
+	private static final double NOT_SET = Double.NaN;
+
+	/*
+	 * Values of the test spots. Spot 3 has no intensity, spot 4 no "Cell and
+	 * nucleus" value.
+	 */
+
+	private static final double[] INTENSITY = new double[] { 10, 20, 30, NOT_SET, -5 };
+
+	private static final double[] CELL_AND_NUCLEUS = new double[] { 1, 2, 0, 1, NOT_SET };
+
+	private static final String[] FATE = new String[] { "Neuron", "Glia", "Neuron", null, null };
+
+	private Map< FeatureSpec< ?, Spot >, Feature< Spot > > features;
+
+	private ObjTags< Spot > tags;
+
+	private List< TagSet > tagSets;
+
+	private RefPool< Spot > pool;
+
+	private int[] ids;
+
+	@Before
+	public void setUp()
+	{
+		final Model model = new Model();
+		final ModelGraph graph = model.getGraph();
+		pool = graph.vertices().getRefPool();
+
+		final TagSetStructure tss = new TagSetStructure();
+		final TagSet fate = tss.createTagSet( "Fate" );
+		fate.createTag( "Neuron", 0xFF0000 );
+		fate.createTag( "Glia", 0x00FF00 );
+		model.getTagSetModel().setTagSetStructure( tss );
+		tagSets = model.getTagSetModel().getTagSetStructure().getTagSets();
+		tags = model.getTagSetModel().getVertexTags();
+
+		final TestFeature intensity = new TestFeature( "Intensity", pool );
+		final TestFeature cellAndNucleus = new TestFeature( "Cell and nucleus", pool );
+		features = new HashMap<>();
+		features.put( intensity.getSpec(), intensity );
+		features.put( cellAndNucleus.getSpec(), cellAndNucleus );
+
+		ids = new int[ INTENSITY.length ];
+		final double[] pos = new double[ 3 ];
+		for ( int i = 0; i < ids.length; i++ )
+		{
+			final Spot spot = graph.addVertex().init( 0, pos, 1. );
+			ids[ i ] = pool.getId( spot );
+			if ( !Double.isNaN( INTENSITY[ i ] ) )
+				intensity.set( spot, INTENSITY[ i ] );
+			if ( !Double.isNaN( CELL_AND_NUCLEUS[ i ] ) )
+				cellAndNucleus.set( spot, CELL_AND_NUCLEUS[ i ] );
+			if ( FATE[ i ] != null )
+				tags.tags( tagSets.get( 0 ) ).set( spot, tag( FATE[ i ] ) );
+		}
+	}
+
+	@Test
+	public void testComparisons()
+	{
+		assertPasses( "Intensity > 15", 1, 2 );
+		assertPasses( "Intensity >= 20", 1, 2 );
+		assertPasses( "Intensity < 20", 0, 4 );
+		assertPasses( "Intensity <= 20", 0, 1, 4 );
+		assertPasses( "Intensity = 30", 2 );
+		assertPasses( "Intensity == 30", 2 );
+		assertPasses( "intensity > 15", 1, 2 );
+	}
+
+	@Test
+	public void testPrecedence()
+	{
+		// 'and' binds tighter than 'or'.
+		assertPasses( "Intensity < 15 or Intensity > 25 and \"Cell and nucleus\" = 1", 0, 4 );
+		assertPasses( "Intensity > 25 and \"Cell and nucleus\" = 1 or Intensity < 15", 0, 4 );
+		assertPasses( "Intensity < 15 OR Intensity > 25 AND \"Cell and nucleus\" = 1", 0, 4 );
+	}
+
+	@Test
+	public void testParentheses()
+	{
+		assertPasses( "(Intensity < 15 or Intensity > 25) and \"Cell and nucleus\" = 1", 0 );
+		assertPasses( "((Intensity > 15))", 1, 2 );
+		assertPasses( "not (Intensity > 15 or Intensity < 0)", 0, 3 );
+	}
+
+	@Test
+	public void testNot()
+	{
+		// Spot 3 has no intensity: the comparison fails, its negation passes.
+		assertPasses( "not Intensity > 15", 0, 3, 4 );
+		assertPasses( "not not Intensity > 15", 1, 2 );
+		// 'not' binds tighter than 'and'.
+		assertPasses( "not Intensity > 15 and \"Cell and nucleus\" = 1", 0, 3 );
+	}
+
+	@Test
+	public void testQuotedNames()
+	{
+		assertPasses( "\"Cell and nucleus\" >= 1", 0, 1, 3 );
+		assertPasses( "\"cell AND nucleus\" >= 1", 0, 1, 3 );
+		assertPasses( "\"Intensity\" > 15", 1, 2 );
+		assertPasses( "tag:\"Fate\" = \"Neuron\"", 0, 2 );
+	}
+
+	@Test
+	public void testNegativeNumbers()
+	{
+		assertPasses( "Intensity < -1", 4 );
+		assertPasses( "Intensity >= -5", 0, 1, 2, 4 );
+		assertPasses( "Intensity > -5.5", 0, 1, 2, 4 );
+		assertPasses( "Intensity = -5", 4 );
+	}
+
+	@Test
+	public void testUnsetValues()
+	{
+		// Unset values pass no comparison, not even '!='.
+		assertPasses( "Intensity != 10", 1, 2, 4 );
+		assertPasses( "\"Cell and nucleus\" != 1", 1, 2 );
+		assertPasses( "not Intensity = 10", 1, 2, 3, 4 );
+		assertPasses( "Intensity < 100 or Intensity >= 100", 0, 1, 2, 4 );
+	}
+
+	@Test
+	public void testTags()
+	{
+		assertPasses( "tag:Fate", 0, 1, 2 );
+		assertPasses( "not tag:Fate", 3, 4 );
+		assertPasses( "tag:Fate = Neuron", 0, 2 );
+		assertPasses( "tag:fate == glia", 1 );
+		// Untagged objects pass '!='.
+		assertPasses( "tag:Fate != Neuron", 1, 3, 4 );
+		assertPasses( "tag:Fate and Intensity > 15", 1, 2 );
+		assertPasses( "tag : Fate = Neuron or Intensity < 0", 0, 2, 4 );
+	}
+
+	@Test
+	public void testErrors()
+	{
+		assertError( "Foo > 1", "unknown feature projection 'Foo'" );
+		assertError( "Intensity >", "expected a number after 'Intensity >'" );
+		assertError( "Intensity > abc", "expected a number after 'Intensity >'" );
+		assertError( "Intensity 3", "unknown feature projection 'Intensity 3'" );
+		assertError( "Intensity", "expected a comparison operator after 'Intensity'" );
+		assertError( "(Intensity > 1", "missing ')'" );
+		assertError( "Intensity > 1)", "unexpected ')'" );
+		assertError( "Intensity > 1 and", "unexpected end of expression" );
+		assertError( "Intensity ! 1", "unexpected '!'" );
+		assertError( "\"Intensity > 1", "missing closing '\"'" );
+		assertError( "tag:Lineage", "unknown tag-set 'Lineage'" );
+		assertError( "tag:Fate = Astrocyte", "unknown tag 'Astrocyte' in tag-set 'Fate'" );
+		assertError( "tag:Fate > Neuron", "expected '=' or '!=' after 'tag:Fate'" );
+	}
+
+	@Test
+	public void testGetText()
+	{
+		final String text = "Intensity > 15 and tag:Fate";
+		assertEquals( text, compile( text ).getText() );
+	}
+
+	private Tag tag( final String label )
+	{
+		for ( final Tag tag : tagSets.get( 0 ).getTags() )
+			if ( tag.label().equals( label ) )
+				return tag;
+		throw new IllegalArgumentException( label );
+	}
+
+	private FilterExpression< Spot > compile( final String text )
+	{
+		return FilterExpression.compile( text, features, tags, tagSets );
+	}
+
+	/**
+	 * Checks that exactly the test spots with the specified indices pass the
+	 * expression.
+	 */
+	private void assertPasses( final String text, final int... expected )
+	{
+		final TIntArrayList passing = compile( text ).filter( ids, pool );
+		final int[] actual = new int[ passing.size() ];
+		for ( int k = 0; k < actual.length; k++ )
+		{
+			final int id = passing.getQuick( k );
+			int i = 0;
+			while ( ids[ i ] != id )
+				i++;
+			actual[ k ] = i;
+		}
+		assertArrayEquals( text + " -> " + Arrays.toString( actual ), expected, actual );
+	}
+
+	private void assertError( final String text, final String message )
+	{
+		try
+		{
+			compile( text );
+			fail( "Expected an error for: " + text );
+		}
+		catch ( final IllegalArgumentException e )
+		{
+			assertEquals( "Invalid filter expression '" + text + "': " + message + ".", e.getMessage() );
+		}
+	}
+
+	private static class TestFeature extends DoubleScalarFeature< Spot >
+	{
+		private final TestSpec spec;
+
+		private TestFeature( final String key, final RefPool< Spot > pool )
+		{
+			super( key, Dimension.NONE, "", pool );
+			this.spec = new TestSpec( key );
+		}
+
+		@Override
+		public TestSpec getSpec()
+		{
+			return spec;
+		}
+	}
+
+	private static class TestSpec extends FeatureSpec< TestFeature, Spot >
+	{
+		private TestSpec( final String key )
+		{
+			super( key, "", TestFeature.class, Spot.class, Multiplicity.SINGLE, new FeatureProjectionSpec( key, Dimension.NONE ) );
+		}
+	}
+}
@@ -0,0 +1,106 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2021 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.views.table;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class IndexSorterTest
+{
+	@Test
+	public void testStableSmall()
+	{
+		testStable( 10 );
+		testStable( 1000 );
+	}
+
+	@Test
+	public void testStableParallel()
+	{
+		testStable( 3 * IndexSorter.PARALLEL_THRESHOLD + 7 );
+	}
+
+	@Test
+	public void testReverseOrder()
+	{
+		final int n = 2 * IndexSorter.PARALLEL_THRESHOLD;
+		final int[] indices = new int[ n ];
+		for ( int i = 0; i < n; i++ )
+			indices[ i ] = i;
+		IndexSorter.sort( indices, ( i1, i2 ) -> Integer.compare( i2, i1 ) );
+		for ( int i = 0; i < n; i++ )
+			assertTrue( indices[ i ] == n - 1 - i );
+	}
+
+	/**
+	 * Sorts a shuffled array of indices on keys with many ties, and checks
+	 * that tied indices keep their input order.
+	 */
+	private static void testStable( final int n )
+	{
+		final Random random = new Random( n );
+		final int[] keys = new int[ n ];
+		for ( int i = 0; i < n; i++ )
+			keys[ i ] = random.nextInt( 20 );
+
+		final int[] indices = new int[ n ];
+		for ( int i = 0; i < n; i++ )
+			indices[ i ] = i;
+		for ( int i = n - 1; i > 0; i-- )
+		{
+			final int j = random.nextInt( i + 1 );
+			final int t = indices[ i ];
+			indices[ i ] = indices[ j ];
+			indices[ j ] = t;
+		}
+		final int[] inputPosition = new int[ n ];
+		for ( int p = 0; p < n; p++ )
+			inputPosition[ indices[ p ] ] = p;
+
+		IndexSorter.sort( indices, ( i1, i2 ) -> Integer.compare( keys[ i1 ], keys[ i2 ] ) );
+
+		final boolean[] seen = new boolean[ n ];
+		for ( int p = 0; p < n; p++ )
+		{
+			assertTrue( "Index lost or duplicated", !seen[ indices[ p ] ] );
+			seen[ indices[ p ] ] = true;
+		}
+		for ( int p = 1; p < n; p++ )
+		{
+			final int a = indices[ p - 1 ];
+			final int b = indices[ p ];
+			assertTrue( "Not sorted at " + p, keys[ a ] <= keys[ b ] );
+			if ( keys[ a ] == keys[ b ] )
+				assertTrue( "Not stable at " + p, inputPosition[ a ] < inputPosition[ b ] );
+		}
+	}
+}
@@ -0,0 +1,128 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2021 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.views.table;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import gnu.trove.set.hash.TIntHashSet;
+
+public class RowMapTest
+{
+	@Test
+	public void testAddAndRemove()
+	{
+		final RowMap map = new RowMap();
+		assertEquals( 0, map.add( 5 ) );
+		assertEquals( 1, map.add( 2 ) );
+		assertEquals( 2, map.add( 9 ) );
+		assertEquals( -1, map.add( 2 ) );
+		assertEquals( 3, map.size() );
+
+		assertEquals( 1, map.remove( 2 ) );
+		assertEquals( -1, map.remove( 2 ) );
+		assertEquals( -1, map.remove( 100 ) );
+		assertEquals( 2, map.size() );
+		assertEquals( 5, map.getId( 0 ) );
+		assertEquals( 9, map.getId( 1 ) );
+		assertEquals( 1, map.getRow( 9 ) );
+		assertEquals( -1, map.getRow( 2 ) );
+		assertEquals( -1, map.getId( 2 ) );
+	}
+
+	/**
+	 * Random single and bulk edits keep the row order of the remaining ids,
+	 * and the reverse mapping, in sync with a plain list.
+	 */
+	@Test
+	public void testRandomEditsKeepOrder()
+	{
+		final Random random = new Random( 3l );
+		final RowMap map = new RowMap();
+		final List< Integer > expected = new ArrayList<>();
+		for ( int step = 0; step < 200; step++ )
+		{
+			switch ( random.nextInt( 3 ) )
+			{
+			case 0:
+				for ( int k = 0; k < 50; k++ )
+				{
+					final int id = random.nextInt( 2000 );
+					final int row = map.add( id );
+					if ( expected.contains( id ) )
+						assertEquals( -1, row );
+					else
+					{
+						assertEquals( expected.size(), row );
+						expected.add( id );
+					}
+				}
+				break;
+			case 1:
+			{
+				final int id = random.nextInt( 2000 );
+				assertEquals( expected.indexOf( id ), map.remove( id ) );
+				expected.remove( Integer.valueOf( id ) );
+				break;
+			}
+			default:
+			{
+				final TIntHashSet ids = new TIntHashSet();
+				for ( int k = 0; k < 40; k++ )
+					ids.add( random.nextInt( 2000 ) );
+				int nRemoved = 0;
+				for ( final int id : ids.toArray() )
+					if ( expected.remove( Integer.valueOf( id ) ) )
+						nRemoved++;
+				assertEquals( nRemoved, map.removeAll( ids ) );
+				break;
+			}
+			}
+			assertMatches( expected, map );
+		}
+	}
+
+	private static void assertMatches( final List< Integer > expected, final RowMap map )
+	{
+		assertEquals( expected.size(), map.size() );
+		final int[] ids = map.getIds();
+		for ( int row = 0; row < expected.size(); row++ )
+		{
+			final int id = expected.get( row );
+			assertEquals( id, ids[ row ] );
+			assertEquals( id, map.getId( row ) );
+			assertEquals( row, map.getRow( id ) );
+		}
+	}
+}